@@ -0,0 +1,253 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import psiprobe.beans.CompressorBean;
+
+/**
+ * Compresses the responses of requests accepting gzip, for pages returning log lines.
+ * Headers are only changed once a body is written, so that errors sent without one are not
+ * marked as compressed. A request going async keeps its compressed response, which is finished by
+ * the async dispatch writing the body.
+ */
+public class CompressionFilter extends OncePerRequestFilter {
+
+  /** The compressor. */
+  private CompressorBean compressor;
+
+  /**
+   * Gets the compressor.
+   *
+   * @return the compressor
+   */
+  public CompressorBean getCompressor() {
+    return compressor;
+  }
+
+  /**
+   * Sets the compressor.
+   *
+   * @param compressor the new compressor
+   */
+  public void setCompressor(CompressorBean compressor) {
+    this.compressor = compressor;
+  }
+
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    return false;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+      FilterChain filterChain) throws ServletException, IOException {
+    GzipResponse gzipResponse = findGzipResponse(response);
+    if (gzipResponse == null && !compressor.acceptsGzip(request)) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+    HttpServletResponse target = response;
+    if (gzipResponse == null) {
+      gzipResponse = new GzipResponse(response);
+      target = gzipResponse;
+    }
+    try {
+      filterChain.doFilter(request, target);
+    } finally {
+      if (!request.isAsyncStarted()) {
+        gzipResponse.finish();
+      }
+    }
+  }
+
+  /**
+   * Finds the compressed response an async dispatch carries over from the request that went async.
+   *
+   * @param response the response
+   * @return the compressed response, or null
+   */
+  private static GzipResponse findGzipResponse(ServletResponse response) {
+    for (ServletResponse wrapped = response; wrapped instanceof ServletResponseWrapper;
+        wrapped = ((ServletResponseWrapper) wrapped).getResponse()) {
+      if (wrapped instanceof GzipResponse) {
+        return (GzipResponse) wrapped;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * A response whose body is gzip encoded.
+   */
+  private class GzipResponse extends HttpServletResponseWrapper {
+
+    /** The gzip stream, null until a body is written. */
+    private OutputStream gzip;
+
+    /** The output stream. */
+    private ServletOutputStream stream;
+
+    /** The writer. */
+    private PrintWriter writer;
+
+    /**
+     * Instantiates a new gzip response.
+     *
+     * @param response the response
+     */
+    GzipResponse(HttpServletResponse response) {
+      super(response);
+    }
+
+    /**
+     * Gets the gzip stream, encoding the response when it is first asked for.
+     *
+     * @return the gzip stream
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private OutputStream getGzip() throws IOException {
+      if (gzip == null) {
+        HttpServletResponse response = (HttpServletResponse) getResponse();
+        response.setHeader("Content-Encoding", "gzip");
+        response.addHeader("Vary", "Accept-Encoding");
+        gzip = compressor.gzip(response.getOutputStream());
+      }
+      return gzip;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (writer != null) {
+        throw new IllegalStateException("getWriter() has already been called");
+      }
+      if (stream == null) {
+        OutputStream out = getGzip();
+        // Non-blocking writes are left to the stream the encoded body goes to
+        ServletOutputStream target = getResponse().getOutputStream();
+        stream = new ServletOutputStream() {
+          @Override
+          public void write(int b) throws IOException {
+            out.write(b);
+          }
+
+          @Override
+          public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+          }
+
+          @Override
+          public void flush() throws IOException {
+            out.flush();
+          }
+
+          @Override
+          public boolean isReady() {
+            return target.isReady();
+          }
+
+          @Override
+          public void setWriteListener(WriteListener writeListener) {
+            target.setWriteListener(writeListener);
+          }
+        };
+      }
+      return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      if (stream != null) {
+        throw new IllegalStateException("getOutputStream() has already been called");
+      }
+      if (writer == null) {
+        Charset charset;
+        try {
+          charset = Charset.forName(getCharacterEncoding());
+        } catch (IllegalArgumentException e) {
+          UnsupportedEncodingException unsupported =
+              new UnsupportedEncodingException(getCharacterEncoding());
+          unsupported.initCause(e);
+          throw unsupported;
+        }
+        writer = new PrintWriter(new OutputStreamWriter(getGzip(), charset));
+      }
+      return writer;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+      // The length of the encoded body is not known
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+      // The length of the encoded body is not known
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+      if (!"Content-Length".equalsIgnoreCase(name)) {
+        super.setHeader(name, value);
+      }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+      if (!"Content-Length".equalsIgnoreCase(name)) {
+        super.addHeader(name, value);
+      }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+      if (writer != null) {
+        writer.flush();
+      } else if (gzip != null) {
+        gzip.flush();
+      }
+      super.flushBuffer();
+    }
+
+    /**
+     * Finishes the gzip stream, if a body was written.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    void finish() throws IOException {
+      if (writer != null) {
+        writer.close();
+      } else if (gzip != null) {
+        gzip.close();
+      }
+    }
+
+  }
+
+}
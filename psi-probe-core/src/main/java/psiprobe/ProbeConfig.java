@@ -22,6 +22,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.PropertiesFactoryBean;
 import org.springframework.beans.factory.config.PropertyPlaceholderConfigurer;
 import org.springframework.context.MessageSource;
@@ -46,16 +47,25 @@ import org.springframework.web.servlet.view.InternalResourceViewResolver;
 import org.springframework.web.servlet.view.JstlView;
 
 import psiprobe.beans.ClusterWrapperBean;
+import psiprobe.beans.CompressorBean;
 import psiprobe.beans.ContainerListenerBean;
 import psiprobe.beans.ContainerWrapperBean;
 import psiprobe.beans.JBossResourceResolverBean;
 import psiprobe.beans.JvmMemoryInfoAccessorBean;
+import psiprobe.beans.LogFollowerBean;
 import psiprobe.beans.LogResolverBean;
+import psiprobe.beans.LogSearchBean;
 import psiprobe.beans.ResourceResolver;
 import psiprobe.beans.ResourceResolverBean;
 import psiprobe.beans.RuntimeInfoAccessorBean;
+import psiprobe.beans.SamplingProfilerBean;
+import psiprobe.beans.SessionSearchPoolBean;
+import psiprobe.beans.SessionSizeEstimatorBean;
+import psiprobe.beans.SessionSizeIndexBean;
+import psiprobe.beans.ThreadInfoAccessorBean;
 import psiprobe.beans.stats.collectors.AppStatsCollectorBean;
 import psiprobe.beans.stats.collectors.ClusterStatsCollectorBean;
+import psiprobe.beans.stats.collectors.CollectorExecutorBean;
 import psiprobe.beans.stats.collectors.ConnectorStatsCollectorBean;
 import psiprobe.beans.stats.collectors.DatasourceStatsCollectorBean;
 import psiprobe.beans.stats.collectors.JvmMemoryStatsCollectorBean;
@@ -72,6 +82,7 @@ import psiprobe.scheduler.jobs.ConnectorStatsJobDetail;
 import psiprobe.scheduler.jobs.DatasourceStatsJobDetail;
 import psiprobe.scheduler.jobs.MemoryStatsJobDetail;
 import psiprobe.scheduler.jobs.RuntimeStatsJobDetail;
+import psiprobe.scheduler.jobs.SessionSizeIndexJobDetail;
 import psiprobe.scheduler.jobs.StatsSerializerJobDetail;
 import psiprobe.scheduler.triggers.AppStatsTrigger;
 import psiprobe.scheduler.triggers.ClusterStatsTrigger;
@@ -79,8 +90,10 @@ import psiprobe.scheduler.triggers.ConnectorStatsTrigger;
 import psiprobe.scheduler.triggers.DatasourceStatsTrigger;
 import psiprobe.scheduler.triggers.MemoryStatsTrigger;
 import psiprobe.scheduler.triggers.RuntimeStatsTrigger;
+import psiprobe.scheduler.triggers.SessionSizeIndexTrigger;
 import psiprobe.scheduler.triggers.StatsSerializerTrigger;
 import psiprobe.tools.Mailer;
+import psiprobe.tools.TimeExpression;
 
 /**
  * The Class ProbeConfig.
@@ -266,12 +279,36 @@ public class ProbeConfig implements WebMvcConfigurer {
   /**
    * Gets the stats collection.
    *
+   * @param storage where series are kept: "heap", "compressed" for compressed heap chunks or
+   *        "mapped" for memory-mapped files
    * @return the stats collection
    */
   @Bean(name = "statsCollection")
-  public StatsCollection getStatsCollection() {
+  public StatsCollection getStatsCollection(
+      @Value("${psiprobe.beans.stats.storage}") String storage) {
     logger.debug("Instantiated statsCollection");
-    return new StatsCollection();
+    StatsCollection statsCollection = new StatsCollection();
+    statsCollection.setMappedStorage("mapped".equalsIgnoreCase(storage));
+    statsCollection.setCompressedStorage("compressed".equalsIgnoreCase(storage));
+    return statsCollection;
+  }
+
+  /**
+   * Gets the collector executor bean.
+   *
+   * @param threads the number of threads reading collector targets, 1 to read them sequentially
+   * @param timeout the time all targets of a collection are given to answer, e.g. 10s
+   * @return the collector executor bean
+   */
+  @Bean(name = "collectorExecutor")
+  public CollectorExecutorBean getCollectorExecutorBean(
+      @Value("${psiprobe.beans.stats.collectors.threads}") int threads,
+      @Value("${psiprobe.beans.stats.collectors.timeout}") String timeout) {
+    logger.debug("Instantiated collectorExecutor");
+    CollectorExecutorBean collectorExecutor = new CollectorExecutorBean();
+    collectorExecutor.setThreads(threads);
+    collectorExecutor.setTimeout(TimeExpression.inSeconds(timeout) * 1000);
+    return collectorExecutor;
   }
 
   /**
@@ -362,6 +399,188 @@ public class ProbeConfig implements WebMvcConfigurer {
     return new RuntimeInfoAccessorBean();
   }
 
+  /**
+   * Gets the thread info accessor bean.
+   *
+   * @param lockedMonitors whether thread snapshots include locked monitors
+   * @param lockedSynchronizers whether thread snapshots include locked synchronizers
+   * @return the thread info accessor bean
+   */
+  @Bean(name = "threadInfoAccessor")
+  public ThreadInfoAccessorBean getThreadInfoAccessorBean(
+      @Value("${psiprobe.beans.threads.lockedMonitors}") boolean lockedMonitors,
+      @Value("${psiprobe.beans.threads.lockedSynchronizers}") boolean lockedSynchronizers) {
+    logger.debug("Instantiated threadInfoAccessorBean");
+    ThreadInfoAccessorBean threadInfoAccessor = new ThreadInfoAccessorBean();
+    threadInfoAccessor.setLockedMonitors(lockedMonitors);
+    threadInfoAccessor.setLockedSynchronizers(lockedSynchronizers);
+    return threadInfoAccessor;
+  }
+
+  /**
+   * Gets the sampling profiler bean.
+   *
+   * @param enabled whether sampling starts with the application
+   * @param interval the time between samples in milliseconds
+   * @param stackDepth the number of stack frames sampled per thread
+   * @param maxNodes the maximum number of call tree nodes per window
+   * @param maxOverhead the share of one CPU sampling may take, in percent
+   * @param window the time covered by each call tree, e.g. 5m
+   * @return the sampling profiler bean
+   */
+  @Bean(name = "samplingProfiler")
+  public SamplingProfilerBean getSamplingProfilerBean(
+      @Value("${psiprobe.beans.profiler.enabled}") boolean enabled,
+      @Value("${psiprobe.beans.profiler.interval}") long interval,
+      @Value("${psiprobe.beans.profiler.depth}") int stackDepth,
+      @Value("${psiprobe.beans.profiler.nodes}") int maxNodes,
+      @Value("${psiprobe.beans.profiler.overhead}") int maxOverhead,
+      @Value("${psiprobe.beans.profiler.window}") String window) {
+    logger.debug("Instantiated samplingProfiler");
+    SamplingProfilerBean samplingProfiler = new SamplingProfilerBean();
+    samplingProfiler.setEnabled(enabled);
+    samplingProfiler.setInterval(interval);
+    samplingProfiler.setStackDepth(stackDepth);
+    samplingProfiler.setMaxNodes(maxNodes);
+    samplingProfiler.setMaxOverhead(maxOverhead);
+    samplingProfiler.setWindow(TimeExpression.inSeconds(window) * 1000);
+    return samplingProfiler;
+  }
+
+  /**
+   * Gets the session size estimator bean.
+   *
+   * @param sampleSize the number of sessions sized per web application, 0 for all
+   * @param timeout the time each request may spend sizing sessions, e.g. 10s
+   * @param maxObjects the number of objects each request may size, 0 for no maximum
+   * @return the session size estimator bean
+   */
+  @Bean(name = "sessionSizeEstimator")
+  public SessionSizeEstimatorBean getSessionSizeEstimatorBean(
+      @Value("${psiprobe.beans.sessions.size.sample}") int sampleSize,
+      @Value("${psiprobe.beans.sessions.size.timeout}") String timeout,
+      @Value("${psiprobe.beans.sessions.size.objects}") long maxObjects) {
+    logger.debug("Instantiated sessionSizeEstimator");
+    SessionSizeEstimatorBean sessionSizeEstimator = new SessionSizeEstimatorBean();
+    sessionSizeEstimator.setSampleSize(sampleSize);
+    sessionSizeEstimator.setTimeout(TimeExpression.inSeconds(timeout) * 1000);
+    sessionSizeEstimator.setMaxObjects(maxObjects);
+    return sessionSizeEstimator;
+  }
+
+  /**
+   * Gets the session search pool bean.
+   *
+   * @param parallelism the number of threads searching sessions, 1 to search on the request thread
+   * @return the session search pool bean
+   */
+  @Bean(name = "sessionSearchPool")
+  public SessionSearchPoolBean getSessionSearchPoolBean(
+      @Value("${psiprobe.beans.sessions.search.threads}") int parallelism) {
+    logger.debug("Instantiated sessionSearchPool");
+    SessionSearchPoolBean sessionSearchPool = new SessionSearchPoolBean();
+    sessionSearchPool.setParallelism(parallelism);
+    return sessionSearchPool;
+  }
+
+  /**
+   * Gets the session size index bean.
+   *
+   * @param enabled whether the index is refreshed
+   * @param timeout the time each refresh may spend sizing sessions, e.g. 30s
+   * @return the session size index bean
+   */
+  @Bean(name = "sessionSizeIndex")
+  public SessionSizeIndexBean getSessionSizeIndexBean(
+      @Value("${psiprobe.beans.sessions.index.enabled}") boolean enabled,
+      @Value("${psiprobe.beans.sessions.index.timeout}") String timeout) {
+    logger.debug("Instantiated sessionSizeIndex");
+    SessionSizeIndexBean sessionSizeIndex = new SessionSizeIndexBean();
+    sessionSizeIndex.setEnabled(enabled);
+    sessionSizeIndex.setTimeout(TimeExpression.inSeconds(timeout) * 1000);
+    return sessionSizeIndex;
+  }
+
+  /**
+   * Gets the compressor bean.
+   *
+   * @param level the compression level, 1 (fastest) to 9 (smallest)
+   * @param negotiate whether log downloads and lines are compressed for clients accepting gzip
+   * @param minSize the size from which log downloads are compressed for those clients
+   * @return the compressor bean
+   */
+  @Bean(name = "compressor")
+  public CompressorBean getCompressorBean(
+      @Value("${psiprobe.beans.compression.level}") int level,
+      @Value("${psiprobe.beans.compression.negotiate}") boolean negotiate,
+      @Value("${psiprobe.beans.compression.minSize}") long minSize) {
+    logger.debug("Instantiated compressor");
+    CompressorBean compressor = new CompressorBean();
+    compressor.setLevel(level);
+    compressor.setNegotiate(negotiate);
+    compressor.setMinSize(minSize);
+    return compressor;
+  }
+
+  /**
+   * Gets the compression filter.
+   *
+   * @param compressor the compressor
+   * @return the compression filter
+   */
+  @Bean(name = "compressionFilter")
+  public CompressionFilter getCompressionFilter(CompressorBean compressor) {
+    logger.debug("Instantiated compressionFilter");
+    CompressionFilter compressionFilter = new CompressionFilter();
+    compressionFilter.setCompressor(compressor);
+    return compressionFilter;
+  }
+
+  /**
+   * Gets the log follower bean.
+   *
+   * @param waitTimeout the longest time a viewer waits for new lines, e.g. 20s
+   * @param idleTimeout the time a file stays followed after a viewer last asked for it, e.g. 1m
+   * @param pollInterval the interval at which followed files are checked without a watch event
+   * @param bufferSize the number of the last bytes read of a file kept for its viewers
+   * @return the log follower bean
+   */
+  @Bean(name = "logFollower")
+  public LogFollowerBean getLogFollowerBean(
+      @Value("${psiprobe.beans.logs.follow.wait}") String waitTimeout,
+      @Value("${psiprobe.beans.logs.follow.idle}") String idleTimeout,
+      @Value("${psiprobe.beans.logs.follow.poll}") String pollInterval,
+      @Value("${psiprobe.beans.logs.follow.buffer}") int bufferSize) {
+    logger.debug("Instantiated logFollower");
+    LogFollowerBean logFollower = new LogFollowerBean();
+    logFollower.setWaitTimeout(TimeExpression.inSeconds(waitTimeout) * 1000);
+    logFollower.setIdleTimeout(TimeExpression.inSeconds(idleTimeout) * 1000);
+    logFollower.setPollInterval(TimeExpression.inSeconds(pollInterval) * 1000);
+    logFollower.setBufferSize(bufferSize);
+    return logFollower;
+  }
+
+  /**
+   * Gets the log search bean.
+   *
+   * @param blockSize the approximate size of an index block, in bytes
+   * @param maxMemory the memory index signatures may take, in bytes
+   * @param indexTimeout the time a search may spend indexing a file, e.g. 10s
+   * @return the log search bean
+   */
+  @Bean(name = "logSearch")
+  public LogSearchBean getLogSearchBean(
+      @Value("${psiprobe.beans.logs.search.blockSize}") int blockSize,
+      @Value("${psiprobe.beans.logs.search.maxMemory}") long maxMemory,
+      @Value("${psiprobe.beans.logs.search.indexTimeout}") String indexTimeout) {
+    logger.debug("Instantiated logSearch");
+    LogSearchBean logSearch = new LogSearchBean();
+    logSearch.setBlockSize(blockSize);
+    logSearch.setMaxMemory(maxMemory);
+    logSearch.setIndexTimeout(TimeExpression.inSeconds(indexTimeout) * 1000);
+    return logSearch;
+  }
+
   /**
    * Gets the memory pool mailing listener.
    *
@@ -710,6 +929,25 @@ public class ProbeConfig implements WebMvcConfigurer {
     return provider;
   }
 
+  /**
+   * Gets the app latency.
+   *
+   * @return the app latency
+   */
+  @Bean(name = "app_latency")
+  public StandardSeriesProvider getAppLatency() {
+    logger.debug("Instantiated app_latency");
+    List<String> list = new ArrayList<>();
+    list.add("app.latency_p50.{0}");
+    list.add("app.latency_p95.{0}");
+    list.add("app.latency_p99.{0}");
+    list.add("app.latency_max.{0}");
+
+    StandardSeriesProvider provider = new StandardSeriesProvider();
+    provider.setStatNames(list);
+    return provider;
+  }
+
   /**
    * Gets the total avg proc time.
    *
@@ -867,6 +1105,17 @@ public class ProbeConfig implements WebMvcConfigurer {
     return new StatsSerializerJobDetail();
   }
 
+  /**
+   * Gets the session size index job detail.
+   *
+   * @return the session size index job detail
+   */
+  @Bean(name = "sessionSizeIndexJobDetail")
+  public SessionSizeIndexJobDetail getSessionSizeIndexJobDetail() {
+    logger.debug("Instantiated sessionSizeIndexJobDetail");
+    return new SessionSizeIndexJobDetail();
+  }
+
   /**
    * Gets the connector stats trigger.
    *
@@ -958,6 +1207,19 @@ public class ProbeConfig implements WebMvcConfigurer {
     return trigger;
   }
 
+  /**
+   * Gets the session size index trigger.
+   *
+   * @return the session size index trigger
+   */
+  @Bean(name = "sessionSizeIndexTrigger")
+  public SessionSizeIndexTrigger getSessionSizeIndexTrigger() {
+    logger.debug("Instantiated sessionSizeIndexTrigger");
+    SessionSizeIndexTrigger trigger = new SessionSizeIndexTrigger();
+    trigger.setJobDetail(getSessionSizeIndexJobDetail().getObject());
+    return trigger;
+  }
+
   /**
    * Gets the scheduler factory bean.
    *
@@ -968,6 +1230,7 @@ public class ProbeConfig implements WebMvcConfigurer {
    * @param memoryStatsTrigger the memory stats trigger
    * @param runtimeStatsTrigger the runtime stats trigger
    * @param statsSerializerTrigger the stats serializer trigger
+   * @param sessionSizeIndexTrigger the session size index trigger
    * @return the scheduler factory bean
    */
   @Bean(name = "scheduler")
@@ -977,7 +1240,8 @@ public class ProbeConfig implements WebMvcConfigurer {
       @Autowired DatasourceStatsTrigger datasourceStatsTrigger,
       @Autowired MemoryStatsTrigger memoryStatsTrigger,
       @Autowired RuntimeStatsTrigger runtimeStatsTrigger,
-      @Autowired StatsSerializerTrigger statsSerializerTrigger) {
+      @Autowired StatsSerializerTrigger statsSerializerTrigger,
+      @Autowired SessionSizeIndexTrigger sessionSizeIndexTrigger) {
 
     logger.debug("Instantiated scheduler");
     SchedulerFactoryBean bean = new SchedulerFactoryBean();
@@ -986,7 +1250,7 @@ public class ProbeConfig implements WebMvcConfigurer {
     bean.setTriggers(appStatsTrigger.getObject(), clusterStatsTrigger.getObject(),
         connectorStatsTrigger.getObject(), datasourceStatsTrigger.getObject(),
         memoryStatsTrigger.getObject(), runtimeStatsTrigger.getObject(),
-        statsSerializerTrigger.getObject());
+        statsSerializerTrigger.getObject(), sessionSizeIndexTrigger.getObject());
 
     // Add Properties
     Properties properties = new Properties();
@@ -56,14 +56,24 @@ public class ProbeInitializer implements WebApplicationInitializer {
     probe.setInitParameters(initParameters);
 
     probe.setLoadOnStartup(0);
+    // Log watches wait for new lines without holding a thread
+    probe.setAsyncSupported(true);
     probe.addMapping("*.htm");
     probe.addMapping("*.ajax");
     probe.addMapping("/logs/*");
     probe.addMapping("/chart.png");
 
+    // Set compression filter, first so that it compresses what the other filters write
+    FilterRegistration.Dynamic compression =
+        servletContext.addFilter("compressionFilter", DelegatingFilterProxy.class);
+    compression.setAsyncSupported(true);
+    compression.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST, DispatcherType.ASYNC),
+        false, "/logs/follow.ajax", "/logs/watch.ajax");
+
     // Set sitemesh filter
     FilterRegistration.Dynamic sitemesh =
         servletContext.addFilter("sitemesh", SiteMeshFilter.class);
+    sitemesh.setAsyncSupported(true);
     sitemesh.addMappingForUrlPatterns(
         EnumSet.of(DispatcherType.FORWARD, DispatcherType.REQUEST, DispatcherType.ERROR), false,
         "/*");
@@ -71,6 +81,7 @@ public class ProbeInitializer implements WebApplicationInitializer {
     // Set security filter
     FilterRegistration.Dynamic security =
         servletContext.addFilter("filterChainProxy", DelegatingFilterProxy.class);
+    security.setAsyncSupported(true);
     security.addMappingForUrlPatterns(
         EnumSet.of(DispatcherType.FORWARD, DispatcherType.REQUEST, DispatcherType.ERROR), false,
         "/*");
@@ -14,7 +14,6 @@ import com.google.common.base.Strings;
 import com.uwyn.jhighlight.renderer.Renderer;
 import com.uwyn.jhighlight.renderer.XhtmlRendererFactory;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -23,19 +22,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
 import java.io.Reader;
 import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Scanner;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import javax.management.MBeanServer;
 import javax.management.MalformedObjectNameException;
@@ -44,9 +43,11 @@ import javax.management.ObjectName;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.catalina.Globals;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import psiprobe.beans.CompressorBean;
 import psiprobe.tokenizer.StringTokenizer;
 import psiprobe.tokenizer.Token;
 import psiprobe.tokenizer.Tokenizer;
@@ -60,6 +61,15 @@ public final class Utils {
   /** The Constant logger. */
   private static final Logger logger = LoggerFactory.getLogger(Utils.class);
 
+  /** The Constant SENDFILE_MIN_SIZE, the size from which downloads are left to sendfile. */
+  private static final long SENDFILE_MIN_SIZE = 48 * 1024L;
+
+  /** The Constant COPY_BUFFER_SIZE, the size of the blocks downloads are copied in. */
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+  /** The Constant MIME_BOUNDARY, the boundary between the parts of multiple ranges. */
+  private static final String MIME_BOUNDARY = "PSI_PROBE_MIME_BOUNDARY";
+
   /**
    * Prevent Instantiation.
    */
@@ -302,7 +312,9 @@ public final class Utils {
   }
 
   /**
-   * Send file.
+   * Sends a file as a download, or the byte ranges of it a Range request header asks for. Where
+   * the connector supports it, the file is left to the connector to send with sendfile, without
+   * copying it through the request thread; otherwise it is copied in large blocks.
    *
    * @param request the request
    * @param response the response
@@ -312,77 +324,190 @@ public final class Utils {
   public static void sendFile(HttpServletRequest request, HttpServletResponse response, File file)
       throws IOException {
 
-    try (OutputStream out = response.getOutputStream();
-        RandomAccessFile raf = new RandomAccessFile(file, "r")) {
-      long fileSize = raf.length();
-      long rangeStart = 0;
-      long rangeFinish = fileSize - 1;
+    long fileSize = file.length();
+    List<long[]> ranges = getRanges(request.getHeader("Range"), fileSize);
 
-      // accept attempts to resume download (if any)
-      String range = request.getHeader("Range");
-      if (range != null && range.startsWith("bytes=")) {
-        String pureRange = range.replace("bytes=", "");
-        int rangeSep = pureRange.indexOf('-');
+    // set some headers
+    response.setHeader("Content-Disposition", "attachment; filename=" + file.getName());
+    response.setHeader("Accept-Ranges", "bytes");
+    if (ranges == null) {
+      response.setHeader("Content-Range", "bytes */" + fileSize);
+      response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+      return;
+    }
 
-        try {
-          rangeStart = Long.parseLong(pureRange.substring(0, rangeSep));
-          if (rangeStart > fileSize || rangeStart < 0) {
-            rangeStart = 0;
-          }
-        } catch (NumberFormatException e) {
-          // keep rangeStart unchanged
-          logger.trace("", e);
-        }
-
-        if (rangeSep < pureRange.length() - 1) {
-          try {
-            rangeFinish = Long.parseLong(pureRange.substring(rangeSep + 1));
-            if (rangeFinish < 0 || rangeFinish >= fileSize) {
-              rangeFinish = fileSize - 1;
-            }
-          } catch (NumberFormatException e) {
-            logger.trace("", e);
-          }
+    if (ranges.size() > 1) {
+      response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+      response.setContentType("multipart/byteranges; boundary=" + MIME_BOUNDARY);
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+          OutputStream out = response.getOutputStream()) {
+        for (long[] range : ranges) {
+          out.write(("\r\n--" + MIME_BOUNDARY + "\r\nContent-Type: application/x-download"
+              + "\r\nContent-Range: bytes " + range[0] + "-" + range[1] + "/" + fileSize
+              + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+          copy(channel, range[0], range[1] - range[0] + 1, out);
         }
+        out.write(("\r\n--" + MIME_BOUNDARY + "--\r\n").getBytes(StandardCharsets.ISO_8859_1));
       }
+      return;
+    }
 
-      // set some headers
-      response.setContentType("application/x-download");
-      response.setHeader("Content-Disposition", "attachment; filename=" + file.getName());
-      response.setHeader("Accept-Ranges", "bytes");
-      response.setHeader("Content-Length", Long.toString(rangeFinish - rangeStart + 1));
+    long rangeStart = 0;
+    long rangeFinish = fileSize - 1;
+    if (!ranges.isEmpty()) {
+      rangeStart = ranges.get(0)[0];
+      rangeFinish = ranges.get(0)[1];
+      response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
       response.setHeader("Content-Range",
           "bytes " + rangeStart + "-" + rangeFinish + "/" + fileSize);
+    }
+    sendRegion(request, response, file, rangeStart, rangeFinish + 1);
+  }
 
-      // seek to the requested offset
-      raf.seek(rangeStart);
-
-      // send the file
-      byte[] buffer = new byte[4096];
-
-      long len;
-      int totalRead = 0;
-      boolean nomore = false;
-      while (true) {
-        len = raf.read(buffer);
-        if (len > 0 && totalRead + len > rangeFinish - rangeStart + 1) {
-          // read more then required?
-          // adjust the length
-          len = rangeFinish - rangeStart + 1 - totalRead;
-          nomore = true;
-        }
+  /**
+   * Sends part of a file as a download of its own, such as the lines of a log written within a
+   * time window.
+   *
+   * @param request the request
+   * @param response the response
+   * @param file the file
+   * @param start the offset of the first byte sent
+   * @param end the offset after the last byte sent
+   * @param fileName the name the part is downloaded as
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void sendFile(HttpServletRequest request, HttpServletResponse response, File file,
+      long start, long end, String fileName) throws IOException {
+    response.setHeader("Content-Disposition", "attachment; filename=" + fileName);
+    sendRegion(request, response, file, start, end);
+  }
+
+  /**
+   * Sends bytes of a file as the response body, with sendfile where the connector supports it.
+   *
+   * @param request the request
+   * @param response the response
+   * @param file the file
+   * @param start the offset of the first byte
+   * @param end the offset after the last byte
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void sendRegion(HttpServletRequest request, HttpServletResponse response,
+      File file, long start, long end) throws IOException {
+    long length = end - start;
+    response.setContentType("application/x-download");
+    response.setHeader("Content-Length", Long.toString(length));
+
+    if (length >= SENDFILE_MIN_SIZE
+        && Boolean.TRUE.equals(request.getAttribute(Globals.SENDFILE_SUPPORTED_ATTR))) {
+      request.setAttribute(Globals.SENDFILE_FILENAME_ATTR, file.getCanonicalPath());
+      request.setAttribute(Globals.SENDFILE_FILE_START_ATTR, start);
+      request.setAttribute(Globals.SENDFILE_FILE_END_ATTR, end);
+      return;
+    }
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        OutputStream out = response.getOutputStream()) {
+      copy(channel, start, length, out);
+    }
+  }
 
-        if (len > 0) {
-          out.write(buffer, 0, (int) len);
-          totalRead += len;
-          if (nomore) {
-            break;
+  /**
+   * Gets the byte ranges a Range header asks for, merged and clipped to the size of a file.
+   *
+   * @param range the Range header, or null
+   * @param fileSize the file size
+   * @return the first and last byte of each range, no ranges for the whole file, or null if none
+   *         of the ranges is satisfiable
+   */
+  static List<long[]> getRanges(String range, long fileSize) {
+    List<long[]> ranges = new ArrayList<>();
+    if (range == null || !range.startsWith("bytes=")) {
+      return ranges;
+    }
+    boolean satisfiable = false;
+    for (String spec : range.substring("bytes=".length()).split(",")) {
+      String pureRange = spec.trim();
+      int rangeSep = pureRange.indexOf('-');
+      long rangeStart;
+      long rangeFinish;
+      try {
+        if (rangeSep < 0) {
+          throw new NumberFormatException(pureRange);
+        } else if (rangeSep == 0) {
+          // the last bytes of the file
+          rangeStart = fileSize - Long.parseLong(pureRange.substring(1));
+          rangeFinish = fileSize - 1;
+          if (rangeStart >= fileSize) {
+            continue;
           }
+          rangeStart = Math.max(rangeStart, 0);
         } else {
-          break;
+          rangeStart = Long.parseLong(pureRange.substring(0, rangeSep));
+          rangeFinish = rangeSep < pureRange.length() - 1
+              ? Long.parseLong(pureRange.substring(rangeSep + 1))
+              : Long.MAX_VALUE;
+          if (rangeFinish < rangeStart) {
+            throw new NumberFormatException(pureRange);
+          }
+          if (rangeStart >= fileSize) {
+            continue;
+          }
+          rangeFinish = Math.min(rangeFinish, fileSize - 1);
         }
+      } catch (NumberFormatException e) {
+        // a malformed header is ignored, the whole file is sent
+        logger.trace("", e);
+        return new ArrayList<>();
+      }
+      satisfiable = true;
+      ranges.add(new long[] {rangeStart, rangeFinish});
+    }
+    if (!satisfiable) {
+      return null;
+    }
+
+    // overlapping and adjacent ranges are sent as one
+    ranges.sort((left, right) -> Long.compare(left[0], right[0]));
+    List<long[]> merged = new ArrayList<>();
+    for (long[] next : ranges) {
+      long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+      if (last != null && next[0] <= last[1] + 1) {
+        last[1] = Math.max(last[1], next[1]);
+      } else {
+        merged.add(next);
       }
     }
+    if (merged.size() == 1 && merged.get(0)[0] == 0 && merged.get(0)[1] == fileSize - 1) {
+      merged.clear();
+    }
+    return merged;
+  }
+
+  /**
+   * Copies part of a file to a stream in large blocks, written straight from the buffer.
+   *
+   * @param channel the file channel
+   * @param position the position of the first byte
+   * @param count the number of bytes
+   * @param out the stream
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void copy(FileChannel channel, long position, long count, OutputStream out)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(COPY_BUFFER_SIZE, Math.max(count, 1)));
+    long end = position + count;
+    while (position < end) {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), end - position));
+      int read = channel.read(buffer, position);
+      if (read <= 0) {
+        // the file was truncated meanwhile
+        break;
+      }
+      out.write(buffer.array(), 0, read);
+      position += read;
+    }
   }
 
   /**
@@ -463,33 +588,34 @@ public final class Utils {
   }
 
   /**
-   * Send compressed file.
+   * Sends a file gzip compressed, either as a .gz download or, with a gzip Content-Encoding the
+   * client decodes, as the file itself.
    *
    * @param response the response
    * @param file the file
+   * @param compressor the compressor
+   * @param contentEncoding whether the compression is a content encoding of the file
    * @throws IOException Signals that an I/O exception has occurred.
    */
-  public static void sendCompressedFile(HttpServletResponse response, File file)
-      throws IOException {
-    try (ZipOutputStream zip = new ZipOutputStream(response.getOutputStream());
-        InputStream fileInput = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
-
-      String fileName = file.getName();
-
-      // set some headers
-      response.setContentType("application/zip");
-      response.setHeader("Content-Disposition", "attachment; filename=" + fileName + ".zip");
+  public static void sendCompressedFile(HttpServletResponse response, File file,
+      CompressorBean compressor, boolean contentEncoding) throws IOException {
 
-      zip.putNextEntry(new ZipEntry(fileName));
+    String fileName = file.getName();
 
-      // send the file
-      byte[] buffer = new byte[4096];
-      long len;
+    // set some headers
+    if (contentEncoding) {
+      response.setContentType("application/x-download");
+      response.setHeader("Content-Disposition", "attachment; filename=" + fileName);
+      response.setHeader("Content-Encoding", "gzip");
+      response.addHeader("Vary", "Accept-Encoding");
+    } else {
+      response.setContentType("application/gzip");
+      response.setHeader("Content-Disposition", "attachment; filename=" + fileName + ".gz");
+    }
 
-      while ((len = fileInput.read(buffer)) > 0) {
-        zip.write(buffer, 0, (int) len);
-      }
-      zip.closeEntry();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        OutputStream out = compressor.gzip(response.getOutputStream())) {
+      copy(channel, 0, channel.size(), out);
     }
   }
 
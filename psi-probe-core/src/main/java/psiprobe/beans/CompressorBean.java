@@ -0,0 +1,238 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Compresses responses as gzip streams at a configurable level. Deflaters are pooled rather than
+ * created for each response, as each one holds a native zlib stream of a few hundred kilobytes
+ * that is otherwise only freed on finalization.
+ */
+public class CompressorBean implements DisposableBean {
+
+  /** The Constant GZIP_HEADER, a gzip member header without optional fields. */
+  private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0,
+      0, 0};
+
+  /** The Constant BUFFER_SIZE, the size of the buffer compressed bytes are written from. */
+  private static final int BUFFER_SIZE = 8192;
+
+  /** The Constant POOL_SIZE, the number of idle deflaters kept. */
+  private static final int POOL_SIZE = 16;
+
+  /** The compression level, 1 (fastest) to 9 (smallest). */
+  private int level = 1;
+
+  /** Whether responses are compressed for clients accepting gzip. */
+  private boolean negotiate = true;
+
+  /** The size from which files sent to clients accepting gzip are compressed, in bytes. */
+  private long minSize = 1024;
+
+  /** The idle deflaters. */
+  private final BlockingQueue<Deflater> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+  /**
+   * Gets the level.
+   *
+   * @return the level
+   */
+  public int getLevel() {
+    return level;
+  }
+
+  /**
+   * Sets the level.
+   *
+   * @param level the new level
+   */
+  public void setLevel(int level) {
+    this.level = level;
+  }
+
+  /**
+   * Checks if is negotiate.
+   *
+   * @return true, if is negotiate
+   */
+  public boolean isNegotiate() {
+    return negotiate;
+  }
+
+  /**
+   * Sets the negotiate.
+   *
+   * @param negotiate the new negotiate
+   */
+  public void setNegotiate(boolean negotiate) {
+    this.negotiate = negotiate;
+  }
+
+  /**
+   * Gets the min size.
+   *
+   * @return the min size
+   */
+  public long getMinSize() {
+    return minSize;
+  }
+
+  /**
+   * Sets the min size.
+   *
+   * @param minSize the new min size
+   */
+  public void setMinSize(long minSize) {
+    this.minSize = minSize;
+  }
+
+  /**
+   * Checks if a response to a request may be compressed, that is if compression is negotiated and
+   * the Accept-Encoding header of the request accepts gzip.
+   *
+   * @param request the request
+   * @return true, if the response may be gzip encoded
+   */
+  public boolean acceptsGzip(HttpServletRequest request) {
+    if (!negotiate) {
+      return false;
+    }
+    String acceptEncoding = request.getHeader("Accept-Encoding");
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      String[] params = coding.split(";");
+      String name = params[0].trim();
+      if ("gzip".equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)
+          || "*".equals(name)) {
+        for (int i = 1; i < params.length; i++) {
+          String param = params[i].trim();
+          if (param.startsWith("q=")) {
+            try {
+              return Double.parseDouble(param.substring(2)) > 0;
+            } catch (NumberFormatException e) {
+              return false;
+            }
+          }
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Opens a gzip stream. Closing it finishes the gzip stream, closes the underlying stream and
+   * returns the deflater to the pool.
+   *
+   * @param out the stream compressed bytes are written to
+   * @return the gzip stream
+   * @throws IOException if the header cannot be written
+   */
+  public OutputStream gzip(OutputStream out) throws IOException {
+    Deflater deflater = pool.poll();
+    if (deflater == null) {
+      deflater = new Deflater(level, true);
+    } else {
+      // pooled deflaters keep the level they were created with, which may have changed since
+      deflater.setLevel(level);
+    }
+    return new GzipOutputStream(out, deflater);
+  }
+
+  /**
+   * Returns a deflater to the pool, or frees it if the pool is full.
+   *
+   * @param deflater the deflater
+   */
+  void release(Deflater deflater) {
+    deflater.reset();
+    if (!pool.offer(deflater)) {
+      deflater.end();
+    }
+  }
+
+  @Override
+  public void destroy() {
+    for (Deflater deflater; (deflater = pool.poll()) != null;) {
+      deflater.end();
+    }
+  }
+
+  /**
+   * A gzip stream over a pooled deflater.
+   */
+  private class GzipOutputStream extends DeflaterOutputStream {
+
+    /** The checksum of the uncompressed bytes. */
+    private final CRC32 crc = new CRC32();
+
+    /** Whether the stream was closed. */
+    private boolean closed;
+
+    /**
+     * Instantiates a new gzip output stream.
+     *
+     * @param out the out
+     * @param deflater the deflater
+     * @throws IOException if the header cannot be written
+     */
+    GzipOutputStream(OutputStream out, Deflater deflater) throws IOException {
+      super(out, deflater, BUFFER_SIZE);
+      out.write(GZIP_HEADER);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      super.write(b, off, len);
+      crc.update(b, off, len);
+    }
+
+    @Override
+    public void finish() throws IOException {
+      if (!def.finished()) {
+        super.finish();
+        long crcValue = crc.getValue();
+        long size = def.getBytesRead();
+        out.write(new byte[] {(byte) crcValue, (byte) (crcValue >> 8), (byte) (crcValue >> 16),
+            (byte) (crcValue >> 24), (byte) size, (byte) (size >> 8), (byte) (size >> 16),
+            (byte) (size >> 24)});
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        try {
+          finish();
+          out.close();
+        } finally {
+          release(def);
+        }
+      }
+    }
+
+  }
+
+}
@@ -10,20 +10,13 @@
  */
 package psiprobe.beans;
 
-import com.maxmind.db.CHMCache;
-import com.maxmind.geoip2.DatabaseReader;
-import com.maxmind.geoip2.exception.AddressNotFoundException;
-import com.maxmind.geoip2.model.CountryResponse;
-import com.maxmind.geoip2.record.Country;
-
-import java.io.File;
-import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.management.InstanceNotFoundException;
@@ -33,7 +26,6 @@ import javax.management.Notification;
 import javax.management.NotificationListener;
 import javax.management.ObjectInstance;
 import javax.management.ObjectName;
-import javax.management.RuntimeOperationsException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +34,7 @@ import psiprobe.model.Connector;
 import psiprobe.model.RequestProcessor;
 import psiprobe.model.ThreadPool;
 import psiprobe.model.jmx.ThreadPoolObjectName;
+import psiprobe.tools.GeoIpLocator;
 import psiprobe.tools.JmxTools;
 
 /**
@@ -57,6 +50,22 @@ public class ContainerListenerBean implements NotificationListener {
   private Set<String> allowedOperation =
       new HashSet<>(Arrays.asList("start", "stop", "pause", "resume"));
 
+  /** The connector attributes shown in the connector list. */
+  private static final String[] CONNECTOR_ATTRIBUTES =
+      {"stateName", "protocol", "secure", "port", "localPort", "schema"};
+
+  /** The global request processor attributes. */
+  private static final String[] GLOBAL_REQUEST_PROCESSOR_ATTRIBUTES = {"maxTime", "processingTime",
+      "bytesReceived", "bytesSent", "requestCount", "errorCount"};
+
+  /** The request processor attributes. */
+  private static final String[] REQUEST_PROCESSOR_ATTRIBUTES = {"stage", "requestProcessingTime",
+      "requestBytesSent", "requestBytesReceived", "remoteAddr", "virtualHost", "method",
+      "currentUri", "currentQueryString", "protocol", "workerThreadName"};
+
+  /** The attributes each mbean supports, out of those requested from it. */
+  private final Map<ObjectName, String[]> supportedAttributes = new ConcurrentHashMap<>();
+
   /** The pool names. */
   private List<ThreadPoolObjectName> poolNames;
 
@@ -124,6 +133,7 @@ public class ContainerListenerBean implements NotificationListener {
         || MBeanServerNotification.UNREGISTRATION_NOTIFICATION.equals(notification.getType())) {
 
       ObjectName objectName = ((MBeanServerNotification) notification).getMBeanName();
+      supportedAttributes.remove(objectName);
       if ("RequestProcessor".equals(objectName.getKeyProperty("type"))) {
         ThreadPoolObjectName threadPoolObjectName = findPool(objectName.getKeyProperty("worker"));
         if (threadPoolObjectName != null) {
@@ -255,6 +265,27 @@ public class ContainerListenerBean implements NotificationListener {
     return threadPools;
   }
 
+  /**
+   * Reads the attributes an mbean supports out of the requested ones, in a single round-trip. Which
+   * attributes are supported is looked up once per mbean.
+   *
+   * @param server the server
+   * @param objectName the object name
+   * @param attrNames the attr names
+   * @return the attribute values by name
+   * @throws Exception the exception
+   */
+  private Map<String, Object> getAttributes(MBeanServer server, ObjectName objectName,
+      String[] attrNames) throws Exception {
+
+    String[] supported = supportedAttributes.get(objectName);
+    if (supported == null) {
+      supported = JmxTools.getSupportedAttributes(server, objectName, attrNames);
+      supportedAttributes.put(objectName, supported);
+    }
+    return JmxTools.getAttributes(server, objectName, supported);
+  }
+
   /**
    * Toggle connector status.
    *
@@ -288,8 +319,6 @@ public class ContainerListenerBean implements NotificationListener {
   public synchronized List<Connector> getConnectors(boolean includeRequestProcessors)
       throws Exception {
 
-    boolean workerThreadNameSupported = true;
-
     if (!isInitialized()) {
       initialize();
     }
@@ -324,82 +353,54 @@ public class ContainerListenerBean implements NotificationListener {
           ObjectName objectName = new ObjectName(str);
 
           // add some useful information for connector list
-          connector.setStatus(JmxTools.getStringAttr(server, objectName, "stateName"));
-          connector.setProtocol(JmxTools.getStringAttr(server, objectName, "protocol"));
-          connector.setSecure(
-              Boolean.parseBoolean(JmxTools.getStringAttr(server, objectName, "secure")));
-          connector.setPort(JmxTools.getIntAttr(server, objectName, "port"));
-          connector.setLocalPort(JmxTools.getIntAttr(server, objectName, "localPort"));
-          connector.setSchema(JmxTools.getStringAttr(server, objectName, "schema"));
+          Map<String, Object> attrs = getAttributes(server, objectName, CONNECTOR_ATTRIBUTES);
+          connector.setStatus(JmxTools.getStringAttr(attrs, "stateName"));
+          connector.setProtocol(JmxTools.getStringAttr(attrs, "protocol"));
+          connector.setSecure(Boolean.parseBoolean(JmxTools.getStringAttr(attrs, "secure")));
+          connector.setPort(JmxTools.getIntAttr(attrs, "port"));
+          connector.setLocalPort(JmxTools.getIntAttr(attrs, "localPort"));
+          connector.setSchema(JmxTools.getStringAttr(attrs, "schema"));
         }
 
         ObjectName grpName = threadPoolObjectName.getGlobalRequestProcessorName();
+        Map<String, Object> grpAttrs =
+            getAttributes(server, grpName, GLOBAL_REQUEST_PROCESSOR_ATTRIBUTES);
 
-        connector.setMaxTime(JmxTools.getLongAttr(server, grpName, "maxTime"));
-        connector.setProcessingTime(JmxTools.getLongAttr(server, grpName, "processingTime"));
-        connector.setBytesReceived(JmxTools.getLongAttr(server, grpName, "bytesReceived"));
-        connector.setBytesSent(JmxTools.getLongAttr(server, grpName, "bytesSent"));
-        connector.setRequestCount(JmxTools.getIntAttr(server, grpName, "requestCount"));
-        connector.setErrorCount(JmxTools.getIntAttr(server, grpName, "errorCount"));
+        connector.setMaxTime(JmxTools.getLongAttr(grpAttrs, "maxTime"));
+        connector.setProcessingTime(JmxTools.getLongAttr(grpAttrs, "processingTime"));
+        connector.setBytesReceived(JmxTools.getLongAttr(grpAttrs, "bytesReceived"));
+        connector.setBytesSent(JmxTools.getLongAttr(grpAttrs, "bytesSent"));
+        connector.setRequestCount(JmxTools.getIntAttr(grpAttrs, "requestCount"));
+        connector.setErrorCount(JmxTools.getIntAttr(grpAttrs, "errorCount"));
 
         if (includeRequestProcessors) {
           List<ObjectName> wrkNames = threadPoolObjectName.getRequestProcessorNames();
           for (ObjectName wrkName : wrkNames) {
             try {
+              Map<String, Object> wrkAttrs =
+                  getAttributes(server, wrkName, REQUEST_PROCESSOR_ATTRIBUTES);
               RequestProcessor rp = new RequestProcessor();
               rp.setName(wrkName.getKeyProperty("name"));
-              rp.setStage(JmxTools.getIntAttr(server, wrkName, "stage"));
-              rp.setProcessingTime(JmxTools.getLongAttr(server, wrkName, "requestProcessingTime"));
-              rp.setBytesSent(JmxTools.getLongAttr(server, wrkName, "requestBytesSent"));
-              rp.setBytesReceived(JmxTools.getLongAttr(server, wrkName, "requestBytesReceived"));
-              try {
-                rp.setRemoteAddr(JmxTools.getStringAttr(server, wrkName, "remoteAddr"));
-              } catch (RuntimeOperationsException ex) {
-                logger.trace("", ex);
-              }
+              rp.setStage(JmxTools.getIntAttr(wrkAttrs, "stage"));
+              rp.setProcessingTime(JmxTools.getLongAttr(wrkAttrs, "requestProcessingTime"));
+              rp.setBytesSent(JmxTools.getLongAttr(wrkAttrs, "requestBytesSent"));
+              rp.setBytesReceived(JmxTools.getLongAttr(wrkAttrs, "requestBytesReceived"));
+              rp.setRemoteAddr(JmxTools.getStringAttr(wrkAttrs, "remoteAddr"));
 
-              if (rp.getRemoteAddr() != null) {
-                // Show flag as defined in jvm for localhost
-                if (InetAddress.getByName(rp.getRemoteAddr()).isLoopbackAddress()) {
-                  rp.setRemoteAddrLocale(new Locale(System.getProperty("user.language"),
-                      System.getProperty("user.country")));
-                } else {
-                  // Show flag for non-localhost using geo lite
-                  try (DatabaseReader reader = new DatabaseReader.Builder(new File(
-                      getClass().getClassLoader().getResource("GeoLite2-Country.mmdb").toURI()))
-                          .withCache(new CHMCache()).build()) {
-                    CountryResponse response =
-                        reader.country(InetAddress.getByName(rp.getRemoteAddr()));
-                    Country country = response.getCountry();
-                    rp.setRemoteAddrLocale(new Locale("", country.getIsoCode()));
-                  } catch (AddressNotFoundException e) {
-                    logger.debug("Address Not Found: {}", e.getMessage());
-                    logger.trace("", e);
-                  }
-                }
-              }
+              rp.setRemoteAddrLocale(GeoIpLocator.getLocale(rp.getRemoteAddr()));
 
-              rp.setVirtualHost(JmxTools.getStringAttr(server, wrkName, "virtualHost"));
-              rp.setMethod(JmxTools.getStringAttr(server, wrkName, "method"));
-              rp.setCurrentUri(JmxTools.getStringAttr(server, wrkName, "currentUri"));
-              rp.setCurrentQueryString(
-                  JmxTools.getStringAttr(server, wrkName, "currentQueryString"));
-              rp.setProtocol(JmxTools.getStringAttr(server, wrkName, "protocol"));
+              rp.setVirtualHost(JmxTools.getStringAttr(wrkAttrs, "virtualHost"));
+              rp.setMethod(JmxTools.getStringAttr(wrkAttrs, "method"));
+              rp.setCurrentUri(JmxTools.getStringAttr(wrkAttrs, "currentUri"));
+              rp.setCurrentQueryString(JmxTools.getStringAttr(wrkAttrs, "currentQueryString"));
+              rp.setProtocol(JmxTools.getStringAttr(wrkAttrs, "protocol"));
 
               // Relies on https://issues.apache.org/bugzilla/show_bug.cgi?id=41128
-              if (workerThreadNameSupported
-                  && JmxTools.hasAttribute(server, wrkName, "workerThreadName")) {
-
-                rp.setWorkerThreadName(JmxTools.getStringAttr(server, wrkName, "workerThreadName"));
+              if (wrkAttrs.containsKey("workerThreadName")) {
+                rp.setWorkerThreadName(JmxTools.getStringAttr(wrkAttrs, "workerThreadName"));
                 rp.setWorkerThreadNameSupported(true);
               } else {
-                /*
-                 * attribute should consistently either exist or be missing across all the workers
-                 * so it does not make sense to check attribute existence if we have found once that
-                 * it is not supported
-                 */
                 rp.setWorkerThreadNameSupported(false);
-                workerThreadNameSupported = false;
               }
               connector.addRequestProcessor(rp);
             } catch (InstanceNotFoundException e) {
@@ -218,15 +218,30 @@ public class ContainerWrapperBean {
     List<ApplicationResource> resources = new ArrayList<>();
     if (tomcatContainer != null && getResourceResolver().supportsPrivateResources()) {
       for (Context app : getTomcatContainer().findContexts()) {
-        List<ApplicationResource> appResources =
-            getResourceResolver().getApplicationResources(app, this);
-        // add only those resources that have data source info
-        filterDataSources(appResources, resources);
+        resources.addAll(getPrivateDataSources(app));
       }
     }
     return resources;
   }
 
+  /**
+   * Gets the private data sources of an application.
+   *
+   * @param app the application context
+   * @return the private data sources
+   * @throws Exception the exception
+   */
+  public List<ApplicationResource> getPrivateDataSources(Context app) throws Exception {
+    List<ApplicationResource> resources = new ArrayList<>();
+    if (getResourceResolver().supportsPrivateResources()) {
+      List<ApplicationResource> appResources =
+          getResourceResolver().getApplicationResources(app, this);
+      // add only those resources that have data source info
+      filterDataSources(appResources, resources);
+    }
+    return resources;
+  }
+
   /**
    * Gets the global data sources.
    *
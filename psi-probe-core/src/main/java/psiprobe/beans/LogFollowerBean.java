@@ -0,0 +1,668 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Follows log files for any number of viewers with one reader per file. A watcher thread waits for
+ * changes to the directories of followed files through a {@link WatchService}, reads what was
+ * appended to a changed file once, from where the last read ended, and keeps the last bytes read
+ * for viewers. A viewer with nothing new to read registers to be woken up by the next read that
+ * brings new lines, rather than holding a thread while it waits. Followed files are also checked at
+ * a fixed interval, as some platforms poll for watch events and network file systems may not
+ * report them at all. A file is no longer followed once no viewer has asked for it for a while.
+ */
+public class LogFollowerBean implements DisposableBean {
+
+  /** The Constant logger. */
+  private static final Logger logger = LoggerFactory.getLogger(LogFollowerBean.class);
+
+  /** The time a file stays followed after a viewer last asked for it, in milliseconds. */
+  private long idleTimeout = 60000;
+
+  /** The interval at which followed files are checked without a watch event, in milliseconds. */
+  private long pollInterval = 2000;
+
+  /** The longest time a viewer waits for new lines, in milliseconds. */
+  private long waitTimeout = 20000;
+
+  /** The number of the last bytes read of a file kept for its viewers. */
+  private int bufferSize = 256 * 1024;
+
+  /** The followed files, by path. */
+  private final Map<Path, FollowedFile> files = new HashMap<>();
+
+  /** The watch keys of the directories of followed files, by directory. */
+  private final Map<Path, WatchKey> directories = new HashMap<>();
+
+  /** The watch service, null while no file is followed. */
+  private WatchService watchService;
+
+  /** Whether the bean was destroyed. */
+  private boolean destroyed;
+
+  /**
+   * Gets the idle timeout.
+   *
+   * @return the idle timeout, in milliseconds
+   */
+  public long getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  /**
+   * Sets the idle timeout.
+   *
+   * @param idleTimeout the new idle timeout, in milliseconds
+   */
+  public void setIdleTimeout(long idleTimeout) {
+    this.idleTimeout = idleTimeout;
+  }
+
+  /**
+   * Gets the poll interval.
+   *
+   * @return the poll interval, in milliseconds
+   */
+  public long getPollInterval() {
+    return pollInterval;
+  }
+
+  /**
+   * Sets the poll interval.
+   *
+   * @param pollInterval the new poll interval, in milliseconds
+   */
+  public void setPollInterval(long pollInterval) {
+    this.pollInterval = pollInterval;
+  }
+
+  /**
+   * Gets the wait timeout.
+   *
+   * @return the wait timeout, in milliseconds
+   */
+  public long getWaitTimeout() {
+    return waitTimeout;
+  }
+
+  /**
+   * Sets the wait timeout.
+   *
+   * @param waitTimeout the new wait timeout, in milliseconds
+   */
+  public void setWaitTimeout(long waitTimeout) {
+    this.waitTimeout = waitTimeout;
+  }
+
+  /**
+   * Gets the buffer size.
+   *
+   * @return the buffer size, in bytes
+   */
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Sets the buffer size.
+   *
+   * @param bufferSize the new buffer size, in bytes
+   */
+  public void setBufferSize(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * Gets the lines appended to a log file after a position, without waiting for any.
+   *
+   * @param file the file
+   * @param encoding the encoding of the file, or null for the platform default
+   * @param position the length of the file as the caller last knew it
+   * @param generation the generation of the file the position belongs to, -1 if not known
+   * @return the lines appended after the position, possibly none
+   * @throws IOException if the file cannot be followed
+   */
+  public Tail getTail(File file, String encoding, long position, int generation)
+      throws IOException {
+    Charset charset = encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+    FollowedFile followed = follow(file.toPath().toAbsolutePath().normalize());
+    // Reading here too lets a viewer ahead of the watcher see the lines it knows are there
+    wake(followed.read());
+    return followed.tail(position, generation, charset);
+  }
+
+  /**
+   * Registers a viewer to be woken up once lines are appended to a log file after a position, or
+   * the file is truncated or replaced. The wake-up runs on the thread reading the file, once, and
+   * should only hand the viewer over to another thread.
+   *
+   * @param file the file
+   * @param position the length of the file as the viewer last knew it
+   * @param generation the generation of the file the position belongs to, -1 if not known
+   * @param wakeUp the wake-up
+   * @return true, if registered; false if the viewer has something to read already
+   * @throws IOException if the file cannot be followed
+   */
+  public boolean awaitLines(File file, long position, int generation, Runnable wakeUp)
+      throws IOException {
+    return follow(file.toPath().toAbsolutePath().normalize()).await(position, generation, wakeUp);
+  }
+
+  /**
+   * Unregisters a viewer that no longer waits, e.g. because its wait timed out.
+   *
+   * @param file the file
+   * @param wakeUp the wake-up it registered
+   */
+  public void cancelAwait(File file, Runnable wakeUp) {
+    FollowedFile followed;
+    synchronized (this) {
+      followed = files.get(file.toPath().toAbsolutePath().normalize());
+    }
+    if (followed != null) {
+      followed.cancel(wakeUp);
+    }
+  }
+
+  /**
+   * Gets a followed file, following it if it is not yet.
+   *
+   * @param path the path of the file
+   * @return the followed file
+   * @throws IOException if the directory of the file cannot be watched
+   */
+  private synchronized FollowedFile follow(Path path) throws IOException {
+    if (destroyed) {
+      throw new IOException("Log follower was destroyed");
+    }
+    FollowedFile followed = files.get(path);
+    if (followed == null) {
+      if (watchService == null) {
+        WatchService service = path.getFileSystem().newWatchService();
+        Thread watcher = new Thread(() -> watch(service), "psi-probe-log-follower");
+        watcher.setDaemon(true);
+        watcher.start();
+        watchService = service;
+      }
+      Path directory = path.getParent();
+      if (!directories.containsKey(directory)) {
+        directories.put(directory, directory.register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+      }
+      followed = new FollowedFile(path, bufferSize);
+      files.put(path, followed);
+      logger.debug("Following '{}'", path);
+    }
+    followed.lastRequested = System.currentTimeMillis();
+    return followed;
+  }
+
+  /**
+   * Reads the followed files as their directories change, until the watch service is closed.
+   *
+   * @param service the watch service
+   */
+  private void watch(WatchService service) {
+    long lastPoll = System.currentTimeMillis();
+    try {
+      while (true) {
+        WatchKey key = service.poll(pollInterval, TimeUnit.MILLISECONDS);
+        if (key != null) {
+          Path directory = (Path) key.watchable();
+          Set<Path> changed = new HashSet<>();
+          boolean overflow = false;
+          for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+              overflow = true;
+            } else {
+              changed.add(directory.resolve((Path) event.context()));
+            }
+          }
+          key.reset();
+          for (FollowedFile followed : getFollowedFiles()) {
+            if (changed.contains(followed.path)
+                || overflow && directory.equals(followed.path.getParent())) {
+              read(followed);
+            }
+          }
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastPoll >= pollInterval) {
+          lastPoll = now;
+          if (!expire(service, now)) {
+            return;
+          }
+          for (FollowedFile followed : getFollowedFiles()) {
+            read(followed);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException e) {
+      logger.trace("", e);
+    }
+  }
+
+  /**
+   * Gets the followed files.
+   *
+   * @return the followed files
+   */
+  private synchronized List<FollowedFile> getFollowedFiles() {
+    return new ArrayList<>(files.values());
+  }
+
+  /**
+   * Stops following the files no viewer asked for within the idle timeout, and closes the watch
+   * service once no file is followed.
+   *
+   * @param service the watch service of the calling watcher
+   * @param now the current time
+   * @return true, if the watcher should go on
+   */
+  private synchronized boolean expire(WatchService service, long now) {
+    if (service != watchService) {
+      return false;
+    }
+    for (Iterator<FollowedFile> it = files.values().iterator(); it.hasNext();) {
+      FollowedFile followed = it.next();
+      if (followed.isIdle(now, idleTimeout)) {
+        it.remove();
+        logger.debug("Stopped following '{}'", followed.path);
+      }
+    }
+    Set<Path> followedDirectories = new HashSet<>();
+    for (Path path : files.keySet()) {
+      followedDirectories.add(path.getParent());
+    }
+    for (Iterator<Map.Entry<Path, WatchKey>> it = directories.entrySet().iterator(); it
+        .hasNext();) {
+      Map.Entry<Path, WatchKey> directory = it.next();
+      if (!followedDirectories.contains(directory.getKey())) {
+        directory.getValue().cancel();
+        it.remove();
+      }
+    }
+    if (files.isEmpty()) {
+      closeWatchService();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Reads what was appended to a followed file, logging failures.
+   *
+   * @param followed the followed file
+   */
+  private static void read(FollowedFile followed) {
+    try {
+      wake(followed.read());
+    } catch (IOException e) {
+      logger.debug("Could not read '{}'", followed.path, e);
+    }
+  }
+
+  /**
+   * Wakes up viewers.
+   *
+   * @param wakeUps the wake-ups of the viewers
+   */
+  private static void wake(List<Runnable> wakeUps) {
+    for (Runnable wakeUp : wakeUps) {
+      try {
+        wakeUp.run();
+      } catch (RuntimeException e) {
+        logger.debug("Could not wake up a viewer", e);
+      }
+    }
+  }
+
+  /**
+   * Closes the watch service.
+   */
+  private void closeWatchService() {
+    if (watchService != null) {
+      try {
+        watchService.close();
+      } catch (IOException e) {
+        logger.trace("", e);
+      }
+      watchService = null;
+    }
+  }
+
+  @Override
+  public void destroy() {
+    List<Runnable> wakeUps = new ArrayList<>();
+    synchronized (this) {
+      destroyed = true;
+      for (FollowedFile followed : files.values()) {
+        wakeUps.addAll(followed.close());
+      }
+      files.clear();
+      directories.clear();
+      closeWatchService();
+    }
+    wake(wakeUps);
+  }
+
+  /**
+   * A followed file and the last bytes read of it.
+   */
+  private static class FollowedFile {
+
+    /** The path. */
+    final Path path;
+
+    /** The last bytes read, starting at the file position end - length. */
+    private final byte[] buffer;
+
+    /** The number of bytes in the buffer. */
+    private int length;
+
+    /** The file position after the last byte read. */
+    private long end;
+
+    /** The file position after the last line separator read. */
+    private long lineEnd;
+
+    /** The key of the file last read, null if the file system has none. */
+    private Object fileKey;
+
+    /** The number of times the file was truncated or replaced. */
+    private int generation;
+
+    /** The wake-ups of the viewers waiting for lines. */
+    private final List<Runnable> waiters = new ArrayList<>();
+
+    /** The time a viewer last asked for the file. */
+    volatile long lastRequested;
+
+    /**
+     * Instantiates a new followed file.
+     *
+     * @param path the path
+     * @param bufferSize the buffer size
+     */
+    FollowedFile(Path path, int bufferSize) {
+      this.path = path;
+      this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Reads what was appended to the file since the last read, if anything.
+     *
+     * @return the wake-ups of the viewers waiting for what was read, to run without the lock
+     * @throws IOException if the file cannot be read
+     */
+    synchronized List<Runnable> read() throws IOException {
+      long lastLineEnd = lineEnd;
+      int lastGeneration = generation;
+      readAppended();
+      if (waiters.isEmpty() || lineEnd == lastLineEnd && generation == lastGeneration) {
+        return Collections.emptyList();
+      }
+      List<Runnable> wakeUps = new ArrayList<>(waiters);
+      waiters.clear();
+      return wakeUps;
+    }
+
+    /**
+     * Reads what was appended to the file since the last read into the buffer.
+     *
+     * @throws IOException if the file cannot be read
+     */
+    private void readAppended() throws IOException {
+      if (!Files.exists(path)) {
+        return;
+      }
+      BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+      long size = attributes.size();
+      Object key = attributes.fileKey();
+      if (size < end || key != null && fileKey != null && !key.equals(fileKey)) {
+        // The file was truncated, or replaced by another one, possibly longer already
+        length = 0;
+        end = 0;
+        lineEnd = 0;
+        generation++;
+      }
+      fileKey = key;
+      if (size == end) {
+        return;
+      }
+      long from = Math.max(end, size - buffer.length);
+      if (from > end) {
+        // Too much was appended to be kept, only the last bytes are read
+        length = 0;
+        end = from;
+        lineEnd = from;
+      }
+      int count = (int) (size - from);
+      int keep = Math.min(length, buffer.length - count);
+      System.arraycopy(buffer, length - keep, buffer, 0, keep);
+      length = keep;
+      ByteBuffer target = ByteBuffer.wrap(buffer, length, count);
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        channel.position(from);
+        while (target.hasRemaining() && channel.read(target) >= 0) {
+          // Read until the length seen, or the end of a file truncated meanwhile
+        }
+      }
+      int read = target.position() - length;
+      for (int i = target.position() - 1; i >= length; i--) {
+        if (buffer[i] == '\n') {
+          lineEnd = from + (i - length) + 1;
+          break;
+        }
+      }
+      length += read;
+      end = from + read;
+    }
+
+    /**
+     * Gets the lines appended after a position.
+     *
+     * @param position the position
+     * @param knownGeneration the generation the position belongs to, -1 if not known
+     * @param charset the charset of the file
+     * @return the lines appended after the position
+     */
+    synchronized Tail tail(long position, int knownGeneration, Charset charset) {
+      long from = position;
+      boolean truncated = from > end || knownGeneration >= 0 && knownGeneration != generation;
+      if (truncated) {
+        from = 0;
+      }
+      return new Tail(getLines(from, charset), Math.max(lineEnd, from), generation, truncated);
+    }
+
+    /**
+     * Gets the lines kept between a position and the end of the last line read.
+     *
+     * @param position the position
+     * @param charset the charset of the file
+     * @return the lines, without empty lines
+     */
+    private List<String> getLines(long position, Charset charset) {
+      long start = end - length;
+      int from = (int) (Math.max(position, start) - start);
+      if (position < start && start > 0) {
+        // Lines before the kept bytes are gone, the first line kept may be only the end of one
+        while (from < length && buffer[from] != '\n') {
+          from++;
+        }
+        from++;
+      }
+      int to = (int) (lineEnd - start);
+      if (from >= to) {
+        return Collections.emptyList();
+      }
+      List<String> lines = new ArrayList<>();
+      for (String line : new String(buffer, from, to - from, charset).split("\\r?\\n")) {
+        if (!line.isEmpty()) {
+          lines.add(line);
+        }
+      }
+      return lines;
+    }
+
+    /**
+     * Checks if no viewer asked for the file within a timeout.
+     *
+     * @param now the current time
+     * @param idleTimeout the idle timeout
+     * @return true, if idle
+     */
+    synchronized boolean isIdle(long now, long idleTimeout) {
+      return waiters.isEmpty() && now - lastRequested > idleTimeout;
+    }
+
+    /**
+     * Registers a viewer to be woken up by the next read of lines after a position.
+     *
+     * @param position the position
+     * @param knownGeneration the generation the position belongs to, -1 if not known
+     * @param wakeUp the wake-up
+     * @return true, if registered; false if there is something to read after the position already
+     */
+    synchronized boolean await(long position, int knownGeneration, Runnable wakeUp) {
+      if (lineEnd > position || position > end
+          || knownGeneration >= 0 && knownGeneration != generation) {
+        return false;
+      }
+      waiters.add(wakeUp);
+      return true;
+    }
+
+    /**
+     * Unregisters a viewer.
+     *
+     * @param wakeUp the wake-up it registered
+     */
+    synchronized void cancel(Runnable wakeUp) {
+      waiters.remove(wakeUp);
+    }
+
+    /**
+     * Stops following the file.
+     *
+     * @return the wake-ups of the viewers still waiting
+     */
+    synchronized List<Runnable> close() {
+      List<Runnable> wakeUps = new ArrayList<>(waiters);
+      waiters.clear();
+      return wakeUps;
+    }
+
+  }
+
+  /**
+   * Lines appended to a followed file.
+   */
+  public static class Tail {
+
+    /** The lines. */
+    private final List<String> lines;
+
+    /** The length of the file up to the end of the last line. */
+    private final long length;
+
+    /** The number of times the file was truncated or replaced. */
+    private final int generation;
+
+    /** Whether the file was truncated or replaced, the lines then start at its beginning. */
+    private final boolean truncated;
+
+    /**
+     * Instantiates a new tail.
+     *
+     * @param lines the lines
+     * @param length the length
+     * @param generation the generation
+     * @param truncated whether the file was truncated
+     */
+    Tail(List<String> lines, long length, int generation, boolean truncated) {
+      this.lines = lines;
+      this.length = length;
+      this.generation = generation;
+      this.truncated = truncated;
+    }
+
+    /**
+     * Gets the lines.
+     *
+     * @return the lines
+     */
+    public List<String> getLines() {
+      return lines;
+    }
+
+    /**
+     * Gets the length of the file up to the end of the last line, where the next read starts.
+     *
+     * @return the length
+     */
+    public long getLength() {
+      return length;
+    }
+
+    /**
+     * Gets the number of times the file was truncated or replaced, passed back with the length so
+     * that a replaced file is read from its beginning even if it is already longer.
+     *
+     * @return the generation
+     */
+    public int getGeneration() {
+      return generation;
+    }
+
+    /**
+     * Checks if the file was truncated.
+     *
+     * @return true, if truncated
+     */
+    public boolean isTruncated() {
+      return truncated;
+    }
+
+  }
+
+}
@@ -0,0 +1,307 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import psiprobe.model.LogMatch;
+import psiprobe.tools.LogIndex;
+import psiprobe.tools.LogQuery;
+
+/**
+ * Searches log files, and optionally the files they were rotated to, through a {@link LogIndex}
+ * per file. Indexes are kept between searches and only index what was appended since, so that
+ * searching a large log again reads only the blocks that may hold matches. The least recently
+ * searched indexes are dropped once their signatures take more than the memory allowed.
+ *
+ * <p>
+ * Compressed rotated files are not searched, as they cannot be read from an offset.
+ * </p>
+ */
+public class LogSearchBean {
+
+  /** The Constant logger. */
+  private static final Logger logger = LoggerFactory.getLogger(LogSearchBean.class);
+
+  /** The Constant COMPRESSED_SUFFIXES, the suffixes of compressed rotated files. */
+  private static final List<String> COMPRESSED_SUFFIXES =
+      Arrays.asList(".gz", ".zip", ".bz2", ".xz", ".z");
+
+  /** The approximate size of an index block, in bytes. */
+  private int blockSize = 1024 * 1024;
+
+  /** The memory index signatures may take, in bytes. */
+  private long maxMemory = 64L * 1024 * 1024;
+
+  /** The time a search may spend indexing a file, in milliseconds. */
+  private long indexTimeout = 10000;
+
+  /** The indexes, least recently searched first. */
+  private final Map<String, LogIndex> indexes = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Gets the block size.
+   *
+   * @return the block size, in bytes
+   */
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  /**
+   * Sets the block size.
+   *
+   * @param blockSize the new block size, in bytes
+   */
+  public void setBlockSize(int blockSize) {
+    this.blockSize = blockSize;
+  }
+
+  /**
+   * Gets the max memory.
+   *
+   * @return the max memory, in bytes
+   */
+  public long getMaxMemory() {
+    return maxMemory;
+  }
+
+  /**
+   * Sets the max memory.
+   *
+   * @param maxMemory the new max memory, in bytes
+   */
+  public void setMaxMemory(long maxMemory) {
+    this.maxMemory = maxMemory;
+  }
+
+  /**
+   * Gets the index timeout.
+   *
+   * @return the index timeout, in milliseconds
+   */
+  public long getIndexTimeout() {
+    return indexTimeout;
+  }
+
+  /**
+   * Sets the index timeout.
+   *
+   * @param indexTimeout the new index timeout, in milliseconds
+   */
+  public void setIndexTimeout(long indexTimeout) {
+    this.indexTimeout = indexTimeout;
+  }
+
+  /**
+   * Searches a log file, and optionally its rotated files, oldest first.
+   *
+   * @param file the log file
+   * @param encoding the encoding of the files, or null for the platform default
+   * @param query the query
+   * @param rotated whether rotated files are searched
+   * @param cursor where the search starts, as returned by the previous page, or null
+   * @param limit the maximum number of matches
+   * @param context the number of lines shown before and after a match
+   * @return the result
+   * @throws IOException if a file cannot be read
+   */
+  public Result search(File file, String encoding, LogQuery query, boolean rotated,
+      String cursor, int limit, int context) throws IOException {
+    long start = System.currentTimeMillis();
+    Charset charset = encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+    List<File> files = rotated ? getRotatedFiles(file) : Arrays.asList(file);
+
+    int fileIndex = 0;
+    long offset = 0;
+    if (cursor != null) {
+      String[] parts = cursor.split(":", 2);
+      try {
+        fileIndex = Integer.parseInt(parts[0]);
+        offset = parts.length > 1 ? Long.parseLong(parts[1]) : 0;
+      } catch (NumberFormatException e) {
+        logger.trace("Malformed cursor '{}'", cursor, e);
+      }
+    }
+
+    Result result = new Result();
+    result.complete = true;
+    for (int i = fileIndex; i < files.size(); i++) {
+      LogIndex index = getIndex(files.get(i));
+      long deadline = start + indexTimeout;
+      result.complete &= index.update(Math.max(deadline - System.currentTimeMillis(), 0));
+      LogIndex.Page page = index.search(query, charset, i == fileIndex ? offset : 0,
+          limit - result.matches.size(), context);
+      result.matches.addAll(page.getMatches());
+      result.scannedBlocks += page.getScannedBlocks();
+      result.totalBlocks += index.getBlockCount();
+      if (page.getNext() >= 0) {
+        result.nextCursor = i + ":" + page.getNext();
+        break;
+      }
+    }
+    evict();
+    result.elapsed = System.currentTimeMillis() - start;
+    return result;
+  }
+
+  /**
+   * Gets the index of a file, creating it if it does not exist.
+   *
+   * @param file the file
+   * @return the index
+   */
+  private synchronized LogIndex getIndex(File file) {
+    return indexes.computeIfAbsent(file.getAbsolutePath(), path -> new LogIndex(file, blockSize));
+  }
+
+  /**
+   * Drops the least recently searched indexes while signatures take more than the memory allowed.
+   */
+  private synchronized void evict() {
+    long memory = 0;
+    for (LogIndex index : indexes.values()) {
+      memory += index.getMemory();
+    }
+    for (Iterator<LogIndex> it = indexes.values().iterator(); it.hasNext()
+        && memory > maxMemory;) {
+      memory -= it.next().getMemory();
+      it.remove();
+    }
+  }
+
+  /**
+   * Gets a log file and the files it was rotated to: the uncompressed files of its directory whose
+   * name starts with its name up to the first dot, oldest first and the log file last.
+   *
+   * @param file the log file
+   * @return the files
+   */
+  static List<File> getRotatedFiles(File file) {
+    String name = file.getName();
+    int dot = name.indexOf('.');
+    String prefix = dot > 0 ? name.substring(0, dot) : name;
+    File[] siblings = file.getAbsoluteFile().getParentFile().listFiles(
+        sibling -> sibling.isFile() && sibling.getName().startsWith(prefix)
+            && !sibling.getName().equals(name) && !isCompressed(sibling.getName()));
+    List<File> files = new ArrayList<>();
+    if (siblings != null) {
+      files.addAll(Arrays.asList(siblings));
+      files.sort(Comparator.comparingLong(File::lastModified).thenComparing(File::getName));
+    }
+    files.add(file);
+    return files;
+  }
+
+  /**
+   * Checks if a file name is that of a compressed file.
+   *
+   * @param name the name
+   * @return true, if compressed
+   */
+  private static boolean isCompressed(String name) {
+    String lowerName = name.toLowerCase(Locale.ROOT);
+    return COMPRESSED_SUFFIXES.stream().anyMatch(lowerName::endsWith);
+  }
+
+  /**
+   * The result of a search.
+   */
+  public static class Result {
+
+    /** The matches. */
+    private final List<LogMatch> matches = new ArrayList<>();
+
+    /** The cursor of the next page, null if there is none. */
+    private String nextCursor;
+
+    /** Whether the files were wholly indexed. */
+    private boolean complete;
+
+    /** The number of blocks read. */
+    private int scannedBlocks;
+
+    /** The number of blocks of the files searched. */
+    private int totalBlocks;
+
+    /** The time the search took, in milliseconds. */
+    private long elapsed;
+
+    /**
+     * Gets the matches.
+     *
+     * @return the matches
+     */
+    public List<LogMatch> getMatches() {
+      return matches;
+    }
+
+    /**
+     * Gets the cursor of the next page.
+     *
+     * @return the next cursor, null if there is no next page
+     */
+    public String getNextCursor() {
+      return nextCursor;
+    }
+
+    /**
+     * Checks if the files were wholly indexed, so that the search missed nothing.
+     *
+     * @return true, if complete
+     */
+    public boolean isComplete() {
+      return complete;
+    }
+
+    /**
+     * Gets the number of blocks read.
+     *
+     * @return the scanned blocks
+     */
+    public int getScannedBlocks() {
+      return scannedBlocks;
+    }
+
+    /**
+     * Gets the number of blocks of the files searched.
+     *
+     * @return the total blocks
+     */
+    public int getTotalBlocks() {
+      return totalBlocks;
+    }
+
+    /**
+     * Gets the time the search took.
+     *
+     * @return the elapsed time, in milliseconds
+     */
+    public long getElapsed() {
+      return elapsed;
+    }
+
+  }
+
+}
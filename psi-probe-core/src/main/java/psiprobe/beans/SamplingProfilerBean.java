@@ -0,0 +1,464 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.inject.Inject;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Loader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import psiprobe.TomcatContainer;
+import psiprobe.model.CallTree;
+
+/**
+ * Samples the stacks of running threads at a fixed rate with one batched
+ * {@link ThreadMXBean#getThreadInfo(long[], int)} call per sample and aggregates them into call
+ * trees, one per window, so that hot paths can be found without attaching a profiler. Threads are
+ * attributed to a web application by their context class loader. The trees are capped in size and
+ * sampling slows down when it would take more than the allowed share of one CPU.
+ */
+public class SamplingProfilerBean implements InitializingBean, DisposableBean {
+
+  /** The Constant logger. */
+  private static final Logger logger = LoggerFactory.getLogger(SamplingProfilerBean.class);
+
+  /** The Constant NO_APP, the application of threads not working for a web application. */
+  public static final String NO_APP = "-";
+
+  /** The Constant THREAD_NUMBER, the number ending a thread name, e.g. of pool workers. */
+  private static final Pattern THREAD_NUMBER = Pattern.compile("\\d+$");
+
+  /** The Constant LOADER_REFRESH, how often web application class loaders are looked up. */
+  private static final long LOADER_REFRESH = TimeUnit.SECONDS.toNanos(30);
+
+  /** The container wrapper. */
+  @Inject
+  private ContainerWrapperBean containerWrapper;
+
+  /** Whether sampling starts with the application. */
+  private boolean enabled = true;
+
+  /** The time between samples, in milliseconds. */
+  private long interval = 1000;
+
+  /** The number of stack frames sampled per thread. */
+  private int stackDepth = 64;
+
+  /** The maximum number of nodes per window. */
+  private int maxNodes = 50000;
+
+  /** The share of one CPU sampling may take, in percent. */
+  private int maxOverhead = 1;
+
+  /** The time a call tree collects samples before it is rotated out, in milliseconds. */
+  private long window = 300000;
+
+  /** Whether only runnable threads are sampled. */
+  private boolean runnableOnly = true;
+
+  /** The executor, while sampling. */
+  private ScheduledExecutorService executor;
+
+  /** The call tree of the current window. */
+  private CallTree current;
+
+  /** The call tree of the previous window. */
+  private CallTree previous;
+
+  /** The time the current window started, from {@link System#nanoTime()}. */
+  private long windowStart;
+
+  /** The web application names by class loader. */
+  private Map<ClassLoader, String> appLoaders = new WeakHashMap<>();
+
+  /** The time the class loaders were looked up, from {@link System#nanoTime()}. */
+  private long appLoadersTime;
+
+  /** The time spent sampling, in nanoseconds. */
+  private long sampleTime;
+
+  /** The number of samples taken. */
+  private long sampleCount;
+
+  /**
+   * Gets the container wrapper.
+   *
+   * @return the container wrapper
+   */
+  public ContainerWrapperBean getContainerWrapper() {
+    return containerWrapper;
+  }
+
+  /**
+   * Sets the container wrapper.
+   *
+   * @param containerWrapper the new container wrapper
+   */
+  public void setContainerWrapper(ContainerWrapperBean containerWrapper) {
+    this.containerWrapper = containerWrapper;
+  }
+
+  /**
+   * Checks if enabled.
+   *
+   * @return true, if enabled
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Sets whether sampling starts with the application.
+   *
+   * @param enabled the new enabled
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Gets the interval.
+   *
+   * @return the interval in milliseconds
+   */
+  public long getInterval() {
+    return interval;
+  }
+
+  /**
+   * Sets the time between samples.
+   *
+   * @param interval the new interval in milliseconds
+   */
+  public void setInterval(long interval) {
+    this.interval = interval;
+  }
+
+  /**
+   * Gets the stack depth.
+   *
+   * @return the stack depth
+   */
+  public int getStackDepth() {
+    return stackDepth;
+  }
+
+  /**
+   * Sets the number of stack frames sampled per thread.
+   *
+   * @param stackDepth the new stack depth
+   */
+  public void setStackDepth(int stackDepth) {
+    this.stackDepth = stackDepth;
+  }
+
+  /**
+   * Gets the max nodes.
+   *
+   * @return the max nodes
+   */
+  public int getMaxNodes() {
+    return maxNodes;
+  }
+
+  /**
+   * Sets the maximum number of call tree nodes per window.
+   *
+   * @param maxNodes the new max nodes
+   */
+  public void setMaxNodes(int maxNodes) {
+    this.maxNodes = maxNodes;
+  }
+
+  /**
+   * Gets the max overhead.
+   *
+   * @return the max overhead in percent
+   */
+  public int getMaxOverhead() {
+    return maxOverhead;
+  }
+
+  /**
+   * Sets the share of one CPU sampling may take. Sampling is spaced out beyond the interval when a
+   * sample takes longer.
+   *
+   * @param maxOverhead the new max overhead in percent
+   */
+  public void setMaxOverhead(int maxOverhead) {
+    this.maxOverhead = maxOverhead;
+  }
+
+  /**
+   * Gets the window.
+   *
+   * @return the window in milliseconds
+   */
+  public long getWindow() {
+    return window;
+  }
+
+  /**
+   * Sets the time a call tree collects samples. The profile covers the current and the previous
+   * window.
+   *
+   * @param window the new window in milliseconds
+   */
+  public void setWindow(long window) {
+    this.window = window;
+  }
+
+  /**
+   * Checks if only runnable threads are sampled.
+   *
+   * @return true, if only runnable threads are sampled
+   */
+  public boolean isRunnableOnly() {
+    return runnableOnly;
+  }
+
+  /**
+   * Sets whether only runnable threads are sampled, showing where CPU time goes, rather than all
+   * threads, showing where time is spent waiting too.
+   *
+   * @param runnableOnly the new runnable only
+   */
+  public void setRunnableOnly(boolean runnableOnly) {
+    this.runnableOnly = runnableOnly;
+  }
+
+  /**
+   * Gets the average time taken by a sample.
+   *
+   * @return the average sample time in microseconds
+   */
+  public synchronized long getAverageSampleTime() {
+    return sampleCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(sampleTime / sampleCount);
+  }
+
+  /**
+   * Gets the number of samples taken.
+   *
+   * @return the sample count
+   */
+  public synchronized long getSampleCount() {
+    return sampleCount;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    if (enabled) {
+      start();
+    }
+  }
+
+  /**
+   * Starts sampling.
+   */
+  public synchronized void start() {
+    if (executor == null) {
+      executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "psi-probe-profiler");
+        thread.setDaemon(true);
+        return thread;
+      });
+      executor.schedule(this::run, interval, TimeUnit.MILLISECONDS);
+      logger.info("Sampling thread stacks every {}ms", interval);
+    }
+  }
+
+  /**
+   * Stops sampling.
+   */
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  @Override
+  public void destroy() {
+    stop();
+  }
+
+  /**
+   * Takes a sample and schedules the next one, later than the interval if the sample took longer
+   * than the overhead allows.
+   */
+  private void run() {
+    long took;
+    try {
+      took = sample();
+    } catch (RuntimeException e) {
+      logger.error("Cannot sample thread stacks", e);
+      took = 0;
+    }
+    long delay = nextDelay(took);
+    synchronized (this) {
+      if (executor != null) {
+        executor.schedule(this::run, delay, TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
+  /**
+   * Computes the delay before the next sample. Kept in nanoseconds, as a sample usually takes less
+   * than a millisecond and would otherwise not count against the overhead at all.
+   *
+   * @param took the time the last sample took, in nanoseconds
+   * @return the delay, in nanoseconds
+   */
+  long nextDelay(long took) {
+    long budget = took * 100 / Math.max(1, maxOverhead);
+    return Math.max(TimeUnit.MILLISECONDS.toNanos(interval), budget);
+  }
+
+  /**
+   * Takes a sample of all threads.
+   *
+   * @return the time taken, in nanoseconds
+   */
+  long sample() {
+    long start = System.nanoTime();
+    ThreadMXBean threadMxBean = ManagementFactory.getThreadMXBean();
+    ThreadInfo[] infos = threadMxBean.getThreadInfo(threadMxBean.getAllThreadIds(), stackDepth);
+    Map<Long, Thread> threads = liveThreads();
+    Map<ClassLoader, String> loaders = getAppLoaders(start);
+    long self = Thread.currentThread().getId();
+
+    synchronized (this) {
+      if (current == null || start - windowStart >= TimeUnit.MILLISECONDS.toNanos(window)) {
+        previous = current;
+        current = new CallTree(maxNodes);
+        windowStart = start;
+      }
+      for (ThreadInfo info : infos) {
+        if (info == null || info.getThreadId() == self || info.getStackTrace().length == 0
+            || runnableOnly && info.getThreadState() != Thread.State.RUNNABLE) {
+          continue;
+        }
+        Thread thread = threads.get(info.getThreadId());
+        String app = getAppName(thread == null ? null : thread.getContextClassLoader(), loaders);
+        String name = info.getThreadName().replace(';', ':');
+        current.add(app, THREAD_NUMBER.matcher(name).replaceFirst("#"), info.getStackTrace());
+      }
+      long took = System.nanoTime() - start;
+      sampleTime += took;
+      sampleCount++;
+      return took;
+    }
+  }
+
+  /**
+   * Gets the profile of the current and previous windows in collapsed form, i.e. frames joined by
+   * semicolons, outermost first, with the number of samples ending in that stack.
+   *
+   * @param app the web application, or null for all, in which case stacks start with the
+   *        application name
+   * @param threads the pattern thread names must match, with their trailing number replaced by
+   *        {@code #}, or null for all
+   * @return the sample counts by collapsed stack, in stack order
+   */
+  public synchronized Map<String, Long> getCollapsedStacks(String app, Pattern threads) {
+    Map<String, Long> collapsed = new TreeMap<>();
+    if (previous != null) {
+      previous.collapse(app, threads, collapsed);
+    }
+    if (current != null) {
+      current.collapse(app, threads, collapsed);
+    }
+    return collapsed;
+  }
+
+  /**
+   * Gets the live threads by id.
+   *
+   * @return the threads
+   */
+  private static Map<Long, Thread> liveThreads() {
+    ThreadGroup group = Thread.currentThread().getThreadGroup();
+    while (group.getParent() != null) {
+      group = group.getParent();
+    }
+    Thread[] threads = new Thread[group.activeCount() + 16];
+    int count = group.enumerate(threads, true);
+    Map<Long, Thread> map = new HashMap<>(count * 4 / 3 + 1);
+    for (int i = 0; i < count; i++) {
+      map.put(threads[i].getId(), threads[i]);
+    }
+    return map;
+  }
+
+  /**
+   * Gets the web application names by class loader, looking them up again when they are older than
+   * the refresh period. Class loaders are held weakly, so that an undeployed web application is not
+   * kept in memory until the next refresh; class loaders do not override equals, so they are still
+   * compared by identity.
+   *
+   * @param now the current time, from {@link System#nanoTime()}
+   * @return the web application names by class loader
+   */
+  private Map<ClassLoader, String> getAppLoaders(long now) {
+    if (appLoadersTime != 0 && now - appLoadersTime < LOADER_REFRESH) {
+      return appLoaders;
+    }
+    Map<ClassLoader, String> loaders = new WeakHashMap<>();
+    TomcatContainer container =
+        containerWrapper == null ? null : containerWrapper.getTomcatContainer();
+    if (container != null) {
+      for (Context context : container.findContexts()) {
+        Loader loader = context.getLoader();
+        if (loader != null && loader.getClassLoader() != null) {
+          loaders.put(loader.getClassLoader(),
+              context.getName().isEmpty() ? "/" : context.getName());
+        }
+      }
+    }
+    appLoaders = loaders;
+    appLoadersTime = now;
+    return loaders;
+  }
+
+  /**
+   * Gets the web application a context class loader belongs to.
+   *
+   * @param classLoader the context class loader
+   * @param loaders the web application names by class loader
+   * @return the application name, or {@link #NO_APP}
+   */
+  private static String getAppName(ClassLoader classLoader, Map<ClassLoader, String> loaders) {
+    for (ClassLoader cl = classLoader; cl != null; cl = cl.getParent()) {
+      String app = loaders.get(cl);
+      if (app != null) {
+        return app;
+      }
+    }
+    return NO_APP;
+  }
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Runs session searches on a fork-join pool of its own, so that searching the sessions of many web
+ * applications neither competes with the applications for the common pool nor leaves threads
+ * behind when the probe is undeployed. With a parallelism of one sessions are searched on the
+ * calling thread.
+ */
+public class SessionSearchPoolBean implements DisposableBean {
+
+  /** The number of threads searching sessions. */
+  private int parallelism = 1;
+
+  /** The pool, created on first use. */
+  private ForkJoinPool pool;
+
+  /**
+   * Gets the parallelism.
+   *
+   * @return the parallelism
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Sets the number of threads searching sessions. One or less searches on the calling thread.
+   *
+   * @param parallelism the new parallelism
+   */
+  public void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Runs a search and waits for its result.
+   *
+   * @param <T> the type of the result
+   * @param task the search
+   * @return the result
+   */
+  public <T> T invoke(ForkJoinTask<T> task) {
+    ForkJoinPool searchPool = parallelism > 1 ? getPool() : null;
+    return searchPool == null ? task.invoke() : searchPool.invoke(task);
+  }
+
+  /**
+   * Gets the pool, creating it on first use.
+   *
+   * @return the pool
+   */
+  private synchronized ForkJoinPool getPool() {
+    if (pool == null) {
+      AtomicInteger count = new AtomicInteger();
+      pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+        ForkJoinWorkerThread thread =
+            ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+        thread.setName("psi-probe-session-search-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }, null, false);
+    }
+    return pool;
+  }
+
+  @Override
+  public synchronized void destroy() {
+    if (pool != null) {
+      pool.shutdownNow();
+      pool = null;
+    }
+  }
+
+}
@@ -0,0 +1,96 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans;
+
+import psiprobe.tools.SizeBudget;
+
+/**
+ * Settings of session size estimation. Every session is sized unless a sample size is set, in
+ * which case web applications with more sessions than the sample size have their session size
+ * extrapolated from a random sample of sessions. Each request sizing sessions gets a time and
+ * object-count budget, after which it returns partial sizes rather than walking every object graph
+ * of every session.
+ */
+public class SessionSizeEstimatorBean {
+
+  /** The number of sessions sized per web application, 0 for all. */
+  private int sampleSize;
+
+  /** The time budget per request in milliseconds, 0 for none. */
+  private long timeout = 10000;
+
+  /** The object-count budget per request, 0 for none. */
+  private long maxObjects = 5000000;
+
+  /**
+   * Gets the number of sessions sized per web application.
+   *
+   * @return the sample size, 0 for all
+   */
+  public int getSampleSize() {
+    return sampleSize;
+  }
+
+  /**
+   * Sets the number of sessions sized per web application.
+   *
+   * @param sampleSize the new sample size, 0 for all
+   */
+  public void setSampleSize(int sampleSize) {
+    this.sampleSize = sampleSize;
+  }
+
+  /**
+   * Gets the time budget per request.
+   *
+   * @return the timeout in milliseconds, 0 for none
+   */
+  public long getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * Sets the time budget per request.
+   *
+   * @param timeout the new timeout in milliseconds, 0 for none
+   */
+  public void setTimeout(long timeout) {
+    this.timeout = timeout;
+  }
+
+  /**
+   * Gets the object-count budget per request.
+   *
+   * @return the max objects, 0 for none
+   */
+  public long getMaxObjects() {
+    return maxObjects;
+  }
+
+  /**
+   * Sets the object-count budget per request.
+   *
+   * @param maxObjects the new max objects, 0 for none
+   */
+  public void setMaxObjects(long maxObjects) {
+    this.maxObjects = maxObjects;
+  }
+
+  /**
+   * Creates the budget of a request.
+   *
+   * @return the size budget
+   */
+  public SizeBudget newBudget() {
+    return new SizeBudget(timeout, maxObjects);
+  }
+
+}
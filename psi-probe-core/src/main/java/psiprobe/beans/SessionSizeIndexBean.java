@@ -0,0 +1,527 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Manager;
+import org.apache.catalina.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import psiprobe.TomcatContainer;
+import psiprobe.model.Application;
+import psiprobe.model.ApplicationSession;
+import psiprobe.tools.ApplicationUtils;
+import psiprobe.tools.SizeBudget;
+
+/**
+ * Index of session sizes, refreshed in the background so that pages showing session sizes do not
+ * walk session object graphs in the request thread. Each pass sizes only the sessions accessed
+ * since they were last sized, drops the sessions gone since the last pass, and keeps the totals of
+ * each web application up to date. A pass stops sizing when its time budget is spent; the next
+ * pass resumes where it stopped, so that the sessions visited last are not starved by those
+ * visited first. Web applications are visited by name and sessions by id for that purpose.
+ */
+public class SessionSizeIndexBean {
+
+  /** The Constant logger. */
+  private static final Logger logger = LoggerFactory.getLogger(SessionSizeIndexBean.class);
+
+  /** The container wrapper. */
+  @Inject
+  private ContainerWrapperBean containerWrapper;
+
+  /** Whether the index is refreshed. */
+  private boolean enabled;
+
+  /** The time budget of a pass in milliseconds, 0 for none. */
+  private long timeout = 30000;
+
+  /** The indexes by context name. */
+  private final Map<String, ApplicationIndex> indexes = new ConcurrentHashMap<>();
+
+  /** The name of the context where the last pass ran out of budget, null if it did not. */
+  private String resumeContext;
+
+  /**
+   * Gets the container wrapper.
+   *
+   * @return the container wrapper
+   */
+  public ContainerWrapperBean getContainerWrapper() {
+    return containerWrapper;
+  }
+
+  /**
+   * Sets the container wrapper.
+   *
+   * @param containerWrapper the new container wrapper
+   */
+  public void setContainerWrapper(ContainerWrapperBean containerWrapper) {
+    this.containerWrapper = containerWrapper;
+  }
+
+  /**
+   * Checks if the index is refreshed.
+   *
+   * @return true, if is enabled
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Sets whether the index is refreshed.
+   *
+   * @param enabled the new enabled
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+    if (!enabled) {
+      indexes.clear();
+    }
+  }
+
+  /**
+   * Gets the time budget of a pass.
+   *
+   * @return the timeout in milliseconds, 0 for none
+   */
+  public long getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * Sets the time budget of a pass.
+   *
+   * @param timeout the new timeout in milliseconds, 0 for none
+   */
+  public void setTimeout(long timeout) {
+    this.timeout = timeout;
+  }
+
+  /**
+   * Refreshes the index. Called by the scheduler, never concurrently.
+   */
+  public void refresh() {
+    if (!enabled) {
+      return;
+    }
+    if (containerWrapper == null) {
+      logger.error("Cannot index session sizes. Container wrapper is not set.");
+      return;
+    }
+    TomcatContainer tomcatContainer = containerWrapper.getTomcatContainer();
+    // check if the containerWrapper has been initialized
+    if (tomcatContainer == null) {
+      return;
+    }
+    long start = System.currentTimeMillis();
+    SizeBudget budget = new SizeBudget(timeout, 0);
+    refresh(tomcatContainer, budget);
+    logger.debug("session sizes indexed in {}ms, {} objects sized",
+        System.currentTimeMillis() - start, budget.getObjects());
+  }
+
+  /**
+   * Refreshes the index within a budget, starting with the context where the last pass ran out of
+   * budget.
+   *
+   * @param tomcatContainer the tomcat container
+   * @param budget the budget
+   */
+  void refresh(TomcatContainer tomcatContainer, SizeBudget budget) {
+    Context[] contexts = tomcatContainer.findContexts().stream()
+        .filter(context -> context != null && context.getName() != null)
+        .sorted(Comparator.comparing(Context::getName)).toArray(Context[]::new);
+    int first = 0;
+    while (resumeContext != null && first < contexts.length
+        && contexts[first].getName().compareTo(resumeContext) < 0) {
+      first++;
+    }
+    String stoppedAt = null;
+    for (int i = 0; i < contexts.length; i++) {
+      Context context = contexts[(first + i) % contexts.length];
+      boolean exhausted = budget.isExhausted();
+      indexes.computeIfAbsent(context.getName(), name -> new ApplicationIndex()).refresh(context,
+          budget);
+      if (!exhausted && budget.isExhausted()) {
+        stoppedAt = context.getName();
+      }
+    }
+    // a pass that ran out of budget before reaching any context leaves the cursor where it was
+    if (stoppedAt != null || !budget.isExhausted()) {
+      resumeContext = stoppedAt;
+    }
+    Set<String> names = new HashSet<>();
+    for (Context context : contexts) {
+      names.add(context.getName());
+    }
+    indexes.keySet().retainAll(names);
+  }
+
+  /**
+   * Gets the application session, taking its size from the index if it has not been accessed since
+   * it was indexed.
+   *
+   * @param session the session
+   * @param context the context of the session
+   * @param sizeBudget the budget of sizing sessions missing from the index, or null not to
+   *        calculate the size
+   * @param addAttributes the add attributes
+   * @return the application session
+   */
+  public ApplicationSession getApplicationSession(Session session, Context context,
+      SizeBudget sizeBudget, boolean addAttributes) {
+    IndexedSession indexed = sizeBudget == null ? null : getIndexedSession(context, session);
+    ApplicationSession appSession = ApplicationUtils.getApplicationSession(session, context,
+        indexed == null ? sizeBudget : null, addAttributes);
+    if (appSession != null && indexed != null) {
+      appSession.setSize(indexed.getSize());
+      appSession.setSizePartial(indexed.isPartial());
+    }
+    return appSession;
+  }
+
+  /**
+   * Gets the application, taking its session size from the index once the index covers it.
+   *
+   * @param context the context
+   * @param resourceResolver the resource resolver
+   * @param sizeBudget the budget of sizing sessions if the index does not cover the application
+   *        yet, or null not to calculate the session size
+   * @param sampleSize the number of sessions to size if the index does not cover the application
+   * @param containerWrapper the container wrapper
+   * @return the application
+   */
+  public Application getApplication(Context context, ResourceResolver resourceResolver,
+      SizeBudget sizeBudget, int sampleSize, ContainerWrapperBean containerWrapper) {
+    ApplicationTotals totals = sizeBudget == null ? null : getTotals(context);
+    Application app = ApplicationUtils.getApplication(context, resourceResolver,
+        totals == null ? sizeBudget : null, sampleSize, containerWrapper);
+    if (app != null && totals != null) {
+      app.setSize(totals.getSize());
+      app.setSizeSampleCount(totals.getSessionCount());
+      app.setSizePartial(totals.isPartial());
+    }
+    return app;
+  }
+
+  /**
+   * Gets the indexed size of a session.
+   *
+   * @param context the context of the session
+   * @param session the session
+   * @return the indexed session, or null if it is not indexed or has been accessed since
+   */
+  public IndexedSession getIndexedSession(Context context, Session session) {
+    ApplicationIndex index = context == null ? null : indexes.get(context.getName());
+    if (index == null) {
+      return null;
+    }
+    IndexedSession indexed = index.sessions.get(session.getIdInternal());
+    return indexed != null && indexed.getLastAccessedTime() == session.getLastAccessedTimeInternal()
+        ? indexed
+        : null;
+  }
+
+  /**
+   * Gets the session totals of a web application as of the last pass.
+   *
+   * @param context the context
+   * @return the totals, or null if no pass has covered the web application yet
+   */
+  public ApplicationTotals getTotals(Context context) {
+    ApplicationIndex index = context == null ? null : indexes.get(context.getName());
+    return index == null ? null : index.totals;
+  }
+
+  /**
+   * The index of the sessions of a web application. Only the refreshing pass writes to it.
+   */
+  private static class ApplicationIndex {
+
+    /** The indexed sessions by id. */
+    final Map<String, IndexedSession> sessions = new ConcurrentHashMap<>();
+
+    /** The size of the indexed sessions. */
+    private long size;
+
+    /** The attribute count of the indexed sessions. */
+    private long attributeCount;
+
+    /** The number of indexed sessions with partial sizes. */
+    private int partialCount;
+
+    /** The id of the session where the last pass ran out of budget, null if it did not. */
+    private String resumeAfter;
+
+    /** The totals as of the last pass. */
+    volatile ApplicationTotals totals;
+
+    /**
+     * Sizes the sessions accessed since they were indexed and drops the sessions gone. Sizing starts
+     * after the session where the last pass ran out of budget.
+     *
+     * @param context the context
+     * @param budget the budget
+     */
+    void refresh(Context context, SizeBudget budget) {
+      Manager manager = context.getManager();
+      Session[] found = manager == null ? new Session[0] : manager.findSessions();
+      Arrays.sort(found, Comparator.comparing(Session::getIdInternal));
+      Set<String> ids = new HashSet<>();
+      int first = 0;
+      for (int i = 0; i < found.length; i++) {
+        ids.add(found[i].getIdInternal());
+        if (resumeAfter != null && first == i
+            && found[i].getIdInternal().compareTo(resumeAfter) <= 0) {
+          first = i + 1;
+        }
+      }
+      int visited = 0;
+      for (; visited < found.length && !budget.isExhausted(); visited++) {
+        Session session = found[(first + visited) % found.length];
+        String id = session.getIdInternal();
+        IndexedSession indexed = sessions.get(id);
+        long lastAccessedTime = session.getLastAccessedTimeInternal();
+        if (indexed != null && indexed.getLastAccessedTime() == lastAccessedTime) {
+          continue;
+        }
+        ApplicationSession appSession =
+            ApplicationUtils.getApplicationSession(session, context, budget, false);
+        if (budget.isExhausted()) {
+          // cut short, the next pass goes on after it rather than starting over with it
+          resumeAfter = id;
+          break;
+        }
+        if (appSession != null) {
+          put(id, new IndexedSession(lastAccessedTime, appSession.getSize(),
+              appSession.getObjectCount(), appSession.isSizePartial()));
+        }
+      }
+      if (visited == found.length) {
+        resumeAfter = null;
+      }
+      for (Iterator<String> it = sessions.keySet().iterator(); it.hasNext();) {
+        String id = it.next();
+        if (!ids.contains(id)) {
+          subtract(sessions.get(id));
+          it.remove();
+        }
+      }
+      boolean partial = partialCount > 0;
+      for (Session session : found) {
+        IndexedSession indexed = sessions.get(session.getIdInternal());
+        if (indexed == null || indexed.getLastAccessedTime() != session
+            .getLastAccessedTimeInternal()) {
+          partial = true;
+          break;
+        }
+      }
+      totals = new ApplicationTotals(size, attributeCount, sessions.size(), partial,
+          System.currentTimeMillis());
+    }
+
+    /**
+     * Puts an indexed session, updating the totals.
+     *
+     * @param id the id
+     * @param indexed the indexed session
+     */
+    private void put(String id, IndexedSession indexed) {
+      subtract(sessions.put(id, indexed));
+      size += indexed.getSize();
+      attributeCount += indexed.getAttributeCount();
+      partialCount += indexed.isPartial() ? 1 : 0;
+    }
+
+    /**
+     * Subtracts a replaced or dropped session from the totals.
+     *
+     * @param indexed the indexed session, or null
+     */
+    private void subtract(IndexedSession indexed) {
+      if (indexed != null) {
+        size -= indexed.getSize();
+        attributeCount -= indexed.getAttributeCount();
+        partialCount -= indexed.isPartial() ? 1 : 0;
+      }
+    }
+
+  }
+
+  /**
+   * The indexed size of a session.
+   */
+  public static final class IndexedSession {
+
+    /** The last accessed time of the session when it was sized. */
+    private final long lastAccessedTime;
+
+    /** The size. */
+    private final long size;
+
+    /** The attribute count. */
+    private final long attributeCount;
+
+    /** Whether the size is a lower bound, as fields that could not be read were skipped. */
+    private final boolean partial;
+
+    /**
+     * Instantiates a new indexed session.
+     *
+     * @param lastAccessedTime the last accessed time
+     * @param size the size
+     * @param attributeCount the attribute count
+     * @param partial whether the size is a lower bound
+     */
+    IndexedSession(long lastAccessedTime, long size, long attributeCount, boolean partial) {
+      this.lastAccessedTime = lastAccessedTime;
+      this.size = size;
+      this.attributeCount = attributeCount;
+      this.partial = partial;
+    }
+
+    /**
+     * Gets the last accessed time of the session when it was sized.
+     *
+     * @return the last accessed time
+     */
+    public long getLastAccessedTime() {
+      return lastAccessedTime;
+    }
+
+    /**
+     * Gets the size.
+     *
+     * @return the size
+     */
+    public long getSize() {
+      return size;
+    }
+
+    /**
+     * Gets the attribute count.
+     *
+     * @return the attribute count
+     */
+    public long getAttributeCount() {
+      return attributeCount;
+    }
+
+    /**
+     * Checks if the size is a lower bound.
+     *
+     * @return true, if is partial
+     */
+    public boolean isPartial() {
+      return partial;
+    }
+
+  }
+
+  /**
+   * The session totals of a web application as of a pass.
+   */
+  public static final class ApplicationTotals {
+
+    /** The size. */
+    private final long size;
+
+    /** The attribute count. */
+    private final long attributeCount;
+
+    /** The session count. */
+    private final int sessionCount;
+
+    /** Whether some sessions were not indexed, had changed since or have partial sizes. */
+    private final boolean partial;
+
+    /** The time of the pass. */
+    private final long time;
+
+    /**
+     * Instantiates new application totals.
+     *
+     * @param size the size
+     * @param attributeCount the attribute count
+     * @param sessionCount the session count
+     * @param partial the partial
+     * @param time the time
+     */
+    ApplicationTotals(long size, long attributeCount, int sessionCount, boolean partial,
+        long time) {
+      this.size = size;
+      this.attributeCount = attributeCount;
+      this.sessionCount = sessionCount;
+      this.partial = partial;
+      this.time = time;
+    }
+
+    /**
+     * Gets the size of the indexed sessions.
+     *
+     * @return the size
+     */
+    public long getSize() {
+      return size;
+    }
+
+    /**
+     * Gets the attribute count of the indexed sessions.
+     *
+     * @return the attribute count
+     */
+    public long getAttributeCount() {
+      return attributeCount;
+    }
+
+    /**
+     * Gets the number of indexed sessions.
+     *
+     * @return the session count
+     */
+    public int getSessionCount() {
+      return sessionCount;
+    }
+
+    /**
+     * Checks if some sessions were not indexed, had changed since or have partial sizes.
+     *
+     * @return true, if is partial
+     */
+    public boolean isPartial() {
+      return partial;
+    }
+
+    /**
+     * Gets the time of the pass.
+     *
+     * @return the time
+     */
+    public long getTime() {
+      return time;
+    }
+
+  }
+
+}
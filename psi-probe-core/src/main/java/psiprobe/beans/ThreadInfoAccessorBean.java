@@ -0,0 +1,253 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import psiprobe.model.ThreadStackElement;
+
+/**
+ * Takes snapshots of all threads with a single batched {@link ThreadMXBean#getThreadInfo} call and
+ * keeps the latest one for a short time, so that the thread lists of concurrent viewers are served
+ * from the same snapshot rather than one JMX call per thread each. Snapshots only hold the top
+ * frame of every thread, unless the monitors or synchronizers locked by threads are included; the
+ * stack is otherwise only walked for the thread whose stack is shown, as deep as it is shown.
+ */
+public class ThreadInfoAccessorBean {
+
+  /** The time a snapshot is reused, in milliseconds. */
+  private long ttl = 2000;
+
+  /** The Constant SNAPSHOT_DEPTH, the top frame being the execution point of a thread. */
+  private static final int SNAPSHOT_DEPTH = 1;
+
+  /** Whether the monitors locked by each thread are included in snapshots. */
+  private boolean lockedMonitors;
+
+  /** Whether the ownable synchronizers locked by each thread are included in snapshots. */
+  private boolean lockedSynchronizers;
+
+  /** The latest snapshot. */
+  private Snapshot snapshot;
+
+  /**
+   * Gets the ttl.
+   *
+   * @return the ttl in milliseconds
+   */
+  public long getTtl() {
+    return ttl;
+  }
+
+  /**
+   * Sets the time a snapshot is reused.
+   *
+   * @param ttl the new ttl in milliseconds
+   */
+  public void setTtl(long ttl) {
+    this.ttl = ttl;
+  }
+
+  /**
+   * Checks if locked monitors are included.
+   *
+   * @return true, if locked monitors are included
+   */
+  public boolean isLockedMonitors() {
+    return lockedMonitors;
+  }
+
+  /**
+   * Sets whether locked monitors are included in snapshots, if the JVM supports it. This makes
+   * snapshots more expensive as the whole stack of every thread is walked.
+   *
+   * @param lockedMonitors the new locked monitors
+   */
+  public void setLockedMonitors(boolean lockedMonitors) {
+    this.lockedMonitors = lockedMonitors;
+  }
+
+  /**
+   * Checks if locked synchronizers are included.
+   *
+   * @return true, if locked synchronizers are included
+   */
+  public boolean isLockedSynchronizers() {
+    return lockedSynchronizers;
+  }
+
+  /**
+   * Sets whether locked ownable synchronizers are included in snapshots, if the JVM supports it.
+   * This makes snapshots more expensive as the whole stack of every thread is walked.
+   *
+   * @param lockedSynchronizers the new locked synchronizers
+   */
+  public void setLockedSynchronizers(boolean lockedSynchronizers) {
+    this.lockedSynchronizers = lockedSynchronizers;
+  }
+
+  /**
+   * Gets a snapshot of all threads, taking a new one if the latest is older than the ttl. Callers
+   * arriving while a snapshot is taken wait for it and share it.
+   *
+   * @return the snapshot
+   */
+  public synchronized Snapshot getSnapshot() {
+    long now = System.currentTimeMillis();
+    if (snapshot == null || now - snapshot.getTime() >= ttl || now < snapshot.getTime()) {
+      snapshot = takeSnapshot(ManagementFactory.getThreadMXBean());
+    }
+    return snapshot;
+  }
+
+  /**
+   * Gets a thread with its stack.
+   *
+   * @param id the thread id
+   * @param depth the number of stack elements to read
+   * @return the thread with up to depth stack elements, or null if it is not alive
+   */
+  public ThreadInfo getStack(long id, int depth) {
+    return ManagementFactory.getThreadMXBean().getThreadInfo(id, depth);
+  }
+
+  /**
+   * Takes a snapshot of all threads.
+   *
+   * @param threadMxBean the thread mbean
+   * @return the snapshot
+   */
+  Snapshot takeSnapshot(ThreadMXBean threadMxBean) {
+    long time = System.currentTimeMillis();
+    long[] ids = threadMxBean.getAllThreadIds();
+    boolean monitors = lockedMonitors && threadMxBean.isObjectMonitorUsageSupported();
+    boolean synchronizers = lockedSynchronizers && threadMxBean.isSynchronizerUsageSupported();
+    ThreadInfo[] infos = monitors || synchronizers
+        ? threadMxBean.getThreadInfo(ids, monitors, synchronizers)
+        : threadMxBean.getThreadInfo(ids, SNAPSHOT_DEPTH);
+    long[] deadlocked = threadMxBean.findMonitorDeadlockedThreads();
+    return new Snapshot(time, infos, deadlocked);
+  }
+
+  /**
+   * Converts a stack trace element to the model shown on thread pages.
+   *
+   * @param element the element
+   * @return the thread stack element
+   */
+  public static ThreadStackElement toStackElement(StackTraceElement element) {
+    ThreadStackElement tse = new ThreadStackElement();
+    tse.setClassName(element.getClassName());
+    tse.setFileName(element.getFileName());
+    tse.setMethodName(element.getMethodName());
+    tse.setLineNumber(element.getLineNumber());
+    tse.setNativeMethod(element.isNativeMethod());
+    return tse;
+  }
+
+  /**
+   * An immutable snapshot of all threads.
+   */
+  public static class Snapshot {
+
+    /** The time the snapshot was taken. */
+    private final long time;
+
+    /** The threads by id, in the order reported by the JVM. */
+    private final Map<Long, ThreadInfo> threads;
+
+    /** The sorted ids of monitor deadlocked threads. */
+    private final long[] deadlocked;
+
+    /**
+     * Instantiates a new snapshot.
+     *
+     * @param time the time the snapshot was taken
+     * @param infos the thread infos, with nulls for threads that have terminated
+     * @param deadlocked the ids of monitor deadlocked threads, or null
+     */
+    Snapshot(long time, ThreadInfo[] infos, long[] deadlocked) {
+      this.time = time;
+      Map<Long, ThreadInfo> map = new LinkedHashMap<>(infos.length * 4 / 3 + 1);
+      for (ThreadInfo info : infos) {
+        if (info != null) {
+          map.put(info.getThreadId(), info);
+        }
+      }
+      this.threads = Collections.unmodifiableMap(map);
+      this.deadlocked = deadlocked == null ? new long[0] : deadlocked.clone();
+      Arrays.sort(this.deadlocked);
+    }
+
+    /**
+     * Gets the time the snapshot was taken.
+     *
+     * @return the time
+     */
+    public long getTime() {
+      return time;
+    }
+
+    /**
+     * Gets the threads.
+     *
+     * @return the threads alive when the snapshot was taken
+     */
+    public List<ThreadInfo> getThreads() {
+      return new ArrayList<>(threads.values());
+    }
+
+    /**
+     * Gets a thread by id.
+     *
+     * @param id the id
+     * @return the thread, or null if it was not alive
+     */
+    public ThreadInfo getThread(long id) {
+      return threads.get(id);
+    }
+
+    /**
+     * Finds a thread by name.
+     *
+     * @param name the name
+     * @return the first thread with that name, or null
+     */
+    public ThreadInfo findThread(String name) {
+      for (ThreadInfo info : threads.values()) {
+        if (info.getThreadName().equals(name)) {
+          return info;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Checks if a thread is monitor deadlocked.
+     *
+     * @param id the id
+     * @return true, if deadlocked
+     */
+    public boolean isDeadlocked(long id) {
+      return Arrays.binarySearch(deadlocked, id) >= 0;
+    }
+
+  }
+
+}
@@ -13,15 +13,15 @@ package psiprobe.beans.stats.collectors;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 
 import javax.inject.Inject;
 
-import org.jfree.data.xy.XYDataItem;
-
 import psiprobe.Utils;
 import psiprobe.beans.stats.listeners.StatsCollectionEvent;
 import psiprobe.beans.stats.listeners.StatsCollectionListener;
 import psiprobe.model.stats.StatsCollection;
+import psiprobe.model.stats.StatsSeries;
 
 /**
  * The Class AbstractStatsCollectorBean.
@@ -32,6 +32,13 @@ public abstract class AbstractStatsCollectorBean {
   @Inject
   private StatsCollection statsCollection;
 
+  /** The Constant SEQUENTIAL, reading targets on the collector thread. */
+  private static final CollectorExecutorBean SEQUENTIAL = new CollectorExecutorBean();
+
+  /** The collector executor. */
+  @Inject
+  private CollectorExecutorBean collectorExecutor;
+
   /** The max series. */
   private int maxSeries = 240;
 
@@ -62,6 +69,24 @@ public abstract class AbstractStatsCollectorBean {
     this.statsCollection = statsCollection;
   }
 
+  /**
+   * Gets the collector executor.
+   *
+   * @return the collector executor
+   */
+  public CollectorExecutorBean getCollectorExecutor() {
+    return collectorExecutor;
+  }
+
+  /**
+   * Sets the collector executor.
+   *
+   * @param collectorExecutor the new collector executor
+   */
+  public void setCollectorExecutor(CollectorExecutorBean collectorExecutor) {
+    this.collectorExecutor = collectorExecutor;
+  }
+
   /**
    * Gets the max series.
    *
@@ -105,6 +130,20 @@ public abstract class AbstractStatsCollectorBean {
    */
   public abstract void collect() throws Exception;
 
+  /**
+   * Reads the targets of the collector, in parallel if a collector executor is configured. Only the
+   * reading is done by the tasks; stats are built from the results on the collector thread.
+   *
+   * @param <R> the type of what is read from a target
+   * @param tasks the reading task by target name
+   * @return what was read by target name, without the targets skipped for this cycle
+   * @throws InterruptedException if the collector thread is interrupted
+   */
+  protected <R> Map<String, R> readTargets(Map<String, Callable<R>> tasks)
+      throws InterruptedException {
+    return (collectorExecutor == null ? SEQUENTIAL : collectorExecutor).readAll(tasks);
+  }
+
   /**
    * Builds the delta stats.
    *
@@ -160,20 +199,19 @@ public abstract class AbstractStatsCollectorBean {
   protected void buildAbsoluteStats(String name, long value, long time)
       throws InterruptedException {
 
-    List<XYDataItem> stats = statsCollection.getStats(name);
+    StatsSeries stats = statsCollection.getStats(name);
     if (stats == null) {
       statsCollection.newStats(name, maxSeries);
     } else {
-      XYDataItem data = new XYDataItem(time, value);
       statsCollection.lockForUpdate();
       try {
-        stats.add(data);
         houseKeepStats(stats);
+        statsCollection.append(name, stats, time, value);
       } finally {
         statsCollection.releaseLock();
       }
       if (listeners != null) {
-        StatsCollectionEvent event = new StatsCollectionEvent(name, data);
+        StatsCollectionEvent event = new StatsCollectionEvent(name, time, value);
         for (StatsCollectionListener listener : listeners) {
           if (listener.isEnabled()) {
             listener.statsCollected(event);
@@ -238,12 +276,12 @@ public abstract class AbstractStatsCollectorBean {
       double statValue = valueDelta * 100 / timeDelta;
       statsCollection.lockForUpdate();
       try {
-        List<XYDataItem> stats = statsCollection.getStats(name);
+        StatsSeries stats = statsCollection.getStats(name);
         if (stats == null) {
           stats = statsCollection.newStats(name, maxSeries);
         }
-        stats.add(stats.size(), new XYDataItem(time, statValue));
         houseKeepStats(stats);
+        statsCollection.append(name, stats, time, statValue);
       } finally {
         statsCollection.releaseLock();
       }
@@ -260,13 +298,15 @@ public abstract class AbstractStatsCollectorBean {
   }
 
   /**
-   * House keep stats.
+   * House keep stats. The series evicts old samples by itself, this only adjusts its capacity when
+   * it was created with a different limit, e.g. read back from disk or configured with another
+   * span.
    *
    * @param stats the stats
    */
-  private void houseKeepStats(List<XYDataItem> stats) {
-    while (stats.size() > maxSeries) {
-      stats.remove(0);
+  private void houseKeepStats(StatsSeries stats) {
+    if (stats.getCapacity() != maxSeries) {
+      stats.setCapacity(maxSeries);
     }
   }
 }
@@ -10,6 +10,12 @@
  */
 package psiprobe.beans.stats.collectors;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 import javax.inject.Inject;
 import javax.servlet.ServletContext;
 
@@ -23,6 +29,7 @@ import psiprobe.TomcatContainer;
 import psiprobe.beans.ContainerWrapperBean;
 import psiprobe.model.Application;
 import psiprobe.tools.ApplicationUtils;
+import psiprobe.tools.LatencyHistogram;
 import psiprobe.tools.TimeExpression;
 
 /**
@@ -45,6 +52,9 @@ public class AppStatsCollectorBean extends AbstractStatsCollectorBean
   /** The self ignored. */
   private boolean selfIgnored;
 
+  /** The latency histogram snapshots of the last collection by application name. */
+  private final Map<String, long[]> latencySnapshots = new ConcurrentHashMap<>();
+
   /**
    * Gets the container wrapper.
    *
@@ -113,32 +123,43 @@ public class AppStatsCollectorBean extends AbstractStatsCollectorBean
         long totalAvgProcTime = 0;
         int participatingAppCount = 0;
 
+        Map<String, Context> contexts = new LinkedHashMap<>();
+        Map<String, Callable<Application>> tasks = new LinkedHashMap<>();
         for (Context ctx : tomcatContainer.findContexts()) {
           if (ctx != null && ctx.getName() != null) {
-            Application app = new Application();
-            ApplicationUtils.collectApplicationServletStats(ctx, app);
-
             String appName = "".equals(ctx.getName()) ? "/" : ctx.getName();
+            contexts.put(appName, ctx);
+            tasks.put(appName, () -> {
+              Application app = new Application();
+              ApplicationUtils.collectApplicationServletStats(ctx, app);
+              return app;
+            });
+          }
+        }
+
+        for (Map.Entry<String, Application> entry : readTargets(tasks).entrySet()) {
+          String appName = entry.getKey();
+          Application app = entry.getValue();
+
+          long reqDelta =
+              buildDeltaStats("app.requests." + appName, app.getRequestCount(), currentTime);
+          long errDelta = buildDeltaStats("app.errors." + appName, app.getErrorCount());
+          long procTimeDelta =
+              buildDeltaStats("app.proc_time." + appName, app.getProcessingTime(), currentTime);
+
+          long avgProcTime = reqDelta == 0 ? 0 : procTimeDelta / reqDelta;
+          buildAbsoluteStats("app.avg_proc_time." + appName, avgProcTime, currentTime);
+          buildLatencyStats(appName, contexts.get(appName), currentTime);
 
-            long reqDelta =
-                buildDeltaStats("app.requests." + appName, app.getRequestCount(), currentTime);
-            long errDelta = buildDeltaStats("app.errors." + appName, app.getErrorCount());
-            long procTimeDelta =
-                buildDeltaStats("app.proc_time." + appName, app.getProcessingTime(), currentTime);
-
-            long avgProcTime = reqDelta == 0 ? 0 : procTimeDelta / reqDelta;
-            buildAbsoluteStats("app.avg_proc_time." + appName, avgProcTime, currentTime);
-
-            /*
-             * make sure applications that did not serve any requests do not participate in average
-             * response time equation thus diluting the value
-             */
-            if (reqDelta > 0 && !excludeFromTotal(ctx)) {
-              totalReqDelta += reqDelta;
-              totalErrDelta += errDelta;
-              totalAvgProcTime += avgProcTime;
-              participatingAppCount++;
-            }
+          /*
+           * make sure applications that did not serve any requests do not participate in average
+           * response time equation thus diluting the value
+           */
+          if (reqDelta > 0 && !excludeFromTotal(contexts.get(appName))) {
+            totalReqDelta += reqDelta;
+            totalErrDelta += errDelta;
+            totalAvgProcTime += avgProcTime;
+            participatingAppCount++;
           }
         }
         // build totals for all applications
@@ -151,6 +172,32 @@ public class AppStatsCollectorBean extends AbstractStatsCollectorBean
     }
   }
 
+  /**
+   * Builds the latency percentiles of an application over the requests served since the last
+   * collection, if the agent valve records its latency.
+   *
+   * @param appName the app name
+   * @param ctx the ctx
+   * @param time the time
+   * @throws InterruptedException if a lock cannot be acquired
+   */
+  private void buildLatencyStats(String appName, Context ctx, long time)
+      throws InterruptedException {
+    long[] snapshot = ApplicationUtils.getLatencySnapshot(ctx, LatencyHistogram.APPLICATION);
+    if (snapshot == null) {
+      return;
+    }
+    long[] delta = LatencyHistogram.delta(snapshot, latencySnapshots.put(appName, snapshot));
+    buildAbsoluteStats("app.latency_p50." + appName,
+        TimeUnit.MICROSECONDS.toMillis(LatencyHistogram.getValueAtPercentile(delta, 50)), time);
+    buildAbsoluteStats("app.latency_p95." + appName,
+        TimeUnit.MICROSECONDS.toMillis(LatencyHistogram.getValueAtPercentile(delta, 95)), time);
+    buildAbsoluteStats("app.latency_p99." + appName,
+        TimeUnit.MICROSECONDS.toMillis(LatencyHistogram.getValueAtPercentile(delta, 99)), time);
+    buildAbsoluteStats("app.latency_max." + appName,
+        TimeUnit.MICROSECONDS.toMillis(LatencyHistogram.getMax(delta)), time);
+  }
+
   /**
    * Exclude from total.
    *
@@ -193,6 +240,11 @@ public class AppStatsCollectorBean extends AbstractStatsCollectorBean
     resetStats("app.proc_time." + appName);
     resetStats("app.errors." + appName);
     resetStats("app.avg_proc_time." + appName);
+    resetStats("app.latency_p50." + appName);
+    resetStats("app.latency_p95." + appName);
+    resetStats("app.latency_p99." + appName);
+    resetStats("app.latency_max." + appName);
+    latencySnapshots.remove(appName);
   }
 
   /**
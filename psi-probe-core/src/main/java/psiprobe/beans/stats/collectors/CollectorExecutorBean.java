@@ -0,0 +1,313 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans.stats.collectors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Reads the targets of a collector, e.g. the applications or data sources, on a bounded pool of
+ * daemon threads. All targets of a cycle share one deadline; a target that fails or does not answer
+ * by then is skipped for the cycle and recorded, so that one slow JNDI lookup or pool accessor does
+ * not hold up the others. With a single thread targets are read one by one on the calling thread.
+ *
+ * <p>
+ * A target that ignores the interrupt sent at the deadline keeps its worker busy. Such a worker is
+ * replaced by growing the pool until the target returns, and the target is skipped by later cycles
+ * in the meantime, so the pool never grows beyond one extra thread per stuck target.
+ * </p>
+ */
+public class CollectorExecutorBean implements DisposableBean {
+
+  /** The Constant logger. */
+  private static final Logger logger = LoggerFactory.getLogger(CollectorExecutorBean.class);
+
+  /** The number of threads reading targets. */
+  private int threads = 1;
+
+  /** The time all targets of a cycle are given to answer, in milliseconds. */
+  private long timeout = 10000;
+
+  /** The time of the last skip by target name. */
+  private final Map<String, Long> skippedTargets = new ConcurrentHashMap<>();
+
+  /** The number of skips so far. */
+  private final AtomicLong skipCount = new AtomicLong();
+
+  /** The reads still running after their deadline, by target name. */
+  private final Map<String, Read<?>> stuckReads = new ConcurrentHashMap<>();
+
+  /** The executor, created on first use. */
+  private ThreadPoolExecutor executor;
+
+  /**
+   * Gets the threads.
+   *
+   * @return the threads
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Sets the number of threads reading targets. One or less reads targets on the calling thread.
+   *
+   * @param threads the new threads
+   */
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
+  /**
+   * Gets the timeout.
+   *
+   * @return the timeout in milliseconds
+   */
+  public long getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * Sets the time all targets of a cycle are given to answer when targets are read in parallel.
+   *
+   * @param timeout the new timeout in milliseconds
+   */
+  public void setTimeout(long timeout) {
+    this.timeout = timeout;
+  }
+
+  /**
+   * Gets the targets skipped so far.
+   *
+   * @return the time of the last skip by target name
+   */
+  public Map<String, Long> getSkippedTargets() {
+    return Collections.unmodifiableMap(new TreeMap<>(skippedTargets));
+  }
+
+  /**
+   * Gets the number of times a target was skipped so far.
+   *
+   * @return the skip count
+   */
+  public long getSkipCount() {
+    return skipCount.get();
+  }
+
+  /**
+   * Gets the number of targets whose read is still running after its deadline.
+   *
+   * @return the number of stuck targets
+   */
+  public int getStuckTargetCount() {
+    return stuckReads.size();
+  }
+
+  /**
+   * Reads targets.
+   *
+   * @param <R> the type of what is read from a target
+   * @param tasks the reading task by target name
+   * @return what was read by target name, in the order of the tasks, without skipped targets
+   * @throws InterruptedException if the calling thread is interrupted while waiting
+   */
+  public <R> Map<String, R> readAll(Map<String, Callable<R>> tasks) throws InterruptedException {
+    Map<String, R> results = new LinkedHashMap<>();
+    ThreadPoolExecutor pool = threads > 1 && tasks.size() > 1 ? getExecutor() : null;
+    if (pool == null) {
+      for (Entry<String, Callable<R>> task : tasks.entrySet()) {
+        try {
+          results.put(task.getKey(), task.getValue().call());
+        } catch (InterruptedException e) {
+          throw e;
+        } catch (Exception e) {
+          skip(task.getKey(), e);
+        }
+      }
+      return results;
+    }
+
+    List<Read<R>> reads = new ArrayList<>();
+    for (Entry<String, Callable<R>> task : tasks.entrySet()) {
+      if (stuckReads.containsKey(task.getKey())) {
+        skip(task.getKey(), new TimeoutException("still reading since an earlier cycle"));
+      } else {
+        reads.add(new Read<>(task.getKey(), task.getValue()));
+      }
+    }
+    // one deadline for the whole cycle, unfinished reads are cancelled when it passes
+    List<Future<R>> futures = pool.invokeAll(reads, timeout, TimeUnit.MILLISECONDS);
+    for (int i = 0; i < reads.size(); i++) {
+      Read<R> read = reads.get(i);
+      try {
+        results.put(read.target, futures.get(i).get());
+      } catch (CancellationException e) {
+        stuckReads.put(read.target, read);
+        if (read.abandon()) {
+          resize();
+        } else {
+          stuckReads.remove(read.target, read);
+        }
+        skip(read.target, new TimeoutException());
+      } catch (ExecutionException e) {
+        skip(read.target, e.getCause());
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Records a skipped target.
+   *
+   * @param target the target name
+   * @param cause why the target was skipped
+   */
+  private void skip(String target, Throwable cause) {
+    skippedTargets.put(target, System.currentTimeMillis());
+    skipCount.incrementAndGet();
+    if (cause instanceof TimeoutException && cause.getMessage() != null) {
+      logger.warn("Skipped stats of '{}', {}", target, cause.getMessage());
+    } else if (cause instanceof TimeoutException) {
+      logger.warn("Skipped stats of '{}', no answer within {}ms", target, timeout);
+    } else {
+      logger.warn("Skipped stats of '{}'", target, cause);
+    }
+  }
+
+  /**
+   * Gets the executor, creating it on first use.
+   *
+   * @return the executor
+   */
+  private synchronized ThreadPoolExecutor getExecutor() {
+    if (executor == null) {
+      AtomicInteger count = new AtomicInteger();
+      executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread =
+                new Thread(runnable, "psi-probe-collector-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+      resize();
+    }
+    return executor;
+  }
+
+  /**
+   * Sizes the pool to the configured threads plus one for every stuck read.
+   */
+  private synchronized void resize() {
+    if (executor == null) {
+      return;
+    }
+    int size = threads + stuckReads.size();
+    if (size > executor.getMaximumPoolSize()) {
+      executor.setMaximumPoolSize(size);
+      executor.setCorePoolSize(size);
+    } else if (size < executor.getMaximumPoolSize()) {
+      executor.setCorePoolSize(size);
+      executor.setMaximumPoolSize(size);
+    }
+  }
+
+  @Override
+  public synchronized void destroy() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  /**
+   * Reads a target, keeping track of whether the read outlives its deadline.
+   *
+   * @param <R> the type of what is read from the target
+   */
+  private final class Read<R> implements Callable<R> {
+
+    /** Not started yet. */
+    private static final int PENDING = 0;
+
+    /** Running within the deadline. */
+    private static final int RUNNING = 1;
+
+    /** Finished. */
+    private static final int DONE = 2;
+
+    /** Still running after the deadline, its worker has been replaced. */
+    private static final int ABANDONED = 3;
+
+    /** The target name. */
+    final String target;
+
+    /** The task reading the target. */
+    private final Callable<R> task;
+
+    /** The state. */
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+
+    /**
+     * Instantiates a new read.
+     *
+     * @param target the target name
+     * @param task the task reading the target
+     */
+    Read(String target, Callable<R> task) {
+      this.target = target;
+      this.task = task;
+    }
+
+    @Override
+    public R call() throws Exception {
+      state.set(RUNNING);
+      try {
+        return task.call();
+      } finally {
+        if (!state.compareAndSet(RUNNING, DONE) && stuckReads.remove(target, this)) {
+          logger.info("Stats of '{}' answered after their deadline", target);
+          resize();
+        }
+      }
+    }
+
+    /**
+     * Marks the read as abandoned if it is still running.
+     *
+     * @return true, if the read is still running after the deadline
+     */
+    boolean abandon() {
+      return state.compareAndSet(RUNNING, ABANDONED);
+    }
+
+  }
+
+}
@@ -10,12 +10,19 @@
  */
 package psiprobe.beans.stats.collectors;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
 import javax.inject.Inject;
 
+import org.apache.catalina.Context;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 
+import psiprobe.TomcatContainer;
 import psiprobe.beans.ContainerWrapperBean;
 import psiprobe.model.ApplicationResource;
 import psiprobe.model.DataSourceInfo;
@@ -32,6 +39,9 @@ public class DatasourceStatsCollectorBean extends AbstractStatsCollectorBean {
   /** The Constant PREFIX_BUSY. */
   private static final String PREFIX_BUSY = "ds.busy.";
 
+  /** The Constant GLOBAL_TARGET, naming the global resources among the targets read. */
+  private static final String GLOBAL_TARGET = "global resources";
+
   /** The Constant logger. */
   private static final Logger logger = LoggerFactory.getLogger(DatasourceStatsCollectorBean.class);
 
@@ -63,15 +73,29 @@ public class DatasourceStatsCollectorBean extends AbstractStatsCollectorBean {
     if (containerWrapper == null) {
       logger.error("Cannot collect data source stats. Container wrapper is not set.");
     } else {
-      for (ApplicationResource ds : getContainerWrapper().getDataSources()) {
-        String appName = ds.getApplicationName();
-        String name = (appName == null ? "" : appName) + '/' + ds.getName();
-        DataSourceInfo dsi = ds.getDataSourceInfo();
-        int numEstablished = dsi.getEstablishedConnections();
-        int numBusy = dsi.getBusyConnections();
-        logger.trace("Collecting stats for datasource: {}", name);
-        buildAbsoluteStats(PREFIX_ESTABLISHED + name, numEstablished, currentTime);
-        buildAbsoluteStats(PREFIX_BUSY + name, numBusy, currentTime);
+      Map<String, Callable<List<ApplicationResource>>> tasks = new LinkedHashMap<>();
+      TomcatContainer tomcatContainer = containerWrapper.getTomcatContainer();
+      if (tomcatContainer != null) {
+        for (Context ctx : tomcatContainer.findContexts()) {
+          if (ctx != null && ctx.getName() != null) {
+            String appName = "".equals(ctx.getName()) ? "/" : ctx.getName();
+            tasks.put(appName, () -> containerWrapper.getPrivateDataSources(ctx));
+          }
+        }
+      }
+      tasks.put(GLOBAL_TARGET, containerWrapper::getGlobalDataSources);
+
+      for (List<ApplicationResource> dataSources : readTargets(tasks).values()) {
+        for (ApplicationResource ds : dataSources) {
+          String appName = ds.getApplicationName();
+          String name = (appName == null ? "" : appName) + '/' + ds.getName();
+          DataSourceInfo dsi = ds.getDataSourceInfo();
+          int numEstablished = dsi.getEstablishedConnections();
+          int numBusy = dsi.getBusyConnections();
+          logger.trace("Collecting stats for datasource: {}", name);
+          buildAbsoluteStats(PREFIX_ESTABLISHED + name, numEstablished, currentTime);
+          buildAbsoluteStats(PREFIX_BUSY + name, numBusy, currentTime);
+        }
       }
       logger.debug("datasource stats collected in {}ms", System.currentTimeMillis() - currentTime);
     }
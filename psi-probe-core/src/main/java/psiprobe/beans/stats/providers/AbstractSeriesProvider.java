@@ -10,12 +10,15 @@
  */
 package psiprobe.beans.stats.providers;
 
-import java.util.List;
+import javax.servlet.http.HttpServletRequest;
 
-import org.jfree.data.xy.XYDataItem;
 import org.jfree.data.xy.XYSeries;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.ServletRequestUtils;
+
+import psiprobe.model.stats.StatsSeries;
+import psiprobe.tools.TimeExpression;
 
 /**
  * The Class AbstractSeriesProvider.
@@ -32,13 +35,36 @@ public abstract class AbstractSeriesProvider implements SeriesProvider {
    * @param stats the stats
    * @return the XY series
    */
-  protected XYSeries toSeries(String legend, List<XYDataItem> stats) {
+  protected XYSeries toSeries(String legend, StatsSeries stats) {
     XYSeries xySeries = new XYSeries(legend, true, false);
-    synchronized (stats) {
-      for (XYDataItem item : stats) {
-        xySeries.addOrUpdate(item.getX(), item.getY());
+    stats.forEach(xySeries::addOrUpdate);
+    return xySeries;
+  }
+
+  /**
+   * To series, honoring the time range requested by the "r" parameter, e.g. r=7d. Ranges longer
+   * than the raw samples reach are plotted from the rollup tier that covers them.
+   *
+   * @param legend the legend
+   * @param stats the stats
+   * @param request the request
+   * @return the XY series
+   */
+  protected XYSeries toSeries(String legend, StatsSeries stats, HttpServletRequest request) {
+    long range = 0;
+    String rangeExpression = ServletRequestUtils.getStringParameter(request, "r", null);
+    if (rangeExpression != null) {
+      try {
+        range = TimeExpression.inSeconds(rangeExpression);
+      } catch (IllegalArgumentException e) {
+        logger.debug("Ignoring invalid chart range '{}'", rangeExpression);
       }
     }
+    if (range <= 0) {
+      return toSeries(legend, stats);
+    }
+    XYSeries xySeries = new XYSeries(legend, true, false);
+    stats.forEach(System.currentTimeMillis() - range * 1000, xySeries::addOrUpdate);
     return xySeries;
   }
 
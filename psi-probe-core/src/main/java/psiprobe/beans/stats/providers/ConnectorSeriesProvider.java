@@ -10,15 +10,14 @@
  */
 package psiprobe.beans.stats.providers;
 
-import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.jfree.data.xy.DefaultTableXYDataset;
-import org.jfree.data.xy.XYDataItem;
 import org.springframework.web.bind.ServletRequestUtils;
 
 import psiprobe.model.stats.StatsCollection;
+import psiprobe.model.stats.StatsSeries;
 
 /**
  * The Class ConnectorSeriesProvider.
@@ -39,10 +38,10 @@ public class ConnectorSeriesProvider extends AbstractSeriesProvider {
     String series1Legend = ServletRequestUtils.getStringParameter(request, "sl", "");
 
     if (connectorName != null && statType != null) {
-      List<XYDataItem> stats =
+      StatsSeries stats =
           statsCollection.getStats("stat.connector." + connectorName + "." + statType);
       if (stats != null) {
-        dataset.addSeries(toSeries(series1Legend, stats));
+        dataset.addSeries(toSeries(series1Legend, stats, request));
       }
     }
   }
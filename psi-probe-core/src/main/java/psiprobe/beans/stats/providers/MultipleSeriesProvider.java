@@ -19,9 +19,9 @@ import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 
 import org.jfree.data.xy.DefaultTableXYDataset;
-import org.jfree.data.xy.XYDataItem;
 
 import psiprobe.model.stats.StatsCollection;
+import psiprobe.model.stats.StatsSeries;
 
 /**
  * Retrieves stats series with names that start with the statNamePrefix. Either all matching series
@@ -102,11 +102,11 @@ public class MultipleSeriesProvider extends AbstractSeriesProvider {
   public void populate(DefaultTableXYDataset dataset, StatsCollection statsCollection,
       HttpServletRequest request) {
 
-    Map<String, List<XYDataItem>> statMap = statsCollection.getStatsByPrefix(statNamePrefix);
+    Map<String, StatsSeries> statMap = statsCollection.getStatsByPrefix(statNamePrefix);
     boolean useTop = getTop() > 0 && getTop() < statMap.size();
     List<Series> seriesList = new ArrayList<>(statMap.size());
 
-    for (Map.Entry<String, List<XYDataItem>> entry : statMap.entrySet()) {
+    for (Map.Entry<String, StatsSeries> entry : statMap.entrySet()) {
       Series ser = new Series(entry);
       if (useTop) {
         ser.calculateAvg();
@@ -131,9 +131,7 @@ public class MultipleSeriesProvider extends AbstractSeriesProvider {
     Collections.sort(seriesList, (s1, s2) -> s1.key.compareTo(s2.key));
 
     for (Series ser : seriesList) {
-      synchronized (ser.stats) {
-        dataset.addSeries(toSeries(ser.key, ser.stats));
-      }
+      dataset.addSeries(toSeries(ser.key, ser.stats, request));
     }
   }
 
@@ -141,23 +139,38 @@ public class MultipleSeriesProvider extends AbstractSeriesProvider {
    * The Class Series.
    */
   // a helper class that holds series and calculates an avg value
-  private class Series {
+  private class Series implements StatsSeries.DataPointVisitor {
 
     /** The key. */
     final String key;
 
     /** The stats. */
-    final List<XYDataItem> stats;
+    final StatsSeries stats;
 
     /** The avg. */
     double avg = 0;
 
+    /** The number of samples in the series while the avg is being calculated. */
+    private int size;
+
+    /** The index of the sample being visited. */
+    private int index;
+
+    /** Whether a moving avg is calculated. */
+    private boolean useMovingAvg;
+
+    /** The sum of the current frame. */
+    private long sum;
+
+    /** The number of samples in the current frame. */
+    private int count;
+
     /**
      * Instantiates a new series.
      *
      * @param en the en
      */
-    Series(Map.Entry<String, List<XYDataItem>> en) {
+    Series(Map.Entry<String, StatsSeries> en) {
       key = en.getKey().substring(statNamePrefix.length());
       stats = en.getValue();
     }
@@ -167,27 +180,31 @@ public class MultipleSeriesProvider extends AbstractSeriesProvider {
      */
     // calculating an avg value that is used for identifying the top series
     void calculateAvg() {
-      long sum = 0;
-      int count = 1;
+      sum = 0;
+      count = 1;
+      index = 0;
 
       synchronized (stats) {
-        boolean useMovingAvg = getMovingAvgFrame() > 0 && getMovingAvgFrame() < stats.size();
-
-        for (ListIterator<XYDataItem> it = stats.listIterator(); it.hasNext();) {
-          XYDataItem xy = it.next();
-          sum += xy.getY().longValue();
-
-          if (useMovingAvg && count % getMovingAvgFrame() == 0 || !it.hasNext()) {
-            double thisAvg = (double) sum / count;
-            if (thisAvg > avg) {
-              avg = thisAvg;
-            }
-            sum = 0;
-            count = 1;
-          } else {
-            count++;
-          }
+        size = stats.size();
+        useMovingAvg = getMovingAvgFrame() > 0 && getMovingAvgFrame() < size;
+        stats.forEach(this);
+      }
+    }
+
+    @Override
+    public void visit(long time, double value) {
+      sum += (long) value;
+      index++;
+
+      if (useMovingAvg && count % getMovingAvgFrame() == 0 || index == size) {
+        double thisAvg = (double) sum / count;
+        if (thisAvg > avg) {
+          avg = thisAvg;
         }
+        sum = 0;
+        count = 1;
+      } else {
+        count++;
       }
     }
   }
@@ -17,10 +17,10 @@ import java.util.List;
 import javax.servlet.http.HttpServletRequest;
 
 import org.jfree.data.xy.DefaultTableXYDataset;
-import org.jfree.data.xy.XYDataItem;
 import org.springframework.web.bind.ServletRequestUtils;
 
 import psiprobe.model.stats.StatsCollection;
+import psiprobe.model.stats.StatsSeries;
 
 /**
  * The Class StandardSeriesProvider.
@@ -58,11 +58,11 @@ public class StandardSeriesProvider extends AbstractSeriesProvider {
       if (seriesParam != null) {
         statName = MessageFormat.format(statName, seriesParam);
       }
-      List<XYDataItem> stats = statsCollection.getStats(statName);
+      StatsSeries stats = statsCollection.getStats(statName);
       if (stats != null) {
         String series =
             ServletRequestUtils.getStringParameter(request, "s" + (i + 1) + "l", "series" + i);
-        dataset.addSeries(toSeries(series, stats));
+        dataset.addSeries(toSeries(series, stats, request));
       }
     }
   }
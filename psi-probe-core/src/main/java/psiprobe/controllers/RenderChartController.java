@@ -53,6 +53,7 @@ import psiprobe.model.stats.StatsCollection;
  * <li>yx - image height</li>
  * <li>l - show legend (boolean: true|false)</li>
  * <li>p - name of series provider bean</li>
+ * <li>r - time range to plot, e.g. 7d; ranges beyond the raw samples are taken from rollups</li>
  * </ul>
  */
 @Controller
@@ -10,6 +10,11 @@
  */
 package psiprobe.controllers.apps;
 
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -19,6 +24,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.ParameterizableViewController;
 
+import psiprobe.beans.stats.collectors.CollectorExecutorBean;
 import psiprobe.tools.TimeExpression;
 
 /**
@@ -30,6 +36,10 @@ public class AllAppStatsController extends ParameterizableViewController {
   /** The collection period. */
   private long collectionPeriod;
 
+  /** The collector executor. */
+  @Inject
+  private CollectorExecutorBean collectorExecutor;
+
   /**
    * Gets the collection period.
    *
@@ -58,6 +68,24 @@ public class AllAppStatsController extends ParameterizableViewController {
     this.collectionPeriod = TimeExpression.inSeconds(collectionPeriod);
   }
 
+  /**
+   * Gets the collector executor.
+   *
+   * @return the collector executor
+   */
+  public CollectorExecutorBean getCollectorExecutor() {
+    return collectorExecutor;
+  }
+
+  /**
+   * Sets the collector executor.
+   *
+   * @param collectorExecutor the new collector executor
+   */
+  public void setCollectorExecutor(CollectorExecutorBean collectorExecutor) {
+    this.collectorExecutor = collectorExecutor;
+  }
+
   @RequestMapping(path = "/allappstats.htm")
   @Override
   public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response)
@@ -68,8 +96,17 @@ public class AllAppStatsController extends ParameterizableViewController {
   @Override
   protected ModelAndView handleRequestInternal(HttpServletRequest request,
       HttpServletResponse response) throws Exception {
-    return super.handleRequestInternal(request, response).addObject("collectionPeriod",
-        getCollectionPeriod());
+    long skipCount = 0;
+    Map<String, Date> skippedTargets = new LinkedHashMap<>();
+    if (collectorExecutor != null) {
+      skipCount = collectorExecutor.getSkipCount();
+      for (Map.Entry<String, Long> target : collectorExecutor.getSkippedTargets().entrySet()) {
+        skippedTargets.put(target.getKey(), new Date(target.getValue()));
+      }
+    }
+    return super.handleRequestInternal(request, response)
+        .addObject("collectionPeriod", getCollectionPeriod()).addObject("skipCount", skipCount)
+        .addObject("skippedTargets", skippedTargets);
   }
 
   @Value("allappstats")
@@ -19,10 +19,11 @@ import org.springframework.web.bind.ServletRequestUtils;
 import org.springframework.web.servlet.ModelAndView;
 
 import psiprobe.beans.ResourceResolver;
+import psiprobe.beans.SessionSizeEstimatorBean;
+import psiprobe.beans.SessionSizeIndexBean;
 import psiprobe.controllers.AbstractContextHandlerController;
 import psiprobe.model.Application;
 import psiprobe.model.stats.StatsCollection;
-import psiprobe.tools.ApplicationUtils;
 import psiprobe.tools.SecurityUtils;
 
 /**
@@ -40,6 +41,50 @@ public class BaseGetApplicationController extends AbstractContextHandlerControll
   /** The collection period. */
   private long collectionPeriod;
 
+  /** The session size estimator. */
+  @Inject
+  private SessionSizeEstimatorBean sessionSizeEstimator;
+
+  /**
+   * Gets the session size estimator.
+   *
+   * @return the session size estimator
+   */
+  public SessionSizeEstimatorBean getSessionSizeEstimator() {
+    return sessionSizeEstimator;
+  }
+
+  /**
+   * Sets the session size estimator.
+   *
+   * @param sessionSizeEstimator the new session size estimator
+   */
+  public void setSessionSizeEstimator(SessionSizeEstimatorBean sessionSizeEstimator) {
+    this.sessionSizeEstimator = sessionSizeEstimator;
+  }
+
+  /** The session size index. */
+  @Inject
+  private SessionSizeIndexBean sessionSizeIndex;
+
+  /**
+   * Gets the session size index.
+   *
+   * @return the session size index
+   */
+  public SessionSizeIndexBean getSessionSizeIndex() {
+    return sessionSizeIndex;
+  }
+
+  /**
+   * Sets the session size index.
+   *
+   * @param sessionSizeIndex the new session size index
+   */
+  public void setSessionSizeIndex(SessionSizeIndexBean sessionSizeIndex) {
+    this.sessionSizeIndex = sessionSizeIndex;
+  }
+
   /**
    * Checks if is extended info.
    *
@@ -102,17 +147,22 @@ public class BaseGetApplicationController extends AbstractContextHandlerControll
         && SecurityUtils.hasAttributeValueRole(getServletContext(), request);
 
     ResourceResolver resourceResolver = getContainerWrapper().getResourceResolver();
-    Application app = ApplicationUtils.getApplication(context,
-        isExtendedInfo() ? resourceResolver : null, calcSize, getContainerWrapper());
+    Application app = sessionSizeIndex.getApplication(context,
+        isExtendedInfo() ? resourceResolver : null,
+        calcSize ? sessionSizeEstimator.newBudget() : null, sessionSizeEstimator.getSampleSize(),
+        getContainerWrapper());
 
+    boolean latencyCharted = false;
     if (isExtendedInfo() && getStatsCollection() != null) {
       String avgStatisticName = "app.avg_proc_time." + app.getName();
       app.setAvgTime(getStatsCollection().getLastValueForStat(avgStatisticName));
+      latencyCharted = getStatsCollection().getStats("app.latency_p99." + app.getName()) != null;
     }
 
     return new ModelAndView(getViewName()).addObject("app", app)
         .addObject("no_resources", !resourceResolver.supportsPrivateResources())
-        .addObject("collectionPeriod", getCollectionPeriod());
+        .addObject("collectionPeriod", getCollectionPeriod())
+        .addObject("latencyCharted", latencyCharted);
   }
 
 }
@@ -13,6 +13,7 @@ package psiprobe.controllers.apps;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -23,10 +24,12 @@ import org.springframework.web.bind.ServletRequestUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.servlet.ModelAndView;
 
+import psiprobe.beans.SessionSizeEstimatorBean;
+import psiprobe.beans.SessionSizeIndexBean;
 import psiprobe.controllers.AbstractTomcatContainerController;
 import psiprobe.model.Application;
-import psiprobe.tools.ApplicationUtils;
 import psiprobe.tools.SecurityUtils;
+import psiprobe.tools.SizeBudget;
 
 /**
  * Creates the list of web application installed in the same "host" as the Probe.
@@ -34,6 +37,50 @@ import psiprobe.tools.SecurityUtils;
 @Controller
 public class ListWebappsController extends AbstractTomcatContainerController {
 
+  /** The session size estimator. */
+  @Inject
+  private SessionSizeEstimatorBean sessionSizeEstimator;
+
+  /**
+   * Gets the session size estimator.
+   *
+   * @return the session size estimator
+   */
+  public SessionSizeEstimatorBean getSessionSizeEstimator() {
+    return sessionSizeEstimator;
+  }
+
+  /**
+   * Sets the session size estimator.
+   *
+   * @param sessionSizeEstimator the new session size estimator
+   */
+  public void setSessionSizeEstimator(SessionSizeEstimatorBean sessionSizeEstimator) {
+    this.sessionSizeEstimator = sessionSizeEstimator;
+  }
+
+  /** The session size index. */
+  @Inject
+  private SessionSizeIndexBean sessionSizeIndex;
+
+  /**
+   * Gets the session size index.
+   *
+   * @return the session size index
+   */
+  public SessionSizeIndexBean getSessionSizeIndex() {
+    return sessionSizeIndex;
+  }
+
+  /**
+   * Sets the session size index.
+   *
+   * @param sessionSizeIndex the new session size index
+   */
+  public void setSessionSizeIndex(SessionSizeIndexBean sessionSizeIndex) {
+    this.sessionSizeIndex = sessionSizeIndex;
+  }
+
   @RequestMapping(path = "/index.htm")
   @Override
   public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response)
@@ -55,13 +102,16 @@ public class ListWebappsController extends AbstractTomcatContainerController {
       throw new IllegalStateException(
           "No container found for your server: " + getServletContext().getServerInfo(), ex);
     }
+    // One budget for the whole list, so that many applications cannot add up to a hang
+    SizeBudget sizeBudget = calcSize ? sessionSizeEstimator.newBudget() : null;
     List<Application> applications = new ArrayList<>(apps.size());
     boolean showResources = getContainerWrapper().getResourceResolver().supportsPrivateResources();
     for (Context appContext : apps) {
       // check if this is not the ROOT webapp
       if (appContext.getName() != null) {
-        applications.add(ApplicationUtils.getApplication(appContext,
-            getContainerWrapper().getResourceResolver(), calcSize, getContainerWrapper()));
+        applications.add(sessionSizeIndex.getApplication(appContext,
+            getContainerWrapper().getResourceResolver(), sizeBudget,
+            sessionSizeEstimator.getSampleSize(), getContainerWrapper()));
       }
     }
     if (!applications.isEmpty() && !showResources) {
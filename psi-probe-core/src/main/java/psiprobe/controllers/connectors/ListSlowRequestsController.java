@@ -0,0 +1,89 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.controllers.connectors;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.catalina.Context;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.ServletRequestUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.ModelAndView;
+
+import psiprobe.controllers.AbstractContextHandlerController;
+import psiprobe.model.SlowRequest;
+import psiprobe.tools.ApplicationUtils;
+
+/**
+ * Lists the slow requests kept by the agent valve, newest first, for a particular web application
+ * or for all applications if an application name is not passed in a query string. The list can be
+ * narrowed down with a part of the URI and a minimum duration in milliseconds.
+ */
+@Controller
+public class ListSlowRequestsController extends AbstractContextHandlerController {
+
+  @RequestMapping(path = "/slowrequests.htm")
+  @Override
+  public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response)
+      throws Exception {
+    return super.handleRequest(request, response);
+  }
+
+  @Override
+  protected ModelAndView handleContext(String contextName, Context context,
+      HttpServletRequest request, HttpServletResponse response) throws Exception {
+
+    String uri = ServletRequestUtils.getStringParameter(request, "uri", "");
+    long minDuration = ServletRequestUtils.getLongParameter(request, "minDuration", 0);
+
+    List<Context> ctxs;
+    if (context == null) {
+      ctxs = getContainerWrapper().getTomcatContainer().findContexts();
+    } else {
+      ctxs = new ArrayList<>();
+      ctxs.add(context);
+    }
+
+    List<SlowRequest> requests = new ArrayList<>();
+    for (Context ctx : ctxs) {
+      if (ctx != null) {
+        for (SlowRequest slowRequest : ApplicationUtils.getSlowRequests(ctx)) {
+          if (slowRequest.getDuration() >= minDuration
+              && (uri.isEmpty() || slowRequest.getUri() != null
+                  && slowRequest.getUri().contains(uri))) {
+            requests.add(slowRequest);
+          }
+        }
+      }
+    }
+    requests.sort(Comparator.comparing(SlowRequest::getTime).reversed());
+
+    return new ModelAndView(getViewName(), "slowRequests", requests);
+  }
+
+  @Override
+  protected boolean isContextOptional() {
+    return true;
+  }
+
+  @Value("slowrequests")
+  @Override
+  public void setViewName(String viewName) {
+    super.setViewName(viewName);
+  }
+
+}
@@ -11,7 +11,10 @@
 package psiprobe.controllers.logs;
 
 import java.io.File;
+import java.nio.charset.Charset;
+import java.time.format.DateTimeParseException;
 
+import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -24,10 +27,13 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.servlet.ModelAndView;
 
 import psiprobe.Utils;
+import psiprobe.beans.CompressorBean;
+import psiprobe.tools.LogTimeSeeker;
 import psiprobe.tools.logging.LogDestination;
 
 /**
- * The Class DownloadLogController.
+ * Sends a log file as a download. Given a from or to request parameter, only the lines written
+ * within that time window are sent, as found by {@link LogTimeSeeker}.
  */
 @Controller
 public class DownloadLogController extends AbstractLogHandlerController {
@@ -35,6 +41,28 @@ public class DownloadLogController extends AbstractLogHandlerController {
   /** The Constant logger. */
   private static final Logger logger = LoggerFactory.getLogger(DownloadLogController.class);
 
+  /** The compressor. */
+  @Inject
+  private CompressorBean compressor;
+
+  /**
+   * Gets the compressor.
+   *
+   * @return the compressor
+   */
+  public CompressorBean getCompressor() {
+    return compressor;
+  }
+
+  /**
+   * Sets the compressor.
+   *
+   * @param compressor the new compressor
+   */
+  public void setCompressor(CompressorBean compressor) {
+    this.compressor = compressor;
+  }
+
   @RequestMapping(path = "/download")
   @Override
   public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response)
@@ -46,14 +74,41 @@ public class DownloadLogController extends AbstractLogHandlerController {
   protected ModelAndView handleLogFile(HttpServletRequest request, HttpServletResponse response,
       LogDestination logDest) throws Exception {
 
-    boolean compressed =
-        "true".equals(ServletRequestUtils.getStringParameter(request, "compressed"));
-
     File file = logDest.getFile();
-    logger.info("Sending {}{} to {} ({})", file, compressed ? " compressed" : "",
+    String from = ServletRequestUtils.getStringParameter(request, "from");
+    String to = ServletRequestUtils.getStringParameter(request, "to");
+    if (from != null || to != null) {
+      Charset charset = logDest.getEncoding() == null ? Charset.defaultCharset()
+          : Charset.forName(logDest.getEncoding());
+      LogTimeSeeker seeker = LogTimeSeeker.of(file, charset);
+      long[] window;
+      try {
+        window = seeker == null ? null : seeker.seek(from, to);
+      } catch (DateTimeParseException e) {
+        logger.trace("", e);
+        window = null;
+      }
+      if (window == null) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+        return null;
+      }
+      logger.info("Sending {} from {} to {} to {} ({})", file, from, to, request.getRemoteAddr(),
+          request.getRemoteUser());
+      Utils.sendFile(request, response, file, window[0], window[1], file.getName());
+      return null;
+    }
+
+    // Rotated logs compressed already are sent as they are
+    boolean precompressed = file.getName().endsWith(".gz");
+    boolean compressed = !precompressed
+        && "true".equals(ServletRequestUtils.getStringParameter(request, "compressed"));
+    boolean encoded = !precompressed && !compressed && request.getHeader("Range") == null
+        && file.length() >= compressor.getMinSize() && compressor.acceptsGzip(request);
+
+    logger.info("Sending {}{} to {} ({})", file, compressed || encoded ? " compressed" : "",
         request.getRemoteAddr(), request.getRemoteUser());
-    if (compressed) {
-      Utils.sendCompressedFile(response, file);
+    if (compressed || encoded) {
+      Utils.sendCompressedFile(response, file, compressor, encoded);
     } else {
       Utils.sendFile(request, response, file);
     }
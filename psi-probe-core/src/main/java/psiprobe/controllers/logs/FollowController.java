@@ -11,6 +11,8 @@
 package psiprobe.controllers.logs;
 
 import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedList;
 
 import javax.servlet.http.HttpServletRequest;
@@ -22,8 +24,7 @@ import org.springframework.web.bind.ServletRequestUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.servlet.ModelAndView;
 
-import psiprobe.tools.BackwardsFileStream;
-import psiprobe.tools.BackwardsLineReader;
+import psiprobe.tools.BackwardsLineScanner;
 import psiprobe.tools.logging.LogDestination;
 
 /**
@@ -62,31 +63,17 @@ public class FollowController extends AbstractLogHandlerController {
         lines.add(" ------------- THE FILE HAS BEEN TRUNCATED --------------");
       }
 
-      try (BackwardsFileStream bfs = new BackwardsFileStream(file, currentLength)) {
-        BackwardsLineReader br;
-        if (logDest.getEncoding() != null) {
-          br = new BackwardsLineReader(bfs, logDest.getEncoding());
-        } else {
-          br = new BackwardsLineReader(bfs);
-        }
-        long readSize = 0;
-        long totalReadSize = currentLength - lastKnownLength;
+      Charset charset = logDest.getEncoding() == null ? StandardCharsets.UTF_8
+          : Charset.forName(logDest.getEncoding());
+      try (BackwardsLineScanner scanner = new BackwardsLineScanner(file, currentLength, charset)) {
+        // Only the lines starting after the part of the file already known are read
         String line;
-        while (readSize < totalReadSize && (line = br.readLine()) != null) {
+        while ((maxReadLines == 0 || lines.size() < maxReadLines)
+            && (line = scanner.readLine()) != null && scanner.getPosition() >= lastKnownLength) {
           if (!line.isEmpty()) {
             lines.addFirst(line);
-            readSize += line.length();
-          } else {
-            readSize++;
-          }
-          if (maxReadLines != 0 && lines.size() >= maxReadLines) {
-            break;
           }
         }
-
-        if (lastKnownLength != 0 && readSize > totalReadSize) {
-          lines.removeFirst();
-        }
       }
 
       mv.addObject("lines", lines);
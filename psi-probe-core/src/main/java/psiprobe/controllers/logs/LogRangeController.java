@@ -0,0 +1,103 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.controllers.logs;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.ServletRequestUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.ModelAndView;
+
+import psiprobe.tools.LogTimeSeeker;
+import psiprobe.tools.logging.LogDestination;
+
+/**
+ * Shows the lines of a log file written within a time window, given by the from and to request
+ * parameters. Only the window is read, as found by {@link LogTimeSeeker}; a window too large to
+ * show is cut short and left to download whole.
+ */
+@Controller
+public class LogRangeController extends AbstractLogHandlerController {
+
+  /** The Constant MAX_VIEW_BYTES, the most of a window shown. */
+  private static final int MAX_VIEW_BYTES = 1024 * 1024;
+
+  @RequestMapping(path = "/range.htm")
+  @Override
+  public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response)
+      throws Exception {
+    return super.handleRequest(request, response);
+  }
+
+  @Override
+  protected ModelAndView handleLogFile(HttpServletRequest request, HttpServletResponse response,
+      LogDestination logDest) throws Exception {
+
+    String from = ServletRequestUtils.getStringParameter(request, "from", "").trim();
+    String to = ServletRequestUtils.getStringParameter(request, "to", "").trim();
+    ModelAndView mv = new ModelAndView(getViewName()).addObject("log", logDest);
+    if (from.isEmpty() && to.isEmpty()) {
+      return mv;
+    }
+
+    File file = logDest.getFile();
+    Charset charset = logDest.getEncoding() == null ? Charset.defaultCharset()
+        : Charset.forName(logDest.getEncoding());
+    LogTimeSeeker seeker = LogTimeSeeker.of(file, charset);
+    if (seeker == null) {
+      return mv.addObject("errorMessage",
+          getMessageSourceAccessor().getMessage("probe.src.logRange.noTimestamps"));
+    }
+    long[] window;
+    try {
+      window = seeker.seek(from, to);
+    } catch (DateTimeParseException e) {
+      return mv.addObject("errorMessage", getMessageSourceAccessor()
+          .getMessage("probe.src.logRange.invalid", new Object[] {e.getParsedString()}));
+    }
+
+    long end = Math.min(window[1], window[0] + MAX_VIEW_BYTES);
+    List<String> lines = new ArrayList<>();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate((int) (end - window[0]));
+      while (buffer.hasRemaining() && channel.read(buffer, window[0] + buffer.position()) > 0) {
+        // Read the window, or as much of it as is shown
+      }
+      String text = new String(buffer.array(), 0, buffer.position(), charset);
+      lines.addAll(Arrays.asList(text.split("\\r?\\n", -1)));
+      if (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) {
+        lines.remove(lines.size() - 1);
+      }
+    }
+    return mv.addObject("lines", lines).addObject("size", window[1] - window[0])
+        .addObject("truncated", end < window[1]);
+  }
+
+  @Value("log_range")
+  @Override
+  public void setViewName(String viewName) {
+    super.setViewName(viewName);
+  }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.controllers.logs;
+
+import java.util.regex.PatternSyntaxException;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.ServletRequestUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.ModelAndView;
+
+import psiprobe.beans.LogSearchBean;
+import psiprobe.tools.LogQuery;
+import psiprobe.tools.logging.LogDestination;
+
+/**
+ * Searches a log file, and optionally the files it was rotated to, for lines containing keywords
+ * or matching a regular expression. Request parameters:
+ * <ul>
+ * <li>q - the keywords, all of which a line must contain regardless of case, or the regular
+ * expression</li>
+ * <li>regex - whether q is a regular expression</li>
+ * <li>rotated - whether rotated files are searched too</li>
+ * <li>contextLines - the number of lines shown before and after a match</li>
+ * <li>cursor - where the page starts, as given by the previous page</li>
+ * </ul>
+ */
+@Controller
+public class SearchLogController extends AbstractLogHandlerController {
+
+  /** The Constant PAGE_SIZE, the number of matches per page. */
+  private static final int PAGE_SIZE = 100;
+
+  /** The Constant MAX_CONTEXT_LINES, the largest number of lines shown around a match. */
+  private static final int MAX_CONTEXT_LINES = 10;
+
+  /** The log search. */
+  @Inject
+  private LogSearchBean logSearch;
+
+  /**
+   * Gets the log search.
+   *
+   * @return the log search
+   */
+  public LogSearchBean getLogSearch() {
+    return logSearch;
+  }
+
+  /**
+   * Sets the log search.
+   *
+   * @param logSearch the new log search
+   */
+  public void setLogSearch(LogSearchBean logSearch) {
+    this.logSearch = logSearch;
+  }
+
+  @RequestMapping(path = "/search.htm")
+  @Override
+  public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response)
+      throws Exception {
+    return super.handleRequest(request, response);
+  }
+
+  @Override
+  protected ModelAndView handleLogFile(HttpServletRequest request, HttpServletResponse response,
+      LogDestination logDest) throws Exception {
+
+    String text = ServletRequestUtils.getStringParameter(request, "q", "").trim();
+    boolean regex = ServletRequestUtils.getBooleanParameter(request, "regex", false);
+    boolean rotated = ServletRequestUtils.getBooleanParameter(request, "rotated", false);
+    int contextLines = Math.max(0, Math.min(MAX_CONTEXT_LINES,
+        ServletRequestUtils.getIntParameter(request, "contextLines", 2)));
+    String cursor = ServletRequestUtils.getStringParameter(request, "cursor");
+
+    ModelAndView mv = new ModelAndView(getViewName()).addObject("log", logDest)
+        .addObject("contextLines", contextLines);
+    if (!text.isEmpty()) {
+      LogQuery query;
+      try {
+        query = regex ? LogQuery.regex(text) : LogQuery.keywords(text);
+      } catch (PatternSyntaxException e) {
+        mv.addObject("errorMessage", getMessageSourceAccessor()
+            .getMessage("probe.src.logSearch.invalid", new Object[] {e.getDescription()}));
+        return mv;
+      }
+      mv.addObject("result", logSearch.search(logDest.getFile(), logDest.getEncoding(), query,
+          rotated, cursor, PAGE_SIZE, contextLines));
+    }
+    return mv;
+  }
+
+  @Value("search_log")
+  @Override
+  public void setViewName(String viewName) {
+    super.setViewName(viewName);
+  }
+
+}
@@ -0,0 +1,156 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.controllers.logs;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Inject;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.ServletRequestUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.ModelAndView;
+
+import psiprobe.beans.LogFollowerBean;
+import psiprobe.tools.logging.LogDestination;
+
+/**
+ * Long polling follow of a log file: returns the lines appended after the lastKnownLength request
+ * parameter, with the length the next request starts from in the X-Log-Length response header and
+ * the generation of the file it belongs to in the X-Log-Generation response header. When there is
+ * nothing new the request is parked, without holding a thread, until the log follower reads new
+ * lines or the wait times out, and is then dispatched again to answer; the answer then carries the
+ * X-Log-Waited response header. Files are read once for all viewers by the log follower.
+ */
+@Controller
+public class WatchLogController extends AbstractLogHandlerController {
+
+  /** The log follower. */
+  @Inject
+  private LogFollowerBean logFollower;
+
+  /**
+   * Gets the log follower.
+   *
+   * @return the log follower
+   */
+  public LogFollowerBean getLogFollower() {
+    return logFollower;
+  }
+
+  /**
+   * Sets the log follower.
+   *
+   * @param logFollower the new log follower
+   */
+  public void setLogFollower(LogFollowerBean logFollower) {
+    this.logFollower = logFollower;
+  }
+
+  @RequestMapping(path = "/watch.ajax")
+  @Override
+  public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response)
+      throws Exception {
+    return super.handleRequest(request, response);
+  }
+
+  @Override
+  protected ModelAndView handleLogFile(HttpServletRequest request, HttpServletResponse response,
+      LogDestination logDest) throws Exception {
+
+    long lastKnownLength = ServletRequestUtils.getLongParameter(request, "lastKnownLength", 0);
+    int generation = ServletRequestUtils.getIntParameter(request, "generation", -1);
+    LogFollowerBean.Tail tail = logFollower.getTail(logDest.getFile(), logDest.getEncoding(),
+        lastKnownLength, generation);
+
+    if (request.getDispatcherType() == DispatcherType.ASYNC) {
+      response.setHeader("X-Log-Waited", "true");
+    } else if (tail.getLines().isEmpty() && !tail.isTruncated() && request.isAsyncSupported()) {
+      AsyncContext async = request.startAsync(request, response);
+      if (!await(async, logDest.getFile(), lastKnownLength, generation)) {
+        // Lines were read since the tail was taken, the request answers right away
+        async.dispatch();
+      }
+      return null;
+    }
+
+    List<String> lines = new ArrayList<>();
+    if (tail.isTruncated()) {
+      lines.add(" ------------- THE FILE HAS BEEN TRUNCATED --------------");
+    }
+    lines.addAll(tail.getLines());
+    response.setHeader("X-Log-Length", String.valueOf(tail.getLength()));
+    response.setHeader("X-Log-Generation", String.valueOf(tail.getGeneration()));
+    return new ModelAndView(getViewName()).addObject("lines", lines);
+  }
+
+  /**
+   * Parks a request until the log follower reads lines after a position, or the wait times out,
+   * and then dispatches it again.
+   *
+   * @param async the async context of the request
+   * @param file the log file
+   * @param position the length of the file as the viewer last knew it
+   * @param generation the generation of the file the position belongs to
+   * @return true, if parked; false if there already is something to read
+   * @throws Exception the exception
+   */
+  private boolean await(AsyncContext async, File file, long position, int generation)
+      throws Exception {
+    AtomicBoolean dispatched = new AtomicBoolean();
+    Runnable wakeUp = () -> {
+      if (dispatched.compareAndSet(false, true)) {
+        async.dispatch();
+      }
+    };
+    async.setTimeout(logFollower.getWaitTimeout());
+    async.addListener(new AsyncListener() {
+      @Override
+      public void onTimeout(AsyncEvent event) {
+        logFollower.cancelAwait(file, wakeUp);
+        wakeUp.run();
+      }
+
+      @Override
+      public void onError(AsyncEvent event) {
+        logFollower.cancelAwait(file, wakeUp);
+      }
+
+      @Override
+      public void onComplete(AsyncEvent event) {
+        logFollower.cancelAwait(file, wakeUp);
+      }
+
+      @Override
+      public void onStartAsync(AsyncEvent event) {
+        // Not started again
+      }
+    });
+    return logFollower.awaitLines(file, position, generation, wakeUp);
+  }
+
+  @Value("ajax/follow")
+  @Override
+  public void setViewName(String viewName) {
+    super.setViewName(viewName);
+  }
+
+}
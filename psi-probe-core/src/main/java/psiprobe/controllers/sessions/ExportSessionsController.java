@@ -0,0 +1,264 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.controllers.sessions;
+
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Session;
+import org.apache.commons.text.StringEscapeUtils;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.ServletRequestUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.ModelAndView;
+
+import psiprobe.beans.SessionSizeEstimatorBean;
+import psiprobe.beans.SessionSizeIndexBean;
+import psiprobe.controllers.AbstractContextHandlerController;
+import psiprobe.model.ApplicationSession;
+import psiprobe.model.SessionSearchInfo;
+import psiprobe.tools.SecurityUtils;
+import psiprobe.tools.SizeBudget;
+
+/**
+ * Exports the sessions of a particular web application, or of all web applications if a webapp
+ * request parameter is not set, as JSON or XML. Sessions are read and written one at a time, so
+ * exporting many sessions takes no more memory than exporting one. The session search applied on
+ * the session list, if any, applies to the export too. Request parameters:
+ * <ul>
+ * <li>fmt - json, the default, or xml</li>
+ * <li>size - whether session sizes are exported</li>
+ * </ul>
+ */
+@Controller
+public class ExportSessionsController extends AbstractContextHandlerController {
+
+  /** The session size estimator. */
+  @Inject
+  private SessionSizeEstimatorBean sessionSizeEstimator;
+
+  /** The session size index. */
+  @Inject
+  private SessionSizeIndexBean sessionSizeIndex;
+
+  /**
+   * Gets the session size estimator.
+   *
+   * @return the session size estimator
+   */
+  public SessionSizeEstimatorBean getSessionSizeEstimator() {
+    return sessionSizeEstimator;
+  }
+
+  /**
+   * Sets the session size estimator.
+   *
+   * @param sessionSizeEstimator the new session size estimator
+   */
+  public void setSessionSizeEstimator(SessionSizeEstimatorBean sessionSizeEstimator) {
+    this.sessionSizeEstimator = sessionSizeEstimator;
+  }
+
+  /**
+   * Gets the session size index.
+   *
+   * @return the session size index
+   */
+  public SessionSizeIndexBean getSessionSizeIndex() {
+    return sessionSizeIndex;
+  }
+
+  /**
+   * Sets the session size index.
+   *
+   * @param sessionSizeIndex the new session size index
+   */
+  public void setSessionSizeIndex(SessionSizeIndexBean sessionSizeIndex) {
+    this.sessionSizeIndex = sessionSizeIndex;
+  }
+
+  @RequestMapping(path = "/exportsessions.htm")
+  @Override
+  public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response)
+      throws Exception {
+    return super.handleRequest(request, response);
+  }
+
+  @Override
+  protected ModelAndView handleContext(String contextName, Context context,
+      HttpServletRequest request, HttpServletResponse response) throws Exception {
+
+    boolean calcSize = ServletRequestUtils.getBooleanParameter(request, "size", false)
+        && SecurityUtils.hasAttributeValueRole(getServletContext(), request);
+    boolean xml = "xml".equals(ServletRequestUtils.getStringParameter(request, "fmt", "json"));
+
+    SessionSearchInfo searchInfo = null;
+    HttpSession sess = request.getSession(false);
+    if (sess != null) {
+      searchInfo = (SessionSearchInfo) sess.getAttribute(SessionSearchInfo.SESS_ATTR_NAME);
+    }
+
+    List<Context> ctxs;
+    if (context == null) {
+      ctxs = getContainerWrapper().getTomcatContainer().findContexts();
+    } else {
+      ctxs = new ArrayList<>();
+      ctxs.add(context);
+    }
+
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    response.setContentType(xml ? "application/xml" : "application/json");
+    response.setHeader("Content-Disposition",
+        "attachment; filename=\"sessions." + (xml ? "xml" : "json") + "\"");
+    PrintWriter out = response.getWriter();
+    XMLStreamWriter xmlOut = null;
+    if (xml) {
+      xmlOut = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+      xmlOut.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+      xmlOut.writeStartElement("sessions");
+    } else {
+      out.write('[');
+    }
+
+    SizeBudget sizeBudget = calcSize ? sessionSizeEstimator.newBudget() : null;
+    SessionMatcher matcher = SessionMatcher.of(searchInfo);
+    long now = System.currentTimeMillis();
+    boolean first = true;
+    for (Context ctx : ctxs) {
+      if (ctx == null || ctx.getManager() == null) {
+        continue;
+      }
+      String applicationName =
+          ctx.getName() == null || ctx.getName().isEmpty() ? "/" : ctx.getName();
+      for (Session session : ctx.getManager().findSessions()) {
+        if (!matcher.matches(session, now)) {
+          continue;
+        }
+        ApplicationSession appSession =
+            sessionSizeIndex.getApplicationSession(session, ctx, sizeBudget, false);
+        if (appSession == null || !matcher.matches(appSession)) {
+          continue;
+        }
+        Map<String, Object> fields = getFields(applicationName, appSession, calcSize);
+        if (xml) {
+          writeXml(xmlOut, fields);
+        } else {
+          if (!first) {
+            out.write(',');
+          }
+          writeJson(out, fields);
+        }
+        first = false;
+      }
+    }
+
+    if (xml) {
+      xmlOut.writeEndElement();
+      xmlOut.writeEndDocument();
+      xmlOut.flush();
+    } else {
+      out.write(']');
+    }
+    response.flushBuffer();
+    return null;
+  }
+
+  /**
+   * Gets the exported fields of a session.
+   *
+   * @param applicationName the application name
+   * @param appSession the app session
+   * @param calcSize whether the size is exported
+   * @return the fields by name
+   */
+  private static Map<String, Object> getFields(String applicationName,
+      ApplicationSession appSession, boolean calcSize) {
+    Map<String, Object> fields = new LinkedHashMap<>();
+    fields.put("applicationName", applicationName);
+    fields.put("id", appSession.getId());
+    fields.put("creationTime", appSession.getCreationTime().getTime());
+    fields.put("lastAccessTime", appSession.getLastAccessTime().getTime());
+    fields.put("maxIdleTime", appSession.getMaxIdleTime());
+    fields.put("idleTime", appSession.getIdleTime());
+    fields.put("age", appSession.getAge());
+    fields.put("objectCount", appSession.getObjectCount());
+    fields.put("serializable", appSession.isSerializable());
+    fields.put("lastAccessedIp", appSession.getLastAccessedIp());
+    if (calcSize) {
+      fields.put("size", appSession.getSize());
+      fields.put("sizePartial", appSession.isSizePartial());
+    }
+    return fields;
+  }
+
+  /**
+   * Writes a session as a JSON object.
+   *
+   * @param out the out
+   * @param fields the fields
+   */
+  static void writeJson(PrintWriter out, Map<String, Object> fields) {
+    out.write('{');
+    boolean first = true;
+    for (Map.Entry<String, Object> field : fields.entrySet()) {
+      if (!first) {
+        out.write(',');
+      }
+      first = false;
+      out.write('"');
+      out.write(field.getKey());
+      out.write("\":");
+      Object value = field.getValue();
+      if (value instanceof String) {
+        out.write('"');
+        out.write(StringEscapeUtils.escapeJson((String) value));
+        out.write('"');
+      } else {
+        out.write(String.valueOf(value));
+      }
+    }
+    out.write('}');
+  }
+
+  /**
+   * Writes a session as an XML element.
+   *
+   * @param out the out
+   * @param fields the fields
+   * @throws XMLStreamException if the session cannot be written
+   */
+  static void writeXml(XMLStreamWriter out, Map<String, Object> fields)
+      throws XMLStreamException {
+    out.writeStartElement("session");
+    for (Map.Entry<String, Object> field : fields.entrySet()) {
+      if (field.getValue() != null) {
+        out.writeStartElement(field.getKey());
+        out.writeCharacters(String.valueOf(field.getValue()));
+        out.writeEndElement();
+      }
+    }
+    out.writeEndElement();
+  }
+
+}
@@ -48,7 +48,7 @@ public class ListSessionAttributesController extends AbstractContextHandlerContr
     String sid = ServletRequestUtils.getStringParameter(request, "sid");
 
     ApplicationSession appSession = ApplicationUtils
-        .getApplicationSession(context.getManager().findSession(sid), calcSize, true);
+        .getApplicationSession(context.getManager().findSession(sid), context, calcSize, true);
 
     if (appSession != null) {
       appSession.setAllowedToViewValues(privileged);
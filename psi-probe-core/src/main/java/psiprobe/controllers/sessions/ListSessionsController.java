@@ -11,10 +11,11 @@
 package psiprobe.controllers.sessions;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.regex.Pattern;
 
+import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
@@ -29,20 +30,107 @@ import org.springframework.web.bind.ServletRequestUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.servlet.ModelAndView;
 
+import psiprobe.beans.SessionSearchPoolBean;
+import psiprobe.beans.SessionSizeEstimatorBean;
+import psiprobe.beans.SessionSizeIndexBean;
 import psiprobe.controllers.AbstractContextHandlerController;
 import psiprobe.model.ApplicationSession;
-import psiprobe.model.Attribute;
 import psiprobe.model.SessionSearchInfo;
-import psiprobe.tools.ApplicationUtils;
 import psiprobe.tools.SecurityUtils;
+import psiprobe.tools.SizeBudget;
 
 /**
  * Creates the list of sessions for a particular web application or all web applications if a webapp
- * request parameter is not set.
+ * request parameter is not set. The list is sorted and paged here, so that only the sessions of the
+ * requested page are read in full. Request parameters:
+ * <ul>
+ * <li>sort - the column to sort by, by application and session id if omitted</li>
+ * <li>dir - asc or desc</li>
+ * <li>after - the cursor of the last session of the previous page, the first page if omitted</li>
+ * <li>pageSize - the number of sessions per page</li>
+ * </ul>
  */
 @Controller
 public class ListSessionsController extends AbstractContextHandlerController {
 
+  /** The Constant DEFAULT_PAGE_SIZE. */
+  private static final int DEFAULT_PAGE_SIZE = 50;
+
+  /** The Constant MAX_PAGE_SIZE. */
+  private static final int MAX_PAGE_SIZE = 1000;
+
+  /** The Constant MAX_MATCHES, the number of matches a search keeps, the first in sort order. */
+  private static final int MAX_MATCHES = 10000;
+
+  /** The Constant SEARCH_CHUNK_SIZE, the number of sessions each search task reads. */
+  private static final int SEARCH_CHUNK_SIZE = 512;
+
+  /** The session size estimator. */
+  @Inject
+  private SessionSizeEstimatorBean sessionSizeEstimator;
+
+  /**
+   * Gets the session size estimator.
+   *
+   * @return the session size estimator
+   */
+  public SessionSizeEstimatorBean getSessionSizeEstimator() {
+    return sessionSizeEstimator;
+  }
+
+  /**
+   * Sets the session size estimator.
+   *
+   * @param sessionSizeEstimator the new session size estimator
+   */
+  public void setSessionSizeEstimator(SessionSizeEstimatorBean sessionSizeEstimator) {
+    this.sessionSizeEstimator = sessionSizeEstimator;
+  }
+
+  /** The session size index. */
+  @Inject
+  private SessionSizeIndexBean sessionSizeIndex;
+
+  /**
+   * Gets the session size index.
+   *
+   * @return the session size index
+   */
+  public SessionSizeIndexBean getSessionSizeIndex() {
+    return sessionSizeIndex;
+  }
+
+  /**
+   * Sets the session size index.
+   *
+   * @param sessionSizeIndex the new session size index
+   */
+  public void setSessionSizeIndex(SessionSizeIndexBean sessionSizeIndex) {
+    this.sessionSizeIndex = sessionSizeIndex;
+  }
+
+  /** The session search pool. */
+  @Inject
+  private SessionSearchPoolBean sessionSearchPool;
+
+  /**
+   * Gets the session search pool.
+   *
+   * @return the session search pool
+   */
+  public SessionSearchPoolBean getSessionSearchPool() {
+    return sessionSearchPool;
+  }
+
+  /**
+   * Sets the session search pool.
+   *
+   * @param sessionSearchPool the new session search pool
+   */
+  public void setSessionSearchPool(SessionSearchPoolBean sessionSearchPool) {
+    this.sessionSearchPool = sessionSearchPool;
+  }
+
   @RequestMapping(path = "/sessions.htm")
   @Override
   public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response)
@@ -103,25 +191,64 @@ public class ListSessionsController extends AbstractContextHandlerController {
       ctxs.add(context);
     }
 
-    List<ApplicationSession> sessionList = new ArrayList<>();
-    for (Context ctx : ctxs) {
-      if (ctx != null && ctx.getManager() != null
-          && (!searchInfo.isApply() || searchInfo.isUseSearch())) {
-        Session[] sessions = ctx.getManager().findSessions();
-        for (Session session : sessions) {
+    String sort = ServletRequestUtils.getStringParameter(request, "sort", null);
+    if (!SessionSortKey.COLUMNS.contains(sort) || "size".equals(sort) && !calcSize) {
+      sort = null;
+    }
+    boolean descending =
+        "desc".equals(ServletRequestUtils.getStringParameter(request, "dir", null));
+    int pageSize = Math.min(Math.max(
+        ServletRequestUtils.getIntParameter(request, "pageSize", DEFAULT_PAGE_SIZE), 1),
+        MAX_PAGE_SIZE);
+    SessionSortKey cursor =
+        SessionSortKey.fromCursor(ServletRequestUtils.getStringParameter(request, "after", null));
+
+    // Only the keys of matching sessions are kept, the page is read again once it is known
+    SizeBudget sizeBudget = calcSize ? sessionSizeEstimator.newBudget() : null;
+    SizeBudget keyBudget = "size".equals(sort) ? sizeBudget : null;
+    SessionMatcher matcher = SessionMatcher.of(searchInfo);
+    long now = System.currentTimeMillis();
+    String keySort = sort;
+    Comparator<SessionSortKey> order =
+        descending ? SessionSortKey.ORDER.reversed() : SessionSortKey.ORDER;
+    SessionSearchTask<SessionSortKey> search = SessionSearchTask.of(
+        searchInfo.isApply() && !searchInfo.isUseSearch() ? Collections.emptyList() : ctxs,
+        // The size budget is not thread safe, sizing sessions to sort them stays in this thread
+        keyBudget == null ? SEARCH_CHUNK_SIZE : Integer.MAX_VALUE,
+        searchInfo.isUseSearch() ? MAX_MATCHES : Integer.MAX_VALUE, order, (ctx, session) -> {
+          if (!matcher.matches(session, now)) {
+            return null;
+          }
           ApplicationSession appSession =
-              ApplicationUtils.getApplicationSession(session, calcSize, searchInfo.isUseAttr());
-          if (appSession != null && matchSession(appSession, searchInfo)) {
-            if (ctx.getName() != null) {
-              appSession.setApplicationName(ctx.getName().length() > 0 ? ctx.getName() : "/");
-            }
-            sessionList.add(appSession);
+              sessionSizeIndex.getApplicationSession(session, ctx, keyBudget, false);
+          if (appSession == null || !matcher.matches(appSession)) {
+            return null;
           }
-        }
+          appSession.setApplicationName(getApplicationName(ctx));
+          return SessionSortKey.of(keySort, appSession, ctx, session);
+        });
+    // The keys come back sorted
+    List<SessionSortKey> keys =
+        keyBudget == null ? sessionSearchPool.invoke(search) : search.invoke();
+
+    int start = 0;
+    if (cursor != null) {
+      int index = Collections.binarySearch(keys, cursor, order);
+      start = index >= 0 ? index + 1 : -index - 1;
+    }
+    int end = Math.min(start + pageSize, keys.size());
+    List<ApplicationSession> sessionList = new ArrayList<>(Math.max(end - start, 0));
+    for (SessionSortKey key : keys.subList(Math.min(start, end), end)) {
+      ApplicationSession appSession = sessionSizeIndex.getApplicationSession(key.getSession(),
+          key.getContext(), sizeBudget, false);
+      // The session may have expired since it was listed
+      if (appSession != null) {
+        appSession.setApplicationName(getApplicationName(key.getContext()));
+        sessionList.add(appSession);
       }
     }
 
-    if (sessionList.isEmpty() && searchInfo.isApply()) {
+    if (keys.isEmpty() && searchInfo.isApply()) {
       synchronized (sess) {
         populateSearchMessages(searchInfo);
       }
@@ -129,10 +256,31 @@ public class ListSessionsController extends AbstractContextHandlerController {
 
     ModelAndView modelAndView = new ModelAndView(getViewName(), "sessions", sessionList);
     modelAndView.addObject("searchInfo", searchInfo);
+    modelAndView.addObject("sizePartial", sizeBudget != null && sizeBudget.isPartial());
+    modelAndView.addObject("sessionCount", keys.size());
+    modelAndView.addObject("searchLimited", search.isLimitReached());
+    modelAndView.addObject("matchCount", search.getMatchCount());
+    modelAndView.addObject("pageStart", start + 1);
+    modelAndView.addObject("pageSize", pageSize);
+    modelAndView.addObject("sort", sort);
+    modelAndView.addObject("dir", descending ? "desc" : "asc");
+    if (end < keys.size()) {
+      modelAndView.addObject("nextCursor", keys.get(end - 1).toCursor());
+    }
 
     return modelAndView;
   }
 
+  /**
+   * Gets the name sessions of a web application are listed under.
+   *
+   * @param context the context
+   * @return the application name
+   */
+  private static String getApplicationName(Context context) {
+    return context.getName() == null || context.getName().isEmpty() ? "/" : context.getName();
+  }
+
   /**
    * Populate search messages.
    *
@@ -177,66 +325,6 @@ public class ListSessionsController extends AbstractContextHandlerController {
     }
   }
 
-  /**
-   * Match session.
-   *
-   * @param appSession the app session
-   * @param searchInfo the search info
-   * @return true, if successful
-   */
-  private boolean matchSession(ApplicationSession appSession, SessionSearchInfo searchInfo) {
-    boolean sessionMatches = true;
-    if (searchInfo.isUseSearch()) {
-      if (searchInfo.isUseSessionId() && appSession.getId() != null) {
-        sessionMatches = searchInfo.getSessionIdPattern().matcher(appSession.getId()).matches();
-      }
-      if (sessionMatches && searchInfo.isUseAgeFrom()) {
-        sessionMatches = appSession.getAge() >= searchInfo.getAgeFromSec().longValue() * 1000;
-      }
-      if (sessionMatches && searchInfo.isUseAgeTo()) {
-        sessionMatches = appSession.getAge() <= searchInfo.getAgeToSec().longValue() * 1000;
-      }
-      if (sessionMatches && searchInfo.isUseIdleTimeFrom()) {
-        sessionMatches =
-            appSession.getIdleTime() >= searchInfo.getIdleTimeFromSec().longValue() * 1000;
-      }
-      if (sessionMatches && searchInfo.isUseIdleTimeTo()) {
-        sessionMatches =
-            appSession.getIdleTime() <= searchInfo.getIdleTimeToSec().longValue() * 1000;
-      }
-      if (searchInfo.isUseLastIp() && appSession.getLastAccessedIp() != null) {
-        sessionMatches = appSession.getLastAccessedIp().contains(searchInfo.getLastIp());
-      }
-
-      if (sessionMatches && searchInfo.isUseAttrName()) {
-        boolean attrMatches = false;
-        List<Pattern> namePatterns = new ArrayList<>();
-        namePatterns.addAll(searchInfo.getAttrNamePatterns());
-
-        for (Attribute attr : appSession.getAttributes()) {
-          String attrName = attr.getName();
-
-          if (attrName != null) {
-            for (Iterator<Pattern> it = namePatterns.iterator(); it.hasNext();) {
-              if (it.next().matcher(attrName).matches()) {
-                it.remove();
-              }
-            }
-
-            if (namePatterns.isEmpty()) {
-              attrMatches = true;
-              break;
-            }
-          }
-        }
-
-        sessionMatches = attrMatches;
-      }
-    }
-
-    return sessionMatches;
-  }
-
   @Override
   protected boolean isContextOptional() {
     return true;
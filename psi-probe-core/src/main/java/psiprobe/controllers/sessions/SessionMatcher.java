@@ -0,0 +1,149 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.controllers.sessions;
+
+import java.util.Enumeration;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpSession;
+
+import org.apache.catalina.Session;
+
+import psiprobe.model.ApplicationSession;
+import psiprobe.model.SessionSearchInfo;
+
+/**
+ * The criteria of a session search, compiled once per search rather than once per session.
+ * Criteria are checked cheapest first: the times and the id on the Tomcat session, then
+ * the attribute names, and only then the client address, which needs the session to be read.
+ * Immutable and thread safe.
+ */
+final class SessionMatcher {
+
+  /** The Constant NONE, the matcher of an unused search. */
+  static final SessionMatcher NONE = new SessionMatcher(null);
+
+  /** The session id pattern, or null. */
+  private final Pattern idPattern;
+
+  /** The minimum age in milliseconds. */
+  private final long ageFrom;
+
+  /** The maximum age in milliseconds. */
+  private final long ageTo;
+
+  /** The minimum idle time in milliseconds. */
+  private final long idleTimeFrom;
+
+  /** The maximum idle time in milliseconds. */
+  private final long idleTimeTo;
+
+  /** The attribute name patterns, each of which some attribute name must match. */
+  private final Pattern[] attrNamePatterns;
+
+  /** The part of the client address, or null. */
+  private final String lastIp;
+
+  /**
+   * Compiles a session search.
+   *
+   * @param searchInfo the search, or null to match every session
+   */
+  private SessionMatcher(SessionSearchInfo searchInfo) {
+    boolean use = searchInfo != null && searchInfo.isUseSearch();
+    idPattern = use && searchInfo.isUseSessionId() ? searchInfo.getSessionIdPattern() : null;
+    ageFrom =
+        use && searchInfo.isUseAgeFrom() ? searchInfo.getAgeFromSec() * 1000L : Long.MIN_VALUE;
+    ageTo = use && searchInfo.isUseAgeTo() ? searchInfo.getAgeToSec() * 1000L : Long.MAX_VALUE;
+    idleTimeFrom = use && searchInfo.isUseIdleTimeFrom() ? searchInfo.getIdleTimeFromSec() * 1000L
+        : Long.MIN_VALUE;
+    idleTimeTo = use && searchInfo.isUseIdleTimeTo() ? searchInfo.getIdleTimeToSec() * 1000L
+        : Long.MAX_VALUE;
+    attrNamePatterns = use && searchInfo.isUseAttrName()
+        ? searchInfo.getAttrNamePatterns().toArray(new Pattern[0])
+        : new Pattern[0];
+    lastIp = use && searchInfo.isUseLastIp() ? searchInfo.getLastIp() : null;
+  }
+
+  /**
+   * Compiles a session search.
+   *
+   * @param searchInfo the search, or null
+   * @return the session matcher
+   */
+  static SessionMatcher of(SessionSearchInfo searchInfo) {
+    return searchInfo == null || !searchInfo.isUseSearch() ? NONE
+        : new SessionMatcher(searchInfo);
+  }
+
+  /**
+   * Checks if a session matches the criteria that do not need it to be read.
+   *
+   * @param session the session
+   * @param now the current time
+   * @return true, if the session may match
+   */
+  boolean matches(Session session, long now) {
+    if (this == NONE) {
+      return true;
+    }
+    long age = now - session.getCreationTimeInternal();
+    long idleTime = now - session.getLastAccessedTimeInternal();
+    if (age < ageFrom || age > ageTo || idleTime < idleTimeFrom || idleTime > idleTimeTo) {
+      return false;
+    }
+    if (idPattern != null && !idPattern.matcher(session.getIdInternal()).matches()) {
+      return false;
+    }
+    return attrNamePatterns.length == 0 || matchesAttributeNames(session.getSession());
+  }
+
+  /**
+   * Checks if a session, as read, matches the remaining criteria.
+   *
+   * @param appSession the app session
+   * @return true, if the session matches
+   */
+  boolean matches(ApplicationSession appSession) {
+    // Sessions with an unknown client address are not filtered out by it
+    return lastIp == null || appSession.getLastAccessedIp() == null
+        || appSession.getLastAccessedIp().contains(lastIp);
+  }
+
+  /**
+   * Checks if every attribute name pattern matches some attribute name of a session.
+   *
+   * @param httpSession the http session
+   * @return true, if successful
+   */
+  private boolean matchesAttributeNames(HttpSession httpSession) {
+    boolean[] matched = new boolean[attrNamePatterns.length];
+    int remaining = matched.length;
+    try {
+      for (Enumeration<String> names = httpSession.getAttributeNames(); names.hasMoreElements();) {
+        String name = names.nextElement();
+        for (int i = 0; i < attrNamePatterns.length; i++) {
+          if (!matched[i] && attrNamePatterns[i].matcher(name).matches()) {
+            matched[i] = true;
+            remaining--;
+          }
+        }
+        if (remaining == 0) {
+          return true;
+        }
+      }
+    } catch (IllegalStateException e) {
+      // The session was invalidated
+    }
+    return false;
+  }
+
+}
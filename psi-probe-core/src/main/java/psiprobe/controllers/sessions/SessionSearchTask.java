@@ -0,0 +1,196 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.controllers.sessions;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Session;
+
+/**
+ * Reads the sessions of several web applications in chunks, forking the chunks onto a fork-join
+ * pool, and keeps what the reader returns for the sessions it matches. Only the first matches in
+ * the given order are kept up to the limit: every chunk sorts and trims what it found, and merging
+ * chunks trims again, so that memory stays bounded by the limit while the matches kept are the
+ * ones a sorted listing would show first.
+ *
+ * @param <T> the type of what is kept of a matching session
+ */
+final class SessionSearchTask<T> extends RecursiveTask<List<T>> {
+
+  /** The Constant serialVersionUID. */
+  private static final long serialVersionUID = 1L;
+
+  /** The contexts, by session index. */
+  private final transient Context[] contexts;
+
+  /** The sessions. */
+  private final transient Session[] sessions;
+
+  /** The index of the first session of this task. */
+  private final int from;
+
+  /** The index after the last session of this task. */
+  private final int to;
+
+  /** The number of sessions read without forking. */
+  private final int chunkSize;
+
+  /** The maximum number of matches kept. */
+  private final int limit;
+
+  /** The order of the matches kept. */
+  private final transient Comparator<? super T> order;
+
+  /** The reader, returning null for sessions that do not match. */
+  private final transient BiFunction<Context, Session, T> reader;
+
+  /** The number of matches found, shared by all tasks of a search. */
+  private final AtomicInteger matches;
+
+  /**
+   * Instantiates a new session search task.
+   *
+   * @param contexts the contexts, by session index
+   * @param sessions the sessions
+   * @param from the index of the first session
+   * @param to the index after the last session
+   * @param chunkSize the number of sessions read without forking
+   * @param limit the maximum number of matches kept
+   * @param order the order of the matches kept
+   * @param reader the reader
+   * @param matches the number of matches found
+   */
+  private SessionSearchTask(Context[] contexts, Session[] sessions, int from, int to,
+      int chunkSize, int limit, Comparator<? super T> order,
+      BiFunction<Context, Session, T> reader, AtomicInteger matches) {
+    this.contexts = contexts;
+    this.sessions = sessions;
+    this.from = from;
+    this.to = to;
+    this.chunkSize = chunkSize;
+    this.limit = limit;
+    this.order = order;
+    this.reader = reader;
+    this.matches = matches;
+  }
+
+  /**
+   * Creates the search of the sessions of web applications.
+   *
+   * @param <T> the type of what is kept of a matching session
+   * @param ctxs the contexts
+   * @param chunkSize the number of sessions read without forking
+   * @param limit the maximum number of matches kept
+   * @param order the order of the matches, the first ones are kept
+   * @param reader the reader, returning null for sessions that do not match
+   * @return the session search task
+   */
+  static <T> SessionSearchTask<T> of(List<Context> ctxs, int chunkSize, int limit,
+      Comparator<? super T> order, BiFunction<Context, Session, T> reader) {
+    List<Context> contexts = new ArrayList<>();
+    List<Session> sessions = new ArrayList<>();
+    for (Context ctx : ctxs) {
+      if (ctx != null && ctx.getManager() != null) {
+        for (Session session : ctx.getManager().findSessions()) {
+          contexts.add(ctx);
+          sessions.add(session);
+        }
+      }
+    }
+    return new SessionSearchTask<>(contexts.toArray(new Context[0]),
+        sessions.toArray(new Session[0]), 0, sessions.size(), Math.max(chunkSize, 1),
+        Math.max(limit, 0), order, reader, new AtomicInteger());
+  }
+
+  /**
+   * Gets the number of matching sessions, including those beyond the limit.
+   *
+   * @return the match count
+   */
+  int getMatchCount() {
+    return matches.get();
+  }
+
+  /**
+   * Checks if matches beyond the limit were dropped.
+   *
+   * @return true, if the limit was reached
+   */
+  boolean isLimitReached() {
+    return matches.get() > limit;
+  }
+
+  @Override
+  protected List<T> compute() {
+    if (to - from > chunkSize) {
+      int middle = (from + to) >>> 1;
+      SessionSearchTask<T> left = new SessionSearchTask<>(contexts, sessions, from, middle,
+          chunkSize, limit, order, reader, matches);
+      left.fork();
+      List<T> found = new SessionSearchTask<>(contexts, sessions, middle, to, chunkSize, limit,
+          order, reader, matches).compute();
+      return merge(left.join(), found);
+    }
+    List<T> found = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      T match = reader.apply(contexts[i], sessions[i]);
+      if (match != null) {
+        matches.incrementAndGet();
+        found.add(match);
+        if (found.size() - limit > limit) {
+          trim(found);
+        }
+      }
+    }
+    trim(found);
+    return found;
+  }
+
+  /**
+   * Sorts matches and drops those beyond the limit.
+   *
+   * @param found the matches
+   */
+  private void trim(List<T> found) {
+    found.sort(order);
+    if (found.size() > limit) {
+      found.subList(limit, found.size()).clear();
+    }
+  }
+
+  /**
+   * Merges the sorted matches of two tasks, keeping the first ones up to the limit.
+   *
+   * @param left the matches of the left task
+   * @param right the matches of the right task
+   * @return the merged matches
+   */
+  private List<T> merge(List<T> left, List<T> right) {
+    List<T> merged = new ArrayList<>(Math.min(left.size() + right.size(), limit));
+    int i = 0;
+    int j = 0;
+    while (merged.size() < limit && (i < left.size() || j < right.size())) {
+      if (j == right.size() || i < left.size() && order.compare(left.get(i), right.get(j)) <= 0) {
+        merged.add(left.get(i++));
+      } else {
+        merged.add(right.get(j++));
+      }
+    }
+    return merged;
+  }
+
+}
@@ -0,0 +1,183 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.controllers.sessions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Session;
+
+import psiprobe.model.ApplicationSession;
+
+/**
+ * The position of a session in a sorted list of sessions, holding only what sorting and paging
+ * need so that the list can be sorted without keeping every session read. Keys are ordered by the
+ * sorted column, then by application name and session id, so that a key also serves as the cursor
+ * of the page after it.
+ *
+ * <p>
+ * Columns derived from the current time, such as the idle time, are keyed on the timestamps they
+ * are derived from so that the order, and thus cursors, do not drift between requests.
+ * </p>
+ */
+final class SessionSortKey {
+
+  /** The Constant COLUMNS, the sortable columns. */
+  static final List<String> COLUMNS = Collections.unmodifiableList(Arrays.asList("applicationName",
+      "lastAccessedIp", "idleTime", "age", "expiryTime", "objectCount", "size", "serializable"));
+
+  /** The Constant ORDER. */
+  static final Comparator<SessionSortKey> ORDER =
+      Comparator.comparingLong((SessionSortKey key) -> key.number)
+          .thenComparing(key -> key.text).thenComparing(key -> key.applicationName)
+          .thenComparing(key -> key.id);
+
+  /** The numeric value of the sorted column. */
+  private final long number;
+
+  /** The text value of the sorted column. */
+  private final String text;
+
+  /** The application name. */
+  private final String applicationName;
+
+  /** The session id. */
+  private final String id;
+
+  /** The context, null for cursors. */
+  private final Context context;
+
+  /** The session, null for cursors. */
+  private final Session session;
+
+  /**
+   * Instantiates a new session sort key.
+   *
+   * @param number the number
+   * @param text the text
+   * @param applicationName the application name
+   * @param id the id
+   * @param context the context
+   * @param session the session
+   */
+  private SessionSortKey(long number, String text, String applicationName, String id,
+      Context context, Session session) {
+    this.number = number;
+    this.text = text;
+    this.applicationName = applicationName;
+    this.id = id;
+    this.context = context;
+    this.session = session;
+  }
+
+  /**
+   * Creates the key of a session.
+   *
+   * @param sort the sorted column, or null for the default order
+   * @param appSession the session as read
+   * @param context the context of the session
+   * @param session the session
+   * @return the session sort key
+   */
+  static SessionSortKey of(String sort, ApplicationSession appSession, Context context,
+      Session session) {
+    String applicationName =
+        appSession.getApplicationName() == null ? "" : appSession.getApplicationName();
+    long number = 0;
+    String text = "";
+    if ("applicationName".equals(sort)) {
+      text = applicationName;
+    } else if ("lastAccessedIp".equals(sort)) {
+      text = appSession.getLastAccessedIp() == null ? "" : appSession.getLastAccessedIp();
+    } else if ("idleTime".equals(sort)) {
+      number = -lastAccessTime(appSession);
+    } else if ("age".equals(sort)) {
+      number = appSession.getCreationTime() == null ? 0 : -appSession.getCreationTime().getTime();
+    } else if ("expiryTime".equals(sort)) {
+      number = appSession.getMaxIdleTime() <= 0 ? Long.MAX_VALUE
+          : lastAccessTime(appSession) + appSession.getMaxIdleTime();
+    } else if ("objectCount".equals(sort)) {
+      number = appSession.getObjectCount();
+    } else if ("size".equals(sort)) {
+      number = appSession.getSize();
+    } else if ("serializable".equals(sort)) {
+      number = appSession.isSerializable() ? 1 : 0;
+    }
+    return new SessionSortKey(number, text, applicationName, appSession.getId(), context,
+        session);
+  }
+
+  /**
+   * Parses a cursor.
+   *
+   * @param cursor the cursor, as from {@link #toCursor()}
+   * @return the session sort key, or null if the cursor is malformed
+   */
+  static SessionSortKey fromCursor(String cursor) {
+    if (cursor == null) {
+      return null;
+    }
+    String[] parts = cursor.split(";", 4);
+    if (parts.length < 4) {
+      return null;
+    }
+    try {
+      return new SessionSortKey(Long.parseLong(parts[2]), parts[3], parts[1], parts[0], null,
+          null);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Gets the cursor of the page after this key.
+   *
+   * @return the cursor
+   */
+  String toCursor() {
+    return id + ";" + applicationName + ";" + number + ";" + text;
+  }
+
+  /**
+   * Gets the context.
+   *
+   * @return the context
+   */
+  Context getContext() {
+    return context;
+  }
+
+  /**
+   * Gets the session.
+   *
+   * @return the session
+   */
+  Session getSession() {
+    return session;
+  }
+
+  /**
+   * Gets the last access time of a session.
+   *
+   * @param appSession the app session
+   * @return the last access time
+   */
+  private static long lastAccessTime(ApplicationSession appSession) {
+    if (appSession.getLastAccessTime() != null) {
+      return appSession.getLastAccessTime().getTime();
+    }
+    return appSession.getCreationTime() == null ? 0 : appSession.getCreationTime().getTime();
+  }
+
+}
@@ -10,13 +10,11 @@
  */
 package psiprobe.controllers.threads;
 
-import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.management.MBeanServer;
-import javax.management.ObjectName;
-import javax.management.openmbean.CompositeData;
+import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -26,9 +24,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.ParameterizableViewController;
 
+import psiprobe.beans.ThreadInfoAccessorBean;
 import psiprobe.model.SunThread;
 import psiprobe.model.ThreadStackElement;
-import psiprobe.tools.JmxTools;
 
 /**
  * The Class ListSunThreadsController.
@@ -36,6 +34,28 @@ import psiprobe.tools.JmxTools;
 @Controller
 public class ListSunThreadsController extends ParameterizableViewController {
 
+  /** The thread info accessor. */
+  @Inject
+  private ThreadInfoAccessorBean threadInfoAccessor;
+
+  /**
+   * Gets the thread info accessor.
+   *
+   * @return the thread info accessor
+   */
+  public ThreadInfoAccessorBean getThreadInfoAccessor() {
+    return threadInfoAccessor;
+  }
+
+  /**
+   * Sets the thread info accessor.
+   *
+   * @param threadInfoAccessor the new thread info accessor
+   */
+  public void setThreadInfoAccessor(ThreadInfoAccessorBean threadInfoAccessor) {
+    this.threadInfoAccessor = threadInfoAccessor;
+  }
+
   @RequestMapping(path = "/th_impl2.htm")
   @Override
   public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response)
@@ -47,71 +67,31 @@ public class ListSunThreadsController extends ParameterizableViewController {
   protected ModelAndView handleRequestInternal(HttpServletRequest request,
       HttpServletResponse response) throws Exception {
 
-    List<SunThread> threads = null;
-    int executionStackDepth = 1;
-
-    MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
-    ObjectName threadingOName = new ObjectName("java.lang:type=Threading");
-
-    long[] deadlockedIds =
-        (long[]) mbeanServer.invoke(threadingOName, "findMonitorDeadlockedThreads", null, null);
-    long[] allIds = (long[]) mbeanServer.getAttribute(threadingOName, "AllThreadIds");
-
-    if (allIds != null) {
-      threads = new ArrayList<>(allIds.length);
-
-      for (long id : allIds) {
-        CompositeData cd = (CompositeData) mbeanServer.invoke(threadingOName, "getThreadInfo",
-            new Object[] {id, executionStackDepth}, new String[] {"long", "int"});
-
-        if (cd != null) {
-          SunThread st = new SunThread();
-          st.setId(JmxTools.getLongAttr(cd, "threadId"));
-          st.setName(JmxTools.getStringAttr(cd, "threadName"));
-          st.setState(JmxTools.getStringAttr(cd, "threadState"));
-          st.setSuspended(JmxTools.getBooleanAttr(cd, "suspended"));
-          st.setInNative(JmxTools.getBooleanAttr(cd, "inNative"));
-          st.setLockName(JmxTools.getStringAttr(cd, "lockName"));
-          st.setLockOwnerName(JmxTools.getStringAttr(cd, "lockOwnerName"));
-          st.setWaitedCount(JmxTools.getLongAttr(cd, "waitedCount"));
-          st.setBlockedCount(JmxTools.getLongAttr(cd, "blockedCount"));
-          st.setDeadlocked(contains(deadlockedIds, st.getId()));
-
-          CompositeData[] stack = (CompositeData[]) cd.get("stackTrace");
-          if (stack.length > 0) {
-            CompositeData cd2 = stack[0];
-            ThreadStackElement tse = new ThreadStackElement();
-            tse.setClassName(JmxTools.getStringAttr(cd2, "className"));
-            tse.setFileName(JmxTools.getStringAttr(cd2, "fileName"));
-            tse.setMethodName(JmxTools.getStringAttr(cd2, "methodName"));
-            tse.setLineNumber(JmxTools.getIntAttr(cd2, "lineNumber", -1));
-            tse.setNativeMethod(JmxTools.getBooleanAttr(cd2, "nativeMethod"));
-            st.setExecutionPoint(tse);
-          }
-
-          threads.add(st);
-        }
+    ThreadInfoAccessorBean.Snapshot snapshot = threadInfoAccessor.getSnapshot();
+    List<ThreadInfo> infos = snapshot.getThreads();
+    List<SunThread> threads = new ArrayList<>(infos.size());
+
+    for (ThreadInfo info : infos) {
+      SunThread st = new SunThread();
+      st.setId(info.getThreadId());
+      st.setName(info.getThreadName());
+      st.setState(info.getThreadState().name());
+      st.setSuspended(info.isSuspended());
+      st.setInNative(info.isInNative());
+      st.setLockName(info.getLockName());
+      st.setLockOwnerName(info.getLockOwnerName());
+      st.setWaitedCount(info.getWaitedCount());
+      st.setBlockedCount(info.getBlockedCount());
+      st.setDeadlocked(snapshot.isDeadlocked(st.getId()));
+
+      StackTraceElement[] stack = info.getStackTrace();
+      if (stack.length > 0) {
+        st.setExecutionPoint(ThreadInfoAccessorBean.toStackElement(stack[0]));
       }
-    }
-    return new ModelAndView(getViewName(), "threads", threads);
-  }
 
-  /**
-   * Contains.
-   *
-   * @param haystack the haystack
-   * @param needle the needle
-   * @return true, if successful
-   */
-  private static boolean contains(long[] haystack, long needle) {
-    if (haystack != null) {
-      for (long hay : haystack) {
-        if (hay == needle) {
-          return true;
-        }
-      }
+      threads.add(st);
     }
-    return false;
+    return new ModelAndView(getViewName(), "threads", threads);
   }
 
   @Value("threads_sun")
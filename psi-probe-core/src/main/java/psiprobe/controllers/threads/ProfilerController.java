@@ -0,0 +1,116 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.controllers.threads;
+
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.ServletRequestUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.AbstractController;
+
+import psiprobe.beans.SamplingProfilerBean;
+import psiprobe.tools.FlameGraph;
+
+/**
+ * Serves the profile of the sampling profiler as a flame graph or in collapsed form, one stack per
+ * line followed by its sample count, as read by flame graph tools. Request parameters:
+ * <ul>
+ * <li>webapp - the web application threads were working for, all if omitted</li>
+ * <li>threads - a pattern thread names must match, with their trailing number replaced by #</li>
+ * <li>fmt - svg for a flame graph, the default, or txt for collapsed stacks</li>
+ * </ul>
+ */
+@Controller
+public class ProfilerController extends AbstractController {
+
+  /** The sampling profiler. */
+  @Inject
+  private SamplingProfilerBean samplingProfiler;
+
+  /**
+   * Gets the sampling profiler.
+   *
+   * @return the sampling profiler
+   */
+  public SamplingProfilerBean getSamplingProfiler() {
+    return samplingProfiler;
+  }
+
+  /**
+   * Sets the sampling profiler.
+   *
+   * @param samplingProfiler the new sampling profiler
+   */
+  public void setSamplingProfiler(SamplingProfilerBean samplingProfiler) {
+    this.samplingProfiler = samplingProfiler;
+  }
+
+  @RequestMapping(path = "/profiler.htm")
+  @Override
+  public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response)
+      throws Exception {
+    return super.handleRequest(request, response);
+  }
+
+  @Override
+  protected ModelAndView handleRequestInternal(HttpServletRequest request,
+      HttpServletResponse response) throws Exception {
+
+    String webapp = ServletRequestUtils.getStringParameter(request, "webapp", null);
+    String threads = ServletRequestUtils.getStringParameter(request, "threads", null);
+    String format = ServletRequestUtils.getStringParameter(request, "fmt", "svg");
+
+    Pattern threadPattern = null;
+    if (threads != null && !threads.isEmpty()) {
+      try {
+        threadPattern = Pattern.compile(threads);
+      } catch (PatternSyntaxException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getDescription());
+        return null;
+      }
+    }
+    if (webapp != null && webapp.isEmpty()) {
+      webapp = null;
+    }
+
+    Map<String, Long> collapsed = samplingProfiler.getCollapsedStacks(webapp, threadPattern);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    if ("txt".equals(format)) {
+      response.setContentType("text/plain");
+      PrintWriter out = response.getWriter();
+      for (Entry<String, Long> stack : collapsed.entrySet()) {
+        out.print(stack.getKey());
+        out.print(' ');
+        out.println(stack.getValue());
+      }
+    } else {
+      response.setContentType("image/svg+xml");
+      String title = (webapp == null ? "All applications" : webapp)
+          + (threadPattern == null ? "" : ", threads " + threads) + ", "
+          + collapsed.values().stream().mapToLong(Long::longValue).sum() + " samples";
+      FlameGraph.write(title, collapsed, response.getWriter());
+    }
+    response.flushBuffer();
+    return null;
+  }
+
+}
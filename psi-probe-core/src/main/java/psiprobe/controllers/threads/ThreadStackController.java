@@ -10,13 +10,11 @@
  */
 package psiprobe.controllers.threads;
 
-import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.management.MBeanServer;
-import javax.management.ObjectName;
-import javax.management.openmbean.CompositeData;
+import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -27,8 +25,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.ParameterizableViewController;
 
+import psiprobe.beans.ThreadInfoAccessorBean;
 import psiprobe.model.ThreadStackElement;
-import psiprobe.tools.JmxTools;
 
 /**
  * The Class ThreadStackController.
@@ -39,6 +37,10 @@ public class ThreadStackController extends ParameterizableViewController {
   /** The stack element count. */
   private int stackElementCount = 20;
 
+  /** The thread info accessor. */
+  @Inject
+  private ThreadInfoAccessorBean threadInfoAccessor;
+
   /**
    * Gets the stack element count.
    *
@@ -58,6 +60,24 @@ public class ThreadStackController extends ParameterizableViewController {
     this.stackElementCount = stackElementCount;
   }
 
+  /**
+   * Gets the thread info accessor.
+   *
+   * @return the thread info accessor
+   */
+  public ThreadInfoAccessorBean getThreadInfoAccessor() {
+    return threadInfoAccessor;
+  }
+
+  /**
+   * Sets the thread info accessor.
+   *
+   * @param threadInfoAccessor the new thread info accessor
+   */
+  public void setThreadInfoAccessor(ThreadInfoAccessorBean threadInfoAccessor) {
+    this.threadInfoAccessor = threadInfoAccessor;
+  }
+
   @RequestMapping(path = "/app/threadstack.ajax")
   @Override
   public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response)
@@ -73,41 +93,20 @@ public class ThreadStackController extends ParameterizableViewController {
     String threadName = ServletRequestUtils.getStringParameter(request, "name", null);
 
     List<ThreadStackElement> stack = null;
-    MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
-    ObjectName threadingOName = new ObjectName("java.lang:type=Threading");
-
     if (threadId == -1 && threadName != null) {
-      // find thread by name
-      for (long id : (long[]) mbeanServer.getAttribute(threadingOName, "AllThreadIds")) {
-        CompositeData cd = (CompositeData) mbeanServer.invoke(threadingOName, "getThreadInfo",
-            new Object[] {id}, new String[] {"long"});
-        String name = JmxTools.getStringAttr(cd, "threadName");
-        if (threadName.equals(name)) {
-          threadId = id;
-          break;
-        }
-      }
+      ThreadInfo named = threadInfoAccessor.getSnapshot().findThread(threadName);
+      threadId = named == null ? -1 : named.getThreadId();
     }
+    ThreadInfo info =
+        threadId > 0 ? threadInfoAccessor.getStack(threadId, stackElementCount) : null;
+
+    if (info != null) {
+      StackTraceElement[] elements = info.getStackTrace();
+      threadName = info.getThreadName();
 
-    if (mbeanServer.queryMBeans(threadingOName, null) != null && threadId != -1) {
-
-      CompositeData cd = (CompositeData) mbeanServer.invoke(threadingOName, "getThreadInfo",
-          new Object[] {threadId, stackElementCount}, new String[] {"long", "int"});
-      if (cd != null) {
-        CompositeData[] elements = (CompositeData[]) cd.get("stackTrace");
-        threadName = JmxTools.getStringAttr(cd, "threadName");
-
-        stack = new ArrayList<>(elements.length);
-
-        for (CompositeData cd2 : elements) {
-          ThreadStackElement tse = new ThreadStackElement();
-          tse.setClassName(JmxTools.getStringAttr(cd2, "className"));
-          tse.setFileName(JmxTools.getStringAttr(cd2, "fileName"));
-          tse.setMethodName(JmxTools.getStringAttr(cd2, "methodName"));
-          tse.setLineNumber(JmxTools.getIntAttr(cd2, "lineNumber", -1));
-          tse.setNativeMethod(JmxTools.getBooleanAttr(cd2, "nativeMethod"));
-          stack.add(tse);
-        }
+      stack = new ArrayList<>(elements.length);
+      for (StackTraceElement element : elements) {
+        stack.add(ThreadInfoAccessorBean.toStackElement(element));
       }
     }
 
@@ -62,6 +62,18 @@ public class Application implements Serializable {
   /** The size. */
   private long size;
 
+  /** The number of sessions sized, fewer than all when the size is estimated from a sample. */
+  private int sizeSampleCount;
+
+  /** The number of sessions sized only partially, counted at their partial size. */
+  private int sizePartialCount;
+
+  /** The half width of the 95% confidence interval of an estimated size. */
+  private long sizeError;
+
+  /** Whether sizing stopped short of its budget. */
+  private boolean sizePartial;
+
   /** The servlet count. */
   private int servletCount;
 
@@ -317,6 +329,78 @@ public class Application implements Serializable {
     this.size = size;
   }
 
+  /**
+   * Gets the number of sessions sized, fewer than all when the size is estimated from a sample.
+   *
+   * @return the size sample count
+   */
+  public int getSizeSampleCount() {
+    return sizeSampleCount;
+  }
+
+  /**
+   * Sets the number of sessions sized.
+   *
+   * @param sizeSampleCount the new size sample count
+   */
+  public void setSizeSampleCount(int sizeSampleCount) {
+    this.sizeSampleCount = sizeSampleCount;
+  }
+
+  /**
+   * Gets the number of sessions sized only partially, counted at their partial size.
+   *
+   * @return the size partial count
+   */
+  public int getSizePartialCount() {
+    return sizePartialCount;
+  }
+
+  /**
+   * Sets the number of sessions sized only partially.
+   *
+   * @param sizePartialCount the new size partial count
+   */
+  public void setSizePartialCount(int sizePartialCount) {
+    this.sizePartialCount = sizePartialCount;
+  }
+
+  /**
+   * Gets the half width of the 95% confidence interval of an estimated size.
+   *
+   * @return the size error
+   */
+  public long getSizeError() {
+    return sizeError;
+  }
+
+  /**
+   * Sets the half width of the 95% confidence interval of an estimated size.
+   *
+   * @param sizeError the new size error
+   */
+  public void setSizeError(long sizeError) {
+    this.sizeError = sizeError;
+  }
+
+  /**
+   * Checks if sizing stopped short of its budget.
+   *
+   * @return true, if the size is partial
+   */
+  public boolean isSizePartial() {
+    return sizePartial;
+  }
+
+  /**
+   * Sets whether sizing stopped short of its budget.
+   *
+   * @param sizePartial the new size partial
+   */
+  public void setSizePartial(boolean sizePartial) {
+    this.sizePartial = sizePartial;
+  }
+
   /**
    * Adds the size.
    *
@@ -62,6 +62,9 @@ public class ApplicationSession {
   /** The size. */
   private long size;
 
+  /** Whether sizing stopped short of its budget. */
+  private boolean sizePartial;
+
   /** The allowed to view values. */
   private boolean allowedToViewValues;
 
@@ -332,6 +335,24 @@ public class ApplicationSession {
     this.size = size;
   }
 
+  /**
+   * Checks if sizing stopped short of its budget, the size being a lower bound.
+   *
+   * @return true, if the size is partial
+   */
+  public boolean isSizePartial() {
+    return sizePartial;
+  }
+
+  /**
+   * Sets whether sizing stopped short of its budget.
+   *
+   * @param sizePartial the new size partial
+   */
+  public void setSizePartial(boolean sizePartial) {
+    this.sizePartial = sizePartial;
+  }
+
   /**
    * Checks if is allowed to view values.
    *
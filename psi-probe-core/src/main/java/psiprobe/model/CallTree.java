@@ -0,0 +1,249 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Aggregates sampled stacks into a call tree. The first level of the tree is the web application
+ * a thread was working for, the second the thread name, and the levels below the stack frames from
+ * the outermost call down. Frame names are interned and nodes only hold counters, so the tree stays
+ * compact; once it holds the maximum number of nodes, new paths are cut at the deepest known frame
+ * and counted as truncated. Not thread safe.
+ */
+public class CallTree {
+
+  /** The maximum number of nodes. */
+  private final int maxNodes;
+
+  /** The frame ids by name. */
+  private final Map<String, Integer> frameIds = new HashMap<>();
+
+  /** The frame names by id. */
+  private final List<String> frames = new ArrayList<>();
+
+  /** The root node. */
+  private final Node root = new Node(-1);
+
+  /** The node count. */
+  private int nodeCount = 1;
+
+  /** The truncated samples. */
+  private long truncatedSamples;
+
+  /**
+   * Instantiates a new call tree.
+   *
+   * @param maxNodes the maximum number of nodes
+   */
+  public CallTree(int maxNodes) {
+    this.maxNodes = maxNodes;
+  }
+
+  /**
+   * Adds a sampled stack.
+   *
+   * @param app the web application the thread was working for
+   * @param thread the thread name
+   * @param stack the stack, innermost frame first as reported by the JVM
+   */
+  public void add(String app, String thread, StackTraceElement[] stack) {
+    root.total++;
+    Node node = root;
+    Node next = child(root, app);
+    if (next != null) {
+      node = next;
+      next = child(node, thread);
+    }
+    for (int i = stack.length - 1; next != null && i >= 0; i--) {
+      node = next;
+      next = child(node, stack[i].getClassName() + '.' + stack[i].getMethodName());
+    }
+    if (next != null) {
+      node = next;
+    } else {
+      truncatedSamples++;
+    }
+    node.self++;
+  }
+
+  /**
+   * Gets or creates the child of a node and counts the sample on it.
+   *
+   * @param parent the parent
+   * @param name the frame name
+   * @return the child, or null if the tree is full
+   */
+  private Node child(Node parent, String name) {
+    Integer id = frameIds.get(name);
+    Node node = id == null ? null : parent.find(id);
+    if (node == null) {
+      if (nodeCount >= maxNodes) {
+        return null;
+      }
+      if (id == null) {
+        id = frames.size();
+        frames.add(name);
+        frameIds.put(name, id);
+      }
+      node = parent.add(id);
+      nodeCount++;
+    }
+    node.total++;
+    return node;
+  }
+
+  /**
+   * Gets the number of samples.
+   *
+   * @return the samples
+   */
+  public long getSamples() {
+    return root.total;
+  }
+
+  /**
+   * Gets the number of samples cut short because the tree was full.
+   *
+   * @return the truncated samples
+   */
+  public long getTruncatedSamples() {
+    return truncatedSamples;
+  }
+
+  /**
+   * Gets the node count.
+   *
+   * @return the node count
+   */
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  /**
+   * Adds the stacks in collapsed form, i.e. frames joined by semicolons, to a map of sample counts.
+   * Without an application, stacks start with the application name.
+   *
+   * @param app the web application, or null for all
+   * @param threads the pattern thread names must match, or null for all
+   * @param collapsed the sample counts by collapsed stack
+   */
+  public void collapse(String app, Pattern threads, Map<String, Long> collapsed) {
+    StringBuilder path = new StringBuilder();
+    for (int i = 0; i < root.childCount; i++) {
+      Node appNode = root.children[i];
+      if (app != null && !app.equals(frames.get(appNode.frame))) {
+        continue;
+      }
+      for (int j = 0; j < appNode.childCount; j++) {
+        Node threadNode = appNode.children[j];
+        if (threads != null && !threads.matcher(frames.get(threadNode.frame)).matches()) {
+          continue;
+        }
+        path.setLength(0);
+        if (app == null) {
+          path.append(frames.get(appNode.frame)).append(';');
+        }
+        collapse(threadNode, path, collapsed);
+      }
+    }
+  }
+
+  /**
+   * Adds the stacks below a node in collapsed form.
+   *
+   * @param node the node
+   * @param path the collapsed stack of the parent
+   * @param collapsed the sample counts by collapsed stack
+   */
+  private void collapse(Node node, StringBuilder path, Map<String, Long> collapsed) {
+    int length = path.length();
+    path.append(frames.get(node.frame));
+    if (node.self > 0) {
+      collapsed.merge(path.toString(), node.self, Long::sum);
+    }
+    path.append(';');
+    for (int i = 0; i < node.childCount; i++) {
+      collapse(node.children[i], path, collapsed);
+    }
+    path.setLength(length);
+  }
+
+  /**
+   * A node of the tree.
+   */
+  private static final class Node {
+
+    /** The Constant NO_CHILDREN. */
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    /** The frame id. */
+    final int frame;
+
+    /** The samples in this node and below. */
+    long total;
+
+    /** The samples ending in this node. */
+    long self;
+
+    /** The children, of which the first childCount are used. */
+    Node[] children = NO_CHILDREN;
+
+    /** The child count. */
+    int childCount;
+
+    /**
+     * Instantiates a new node.
+     *
+     * @param frame the frame id
+     */
+    Node(int frame) {
+      this.frame = frame;
+    }
+
+    /**
+     * Finds a child.
+     *
+     * @param frame the frame id
+     * @return the child, or null
+     */
+    Node find(int frame) {
+      for (int i = 0; i < childCount; i++) {
+        if (children[i].frame == frame) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Adds a child.
+     *
+     * @param frame the frame id
+     * @return the child
+     */
+    Node add(int frame) {
+      if (childCount == children.length) {
+        children = Arrays.copyOf(children, Math.max(2, childCount * 2));
+      }
+      Node child = new Node(frame);
+      children[childCount++] = child;
+      return child;
+    }
+
+  }
+
+}
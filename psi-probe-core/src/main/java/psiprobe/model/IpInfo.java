@@ -85,8 +85,19 @@ public class IpInfo {
    * @return the client address
    */
   public static String getClientAddress(HttpServletRequest request) {
-    String addr = request.getRemoteAddr();
-    String fwdHeader = request.getHeader("X-Forwarded-For");
+    return getClientAddress(request.getRemoteAddr(), request.getHeader("X-Forwarded-For"));
+  }
+
+  /**
+   * Gets the client address from the address a request came from and its forwarded header, for
+   * callers which do not see the request through this servlet API.
+   *
+   * @param remoteAddr the address the request came from
+   * @param fwdHeader the X-Forwarded-For header, or null
+   * @return the client address
+   */
+  public static String getClientAddress(String remoteAddr, String fwdHeader) {
+    String addr = remoteAddr;
     if (fwdHeader != null) {
       addr = fwdHeader.split(",")[0];
     }
@@ -0,0 +1,147 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * POJO representing a log line matching a log search, with the lines around it.
+ */
+public class LogMatch {
+
+  /** The name of the file. */
+  private String fileName;
+
+  /** The line number, from 1. */
+  private long lineNumber;
+
+  /** The offset of the line in the file. */
+  private long offset;
+
+  /** The line. */
+  private String line;
+
+  /** The lines before. */
+  private List<String> before = new ArrayList<>();
+
+  /** The lines after. */
+  private List<String> after = new ArrayList<>();
+
+  /**
+   * Gets the file name.
+   *
+   * @return the file name
+   */
+  public String getFileName() {
+    return fileName;
+  }
+
+  /**
+   * Sets the file name.
+   *
+   * @param fileName the new file name
+   */
+  public void setFileName(String fileName) {
+    this.fileName = fileName;
+  }
+
+  /**
+   * Gets the line number.
+   *
+   * @return the line number
+   */
+  public long getLineNumber() {
+    return lineNumber;
+  }
+
+  /**
+   * Sets the line number.
+   *
+   * @param lineNumber the new line number
+   */
+  public void setLineNumber(long lineNumber) {
+    this.lineNumber = lineNumber;
+  }
+
+  /**
+   * Gets the offset.
+   *
+   * @return the offset
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  /**
+   * Sets the offset.
+   *
+   * @param offset the new offset
+   */
+  public void setOffset(long offset) {
+    this.offset = offset;
+  }
+
+  /**
+   * Gets the line.
+   *
+   * @return the line
+   */
+  public String getLine() {
+    return line;
+  }
+
+  /**
+   * Sets the line.
+   *
+   * @param line the new line
+   */
+  public void setLine(String line) {
+    this.line = line;
+  }
+
+  /**
+   * Gets the lines before.
+   *
+   * @return the lines before
+   */
+  public List<String> getBefore() {
+    return before;
+  }
+
+  /**
+   * Sets the lines before.
+   *
+   * @param before the new lines before
+   */
+  public void setBefore(List<String> before) {
+    this.before = before;
+  }
+
+  /**
+   * Gets the lines after.
+   *
+   * @return the lines after
+   */
+  public List<String> getAfter() {
+    return after;
+  }
+
+  /**
+   * Sets the lines after.
+   *
+   * @param after the new lines after
+   */
+  public void setAfter(List<String> after) {
+    this.after = after;
+  }
+
+}
@@ -48,6 +48,12 @@ public class ServletInfo {
   /** The min time. */
   private long minTime;
 
+  /** The 95th percentile time, or -1 if latency is not recorded. */
+  private long p95Time = -1;
+
+  /** The 99th percentile time, or -1 if latency is not recorded. */
+  private long p99Time = -1;
+
   /** The processing time. */
   private long processingTime;
 
@@ -235,6 +241,42 @@ public class ServletInfo {
     this.maxTime = maxTime;
   }
 
+  /**
+   * Gets the 95th percentile time.
+   *
+   * @return the 95th percentile time, or -1 if latency is not recorded
+   */
+  public long getP95Time() {
+    return p95Time;
+  }
+
+  /**
+   * Sets the 95th percentile time.
+   *
+   * @param p95Time the new 95th percentile time
+   */
+  public void setP95Time(long p95Time) {
+    this.p95Time = p95Time;
+  }
+
+  /**
+   * Gets the 99th percentile time.
+   *
+   * @return the 99th percentile time, or -1 if latency is not recorded
+   */
+  public long getP99Time() {
+    return p99Time;
+  }
+
+  /**
+   * Sets the 99th percentile time.
+   *
+   * @param p99Time the new 99th percentile time
+   */
+  public void setP99Time(long p99Time) {
+    this.p99Time = p99Time;
+  }
+
   /**
    * Gets the min time.
    *
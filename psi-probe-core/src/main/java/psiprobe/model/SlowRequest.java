@@ -0,0 +1,190 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.model;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A request slower than the threshold of the agent valve.
+ */
+public class SlowRequest {
+
+  /** The application name. */
+  private String applicationName;
+
+  /** The completion time. */
+  private Date time;
+
+  /** The uri. */
+  private String uri;
+
+  /** The query string. */
+  private String queryString;
+
+  /** The method. */
+  private String method;
+
+  /** The duration in milliseconds. */
+  private long duration;
+
+  /** The thread name. */
+  private String threadName;
+
+  /** The stack sampled while the request was running, empty if none. */
+  private List<ThreadStackElement> stackElements = new ArrayList<>();
+
+  /**
+   * Gets the application name.
+   *
+   * @return the application name
+   */
+  public String getApplicationName() {
+    return applicationName;
+  }
+
+  /**
+   * Sets the application name.
+   *
+   * @param applicationName the new application name
+   */
+  public void setApplicationName(String applicationName) {
+    this.applicationName = applicationName;
+  }
+
+  /**
+   * Gets the completion time.
+   *
+   * @return the time
+   */
+  public Date getTime() {
+    return time == null ? null : new Date(time.getTime());
+  }
+
+  /**
+   * Sets the completion time.
+   *
+   * @param time the new time
+   */
+  public void setTime(Date time) {
+    this.time = time == null ? null : new Date(time.getTime());
+  }
+
+  /**
+   * Gets the uri.
+   *
+   * @return the uri
+   */
+  public String getUri() {
+    return uri;
+  }
+
+  /**
+   * Sets the uri.
+   *
+   * @param uri the new uri
+   */
+  public void setUri(String uri) {
+    this.uri = uri;
+  }
+
+  /**
+   * Gets the query string.
+   *
+   * @return the query string
+   */
+  public String getQueryString() {
+    return queryString;
+  }
+
+  /**
+   * Sets the query string.
+   *
+   * @param queryString the new query string
+   */
+  public void setQueryString(String queryString) {
+    this.queryString = queryString;
+  }
+
+  /**
+   * Gets the method.
+   *
+   * @return the method
+   */
+  public String getMethod() {
+    return method;
+  }
+
+  /**
+   * Sets the method.
+   *
+   * @param method the new method
+   */
+  public void setMethod(String method) {
+    this.method = method;
+  }
+
+  /**
+   * Gets the duration in milliseconds.
+   *
+   * @return the duration
+   */
+  public long getDuration() {
+    return duration;
+  }
+
+  /**
+   * Sets the duration in milliseconds.
+   *
+   * @param duration the new duration
+   */
+  public void setDuration(long duration) {
+    this.duration = duration;
+  }
+
+  /**
+   * Gets the thread name.
+   *
+   * @return the thread name
+   */
+  public String getThreadName() {
+    return threadName;
+  }
+
+  /**
+   * Sets the thread name.
+   *
+   * @param threadName the new thread name
+   */
+  public void setThreadName(String threadName) {
+    this.threadName = threadName;
+  }
+
+  /**
+   * Gets the stack sampled while the request was running.
+   *
+   * @return the stack elements, empty if none
+   */
+  public List<ThreadStackElement> getStackElements() {
+    return stackElements;
+  }
+
+  /**
+   * Sets the stack sampled while the request was running.
+   *
+   * @param stackElements the new stack elements
+   */
+  public void setStackElements(List<ThreadStackElement> stackElements) {
+    this.stackElements = stackElements;
+  }
+
+}
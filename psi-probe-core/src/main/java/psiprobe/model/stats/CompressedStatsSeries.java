@@ -0,0 +1,236 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.model.stats;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Series keeping all but its most recent samples in compressed {@link StatsChunk}s. Samples are
+ * appended to a small uncompressed tail; once the tail is full it is sealed into a chunk. Chunks
+ * are immutable, so copying a series shares them. Eviction drops samples from the oldest chunk
+ * logically and releases the chunk once all its samples are gone, hence the series may briefly
+ * hold up to one chunk worth of evicted samples. For the same reason readers iterate a snapshot
+ * without holding the monitor of the series.
+ */
+public class CompressedStatsSeries extends StatsSeries {
+
+  /** The Constant serialVersionUID. */
+  private static final long serialVersionUID = 1L;
+
+  /** The default number of samples in the uncompressed tail, and so in a chunk. */
+  public static final int DEFAULT_CHUNK_SIZE = 32;
+
+  /** The closed chunks, oldest first. */
+  private final Deque<StatsChunk> chunks = new ArrayDeque<>();
+
+  /** The number of evicted samples at the start of the oldest chunk. */
+  private int skip;
+
+  /** The max number of samples kept. */
+  private int capacity;
+
+  /** The number of samples held. */
+  private int size;
+
+  /** The number of samples in a chunk. */
+  private final int chunkSize;
+
+  /** The times of the uncompressed tail. */
+  private long[] tailTimes;
+
+  /** The values of the uncompressed tail. */
+  private double[] tailValues;
+
+  /** The number of samples in the uncompressed tail. */
+  private int tailSize;
+
+  /**
+   * Instantiates a new compressed stats series with the default chunk size.
+   *
+   * @param capacity the max number of samples kept
+   */
+  public CompressedStatsSeries(int capacity) {
+    this(capacity, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Instantiates a new compressed stats series.
+   *
+   * @param capacity the max number of samples kept
+   * @param chunkSize the number of samples compressed together
+   */
+  public CompressedStatsSeries(int capacity, int chunkSize) {
+    this.chunkSize = Math.max(chunkSize, 2);
+    allocate(Math.max(capacity, 1));
+  }
+
+  @Override
+  public synchronized int size() {
+    return size;
+  }
+
+  @Override
+  public synchronized boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public synchronized void setCapacity(int capacity) {
+    int cap = Math.max(capacity, 1);
+    if (cap == this.capacity) {
+      return;
+    }
+    int keep = Math.min(size, cap);
+    long[] keptTimes = new long[keep];
+    double[] keptValues = new double[keep];
+    int first = size - keep;
+    int[] index = new int[1];
+    forEach((time, value) -> {
+      int i = index[0]++ - first;
+      if (i >= 0) {
+        keptTimes[i] = time;
+        keptValues[i] = value;
+      }
+    });
+    allocate(cap);
+    for (int i = 0; i < keep; i++) {
+      append(keptTimes[i], keptValues[i]);
+    }
+  }
+
+  @Override
+  public synchronized void clear() {
+    allocate(capacity);
+    super.clear();
+  }
+
+  @Override
+  public synchronized long getFirstTime() {
+    if (size == 0) {
+      return 0;
+    }
+    StatsChunk oldest = chunks.peekFirst();
+    return oldest == null ? tailTimes[0] : oldest.getTime(skip);
+  }
+
+  @Override
+  public synchronized long getLastTime() {
+    if (tailSize > 0) {
+      return tailTimes[tailSize - 1];
+    }
+    StatsChunk newest = chunks.peekLast();
+    return newest == null ? 0 : newest.getLastTime();
+  }
+
+  @Override
+  public synchronized double getLastValue() {
+    if (tailSize > 0) {
+      return tailValues[tailSize - 1];
+    }
+    StatsChunk newest = chunks.peekLast();
+    return newest == null ? 0 : newest.getLastValue();
+  }
+
+  /**
+   * Visits all samples from the oldest to the most recent. Only taking the snapshot holds the
+   * monitor: chunks are immutable, so they are decoded while writers keep appending.
+   *
+   * @param visitor the visitor
+   */
+  @Override
+  public void forEach(DataPointVisitor visitor) {
+    StatsChunk[] closed;
+    int from;
+    long[] times;
+    double[] values;
+    synchronized (this) {
+      closed = chunks.toArray(new StatsChunk[0]);
+      from = skip;
+      times = Arrays.copyOf(tailTimes, tailSize);
+      values = Arrays.copyOf(tailValues, tailSize);
+    }
+    for (StatsChunk chunk : closed) {
+      chunk.forEach(from, visitor);
+      from = 0;
+    }
+    for (int i = 0; i < times.length; i++) {
+      visitor.visit(times[i], values[i]);
+    }
+  }
+
+  /**
+   * Gets the number of bytes taken by the samples, compressed and uncompressed.
+   *
+   * @return the memory size
+   */
+  public synchronized long getMemorySize() {
+    long bytes = (long) tailTimes.length * (Long.BYTES + Double.BYTES);
+    for (StatsChunk chunk : chunks) {
+      bytes += chunk.getEncodedSize();
+    }
+    return bytes;
+  }
+
+  @Override
+  protected void append(long time, double value) {
+    if (tailSize == tailTimes.length) {
+      chunks.addLast(StatsChunk.encode(tailTimes, tailValues, tailSize));
+      tailSize = 0;
+    }
+    tailTimes[tailSize] = time;
+    tailValues[tailSize] = value;
+    tailSize++;
+    if (size < capacity) {
+      size++;
+    } else {
+      // the tail is never larger than the capacity, so a full series has a chunk to evict from
+      skip++;
+      if (skip == chunks.peekFirst().size()) {
+        chunks.removeFirst();
+        skip = 0;
+      }
+    }
+  }
+
+  @Override
+  protected StatsSeries copySamples() {
+    CompressedStatsSeries copy = new CompressedStatsSeries(capacity, chunkSize);
+    copy.chunks.addAll(chunks);
+    copy.skip = skip;
+    copy.size = size;
+    System.arraycopy(tailTimes, 0, copy.tailTimes, 0, tailSize);
+    System.arraycopy(tailValues, 0, copy.tailValues, 0, tailSize);
+    copy.tailSize = tailSize;
+    return copy;
+  }
+
+  @Override
+  protected int capacity() {
+    return capacity;
+  }
+
+  @Override
+  protected void allocate(int newCapacity) {
+    capacity = newCapacity;
+    int tailCapacity = Math.min(chunkSize, newCapacity);
+    if (tailTimes == null || tailTimes.length != tailCapacity) {
+      tailTimes = new long[tailCapacity];
+      tailValues = new double[tailCapacity];
+    }
+    chunks.clear();
+    skip = 0;
+    size = 0;
+    tailSize = 0;
+  }
+
+}
@@ -0,0 +1,203 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.model.stats;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Stats series kept in a memory-mapped file, one file per series. Samples live outside of the heap
+ * and survive a restart without being read back: reopening the file is enough.
+ *
+ * <p>
+ * The file starts with a header holding a magic number, the capacity and the ring position,
+ * followed by the sample times and then the sample values. The ring position is updated on every
+ * append, so the file is consistent whenever the OS writes the pages back.
+ * </p>
+ */
+public class MappedStatsSeries extends StatsSeries {
+
+  /** The Constant serialVersionUID. */
+  private static final long serialVersionUID = 1L;
+
+  /** The Constant FILE_SUFFIX. */
+  public static final String FILE_SUFFIX = ".series";
+
+  /** The Constant MAGIC. */
+  private static final int MAGIC = 0x50535353;
+
+  /** The Constant HEADER_SIZE. */
+  private static final int HEADER_SIZE = 16;
+
+  /** The file. */
+  private final File file;
+
+  /** The mapped region. */
+  private transient MappedByteBuffer buffer;
+
+  /** The capacity. */
+  private int capacity;
+
+  /**
+   * Instantiates a new mapped stats series.
+   *
+   * @param file the file
+   */
+  private MappedStatsSeries(File file) {
+    this.file = file;
+  }
+
+  /**
+   * Opens the series stored in a file, creating the file if it does not exist yet or does not hold
+   * a valid series.
+   *
+   * @param file the file
+   * @param capacity the capacity of a newly created series
+   * @return the mapped stats series
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static MappedStatsSeries open(File file, int capacity) throws IOException {
+    MappedStatsSeries series = new MappedStatsSeries(file);
+    if (file.length() >= HEADER_SIZE && series.reopen()) {
+      return series;
+    }
+    series.map(Math.max(capacity, 1));
+    return series;
+  }
+
+  /**
+   * Gets the file name used for a series name.
+   *
+   * @param name the series name
+   * @return the file name
+   */
+  public static String toFileName(String name) {
+    try {
+      return URLEncoder.encode(name, StandardCharsets.UTF_8.name()) + FILE_SUFFIX;
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Gets the series name stored in a file.
+   *
+   * @param fileName the file name
+   * @return the series name, or null if the file does not hold a series
+   */
+  public static String toSeriesName(String fileName) {
+    if (!fileName.endsWith(FILE_SUFFIX)) {
+      return null;
+    }
+    try {
+      return URLDecoder.decode(fileName.substring(0, fileName.length() - FILE_SUFFIX.length()),
+          StandardCharsets.UTF_8.name());
+    } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Flushes the mapped region to disk.
+   */
+  public synchronized void force() {
+    buffer.force();
+  }
+
+  @Override
+  protected int capacity() {
+    return capacity;
+  }
+
+  @Override
+  protected void allocate(int newCapacity) {
+    try {
+      map(newCapacity);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not map " + file.getAbsolutePath(), e);
+    }
+  }
+
+  @Override
+  protected long readTime(int slot) {
+    return buffer.getLong(HEADER_SIZE + slot * 8);
+  }
+
+  @Override
+  protected double readValue(int slot) {
+    return buffer.getDouble(HEADER_SIZE + (capacity + slot) * 8);
+  }
+
+  @Override
+  protected void write(int slot, long time, double value) {
+    buffer.putLong(HEADER_SIZE + slot * 8, time);
+    buffer.putDouble(HEADER_SIZE + (capacity + slot) * 8, value);
+  }
+
+  @Override
+  protected void positionChanged(int head, int size) {
+    buffer.putInt(8, head);
+    buffer.putInt(12, size);
+  }
+
+  /**
+   * Maps an existing file and restores its ring position.
+   *
+   * @return true, if the file holds a valid series
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private boolean reopen() throws IOException {
+    MappedByteBuffer region;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      region = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+    }
+    int storedCapacity = region.getInt(4);
+    int head = region.getInt(8);
+    int size = region.getInt(12);
+    if (region.getInt(0) != MAGIC || storedCapacity < 1
+        || region.capacity() < HEADER_SIZE + storedCapacity * 16L || head < 0
+        || head >= storedCapacity || size < 0 || size > storedCapacity) {
+      return false;
+    }
+    buffer = region;
+    capacity = storedCapacity;
+    restorePosition(head, size);
+    return true;
+  }
+
+  /**
+   * Maps a region for an empty series of the given capacity. The file is never shrunk, a smaller
+   * series simply uses the beginning of it.
+   *
+   * @param newCapacity the new capacity
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void map(int newCapacity) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + newCapacity * 16L);
+    }
+    capacity = newCapacity;
+    buffer.putInt(0, MAGIC);
+    buffer.putInt(4, newCapacity);
+    positionChanged(0, 0);
+  }
+
+}
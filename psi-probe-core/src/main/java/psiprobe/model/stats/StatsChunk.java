@@ -0,0 +1,358 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.model.stats;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Immutable block of samples compressed the way Facebook's Gorilla does it. The first sample is
+ * stored verbatim; every following time is stored as the difference between consecutive deltas
+ * and every following value as the XOR with the previous value. Samples taken at a fixed period
+ * with slowly changing values then take a couple of bits each instead of sixteen bytes.
+ *
+ * <p>
+ * Time delta-of-delta encoding:
+ * </p>
+ * <ul>
+ * <li>0 - '0'</li>
+ * <li>fits 7 bits - '10' followed by the value</li>
+ * <li>fits 9 bits - '110' followed by the value</li>
+ * <li>fits 12 bits - '1110' followed by the value</li>
+ * <li>otherwise - '1111' followed by the 64 bit value</li>
+ * </ul>
+ * <p>
+ * Value XOR encoding:
+ * </p>
+ * <ul>
+ * <li>0 - '0'</li>
+ * <li>meaningful bits within those of the previous value - '10' followed by them</li>
+ * <li>otherwise - '11', 6 bits of leading zeros, 6 bits of length - 1, then the meaningful
+ * bits</li>
+ * </ul>
+ */
+public final class StatsChunk implements Serializable {
+
+  /** The Constant serialVersionUID. */
+  private static final long serialVersionUID = 1L;
+
+  /** The encoded samples. */
+  private final long[] bits;
+
+  /** The number of samples. */
+  private final int size;
+
+  /** The time of the last sample. */
+  private final long lastTime;
+
+  /** The value of the last sample. */
+  private final double lastValue;
+
+  /**
+   * Instantiates a new stats chunk.
+   *
+   * @param bits the encoded samples
+   * @param size the number of samples
+   * @param lastTime the time of the last sample
+   * @param lastValue the value of the last sample
+   */
+  private StatsChunk(long[] bits, int size, long lastTime, double lastValue) {
+    this.bits = bits;
+    this.size = size;
+    this.lastTime = lastTime;
+    this.lastValue = lastValue;
+  }
+
+  /**
+   * Compresses samples.
+   *
+   * @param times the sample times
+   * @param values the sample values
+   * @param count the number of samples to take from the start of the arrays, at least one
+   * @return the chunk
+   */
+  public static StatsChunk encode(long[] times, double[] values, int count) {
+    BitWriter out = new BitWriter(count);
+    long prevTime = times[0];
+    long prevDelta = 0;
+    long prevValue = Double.doubleToRawLongBits(values[0]);
+    int prevLeading = Integer.MAX_VALUE;
+    int prevTrailing = 0;
+    out.write(prevTime, 64);
+    out.write(prevValue, 64);
+    for (int i = 1; i < count; i++) {
+      long delta = times[i] - prevTime;
+      long dod = delta - prevDelta;
+      if (dod == 0) {
+        out.write(0, 1);
+      } else if (fits(dod, 7)) {
+        out.write(0b10, 2);
+        out.write(dod, 7);
+      } else if (fits(dod, 9)) {
+        out.write(0b110, 3);
+        out.write(dod, 9);
+      } else if (fits(dod, 12)) {
+        out.write(0b1110, 4);
+        out.write(dod, 12);
+      } else {
+        out.write(0b1111, 4);
+        out.write(dod, 64);
+      }
+      prevTime = times[i];
+      prevDelta = delta;
+
+      long value = Double.doubleToRawLongBits(values[i]);
+      long xor = value ^ prevValue;
+      if (xor == 0) {
+        out.write(0, 1);
+      } else {
+        int leading = Long.numberOfLeadingZeros(xor);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (leading >= prevLeading && trailing >= prevTrailing) {
+          out.write(0b10, 2);
+          out.write(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+        } else {
+          int length = 64 - leading - trailing;
+          out.write(0b11, 2);
+          out.write(leading, 6);
+          out.write(length - 1, 6);
+          out.write(xor >>> trailing, length);
+          prevLeading = leading;
+          prevTrailing = trailing;
+        }
+      }
+      prevValue = value;
+    }
+    return new StatsChunk(out.toArray(), count, times[count - 1], values[count - 1]);
+  }
+
+  /**
+   * Gets the number of samples.
+   *
+   * @return the int
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the time of the last sample.
+   *
+   * @return the last time
+   */
+  public long getLastTime() {
+    return lastTime;
+  }
+
+  /**
+   * Gets the value of the last sample.
+   *
+   * @return the last value
+   */
+  public double getLastValue() {
+    return lastValue;
+  }
+
+  /**
+   * Gets the number of bytes taken by the encoded samples.
+   *
+   * @return the encoded size
+   */
+  public int getEncodedSize() {
+    return bits.length * Long.BYTES;
+  }
+
+  /**
+   * Gets the time of a sample. The chunk is decoded up to the sample.
+   *
+   * @param index the index of the sample
+   * @return the time
+   */
+  public long getTime(int index) {
+    long[] time = new long[1];
+    decode(index, index + 1, (t, v) -> time[0] = t);
+    return time[0];
+  }
+
+  /**
+   * Visits the samples from the given index on, oldest first.
+   *
+   * @param from the index of the first sample to visit
+   * @param visitor the visitor
+   */
+  public void forEach(int from, StatsSeries.DataPointVisitor visitor) {
+    decode(from, size, visitor);
+  }
+
+  /**
+   * Decodes the chunk, visiting samples of the given index range.
+   *
+   * @param from the first index visited
+   * @param to the index after the last one visited
+   * @param visitor the visitor
+   */
+  private void decode(int from, int to, StatsSeries.DataPointVisitor visitor) {
+    BitReader in = new BitReader(bits);
+    long time = in.read(64);
+    long delta = 0;
+    long value = in.read(64);
+    int leading = 0;
+    int trailing = 0;
+    for (int i = 0; i < to; i++) {
+      if (i > 0) {
+        long dod;
+        if (in.read(1) == 0) {
+          dod = 0;
+        } else if (in.read(1) == 0) {
+          dod = in.readSigned(7);
+        } else if (in.read(1) == 0) {
+          dod = in.readSigned(9);
+        } else if (in.read(1) == 0) {
+          dod = in.readSigned(12);
+        } else {
+          dod = in.read(64);
+        }
+        delta += dod;
+        time += delta;
+
+        if (in.read(1) != 0) {
+          if (in.read(1) != 0) {
+            leading = (int) in.read(6);
+            trailing = 64 - leading - (int) in.read(6) - 1;
+          }
+          value ^= in.read(64 - leading - trailing) << trailing;
+        }
+      }
+      if (i >= from) {
+        visitor.visit(time, Double.longBitsToDouble(value));
+      }
+    }
+  }
+
+  /**
+   * Checks whether a value fits a two's complement field.
+   *
+   * @param value the value
+   * @param bits the width of the field
+   * @return true, if the value fits
+   */
+  private static boolean fits(long value, int bits) {
+    long bound = 1L << (bits - 1);
+    return value >= -bound && value < bound;
+  }
+
+  /**
+   * Appends bit fields to a growing array of longs, most significant bit first.
+   */
+  private static final class BitWriter {
+
+    /** The words. */
+    private long[] words;
+
+    /** The number of bits written. */
+    private long position;
+
+    /**
+     * Instantiates a new bit writer.
+     *
+     * @param samples the expected number of samples
+     */
+    BitWriter(int samples) {
+      words = new long[2 + samples / 8 + 1];
+    }
+
+    /**
+     * Writes the low bits of a value.
+     *
+     * @param value the value
+     * @param count the number of bits, 1 to 64
+     */
+    void write(long value, int count) {
+      int index = (int) (position >>> 6);
+      int offset = (int) (position & 63);
+      if (index + 1 >= words.length) {
+        words = Arrays.copyOf(words, words.length * 2);
+      }
+      long field = count == 64 ? value : value & (1L << count) - 1;
+      int free = 64 - offset;
+      if (count <= free) {
+        words[index] |= field << (free - count);
+      } else {
+        words[index] |= field >>> (count - free);
+        words[index + 1] |= field << (64 - (count - free));
+      }
+      position += count;
+    }
+
+    /**
+     * Trims the words to the bits written.
+     *
+     * @return the words
+     */
+    long[] toArray() {
+      return Arrays.copyOf(words, (int) ((position + 63) >>> 6));
+    }
+
+  }
+
+  /**
+   * Reads bit fields written by a {@link BitWriter}.
+   */
+  private static final class BitReader {
+
+    /** The words. */
+    private final long[] words;
+
+    /** The number of bits read. */
+    private long position;
+
+    /**
+     * Instantiates a new bit reader.
+     *
+     * @param words the words
+     */
+    BitReader(long[] words) {
+      this.words = words;
+    }
+
+    /**
+     * Reads an unsigned field.
+     *
+     * @param count the number of bits, 1 to 64
+     * @return the value
+     */
+    long read(int count) {
+      int index = (int) (position >>> 6);
+      int offset = (int) (position & 63);
+      int free = 64 - offset;
+      long value;
+      if (count <= free) {
+        value = words[index] >>> (free - count);
+      } else {
+        value = words[index] << (count - free) | words[index + 1] >>> (64 - (count - free));
+      }
+      position += count;
+      return count == 64 ? value : value & (1L << count) - 1;
+    }
+
+    /**
+     * Reads a two's complement field.
+     *
+     * @param count the number of bits
+     * @return the value
+     */
+    long readSigned(int count) {
+      return read(count) << (64 - count) >> (64 - count);
+    }
+
+  }
+
+}
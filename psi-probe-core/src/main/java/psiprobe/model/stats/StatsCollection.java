@@ -15,18 +15,17 @@ import com.thoughtworks.xstream.XStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
-
-import javax.inject.Inject;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.jfree.data.xy.XYDataItem;
 import org.slf4j.Logger;
@@ -38,10 +37,18 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.web.context.WebApplicationContext;
 
-import psiprobe.tools.UpdateCommitLock;
+import psiprobe.tools.TimeExpression;
 
 /**
  * The Class StatsCollection.
+ *
+ * <p>
+ * Series are registered in a concurrent map and guarded by their own monitors, so collectors of
+ * different series and chart readers never wait on the collection. The only shared lock is the
+ * update lock: collectors hold its read side while appending, compaction briefly takes the write
+ * side to copy the series and rotate the journal. Copies of compressed series share their chunks,
+ * so the snapshot is written from a copy-on-write view without holding anything.
+ * </p>
  */
 public class StatsCollection implements InitializingBean, DisposableBean, ApplicationContextAware {
 
@@ -49,15 +56,42 @@ public class StatsCollection implements InitializingBean, DisposableBean, Applic
   private static final Logger logger = LoggerFactory.getLogger(StatsCollection.class);
 
   /** The stats data. */
-  private Map<String, List<XYDataItem>> statsData = new TreeMap<>();
+  private final ConcurrentNavigableMap<String, StatsSeries> statsData =
+      new ConcurrentSkipListMap<>();
 
-  /** The xstream. */
-  @Inject
-  private XStream xstream;
+  /** The Constant MIN_COMPACTION_SIZE. */
+  private static final long MIN_COMPACTION_SIZE = 64 * 1024L;
 
-  /** The swap file name. */
+  /** The legacy XML swap file name. */
   private String swapFileName;
 
+  /** The snapshot file name. */
+  private String snapshotFileName;
+
+  /** The journal file name. */
+  private String journalFileName;
+
+  /** The journal, null when series are kept in mapped files. */
+  private StatsJournal journal;
+
+  /** Whether series are kept in memory-mapped files. */
+  private boolean mappedStorage;
+
+  /** Whether series are kept compressed on the heap. */
+  private boolean compressedStorage;
+
+  /** The name of the directory holding memory-mapped series. */
+  private String mappedDirName;
+
+  /** The rollup tiers expression. */
+  private String rollups;
+
+  /** The bucket width of each rollup tier in milliseconds, finest first. */
+  private long[] rollupResolutions = new long[0];
+
+  /** The number of buckets kept by each rollup tier. */
+  private int[] rollupCapacities = new int[0];
+
   /** The storage path. */
   private String storagePath;
 
@@ -67,8 +101,8 @@ public class StatsCollection implements InitializingBean, DisposableBean, Applic
   /** The max files. */
   private int maxFiles = 2;
 
-  /** The lock. */
-  private final UpdateCommitLock lock = new UpdateCommitLock();
+  /** The update lock, shared by appends and exclusive for compaction. */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
   /**
    * Gets the swap file name.
@@ -89,6 +123,152 @@ public class StatsCollection implements InitializingBean, DisposableBean, Applic
     this.swapFileName = swapFileName;
   }
 
+  /**
+   * Gets the snapshot file name.
+   *
+   * @return the snapshot file name
+   */
+  public String getSnapshotFileName() {
+    return snapshotFileName;
+  }
+
+  /**
+   * Sets the snapshot file name.
+   *
+   * @param snapshotFileName the new snapshot file name
+   */
+  @Value("stats.dat")
+  public void setSnapshotFileName(String snapshotFileName) {
+    this.snapshotFileName = snapshotFileName;
+  }
+
+  /**
+   * Gets the journal file name.
+   *
+   * @return the journal file name
+   */
+  public String getJournalFileName() {
+    return journalFileName;
+  }
+
+  /**
+   * Sets the journal file name.
+   *
+   * @param journalFileName the new journal file name
+   */
+  @Value("stats.wal")
+  public void setJournalFileName(String journalFileName) {
+    this.journalFileName = journalFileName;
+  }
+
+  /**
+   * Checks if series are kept in memory-mapped files.
+   *
+   * @return true, if series are kept in memory-mapped files
+   */
+  public boolean isMappedStorage() {
+    return mappedStorage;
+  }
+
+  /**
+   * Sets whether series are kept in memory-mapped files, one file per series, instead of on the
+   * heap. Mapped series survive a restart without being read back and do not count against the
+   * heap, which suits long retention windows.
+   *
+   * @param mappedStorage true to keep series in memory-mapped files
+   */
+  public void setMappedStorage(boolean mappedStorage) {
+    this.mappedStorage = mappedStorage;
+  }
+
+  /**
+   * Checks if series are kept compressed on the heap.
+   *
+   * @return true, if series are kept compressed on the heap
+   */
+  public boolean isCompressedStorage() {
+    return compressedStorage;
+  }
+
+  /**
+   * Sets whether heap series keep their older samples in compressed chunks, see
+   * {@link CompressedStatsSeries}. Regular samples compress to a few bits each, which matters once
+   * thousands of series are collected. Ignored when series are kept in memory-mapped files.
+   *
+   * @param compressedStorage true to keep series compressed on the heap
+   */
+  public void setCompressedStorage(boolean compressedStorage) {
+    this.compressedStorage = compressedStorage;
+  }
+
+  /**
+   * Gets the mapped dir name.
+   *
+   * @return the mapped dir name
+   */
+  public String getMappedDirName() {
+    return mappedDirName;
+  }
+
+  /**
+   * Sets the name of the directory holding memory-mapped series.
+   *
+   * @param mappedDirName the new mapped dir name
+   */
+  @Value("stats")
+  public void setMappedDirName(String mappedDirName) {
+    this.mappedDirName = mappedDirName;
+  }
+
+  /**
+   * Gets the rollups.
+   *
+   * @return the rollups
+   */
+  public String getRollups() {
+    return rollups;
+  }
+
+  /**
+   * Sets the downsampled tiers kept next to the raw samples of every series, as a comma separated
+   * list of <i>resolution</i>:<i>retention</i> time expressions, e.g. "5m:2d,1h:31d". Each tier
+   * keeps min, max, avg and count per bucket. An empty expression disables rollups, invalid tiers
+   * are logged and ignored.
+   *
+   * @param rollups the rollups expression
+   */
+  @Value("${psiprobe.beans.stats.rollups}")
+  public void setRollups(String rollups) {
+    String[] tiers = rollups == null || rollups.trim().isEmpty() ? new String[0]
+        : rollups.trim().split("\\s*,\\s*");
+    long[] resolutions = new long[tiers.length];
+    int[] capacities = new int[tiers.length];
+    int count = 0;
+    for (String tier : tiers) {
+      String[] parts = tier.split(":");
+      try {
+        if (parts.length != 2) {
+          throw new IllegalArgumentException("Invalid rollup expression: " + tier);
+        }
+        long resolution = TimeExpression.inSeconds(parts[0]);
+        long retention = TimeExpression.inSeconds(parts[1]);
+        if (resolution <= 0 || retention < resolution) {
+          throw new IllegalArgumentException("Invalid rollup expression: " + tier);
+        }
+        resolutions[count] = resolution * 1000;
+        capacities[count] = (int) TimeExpression.dataPoints(resolution, retention);
+        count++;
+      } catch (IllegalArgumentException e) {
+        logger.error("Ignoring stats rollup tier '{}': {}", tier, e.getMessage());
+      }
+    }
+    resolutions = Arrays.copyOf(resolutions, count);
+    capacities = Arrays.copyOf(capacities, count);
+    this.rollups = rollups;
+    this.rollupResolutions = resolutions;
+    this.rollupCapacities = capacities;
+  }
+
   /**
    * Gets the storage path.
    *
@@ -115,7 +295,7 @@ public class StatsCollection implements InitializingBean, DisposableBean, Applic
    * @param statsName the stats name
    * @return true, if is collected
    */
-  public synchronized boolean isCollected(String statsName) {
+  public boolean isCollected(String statsName) {
     return statsData.get(statsName) != null;
   }
 
@@ -142,23 +322,124 @@ public class StatsCollection implements InitializingBean, DisposableBean, Applic
    *
    * @param name the name
    * @param maxElements the max elements
-   * @return the list
+   * @return the series
    */
-  public synchronized List<XYDataItem> newStats(String name, int maxElements) {
-    List<XYDataItem> stats = Collections.synchronizedList(new ArrayList<XYDataItem>(maxElements));
+  public StatsSeries newStats(String name, int maxElements) {
+    StatsSeries stats = createStats(name, maxElements);
+    applyRollups(stats);
     statsData.put(name, stats);
     return stats;
   }
 
+  /**
+   * Makes the rollups of a series match the configured tiers. Existing tiers are kept, new ones are
+   * filled from the raw samples the series already holds.
+   *
+   * @param series the series
+   */
+  private void applyRollups(StatsSeries series) {
+    synchronized (series) {
+      StatsRollup[] current = series.getRollups();
+      StatsRollup[] wanted = new StatsRollup[rollupResolutions.length];
+      for (int i = 0; i < wanted.length; i++) {
+        for (StatsRollup rollup : current) {
+          if (rollup.getResolution() == rollupResolutions[i]) {
+            rollup.setCapacity(rollupCapacities[i]);
+            wanted[i] = rollup;
+          }
+        }
+        if (wanted[i] == null) {
+          wanted[i] = new StatsRollup(rollupResolutions[i], rollupCapacities[i]);
+          series.forEach(wanted[i]::add);
+        }
+      }
+      series.setRollups(wanted);
+    }
+  }
+
+  /**
+   * Creates an empty series in the configured storage.
+   *
+   * @param name the name
+   * @param maxElements the max elements
+   * @return the series
+   */
+  private StatsSeries createStats(String name, int maxElements) {
+    if (mappedStorage) {
+      return newMappedStats(name, maxElements);
+    }
+    return compressedStorage ? new CompressedStatsSeries(maxElements)
+        : new StatsSeries(maxElements);
+  }
+
+  /**
+   * Checks whether a series is kept in the configured storage.
+   *
+   * @param series the series
+   * @return true, if the series does not need to be moved
+   */
+  private boolean isStored(StatsSeries series) {
+    if (mappedStorage) {
+      return series instanceof MappedStatsSeries;
+    }
+    return !compressedStorage || series instanceof CompressedStatsSeries;
+  }
+
+  /**
+   * Creates a memory-mapped series, falling back to the heap if the file cannot be mapped.
+   *
+   * @param name the name
+   * @param maxElements the max elements
+   * @return the series
+   */
+  private StatsSeries newMappedStats(String name, int maxElements) {
+    File file = new File(makeFile(mappedDirName), MappedStatsSeries.toFileName(name));
+    try {
+      return MappedStatsSeries.open(file, maxElements);
+    } catch (IOException e) {
+      logger.error("Could not map stats file '{}'", file.getAbsolutePath(), e);
+      return new StatsSeries(maxElements);
+    }
+  }
+
+  /**
+   * Appends a sample to a series and records it in the journal. Must be called while holding the
+   * update lock, see {@link #lockForUpdate()}.
+   *
+   * @param name the name
+   * @param stats the series registered under the name
+   * @param time the time
+   * @param value the value
+   */
+  public void append(String name, StatsSeries stats, long time, double value) {
+    stats.add(time, value);
+    if (journal != null) {
+      journal.append(name, stats.getCapacity(), time, value);
+    }
+  }
+
   /**
    * Reset stats.
    *
    * @param name the name
    */
-  public synchronized void resetStats(String name) {
-    List<XYDataItem> stats = getStats(name);
-    if (stats != null) {
-      stats.clear();
+  public void resetStats(String name) {
+    try {
+      lockForUpdate();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    try {
+      StatsSeries stats = getStats(name);
+      if (stats != null) {
+        stats.clear();
+        if (journal != null) {
+          journal.reset(name, stats.getCapacity());
+        }
+      }
+    } finally {
+      releaseLock();
     }
   }
 
@@ -168,7 +449,7 @@ public class StatsCollection implements InitializingBean, DisposableBean, Applic
    * @param name the name
    * @return the stats
    */
-  public synchronized List<XYDataItem> getStats(String name) {
+  public StatsSeries getStats(String name) {
     return statsData.get(name);
   }
 
@@ -179,17 +460,8 @@ public class StatsCollection implements InitializingBean, DisposableBean, Applic
    * @return the last value for stat
    */
   public long getLastValueForStat(String statName) {
-    long statValue = 0;
-
-    List<XYDataItem> stats = getStats(statName);
-    if (stats != null && !stats.isEmpty()) {
-      XYDataItem xy = stats.get(stats.size() - 1);
-      if (xy != null && xy.getY() != null) {
-        statValue = xy.getY().longValue();
-      }
-    }
-
-    return statValue;
+    StatsSeries stats = getStats(statName);
+    return stats == null ? 0 : (long) stats.getLastValue();
   }
 
   /**
@@ -199,103 +471,185 @@ public class StatsCollection implements InitializingBean, DisposableBean, Applic
    * @return a Map of matching stats. Map keys are stat names and map values are corresponding
    *         series.
    */
-  public synchronized Map<String, List<XYDataItem>> getStatsByPrefix(String statNamePrefix) {
-    Map<String, List<XYDataItem>> map = new HashMap<>();
-    for (Map.Entry<String, List<XYDataItem>> en : statsData.entrySet()) {
-      if (en.getKey().startsWith(statNamePrefix)) {
-        map.put(en.getKey(), en.getValue());
-      }
+  public Map<String, StatsSeries> getStatsByPrefix(String statNamePrefix) {
+    if (statNamePrefix.isEmpty()) {
+      return new HashMap<>(statsData);
     }
-    return map;
+    return new HashMap<>(statsData.subMap(statNamePrefix, statNamePrefix + Character.MAX_VALUE));
   }
 
+
   /**
    * Make file.
    *
+   * @param fileName the file name
    * @return the file
    */
-  private File makeFile() {
-    return storagePath == null ? new File(contextTempDir, swapFileName)
-        : new File(storagePath, swapFileName);
+  private File makeFile(String fileName) {
+    return storagePath == null ? new File(contextTempDir, fileName)
+        : new File(storagePath, fileName);
   }
 
   /**
-   * Shift files.
+   * Flushes stats data to disk. Samples are already in the journal log, so this only flushes the
+   * buffered log and compacts it into a new snapshot once it has outgrown the previous snapshot.
+   * That keeps the cost of persistence proportional to the amount of new data rather than to the
+   * whole history.
    *
-   * @param index the index
+   * @throws InterruptedException if a lock cannot be obtained
    */
-  private void shiftFiles(int index) {
-    if (index >= maxFiles - 1) {
+  public void serialize() throws InterruptedException {
+    if (mappedStorage) {
+      forceMapped();
+      return;
+    }
+    if (journal == null) {
+      return;
+    }
+    journal.flush();
+    long logSize = journal.getLogSize();
+    if (logSize < Math.max(journal.getSnapshotSize(), MIN_COMPACTION_SIZE)) {
+      logger.debug("stats log is {} bytes, compaction not needed", logSize);
+      return;
+    }
+    compact();
+  }
+
+  /**
+   * Flushes memory-mapped series to disk.
+   */
+  private void forceMapped() {
+    long start = System.currentTimeMillis();
+    Map<String, StatsSeries> stats = getStatsByPrefix("");
+    for (StatsSeries series : stats.values()) {
+      if (series instanceof MappedStatsSeries) {
+        ((MappedStatsSeries) series).force();
+      }
+    }
+    if (rollupResolutions.length > 0) {
       try {
-        if (Files.exists(Paths.get(makeFile().getAbsolutePath() + "." + index))) {
-          Files.delete(Paths.get(makeFile().getAbsolutePath() + "." + index));
-        }
+        StatsJournal.writeRollups(makeRollupFile(), new TreeMap<>(stats));
       } catch (IOException e) {
-        logger.error("Could not delete file {}",
-            new File(makeFile().getAbsolutePath() + "." + index).getName());
+        logger.error("Could not write stats rollups to '{}'", makeRollupFile(), e);
       }
-    } else {
-      shiftFiles(index + 1);
-      File srcFile = index == 0 ? makeFile() : new File(makeFile().getAbsolutePath() + "." + index);
-      if (Files.exists(srcFile.toPath())) {
-        File destFile = new File(makeFile().getAbsolutePath() + "." + (index + 1));
-        if (!srcFile.renameTo(destFile)) {
-          logger.error("Could not rename file {} to {}", srcFile.getName(), destFile.getName());
+    }
+    logger.debug("mapped stats flushed in {}ms", System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Makes the file holding the rollups of memory-mapped series.
+   *
+   * @return the file
+   */
+  private File makeRollupFile() {
+    return new File(makeFile(mappedDirName), "rollups.dat");
+  }
+
+  /**
+   * Opens the memory-mapped series left by a previous run.
+   *
+   * @return the series by name, or null if there are none
+   */
+  private Map<String, StatsSeries> openMapped() {
+    File dir = makeFile(mappedDirName);
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      logger.error("Could not create stats directory '{}'", dir.getAbsolutePath());
+      return null;
+    }
+    Map<String, StatsSeries> stats = new TreeMap<>();
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        String name = MappedStatsSeries.toSeriesName(file.getName());
+        if (name != null) {
+          try {
+            stats.put(name, MappedStatsSeries.open(file, 1));
+          } catch (IOException e) {
+            logger.error("Could not map stats file '{}'", file.getAbsolutePath(), e);
+          }
         }
       }
     }
+    return stats.isEmpty() ? null : stats;
   }
 
   /**
-   * Writes stats data to file on disk.
+   * Moves series read from the journal or the legacy swap files to the configured storage.
+   *
+   * @param stats the series by name
+   * @return the series by name, moved where possible
+   */
+  private Map<String, StatsSeries> toStorage(Map<String, StatsSeries> stats) {
+    Map<String, StatsSeries> moved = new TreeMap<>();
+    for (Entry<String, StatsSeries> entry : stats.entrySet()) {
+      StatsSeries series = entry.getValue();
+      if (!isStored(series)) {
+        StatsSeries target = createStats(entry.getKey(), series.getCapacity());
+        target.clear();
+        series.forEach(target::add);
+        target.setRollups(series.getRollups());
+        series = target;
+      }
+      moved.put(entry.getKey(), series);
+    }
+    return moved;
+  }
+
+  /**
+   * Writes a snapshot of all series and starts a new journal log. Collectors are only held for as
+   * long as it takes to copy the series, the snapshot is written afterwards.
    *
    * @throws InterruptedException if a lock cannot be obtained
    */
-  public synchronized void serialize() throws InterruptedException {
-    lock.lockForCommit();
+  private void compact() throws InterruptedException {
+    Map<String, StatsSeries> copy = new TreeMap<>();
+    long generation;
+    lock.writeLock().lockInterruptibly();
     long start = System.currentTimeMillis();
     try {
-      shiftFiles(0);
-      try (OutputStream os = Files.newOutputStream(makeFile().toPath())) {
-        xstream.toXML(statsData, os);
+      for (Entry<String, StatsSeries> entry : statsData.entrySet()) {
+        copy.put(entry.getKey(), entry.getValue().copy());
       }
-    } catch (Exception e) {
-      logger.error("Could not write stats data to '{}'", makeFile().getAbsolutePath(), e);
+      generation = journal.rotate();
+    } catch (IOException e) {
+      logger.error("Could not start a new stats log '{}'", makeFile(journalFileName), e);
+      return;
+    } finally {
+      lock.writeLock().unlock();
+    }
+    try {
+      journal.writeSnapshot(copy, generation);
+    } catch (IOException e) {
+      logger.error("Could not write stats data to '{}'",
+          makeFile(snapshotFileName).getAbsolutePath(), e);
     } finally {
-      lock.releaseCommitLock();
-      logger.debug("stats serialized in {}ms", System.currentTimeMillis() - start);
+      logger.debug("stats compacted in {}ms", System.currentTimeMillis() - start);
     }
   }
 
   /**
-   * Deserialize.
+   * Deserialize. Reads the XML swap files written by earlier versions, so that history survives
+   * the upgrade to the binary journal. Files written before series were kept in ring buffers hold
+   * lists of {@link XYDataItem}; those are converted on the fly.
    *
    * @param file the file
    * @return the map
    */
   @SuppressWarnings("unchecked")
-  private Map<String, List<XYDataItem>> deserialize(File file) {
-    Map<String, List<XYDataItem>> stats = null;
+  private Map<String, StatsSeries> deserialize(File file) {
+    Map<String, StatsSeries> stats = null;
     if (file.exists() && file.canRead()) {
       long start = System.currentTimeMillis();
       try {
         try (InputStream fis = Files.newInputStream(file.toPath())) {
-          stats = (Map<String, List<XYDataItem>>) (new XStream().fromXML(fis));
-
-          if (stats != null) {
-            // adjust stats data so that charts look realistic.
-            // we do that by ending the previous stats group with 0 value
-            // and starting the current stats group also with 0
-            // thus giving the chart nice plunge to zero indicating downtime
-            // and lets not bother about rotating stats;
-            // regular stats collection cycle will do it
-
-            for (Entry<String, List<XYDataItem>> set : stats.entrySet()) {
-              List<XYDataItem> list = set.getValue();
-              if (!list.isEmpty()) {
-                XYDataItem xy = list.get(list.size() - 1);
-                list.add(new XYDataItem(xy.getX().longValue() + 1, 0));
-                list.add(new XYDataItem(System.currentTimeMillis(), 0));
+          Map<String, Object> data = (Map<String, Object>) new XStream().fromXML(fis);
+
+          if (data != null) {
+            stats = new TreeMap<>();
+            for (Entry<String, Object> entry : data.entrySet()) {
+              StatsSeries series = toSeries(entry.getValue());
+              if (series != null) {
+                stats.put(entry.getKey(), series);
               }
             }
           }
@@ -309,50 +663,130 @@ public class StatsCollection implements InitializingBean, DisposableBean, Applic
     return stats;
   }
 
+  /**
+   * Converts a deserialized value to a series.
+   *
+   * @param value either a {@link StatsSeries} or a legacy list of {@link XYDataItem}
+   * @return the stats series, or null if the value is not recognized
+   */
+  private static StatsSeries toSeries(Object value) {
+    if (value instanceof StatsSeries) {
+      return (StatsSeries) value;
+    }
+    if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      // leave room for the two downtime markers; collectors resize to their own limit
+      StatsSeries series = new StatsSeries(list.size() + 2);
+      for (Object item : list) {
+        if (item instanceof XYDataItem) {
+          XYDataItem xy = (XYDataItem) item;
+          series.add(xy.getX().longValue(), xy.getYValue());
+        }
+      }
+      return series;
+    }
+    return null;
+  }
+
+  /**
+   * Adjusts stats data read back from disk so that charts look realistic. We do that by ending the
+   * previous stats group with 0 value and starting the current stats group also with 0, thus
+   * giving the chart nice plunge to zero indicating downtime. Lets not bother about rotating
+   * stats; regular stats collection cycle will do it.
+   *
+   * @param stats the stats
+   */
+  private static void markDowntime(Map<String, StatsSeries> stats) {
+    long now = System.currentTimeMillis();
+    for (StatsSeries series : stats.values()) {
+      if (!series.isEmpty()) {
+        series.add(series.getLastTime() + 1, 0);
+        series.add(now, 0);
+      }
+    }
+  }
+
   /**
    * Lock for update.
    *
    * @throws InterruptedException the interrupted exception
    */
   public void lockForUpdate() throws InterruptedException {
-    lock.lockForUpdate();
+    lock.readLock().lockInterruptibly();
   }
 
   /**
    * Release lock.
    */
   public void releaseLock() {
-    lock.releaseUpdateLock();
+    lock.readLock().unlock();
   }
 
   /**
-   * Reads stats data from file on disk.
+   * Reads stats data from disk: the memory-mapped series when that storage is selected, otherwise
+   * the binary snapshot and journal if present, and the legacy XML swap files as a last resort.
+   * With heap storage a fresh snapshot is written right away so that the journal starts empty.
+   *
+   * @throws InterruptedException if a lock cannot be obtained
    */
   @Override
-  public synchronized void afterPropertiesSet() {
-    int index = 0;
-    Map<String, List<XYDataItem>> stats;
+  public void afterPropertiesSet() throws InterruptedException {
+    StatsJournal storedJournal =
+        new StatsJournal(makeFile(snapshotFileName), makeFile(journalFileName));
+    Map<String, StatsSeries> stats = mappedStorage ? openMapped() : null;
 
-    while (true) {
-      File file = index == 0 ? makeFile() : new File(makeFile().getAbsolutePath() + "." + index);
+    if (stats != null && makeRollupFile().exists()) {
+      try {
+        StatsJournal.readRollups(makeRollupFile(), stats);
+      } catch (IOException e) {
+        logger.error("Could not read stats rollups from '{}'", makeRollupFile(), e);
+      }
+    }
+
+    if (stats == null && storedJournal.exists()) {
+      long start = System.currentTimeMillis();
+      try {
+        stats = storedJournal.load();
+        logger.debug("stats data read in {}ms", System.currentTimeMillis() - start);
+      } catch (IOException e) {
+        logger.error("Could not read stats data from '{}'",
+            makeFile(snapshotFileName).getAbsolutePath(), e);
+      }
+    }
+
+    int index = 0;
+    while (stats == null && index < maxFiles) {
+      File file = index == 0 ? makeFile(swapFileName)
+          : new File(makeFile(swapFileName).getAbsolutePath() + "." + index);
       stats = deserialize(file);
       index += 1;
-      if (stats != null || index >= maxFiles - 1) {
-        break;
-      }
     }
 
     if (stats != null) {
-      statsData = stats;
+      stats = toStorage(stats);
+      for (StatsSeries series : stats.values()) {
+        applyRollups(series);
+      }
+      markDowntime(stats);
+      statsData.putAll(stats);
     } else {
       logger.debug("Stats data file not found. Empty file assumed.");
     }
 
+    if (!mappedStorage) {
+      journal = storedJournal;
+      compact();
+    }
   }
 
   @Override
   public void destroy() throws Exception {
-    serialize();
+    if (mappedStorage) {
+      forceMapped();
+    }
+    if (journal != null) {
+      journal.close();
+    }
   }
 
   @Override
@@ -0,0 +1,648 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.model.stats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binary persistence for {@link StatsCollection}. Every collected sample is appended to a write
+ * ahead log as it arrives; the full history is only rewritten when the log is compacted into a
+ * snapshot. Appends are buffered and handed to the OS by {@link #flush()} on every serializer tick,
+ * so a crash loses at most the samples of one serializer interval.
+ *
+ * <p>
+ * All collectors append to the one journal, each sample while holding the update lock of the
+ * collection, so appending only adds the record to a lock-free queue. The queue is written to the
+ * log under the monitor of the journal by {@link #flush()}, or by the appending thread that finds
+ * {@link #DRAIN_THRESHOLD} records pending, which keeps the queue bounded when the serializer runs
+ * rarely. Collector threads thus take the monitor once per few thousand samples rather than for
+ * every sample.
+ * </p>
+ *
+ * <p>
+ * Each snapshot and each log carries a generation number. Compaction closes the log of generation
+ * <i>n</i>, keeps it aside as previous log <i>n</i>, starts an empty log of generation <i>n+1</i>
+ * and then writes snapshot <i>n+1</i>. Previous logs are only deleted once a snapshot covering
+ * them has been written, and on load logs older than the snapshot are ignored, so a crash at any
+ * point of the compaction, even one repeated before a snapshot could be written, neither loses nor
+ * duplicates samples.
+ * </p>
+ */
+public class StatsJournal {
+
+  /** The Constant logger. */
+  private static final Logger logger = LoggerFactory.getLogger(StatsJournal.class);
+
+  /** The Constant SNAPSHOT_MAGIC. */
+  private static final int SNAPSHOT_MAGIC = 0x5053534E;
+
+  /** The Constant LOG_MAGIC. */
+  private static final int LOG_MAGIC = 0x50535741;
+
+  /** The Constant ROLLUP_MAGIC. */
+  private static final int ROLLUP_MAGIC = 0x5053524C;
+
+  /** The Constant VERSION of the log and rollup file formats. */
+  private static final int VERSION = 1;
+
+  /** The Constant SNAPSHOT_VERSION, version 2 adds the rollups of each series. */
+  private static final int SNAPSHOT_VERSION = 2;
+
+  /** Record declaring a series id. */
+  private static final byte RECORD_DEFINE = 1;
+
+  /** Record holding one sample. */
+  private static final byte RECORD_SAMPLE = 2;
+
+  /** Record clearing a series. */
+  private static final byte RECORD_RESET = 3;
+
+  /** The Constant DRAIN_THRESHOLD, the number of pending records an appending thread writes. */
+  static final int DRAIN_THRESHOLD = 4096;
+
+  /** The snapshot file. */
+  private final File snapshotFile;
+
+  /** The log file. */
+  private final File logFile;
+
+  /** The previous log file written by older versions, which kept a single previous log. */
+  private final File previousLogFile;
+
+  /** The name prefix of the previous logs, followed by their generation. */
+  private final String previousLogPrefix;
+
+  /** The series ids declared in the current log. */
+  private final Map<String, Integer> ids = new HashMap<>();
+
+  /** The records appended but not written to the current log yet. */
+  private final Queue<Record> pending = new ConcurrentLinkedQueue<>();
+
+  /** The number of pending records. */
+  private final AtomicInteger pendingCount = new AtomicInteger();
+
+  /** The current log. */
+  private DataOutputStream out;
+
+  /** Whether a log is open, read by appending threads without the monitor. */
+  private volatile boolean open;
+
+  /** The current generation. */
+  private long generation;
+
+  /** The number of bytes written to the current log. */
+  private long logSize;
+
+  /**
+   * Instantiates a new stats journal.
+   *
+   * @param snapshotFile the snapshot file
+   * @param logFile the log file
+   */
+  public StatsJournal(File snapshotFile, File logFile) {
+    this.snapshotFile = snapshotFile;
+    this.logFile = logFile;
+    this.previousLogFile = new File(logFile.getAbsolutePath() + ".prev");
+    this.previousLogPrefix = logFile.getName() + ".prev.";
+  }
+
+  /**
+   * Checks whether a snapshot or a log exists.
+   *
+   * @return true, if there is anything to load
+   */
+  public boolean exists() {
+    return snapshotFile.exists() || logFile.exists() || previousLogFile.exists()
+        || !getPreviousLogs().isEmpty();
+  }
+
+  /**
+   * Reads the snapshot and replays the logs written after it.
+   *
+   * @return the series by name
+   * @throws IOException if the snapshot cannot be read
+   */
+  public synchronized Map<String, StatsSeries> load() throws IOException {
+    Map<String, StatsSeries> stats = new TreeMap<>();
+    generation = 0;
+    if (snapshotFile.exists()) {
+      generation = readSnapshot(snapshotFile, stats);
+    }
+    replay(previousLogFile, stats);
+    for (File file : getPreviousLogs().values()) {
+      replay(file, stats);
+    }
+    replay(logFile, stats);
+    return stats;
+  }
+
+  /**
+   * Gets the number of bytes appended to the current log.
+   *
+   * @return the log size
+   */
+  public synchronized long getLogSize() {
+    return logSize;
+  }
+
+  /**
+   * Gets the size of the last snapshot.
+   *
+   * @return the snapshot size
+   */
+  public long getSnapshotSize() {
+    return snapshotFile.length();
+  }
+
+  /**
+   * Appends a sample to the log.
+   *
+   * @param name the series name
+   * @param capacity the series capacity, recorded the first time the series is seen by this log
+   * @param time the time
+   * @param value the value
+   */
+  public void append(String name, int capacity, long time, double value) {
+    enqueue(new Record(RECORD_SAMPLE, name, capacity, time, value));
+  }
+
+  /**
+   * Records that a series was cleared.
+   *
+   * @param name the series name
+   * @param capacity the series capacity
+   */
+  public void reset(String name, int capacity) {
+    enqueue(new Record(RECORD_RESET, name, capacity, 0, 0));
+  }
+
+  /**
+   * Hands the buffered records of the current log to the OS.
+   */
+  public synchronized void flush() {
+    drain();
+    if (out == null) {
+      return;
+    }
+    try {
+      out.flush();
+    } catch (IOException e) {
+      logger.error("Could not flush '{}'", logFile.getAbsolutePath(), e);
+    }
+  }
+
+  /**
+   * Starts a new generation: the current log is set aside and an empty one is opened. The caller
+   * must make sure no samples are appended while the data for the next snapshot is being copied,
+   * and then call {@link #writeSnapshot(Map, long)} with the returned generation.
+   *
+   * @return the new generation
+   * @throws IOException if the new log cannot be created
+   */
+  public synchronized long rotate() throws IOException {
+    drain();
+    closeLog();
+    if (logFile.exists()) {
+      // every generation keeps its own previous log, so one that no snapshot covers yet is never
+      // replaced when compactions fail to write their snapshots
+      Files.move(logFile.toPath(), previousLogFile(generation).toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    }
+    generation++;
+    ids.clear();
+    out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(logFile.toPath())));
+    out.writeInt(LOG_MAGIC);
+    out.writeInt(VERSION);
+    out.writeLong(generation);
+    out.flush();
+    logSize = out.size();
+    open = true;
+    return generation;
+  }
+
+  /**
+   * Writes a snapshot and drops the previous logs it supersedes.
+   *
+   * @param stats the series to write, must not be modified concurrently
+   * @param snapshotGeneration the generation returned by {@link #rotate()}
+   * @throws IOException if the snapshot cannot be written
+   */
+  public void writeSnapshot(Map<String, StatsSeries> stats, long snapshotGeneration)
+      throws IOException {
+    File tmpFile = new File(snapshotFile.getAbsolutePath() + ".tmp");
+    try (DataOutputStream dos = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(tmpFile.toPath())))) {
+      dos.writeInt(SNAPSHOT_MAGIC);
+      dos.writeInt(SNAPSHOT_VERSION);
+      dos.writeLong(snapshotGeneration);
+      dos.writeInt(stats.size());
+      for (Map.Entry<String, StatsSeries> entry : stats.entrySet()) {
+        StatsSeries series = entry.getValue();
+        dos.writeUTF(entry.getKey());
+        dos.writeInt(series.getCapacity());
+        dos.writeInt(series.size());
+        IOException[] failure = new IOException[1];
+        series.forEach((time, value) -> {
+          try {
+            dos.writeLong(time);
+            dos.writeDouble(value);
+          } catch (IOException e) {
+            failure[0] = e;
+          }
+        });
+        if (failure[0] != null) {
+          throw failure[0];
+        }
+        writeRollups(dos, series);
+      }
+    }
+    Files.move(tmpFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    Files.deleteIfExists(previousLogFile.toPath());
+    for (Map.Entry<Long, File> entry : getPreviousLogs().entrySet()) {
+      if (entry.getKey() < snapshotGeneration) {
+        Files.deleteIfExists(entry.getValue().toPath());
+      }
+    }
+  }
+
+  /**
+   * Gets the previous log of a generation.
+   *
+   * @param logGeneration the generation of the log
+   * @return the previous log file
+   */
+  private File previousLogFile(long logGeneration) {
+    return new File(logFile.getAbsoluteFile().getParentFile(), previousLogPrefix + logGeneration);
+  }
+
+  /**
+   * Gets the previous logs not yet superseded by a snapshot.
+   *
+   * @return the previous log files by generation, oldest first
+   */
+  private SortedMap<Long, File> getPreviousLogs() {
+    SortedMap<Long, File> logs = new TreeMap<>();
+    File[] files = logFile.getAbsoluteFile().getParentFile()
+        .listFiles((dir, name) -> name.startsWith(previousLogPrefix));
+    if (files != null) {
+      for (File file : files) {
+        try {
+          logs.put(Long.valueOf(file.getName().substring(previousLogPrefix.length())), file);
+        } catch (NumberFormatException e) {
+          logger.debug("Ignoring '{}'", file.getAbsolutePath());
+        }
+      }
+    }
+    return logs;
+  }
+
+  /**
+   * Writes the rollups of all series to a file of their own. Used when the raw samples are
+   * persisted by other means, see {@link MappedStatsSeries}.
+   *
+   * @param file the file
+   * @param stats the series
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void writeRollups(File file, Map<String, StatsSeries> stats) throws IOException {
+    File tmpFile = new File(file.getAbsolutePath() + ".tmp");
+    try (DataOutputStream dos = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(tmpFile.toPath())))) {
+      dos.writeInt(ROLLUP_MAGIC);
+      dos.writeInt(VERSION);
+      dos.writeInt(stats.size());
+      for (Map.Entry<String, StatsSeries> entry : stats.entrySet()) {
+        dos.writeUTF(entry.getKey());
+        StatsSeries series = entry.getValue();
+        synchronized (series) {
+          writeRollups(dos, series);
+        }
+      }
+    }
+    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Reads rollups written by {@link #writeRollups(File, Map)} into the matching series.
+   *
+   * @param file the file
+   * @param stats the series
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void readRollups(File file, Map<String, StatsSeries> stats) throws IOException {
+    try (DataInputStream dis = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      if (dis.readInt() != ROLLUP_MAGIC || dis.readInt() != VERSION) {
+        throw new IOException("Unsupported stats rollups " + file.getAbsolutePath());
+      }
+      int count = dis.readInt();
+      for (int i = 0; i < count; i++) {
+        String name = dis.readUTF();
+        StatsRollup[] rollups = readRollups(dis);
+        StatsSeries series = stats.get(name);
+        if (series != null) {
+          series.setRollups(rollups);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the rollups of a series.
+   *
+   * @param dos the output
+   * @param series the series
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void writeRollups(DataOutputStream dos, StatsSeries series) throws IOException {
+    StatsRollup[] rollups = series.getRollups();
+    dos.writeInt(rollups.length);
+    for (StatsRollup rollup : rollups) {
+      dos.writeLong(rollup.getResolution());
+      dos.writeInt(rollup.getCapacity());
+      dos.writeInt(rollup.size());
+      IOException[] failure = new IOException[1];
+      rollup.forEachBucket((start, min, max, sum, count) -> {
+        try {
+          dos.writeLong(start);
+          dos.writeDouble(min);
+          dos.writeDouble(max);
+          dos.writeDouble(sum);
+          dos.writeInt(count);
+        } catch (IOException e) {
+          failure[0] = e;
+        }
+      });
+      if (failure[0] != null) {
+        throw failure[0];
+      }
+    }
+  }
+
+  /**
+   * Reads the rollups of a series.
+   *
+   * @param dis the input
+   * @return the rollups
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static StatsRollup[] readRollups(DataInputStream dis) throws IOException {
+    StatsRollup[] rollups = new StatsRollup[dis.readInt()];
+    for (int i = 0; i < rollups.length; i++) {
+      rollups[i] = new StatsRollup(dis.readLong(), dis.readInt());
+      int size = dis.readInt();
+      for (int j = 0; j < size; j++) {
+        rollups[i].merge(dis.readLong(), dis.readDouble(), dis.readDouble(), dis.readDouble(),
+            dis.readInt());
+      }
+    }
+    return rollups;
+  }
+
+  /**
+   * Closes the current log.
+   */
+  public synchronized void close() {
+    drain();
+    closeLog();
+  }
+
+  /**
+   * Closes the current log.
+   */
+  private void closeLog() {
+    open = false;
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException e) {
+        logger.error("Could not close '{}'", logFile.getAbsolutePath(), e);
+      }
+      out = null;
+    }
+  }
+
+  /**
+   * Queues a record for the current log, and writes the queue out if it grew long.
+   *
+   * @param record the record
+   */
+  private void enqueue(Record record) {
+    if (!open) {
+      return;
+    }
+    pending.add(record);
+    if (pendingCount.incrementAndGet() >= DRAIN_THRESHOLD) {
+      synchronized (this) {
+        drain();
+      }
+    }
+  }
+
+  /**
+   * Writes the pending records to the current log. Must be called while holding the monitor.
+   */
+  private void drain() {
+    Record record;
+    while ((record = pending.poll()) != null) {
+      pendingCount.decrementAndGet();
+      if (out == null) {
+        continue;
+      }
+      try {
+        int id = idOf(record.name, record.capacity);
+        out.writeByte(record.type);
+        out.writeInt(id);
+        if (record.type == RECORD_SAMPLE) {
+          out.writeLong(record.time);
+          out.writeDouble(record.value);
+        }
+      } catch (IOException e) {
+        logger.error("Could not append to '{}'", logFile.getAbsolutePath(), e);
+      }
+    }
+    if (out != null) {
+      logSize = out.size();
+    }
+  }
+
+  /**
+   * Returns the id of a series in the current log, declaring it if needed.
+   *
+   * @param name the name
+   * @param capacity the capacity
+   * @return the id
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private int idOf(String name, int capacity) throws IOException {
+    Integer id = ids.get(name);
+    if (id == null) {
+      id = ids.size();
+      out.writeByte(RECORD_DEFINE);
+      out.writeInt(id);
+      out.writeUTF(name);
+      out.writeInt(capacity);
+      ids.put(name, id);
+    }
+    return id;
+  }
+
+  /**
+   * Reads a snapshot.
+   *
+   * @param file the file
+   * @param stats the map to fill
+   * @return the generation of the snapshot
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static long readSnapshot(File file, Map<String, StatsSeries> stats) throws IOException {
+    try (DataInputStream dis = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      int version = dis.readInt() == SNAPSHOT_MAGIC ? dis.readInt() : -1;
+      if (version < 1 || version > SNAPSHOT_VERSION) {
+        throw new IOException("Unsupported stats snapshot " + file.getAbsolutePath());
+      }
+      long snapshotGeneration = dis.readLong();
+      int count = dis.readInt();
+      for (int i = 0; i < count; i++) {
+        String name = dis.readUTF();
+        StatsSeries series = new StatsSeries(dis.readInt());
+        int size = dis.readInt();
+        for (int j = 0; j < size; j++) {
+          series.add(dis.readLong(), dis.readDouble());
+        }
+        if (version > 1) {
+          series.setRollups(readRollups(dis));
+        }
+        stats.put(name, series);
+      }
+      return snapshotGeneration;
+    }
+  }
+
+  /**
+   * Replays a log on top of the snapshot, if it is not older than the snapshot. A record cut short
+   * by a crash ends the replay.
+   *
+   * @param file the file
+   * @param stats the series to update
+   */
+  private void replay(File file, Map<String, StatsSeries> stats) {
+    if (!file.exists()) {
+      return;
+    }
+    Map<Integer, StatsSeries> seriesById = new HashMap<>();
+    try (DataInputStream dis = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      if (dis.readInt() != LOG_MAGIC || dis.readInt() != VERSION) {
+        logger.error("Ignoring unsupported stats log '{}'", file.getAbsolutePath());
+        return;
+      }
+      long logGeneration = dis.readLong();
+      if (logGeneration < generation) {
+        return;
+      }
+      generation = logGeneration;
+      while (true) {
+        byte type = dis.readByte();
+        int id = dis.readInt();
+        if (type == RECORD_DEFINE) {
+          String name = dis.readUTF();
+          int capacity = dis.readInt();
+          StatsSeries series = stats.get(name);
+          if (series == null) {
+            series = new StatsSeries(capacity);
+            stats.put(name, series);
+          }
+          seriesById.put(id, series);
+        } else if (type == RECORD_SAMPLE) {
+          long time = dis.readLong();
+          double value = dis.readDouble();
+          StatsSeries series = seriesById.get(id);
+          if (series != null) {
+            series.add(time, value);
+          }
+        } else if (type == RECORD_RESET) {
+          StatsSeries series = seriesById.get(id);
+          if (series != null) {
+            series.clear();
+          }
+        } else {
+          logger.error("Corrupt stats log '{}', ignoring the rest of it", file.getAbsolutePath());
+          return;
+        }
+      }
+    } catch (EOFException e) {
+      // end of the log, possibly a record cut short by a crash
+    } catch (IOException e) {
+      logger.error("Could not replay stats log '{}'", file.getAbsolutePath(), e);
+    }
+  }
+
+  /**
+   * A record appended but not written yet.
+   */
+  private static final class Record {
+
+    /** The record type. */
+    final byte type;
+
+    /** The series name. */
+    final String name;
+
+    /** The series capacity. */
+    final int capacity;
+
+    /** The time of the sample. */
+    final long time;
+
+    /** The value of the sample. */
+    final double value;
+
+    /**
+     * Instantiates a new record.
+     *
+     * @param type the record type
+     * @param name the series name
+     * @param capacity the series capacity
+     * @param time the time of the sample
+     * @param value the value of the sample
+     */
+    Record(byte type, String name, int capacity, long time, double value) {
+      this.type = type;
+      this.name = name;
+      this.capacity = capacity;
+      this.time = time;
+      this.value = value;
+    }
+
+  }
+
+}
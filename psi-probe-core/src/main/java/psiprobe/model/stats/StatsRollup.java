@@ -0,0 +1,379 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.model.stats;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Downsampled tier of a {@link StatsSeries}. Samples are aggregated into fixed-width buckets
+ * holding min, max, sum and count. Closed buckets are collected in a small uncompressed tail that
+ * is sealed into {@link StatsChunk}s once full, one chunk per aggregate, the same way
+ * {@link CompressedStatsSeries} keeps raw samples: bucket starts are evenly spaced and aggregates
+ * change slowly, so a bucket takes a few bytes instead of thirty-six. The bucket being filled is
+ * kept aside until a sample of a later bucket arrives.
+ *
+ * <p>
+ * A rollup is not thread safe, it is guarded by the monitor of the series owning it.
+ * </p>
+ */
+public class StatsRollup implements Serializable {
+
+  /** The Constant serialVersionUID. */
+  private static final long serialVersionUID = 2L;
+
+  /** The number of buckets in the uncompressed tail, and so in a chunk. */
+  private static final int CHUNK_SIZE = 32;
+
+  /** Index of the minimums in a sealed block. */
+  private static final int MIN = 0;
+
+  /** Index of the maximums in a sealed block. */
+  private static final int MAX = 1;
+
+  /** Index of the sums in a sealed block. */
+  private static final int SUM = 2;
+
+  /** Index of the counts in a sealed block. */
+  private static final int COUNT = 3;
+
+  /** The bucket width in milliseconds. */
+  private final long resolution;
+
+  /** The max number of closed buckets kept. */
+  private int capacity;
+
+  /** The sealed blocks, oldest first, each holding min, max, sum and count chunks. */
+  private Deque<StatsChunk[]> blocks = new ArrayDeque<>();
+
+  /** The number of evicted buckets at the start of the oldest block. */
+  private int skip;
+
+  /** The number of closed buckets. */
+  private int size;
+
+  /** The bucket start times of the uncompressed tail. */
+  private long[] tailStarts;
+
+  /** The aggregates of the uncompressed tail, by block index. */
+  private double[][] tail;
+
+  /** The number of buckets in the uncompressed tail. */
+  private int tailSize;
+
+  /** The start of the open bucket. */
+  private long openStart;
+
+  /** The min of the open bucket. */
+  private double openMin;
+
+  /** The max of the open bucket. */
+  private double openMax;
+
+  /** The sum of the open bucket. */
+  private double openSum;
+
+  /** The sample count of the open bucket, 0 if there is no open bucket. */
+  private int openCount;
+
+  /**
+   * Instantiates a new stats rollup.
+   *
+   * @param resolution the bucket width in milliseconds
+   * @param capacity the max number of closed buckets kept
+   */
+  public StatsRollup(long resolution, int capacity) {
+    this.resolution = Math.max(resolution, 1);
+    allocate(Math.max(capacity, 1));
+  }
+
+  /**
+   * Gets the bucket width in milliseconds.
+   *
+   * @return the resolution
+   */
+  public long getResolution() {
+    return resolution;
+  }
+
+  /**
+   * Gets the max number of closed buckets kept.
+   *
+   * @return the capacity
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Gets the number of buckets, including the open one.
+   *
+   * @return the number of buckets
+   */
+  public int size() {
+    return openCount > 0 ? size + 1 : size;
+  }
+
+  /**
+   * Checks whether the oldest bucket has already been evicted.
+   *
+   * @return true, if the closed buckets fill the capacity
+   */
+  public boolean isFull() {
+    return size == capacity;
+  }
+
+  /**
+   * Gets the start of the oldest bucket.
+   *
+   * @return the oldest time, or {@link Long#MAX_VALUE} if there are no buckets
+   */
+  public long getOldestTime() {
+    if (!blocks.isEmpty()) {
+      return blocks.peekFirst()[MIN].getTime(skip);
+    }
+    if (tailSize > 0) {
+      return tailStarts[0];
+    }
+    return openCount > 0 ? openStart : Long.MAX_VALUE;
+  }
+
+  /**
+   * Gets the number of bytes taken by the closed buckets, compressed and uncompressed.
+   *
+   * @return the memory size
+   */
+  public long getMemorySize() {
+    long bytes = (long) tailStarts.length * (Long.BYTES + tail.length * Double.BYTES);
+    for (StatsChunk[] block : blocks) {
+      for (StatsChunk chunk : block) {
+        bytes += chunk.getEncodedSize();
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Aggregates a sample.
+   *
+   * @param time the time
+   * @param value the value
+   */
+  public void add(long time, double value) {
+    merge(time - Math.floorMod(time, resolution), value, value, value, 1);
+  }
+
+  /**
+   * Merges a pre-aggregated bucket. Buckets must arrive in time order; a bucket older than the
+   * open one is folded into it.
+   *
+   * @param start the bucket start
+   * @param min the min
+   * @param max the max
+   * @param sum the sum
+   * @param count the count
+   */
+  public void merge(long start, double min, double max, double sum, int count) {
+    if (count <= 0) {
+      return;
+    }
+    if (openCount > 0 && start > openStart) {
+      close();
+    }
+    if (openCount == 0) {
+      openStart = start;
+      openMin = min;
+      openMax = max;
+      openSum = sum;
+      openCount = count;
+    } else {
+      openMin = Math.min(openMin, min);
+      openMax = Math.max(openMax, max);
+      openSum += sum;
+      openCount += count;
+    }
+  }
+
+  /**
+   * Changes the capacity, keeping the most recent buckets.
+   *
+   * @param capacity the new capacity
+   */
+  public void setCapacity(int capacity) {
+    int cap = Math.max(capacity, 1);
+    if (cap == this.capacity) {
+      return;
+    }
+    StatsRollup resized = new StatsRollup(resolution, cap);
+    forEachBucket(resized::merge);
+    this.capacity = resized.capacity;
+    blocks = resized.blocks;
+    skip = resized.skip;
+    size = resized.size;
+    tailStarts = resized.tailStarts;
+    tail = resized.tail;
+    tailSize = resized.tailSize;
+    openStart = resized.openStart;
+    openMin = resized.openMin;
+    openMax = resized.openMax;
+    openSum = resized.openSum;
+    openCount = resized.openCount;
+  }
+
+  /**
+   * Removes all buckets.
+   */
+  public void clear() {
+    allocate(capacity);
+    openCount = 0;
+  }
+
+  /**
+   * Copies the rollup. Sealed blocks are immutable and shared with the copy.
+   *
+   * @return an independent copy of the rollup
+   */
+  public StatsRollup copy() {
+    StatsRollup copy = new StatsRollup(resolution, capacity);
+    copy.blocks.addAll(blocks);
+    copy.skip = skip;
+    copy.size = size;
+    System.arraycopy(tailStarts, 0, copy.tailStarts, 0, tailSize);
+    for (int i = 0; i < tail.length; i++) {
+      System.arraycopy(tail[i], 0, copy.tail[i], 0, tailSize);
+    }
+    copy.tailSize = tailSize;
+    copy.openStart = openStart;
+    copy.openMin = openMin;
+    copy.openMax = openMax;
+    copy.openSum = openSum;
+    copy.openCount = openCount;
+    return copy;
+  }
+
+  /**
+   * Visits the average of every bucket starting at or after the given time, oldest first.
+   *
+   * @param from the earliest bucket start to visit
+   * @param visitor the visitor
+   */
+  public void forEach(long from, StatsSeries.DataPointVisitor visitor) {
+    forEachBucket((start, min, max, sum, count) -> {
+      if (start >= from) {
+        visitor.visit(start, sum / count);
+      }
+    });
+  }
+
+  /**
+   * Visits every bucket, oldest first, the open bucket last.
+   *
+   * @param visitor the visitor
+   */
+  public void forEachBucket(BucketVisitor visitor) {
+    int from = skip;
+    for (StatsChunk[] block : blocks) {
+      int count = block[MIN].size();
+      long[] starts = new long[count];
+      double[][] values = new double[block.length][count];
+      for (int i = 0; i < block.length; i++) {
+        double[] decoded = values[i];
+        int[] index = new int[1];
+        block[i].forEach(0, (time, value) -> {
+          starts[index[0]] = time;
+          decoded[index[0]++] = value;
+        });
+      }
+      for (int j = from; j < count; j++) {
+        visitor.visit(starts[j], values[MIN][j], values[MAX][j], values[SUM][j],
+            (int) values[COUNT][j]);
+      }
+      from = 0;
+    }
+    for (int j = 0; j < tailSize; j++) {
+      visitor.visit(tailStarts[j], tail[MIN][j], tail[MAX][j], tail[SUM][j], (int) tail[COUNT][j]);
+    }
+    if (openCount > 0) {
+      visitor.visit(openStart, openMin, openMax, openSum, openCount);
+    }
+  }
+
+  /**
+   * Moves the open bucket to the tail, sealing the tail first if it is full and evicting the oldest
+   * bucket if the capacity is reached.
+   */
+  private void close() {
+    if (tailSize == tailStarts.length) {
+      StatsChunk[] block = new StatsChunk[tail.length];
+      for (int i = 0; i < tail.length; i++) {
+        block[i] = StatsChunk.encode(tailStarts, tail[i], tailSize);
+      }
+      blocks.addLast(block);
+      tailSize = 0;
+    }
+    tailStarts[tailSize] = openStart;
+    tail[MIN][tailSize] = openMin;
+    tail[MAX][tailSize] = openMax;
+    tail[SUM][tailSize] = openSum;
+    tail[COUNT][tailSize] = openCount;
+    tailSize++;
+    openCount = 0;
+    if (size < capacity) {
+      size++;
+    } else {
+      // the tail is never larger than the capacity, so a full rollup has a block to evict from
+      skip++;
+      if (skip == blocks.peekFirst()[MIN].size()) {
+        blocks.removeFirst();
+        skip = 0;
+      }
+    }
+  }
+
+  /**
+   * Allocates an empty rollup.
+   *
+   * @param newCapacity the capacity
+   */
+  private void allocate(int newCapacity) {
+    capacity = newCapacity;
+    int tailCapacity = Math.min(CHUNK_SIZE, newCapacity);
+    if (tailStarts == null || tailStarts.length != tailCapacity) {
+      tailStarts = new long[tailCapacity];
+      tail = new double[COUNT + 1][tailCapacity];
+    }
+    blocks.clear();
+    skip = 0;
+    size = 0;
+    tailSize = 0;
+  }
+
+  /**
+   * Receives the buckets of a rollup.
+   */
+  @FunctionalInterface
+  public interface BucketVisitor {
+
+    /**
+     * Visit.
+     *
+     * @param start the bucket start
+     * @param min the min
+     * @param max the max
+     * @param sum the sum
+     * @param count the count
+     */
+    void visit(long start, double min, double max, double sum, int count);
+
+  }
+
+}
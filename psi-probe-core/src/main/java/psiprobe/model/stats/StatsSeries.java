@@ -0,0 +1,371 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.model.stats;
+
+import java.io.Serializable;
+
+/**
+ * Fixed capacity time series of (time, value) samples kept in primitive arrays. The series is a
+ * ring buffer: appending to a full series overwrites the oldest sample, so neither appends nor
+ * evictions allocate or shift memory. Subclasses may keep the samples elsewhere by overriding the
+ * storage methods, see {@link MappedStatsSeries}, or lay them out differently altogether by also
+ * overriding the accessors, see {@link CompressedStatsSeries}.
+ *
+ * <p>
+ * All public methods are synchronized on the series itself. Callers iterating the series should
+ * use {@link #forEach(DataPointVisitor)}, which holds the monitor for the whole walk, unless the
+ * series can visit an immutable snapshot instead, see {@link CompressedStatsSeries}.
+ * </p>
+ */
+public class StatsSeries implements Serializable {
+
+  /** The Constant serialVersionUID. */
+  private static final long serialVersionUID = 1L;
+
+  /** The sample times. */
+  private long[] times;
+
+  /** The sample values. */
+  private double[] values;
+
+  /** The index of the oldest sample. */
+  private int head;
+
+  /** The number of samples held. */
+  private int size;
+
+  /** The downsampled tiers, finest resolution first. */
+  private StatsRollup[] rollups = new StatsRollup[0];
+
+  /**
+   * Instantiates a new stats series.
+   *
+   * @param capacity the max number of samples kept
+   */
+  public StatsSeries(int capacity) {
+    int cap = Math.max(capacity, 1);
+    times = new long[cap];
+    values = new double[cap];
+  }
+
+  /**
+   * Instantiates a new stats series for subclasses that keep samples in their own storage. Such
+   * subclasses override all storage methods and call {@link #restorePosition(int, int)} once their
+   * storage holds samples.
+   */
+  protected StatsSeries() {
+    // storage is provided by the subclass
+  }
+
+  /**
+   * Appends a sample, evicting the oldest one if the series is full.
+   *
+   * @param time the time
+   * @param value the value
+   */
+  public synchronized void add(long time, double value) {
+    append(time, value);
+    for (StatsRollup rollup : rollups) {
+      rollup.add(time, value);
+    }
+  }
+
+  /**
+   * Gets the number of samples held.
+   *
+   * @return the int
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Checks if the series is empty.
+   *
+   * @return true, if is empty
+   */
+  public synchronized boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Gets the capacity.
+   *
+   * @return the capacity
+   */
+  public synchronized int getCapacity() {
+    return capacity();
+  }
+
+  /**
+   * Changes the capacity, keeping the most recent samples.
+   *
+   * @param capacity the new capacity
+   */
+  public synchronized void setCapacity(int capacity) {
+    int cap = Math.max(capacity, 1);
+    int oldCapacity = capacity();
+    if (cap == oldCapacity) {
+      return;
+    }
+    int keep = Math.min(size, cap);
+    long[] keptTimes = new long[keep];
+    double[] keptValues = new double[keep];
+    for (int i = 0; i < keep; i++) {
+      int slot = (head + size - keep + i) % oldCapacity;
+      keptTimes[i] = readTime(slot);
+      keptValues[i] = readValue(slot);
+    }
+    allocate(cap);
+    for (int i = 0; i < keep; i++) {
+      write(i, keptTimes[i], keptValues[i]);
+    }
+    head = 0;
+    size = keep;
+    positionChanged(head, size);
+  }
+
+  /**
+   * Copies the series to the heap.
+   *
+   * @return an independent copy of the series
+   */
+  public synchronized StatsSeries copy() {
+    StatsSeries copy = copySamples();
+    copy.rollups = new StatsRollup[rollups.length];
+    for (int i = 0; i < rollups.length; i++) {
+      copy.rollups[i] = rollups[i].copy();
+    }
+    return copy;
+  }
+
+  /**
+   * Removes all samples.
+   */
+  public synchronized void clear() {
+    head = 0;
+    size = 0;
+    positionChanged(head, size);
+    for (StatsRollup rollup : rollups) {
+      rollup.clear();
+    }
+  }
+
+  /**
+   * Gets the downsampled tiers.
+   *
+   * @return the rollups, finest resolution first
+   */
+  public synchronized StatsRollup[] getRollups() {
+    return rollups.clone();
+  }
+
+  /**
+   * Sets the downsampled tiers. Rollups are fed by {@link #add(long, double)} from then on.
+   *
+   * @param rollups the rollups, finest resolution first
+   */
+  public synchronized void setRollups(StatsRollup... rollups) {
+    this.rollups = rollups.clone();
+  }
+
+  /**
+   * Gets the time of the oldest sample.
+   *
+   * @return the first time, or 0 if the series is empty
+   */
+  public synchronized long getFirstTime() {
+    return size == 0 ? 0 : readTime(head);
+  }
+
+  /**
+   * Gets the time of the most recent sample.
+   *
+   * @return the last time, or 0 if the series is empty
+   */
+  public synchronized long getLastTime() {
+    return size == 0 ? 0 : readTime((head + size - 1) % capacity());
+  }
+
+  /**
+   * Gets the value of the most recent sample.
+   *
+   * @return the last value, or 0 if the series is empty
+   */
+  public synchronized double getLastValue() {
+    return size == 0 ? 0 : readValue((head + size - 1) % capacity());
+  }
+
+  /**
+   * Visits all samples from the oldest to the most recent.
+   *
+   * @param visitor the visitor
+   */
+  public synchronized void forEach(DataPointVisitor visitor) {
+    int capacity = capacity();
+    for (int i = 0; i < size; i++) {
+      int slot = (head + i) % capacity;
+      visitor.visit(readTime(slot), readValue(slot));
+    }
+  }
+
+  /**
+   * Visits the samples of a time range at the finest resolution that covers it: raw samples if
+   * the oldest raw sample is not more recent than the start of the range, otherwise the first
+   * rollup that reaches back far enough, or the coarsest one if none does. Rollups are visited as
+   * one averaged sample per bucket.
+   *
+   * @param from the start of the range
+   * @param visitor the visitor
+   */
+  public void forEach(long from, DataPointVisitor visitor) {
+    synchronized (this) {
+      int count = size();
+      boolean rawCovers = count < getCapacity() || count > 0 && getFirstTime() <= from;
+      if (!rawCovers && rollups.length > 0) {
+        StatsRollup source = rollups[rollups.length - 1];
+        for (StatsRollup rollup : rollups) {
+          if (!rollup.isFull() || rollup.getOldestTime() <= from) {
+            source = rollup;
+            break;
+          }
+        }
+        source.forEach(from, visitor);
+        return;
+      }
+    }
+    forEach((time, value) -> {
+      if (time >= from) {
+        visitor.visit(time, value);
+      }
+    });
+  }
+
+  /**
+   * Stores a sample, evicting the oldest one if the series is full. Rollups are fed by the caller.
+   *
+   * @param time the time
+   * @param value the value
+   */
+  protected void append(long time, double value) {
+    int capacity = capacity();
+    int slot;
+    if (size < capacity) {
+      slot = (head + size) % capacity;
+      size++;
+    } else {
+      slot = head;
+      head = (head + 1) % capacity;
+    }
+    write(slot, time, value);
+    positionChanged(head, size);
+  }
+
+  /**
+   * Copies the samples to a new series without rollups.
+   *
+   * @return the copy
+   */
+  protected StatsSeries copySamples() {
+    StatsSeries copy = new StatsSeries(capacity());
+    forEach(copy::append);
+    return copy;
+  }
+
+  /**
+   * Restores the ring position of samples already present in the storage.
+   *
+   * @param head the index of the oldest sample
+   * @param size the number of samples
+   */
+  protected final void restorePosition(int head, int size) {
+    this.head = head;
+    this.size = size;
+  }
+
+  /**
+   * Gets the number of slots of the storage.
+   *
+   * @return the capacity
+   */
+  protected int capacity() {
+    return times.length;
+  }
+
+  /**
+   * Replaces the storage with an empty one of the given capacity.
+   *
+   * @param capacity the capacity
+   */
+  protected void allocate(int capacity) {
+    times = new long[capacity];
+    values = new double[capacity];
+  }
+
+  /**
+   * Reads the time of a slot.
+   *
+   * @param slot the slot
+   * @return the time
+   */
+  protected long readTime(int slot) {
+    return times[slot];
+  }
+
+  /**
+   * Reads the value of a slot.
+   *
+   * @param slot the slot
+   * @return the value
+   */
+  protected double readValue(int slot) {
+    return values[slot];
+  }
+
+  /**
+   * Writes a slot.
+   *
+   * @param slot the slot
+   * @param time the time
+   * @param value the value
+   */
+  protected void write(int slot, long time, double value) {
+    times[slot] = time;
+    values[slot] = value;
+  }
+
+  /**
+   * Called whenever the ring position changes. Heap storage has nothing to do.
+   *
+   * @param head the index of the oldest sample
+   * @param size the number of samples
+   */
+  protected void positionChanged(int head, int size) {
+    // nothing to persist
+  }
+
+  /**
+   * Receives the samples of a series.
+   */
+  @FunctionalInterface
+  public interface DataPointVisitor {
+
+    /**
+     * Visit.
+     *
+     * @param time the time
+     * @param value the value
+     */
+    void visit(long time, double value);
+
+  }
+
+}
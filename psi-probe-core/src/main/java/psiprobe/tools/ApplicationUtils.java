@@ -16,10 +16,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import javax.naming.NamingException;
 import javax.servlet.ServletContext;
@@ -37,6 +41,7 @@ import org.springframework.util.ClassUtils;
 
 import psiprobe.beans.ContainerWrapperBean;
 import psiprobe.beans.ResourceResolver;
+import psiprobe.beans.ThreadInfoAccessorBean;
 import psiprobe.model.Application;
 import psiprobe.model.ApplicationParam;
 import psiprobe.model.ApplicationResource;
@@ -45,6 +50,7 @@ import psiprobe.model.Attribute;
 import psiprobe.model.FilterInfo;
 import psiprobe.model.ServletInfo;
 import psiprobe.model.ServletMapping;
+import psiprobe.model.SlowRequest;
 
 /**
  * The Class ApplicationUtils.
@@ -89,6 +95,25 @@ public final class ApplicationUtils {
    */
   public static Application getApplication(Context context, ResourceResolver resourceResolver,
       boolean calcSize, ContainerWrapperBean containerWrapper) {
+    return getApplication(context, resourceResolver, calcSize ? SizeBudget.unlimited() : null, 0,
+        containerWrapper);
+  }
+
+  /**
+   * Creates Application instance from Tomcat Context object, as
+   * {@link #getApplication(Context, ResourceResolver, boolean, ContainerWrapperBean)} does. When a
+   * size budget is passed, the session size is extrapolated from a random sample of sessions if
+   * there are more than the sample size, and is partial if the budget runs out.
+   *
+   * @param context the context from which to create the Application
+   * @param resourceResolver the resolver to use for resources associated with the given context
+   * @param sizeBudget the budget of session sizing, or null not to calculate session size
+   * @param sampleSize the number of sessions to size, 0 for all
+   * @param containerWrapper the wrapper for the context's root containing server
+   * @return Application object
+   */
+  public static Application getApplication(Context context, ResourceResolver resourceResolver,
+      SizeBudget sizeBudget, int sampleSize, ContainerWrapperBean containerWrapper) {
 
     // ContainerWrapperBean containerWrapper
     logger.debug("Querying webapp: {}", context.getName());
@@ -113,23 +138,36 @@ public final class ApplicationUtils {
       if (app.isAvailable()) {
         logger.debug("collecting session information");
 
-        app.setSessionCount(context.getManager().findSessions().length);
+        Session[] sessions = context.getManager().findSessions();
+        app.setSessionCount(sessions.length);
 
         boolean serializable = true;
         long sessionAttributeCount = 0;
-        long size = 0;
-
-        for (Session session : context.getManager().findSessions()) {
-          ApplicationSession appSession = getApplicationSession(session, calcSize, false);
+        boolean[] sampled =
+            sizeBudget == null ? null : SizeSample.pick(sessions.length, sampleSize);
+        SizeSample sizes = new SizeSample();
+
+        for (int i = 0; i < sessions.length; i++) {
+          boolean sized = sampled != null && sampled[i] && !sizeBudget.isExhausted();
+          ApplicationSession appSession =
+              getApplicationSession(sessions[i], context, sized ? sizeBudget : null, false);
           if (appSession != null) {
             sessionAttributeCount += appSession.getObjectCount();
             serializable = serializable && appSession.isSerializable();
-            size += appSession.getSize();
+            if (sized && appSession.isSizePartial()) {
+              sizes.addPartial(appSession.getSize());
+            } else if (sized) {
+              sizes.add(appSession.getSize());
+            }
           }
         }
         app.setSerializable(serializable);
         app.setSessionAttributeCount(sessionAttributeCount);
-        app.setSize(size);
+        app.setSize(sizes.getTotal(sessions.length));
+        app.setSizeError(sizes.getError(sessions.length));
+        app.setSizeSampleCount((int) sizes.getCount());
+        app.setSizePartialCount((int) sizes.getPartialCount());
+        app.setSizePartial(sizeBudget != null && sizeBudget.isPartial());
       }
 
       logger.debug("aggregating servlet stats");
@@ -223,6 +261,36 @@ public final class ApplicationUtils {
    */
   public static ApplicationSession getApplicationSession(Session session, boolean calcSize,
       boolean addAttributes) {
+    return getApplicationSession(session, null, calcSize, addAttributes);
+  }
+
+  /**
+   * Gets the application session, with its last access looked up in the side table of the agent
+   * valve when it is not kept in the session.
+   *
+   * @param session the session
+   * @param context the context of the session, or null
+   * @param calcSize the calc size
+   * @param addAttributes the add attributes
+   * @return the application session
+   */
+  public static ApplicationSession getApplicationSession(Session session, Context context,
+      boolean calcSize, boolean addAttributes) {
+    return getApplicationSession(session, context, calcSize ? SizeBudget.unlimited() : null,
+        addAttributes);
+  }
+
+  /**
+   * Gets the application session, sized until a budget is spent.
+   *
+   * @param session the session
+   * @param context the context of the session, or null
+   * @param sizeBudget the budget of sizing, or null not to calculate the size
+   * @param addAttributes the add attributes
+   * @return the application session
+   */
+  public static ApplicationSession getApplicationSession(Session session, Context context,
+      SizeBudget sizeBudget, boolean addAttributes) {
 
     ApplicationSession sbean = null;
     if (session != null && session.isValid()) {
@@ -247,9 +315,10 @@ public final class ApplicationUtils {
       boolean sessionSerializable = true;
       int attributeCount = 0;
       long size = 0;
+      long skippedFields = sizeBudget == null ? 0 : sizeBudget.getSkippedFields();
 
       HttpSession httpSession = session.getSession();
-      Set<Object> processedObjects = new HashSet<>(1000);
+      Set<Object> processedObjects = Collections.newSetFromMap(new IdentityHashMap<>(1000));
 
       // Exclude references back to the session itself
       processedObjects.add(httpSession);
@@ -259,10 +328,10 @@ public final class ApplicationUtils {
           sessionSerializable = sessionSerializable && obj instanceof Serializable;
 
           long objSize = 0;
-          if (calcSize) {
+          if (sizeBudget != null && !sizeBudget.isExhausted()) {
             try {
-              objSize += Instruments.sizeOf(name, processedObjects);
-              objSize += Instruments.sizeOf(obj, processedObjects);
+              objSize += Instruments.sizeOf(name, processedObjects, sizeBudget);
+              objSize += Instruments.sizeOf(obj, processedObjects, sizeBudget);
             } catch (Exception ex) {
               logger.error("Cannot estimate size of attribute '{}'", name, ex);
             }
@@ -282,10 +351,18 @@ public final class ApplicationUtils {
         }
         String lastAccessedIp =
             (String) httpSession.getAttribute(ApplicationSession.LAST_ACCESSED_BY_IP);
+        Locale lastAccessedLocale =
+            (Locale) httpSession.getAttribute(ApplicationSession.LAST_ACCESSED_LOCALE);
+        if (lastAccessedIp == null && context != null && context.getServletContext() != null) {
+          Object table =
+              context.getServletContext().getAttribute(LastAccessTable.CONTEXT_ATTRIBUTE);
+          lastAccessedIp = LastAccessTable.getIp(table, session.getIdInternal());
+          lastAccessedLocale = LastAccessTable.getLocale(table, session.getIdInternal());
+        }
         if (lastAccessedIp != null) {
           sbean.setLastAccessedIp(lastAccessedIp);
-          sbean.setLastAccessedIpLocale(
-              (Locale) httpSession.getAttribute(ApplicationSession.LAST_ACCESSED_LOCALE));
+          Locale ipLocale = GeoIpLocator.getLocale(lastAccessedIp);
+          sbean.setLastAccessedIpLocale(ipLocale != null ? ipLocale : lastAccessedLocale);
         }
 
       } catch (IllegalStateException e) {
@@ -295,6 +372,8 @@ public final class ApplicationUtils {
 
       sbean.setObjectCount(attributeCount);
       sbean.setSize(size);
+      sbean.setSizePartial(sizeBudget != null
+          && (sizeBudget.isExhausted() || sizeBudget.getSkippedFields() > skippedFields));
       sbean.setSerializable(sessionSerializable);
     }
 
@@ -378,6 +457,15 @@ public final class ApplicationUtils {
       si.setMinTime(sw.getMinTime() == Long.MAX_VALUE ? 0 : sw.getMinTime());
       si.setProcessingTime(sw.getProcessingTime());
       si.setRequestCount(sw.getRequestCount());
+      if (sw.getParent() instanceof Context) {
+        long[] latency = getLatencySnapshot((Context) sw.getParent(), sw.getName());
+        if (latency != null) {
+          si.setP95Time(TimeUnit.MICROSECONDS
+              .toMillis(LatencyHistogram.getValueAtPercentile(latency, 95)));
+          si.setP99Time(TimeUnit.MICROSECONDS
+              .toMillis(LatencyHistogram.getValueAtPercentile(latency, 99)));
+        }
+      }
       // Tomcat 7.0.72+, 8.0.37+, 8.5.5+, and 9.0.0.M10 modified from boolean to Boolean.
       // Since SingleThreadModel deprecated in servlet 2.4 with no direct replacement,
       // we will continue to handle as boolean. Previously calling this would have
@@ -398,6 +486,62 @@ public final class ApplicationUtils {
     return si;
   }
 
+  /**
+   * Gets a snapshot of a latency histogram recorded by the agent valve.
+   *
+   * @param context the context
+   * @param key the servlet name, or {@link LatencyHistogram#APPLICATION}
+   * @return the snapshot, or null if latency is not recorded
+   */
+  public static long[] getLatencySnapshot(Context context, String key) {
+    ServletContext servletContext = context.getServletContext();
+    Object histograms = servletContext == null ? null
+        : servletContext.getAttribute(LatencyHistogram.CONTEXT_ATTRIBUTE);
+    if (histograms instanceof Map) {
+      Object histogram = ((Map<?, ?>) histograms).get(key);
+      if (histogram instanceof AtomicLongArray) {
+        return LatencyHistogram.snapshot((AtomicLongArray) histogram);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Gets the slow requests kept by the agent valve, newest first.
+   *
+   * @param context the context
+   * @return the slow requests, empty if none are kept
+   */
+  public static List<SlowRequest> getSlowRequests(Context context) {
+    ServletContext servletContext = context.getServletContext();
+    Object ring = servletContext == null ? null
+        : servletContext.getAttribute(SlowRequestRing.CONTEXT_ATTRIBUTE);
+    if (!(ring instanceof AtomicReferenceArray)) {
+      return new ArrayList<>();
+    }
+    List<Map<String, Object>> entries =
+        SlowRequestRing.getRequests((AtomicReferenceArray<?>) ring);
+    List<SlowRequest> requests = new ArrayList<>(entries.size());
+    for (Map<String, Object> entry : entries) {
+      SlowRequest request = new SlowRequest();
+      request.setApplicationName(context.getName());
+      request.setTime(new Date((Long) entry.get(SlowRequestRing.TIME)));
+      request.setUri((String) entry.get(SlowRequestRing.URI));
+      request.setQueryString((String) entry.get(SlowRequestRing.QUERY));
+      request.setMethod((String) entry.get(SlowRequestRing.METHOD));
+      request.setDuration((Long) entry.get(SlowRequestRing.DURATION));
+      request.setThreadName((String) entry.get(SlowRequestRing.THREAD));
+      StackTraceElement[] stack = (StackTraceElement[]) entry.get(SlowRequestRing.STACK);
+      if (stack != null) {
+        for (StackTraceElement element : stack) {
+          request.getStackElements().add(ThreadInfoAccessorBean.toStackElement(element));
+        }
+      }
+      requests.add(request);
+    }
+    return requests;
+  }
+
   /**
    * Gets the application servlets.
    *
@@ -0,0 +1,240 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the lines of a file from the bottom up. The file is read backwards in large blocks into a
+ * direct buffer, which is searched for line feeds in place, and each line is decoded whole with
+ * the charset of the file, so that multi-byte characters and charsets such as UTF-16 decode
+ * correctly. A line feed ends a line and a carriage return before it is dropped.
+ */
+public class BackwardsLineScanner implements Closeable {
+
+  /** The Constant BLOCK_SIZE, the size of the reads of the file. */
+  private static final int BLOCK_SIZE = 64 * 1024;
+
+  /** The channel. */
+  private final FileChannel channel;
+
+  /** The charset. */
+  private final Charset charset;
+
+  /** The line feed, as encoded. */
+  private final byte[] lineFeed;
+
+  /** The carriage return, as encoded. */
+  private final byte[] carriageReturn;
+
+  /** The length of a code unit of the charset, which line feeds are aligned to. */
+  private final int unit;
+
+  /** The block read, holding the bytes of the file from the block start. */
+  private final ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE);
+
+  /** The offset of the block in the file. */
+  private long blockStart;
+
+  /** The bytes of the line being decoded. */
+  private byte[] line = new byte[256];
+
+  /** The offset after the next line, not counting its line feed; -1 once the start is reached. */
+  private long lineEnd;
+
+  /** The offset of the last line read. */
+  private long position;
+
+  /**
+   * Instantiates a new backwards line scanner reading from the end of a file.
+   *
+   * @param file the file
+   * @param charset the charset of the file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public BackwardsLineScanner(File file, Charset charset) throws IOException {
+    this(file, file.length(), charset);
+  }
+
+  /**
+   * Instantiates a new backwards line scanner reading from a position of a file.
+   *
+   * @param file the file
+   * @param end the offset the last line read ends at
+   * @param charset the charset of the file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public BackwardsLineScanner(File file, long end, Charset charset) throws IOException {
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    this.charset = charset;
+    // Encoding two line feeds tells the length of one apart from that of a byte order mark
+    byte[] two = encode("\n\n");
+    this.unit = two.length - encode("\n").length;
+    this.lineFeed = Arrays.copyOfRange(two, two.length - unit, two.length);
+    byte[] cr = encode("\r\r");
+    this.carriageReturn = Arrays.copyOfRange(cr, cr.length - unit, cr.length);
+    this.blockStart = Math.min(end, channel.size());
+    this.block.limit(0);
+    this.lineEnd = blockStart;
+    this.position = blockStart;
+    if (lineEnd == 0) {
+      lineEnd = -1;
+    } else if (matches(lineEnd - unit, lineFeed)) {
+      // A line feed at the end ends the last line rather than starting an empty one
+      lineEnd -= unit;
+    }
+  }
+
+  /**
+   * Encodes text in the charset of the file.
+   *
+   * @param text the text
+   * @return the bytes
+   * @throws CharacterCodingException if the charset cannot encode line ends
+   */
+  private byte[] encode(String text) throws CharacterCodingException {
+    ByteBuffer bytes = charset.newEncoder().encode(CharBuffer.wrap(text));
+    return Arrays.copyOf(bytes.array(), bytes.limit());
+  }
+
+  /**
+   * Reads the line before the last line read.
+   *
+   * @return the line, or null if the start of the file was reached
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public String readLine() throws IOException {
+    if (lineEnd < 0) {
+      return null;
+    }
+    long lineStart = lineEnd;
+    long feed = -1;
+    while (lineStart > 0 && feed < 0) {
+      if (lineStart <= blockStart) {
+        load(lineStart);
+      }
+      // Search the block for a line feed without leaving it
+      int i = (int) (lineStart - blockStart) - 1;
+      byte last = lineFeed[unit - 1];
+      for (; i >= 0; i--) {
+        if (block.get(i) == last) {
+          long offset = blockStart + i - (unit - 1);
+          if (offset >= 0 && offset % unit == 0 && matches(offset, lineFeed)) {
+            feed = offset;
+            break;
+          }
+        }
+      }
+      lineStart = feed >= 0 ? feed + unit : blockStart;
+    }
+
+    long end = lineEnd;
+    if (end - lineStart >= unit && matches(end - unit, carriageReturn)) {
+      end -= unit;
+    }
+    String text = decode(lineStart, end);
+    position = lineStart;
+    lineEnd = feed;
+    return text;
+  }
+
+  /**
+   * Gets the offset of the last line read.
+   *
+   * @return the position
+   */
+  public long getPosition() {
+    return position;
+  }
+
+  /**
+   * Loads the block of the file ending at an offset.
+   *
+   * @param end the offset
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void load(long end) throws IOException {
+    blockStart = Math.max(0, end - BLOCK_SIZE);
+    block.clear();
+    block.limit((int) (end - blockStart));
+    while (block.hasRemaining() && channel.read(block, blockStart + block.position()) > 0) {
+      // Read the whole block, unless the file was truncated meanwhile
+    }
+    block.limit(block.position());
+  }
+
+  /**
+   * Checks if bytes of the file are those expected.
+   *
+   * @param offset the offset of the bytes
+   * @param expected the bytes expected
+   * @return true, if they match
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private boolean matches(long offset, byte[] expected) throws IOException {
+    if (offset < 0) {
+      return false;
+    }
+    if (offset < blockStart || offset + expected.length > blockStart + block.limit()) {
+      ByteBuffer bytes = ByteBuffer.allocate(expected.length);
+      channel.read(bytes, offset);
+      return Arrays.equals(bytes.array(), expected);
+    }
+    for (int i = 0; i < expected.length; i++) {
+      if (block.get((int) (offset - blockStart) + i) != expected[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Decodes part of the file, from the block if it holds it.
+   *
+   * @param start the start
+   * @param end the end
+   * @return the text
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private String decode(long start, long end) throws IOException {
+    int length = (int) (end - start);
+    if (line.length < length) {
+      line = new byte[Math.max(length, line.length * 2)];
+    }
+    if (start >= blockStart && end <= blockStart + block.limit()) {
+      ByteBuffer bytes = block.duplicate();
+      bytes.position((int) (start - blockStart));
+      bytes.get(line, 0, length);
+    } else {
+      // A line longer than a block
+      ByteBuffer bytes = ByteBuffer.wrap(line, 0, length);
+      while (bytes.hasRemaining() && channel.read(bytes, start + bytes.position()) > 0) {
+        // Read the whole line
+      }
+    }
+    return new String(line, 0, length, charset);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+}
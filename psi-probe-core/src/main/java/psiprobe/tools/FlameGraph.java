@@ -0,0 +1,204 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Renders collapsed stacks, i.e. frames joined by semicolons with a sample count, as a flame graph
+ * in SVG. Callers are at the bottom, the width of a frame is its share of the samples, and the
+ * sample count of a frame is shown as its tooltip.
+ */
+public final class FlameGraph {
+
+  /** The Constant WIDTH, in pixels. */
+  private static final int WIDTH = 1200;
+
+  /** The Constant FRAME_HEIGHT, in pixels. */
+  private static final int FRAME_HEIGHT = 16;
+
+  /** The Constant PADDING, in pixels. */
+  private static final int PADDING = 10;
+
+  /** The Constant CHAR_WIDTH, the approximate width of a character of the 12px font. */
+  private static final double CHAR_WIDTH = 7;
+
+  /** The Constant MIN_WIDTH, below which frames are not drawn. */
+  private static final double MIN_WIDTH = 0.1;
+
+  /**
+   * Prevent Instantiation.
+   */
+  private FlameGraph() {
+    // Prevent Instantiation
+  }
+
+  /**
+   * Writes the flame graph.
+   *
+   * @param title the title
+   * @param collapsed the sample counts by collapsed stack
+   * @param out the writer
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void write(String title, Map<String, Long> collapsed, Writer out)
+      throws IOException {
+    Frame root = new Frame("all");
+    for (Entry<String, Long> stack : collapsed.entrySet()) {
+      Frame frame = root;
+      frame.samples += stack.getValue();
+      for (String name : stack.getKey().split(";")) {
+        frame = frame.children.computeIfAbsent(name, Frame::new);
+        frame.samples += stack.getValue();
+      }
+    }
+
+    int depth = root.depth();
+    int height = (depth + 1) * FRAME_HEIGHT + 3 * PADDING + FRAME_HEIGHT;
+    out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" width=\"" + WIDTH
+        + "\" height=\"" + height + "\" font-family=\"Verdana, sans-serif\" font-size=\"12\">\n");
+    out.write("<rect x=\"0\" y=\"0\" width=\"100%\" height=\"100%\" fill=\"#f8f8f8\"/>\n");
+    out.write("<text x=\"" + WIDTH / 2 + "\" y=\"" + (PADDING + 12)
+        + "\" text-anchor=\"middle\" font-size=\"16\">" + escape(title) + "</text>\n");
+    if (root.samples > 0) {
+      double scale = (WIDTH - 2.0 * PADDING) / root.samples;
+      write(root, PADDING, height - PADDING - FRAME_HEIGHT, scale, root.samples, out);
+    }
+    out.write("</svg>\n");
+  }
+
+  /**
+   * Writes a frame and the frames it called above it.
+   *
+   * @param frame the frame
+   * @param x the left of the frame
+   * @param y the top of the frame
+   * @param scale the width of one sample
+   * @param total the samples of the whole graph
+   * @param out the writer
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void write(Frame frame, double x, int y, double scale, long total, Writer out)
+      throws IOException {
+    double width = frame.samples * scale;
+    if (width < MIN_WIDTH) {
+      return;
+    }
+    String name = escape(frame.name);
+    out.write(String.format(Locale.ROOT,
+        "<g><title>%s (%d samples, %.2f%%)</title>"
+            + "<rect x=\"%.1f\" y=\"%d\" width=\"%.1f\" height=\"%d\" fill=\"%s\" rx=\"2\"/>",
+        name, frame.samples, 100.0 * frame.samples / total, x, y, width, FRAME_HEIGHT - 1,
+        color(frame.name)));
+    int chars = (int) ((width - 6) / CHAR_WIDTH);
+    if (chars >= 3) {
+      String label = frame.name.length() <= chars ? frame.name
+          : frame.name.substring(0, chars - 2) + "..";
+      out.write(String.format(Locale.ROOT, "<text x=\"%.1f\" y=\"%d\">%s</text>", x + 3,
+          y + FRAME_HEIGHT - 4, escape(label)));
+    }
+    out.write("</g>\n");
+    double childX = x;
+    for (Frame child : frame.children.values()) {
+      write(child, childX, y - FRAME_HEIGHT, scale, total, out);
+      childX += child.samples * scale;
+    }
+  }
+
+  /**
+   * Picks a warm color for a frame, stable across renderings.
+   *
+   * @param name the frame name
+   * @return the color
+   */
+  private static String color(String name) {
+    int hash = name.hashCode();
+    int red = 205 + (hash & 0x3f) % 50;
+    int green = (hash >>> 8 & 0xff) % 180;
+    int blue = (hash >>> 16 & 0xff) % 55;
+    return String.format(Locale.ROOT, "rgb(%d,%d,%d)", red, green, blue);
+  }
+
+  /**
+   * Escapes text for XML.
+   *
+   * @param text the text
+   * @return the escaped text
+   */
+  private static String escape(String text) {
+    StringBuilder sb = new StringBuilder(text.length());
+    for (int i = 0; i < text.length(); i++) {
+      char ch = text.charAt(i);
+      switch (ch) {
+        case '<':
+          sb.append("&lt;");
+          break;
+        case '>':
+          sb.append("&gt;");
+          break;
+        case '&':
+          sb.append("&amp;");
+          break;
+        case '"':
+          sb.append("&quot;");
+          break;
+        default:
+          sb.append(ch < ' ' ? ' ' : ch);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * A frame of the graph with the frames it called, in name order.
+   */
+  private static final class Frame {
+
+    /** The name. */
+    final String name;
+
+    /** The samples in this frame and the frames it called. */
+    long samples;
+
+    /** The children by name. */
+    final Map<String, Frame> children = new TreeMap<>();
+
+    /**
+     * Instantiates a new frame.
+     *
+     * @param name the name
+     */
+    Frame(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Gets the depth of the frames above this one.
+     *
+     * @return the depth
+     */
+    int depth() {
+      int depth = 0;
+      for (Frame child : children.values()) {
+        depth = Math.max(depth, child.depth() + 1);
+      }
+      return depth;
+    }
+
+  }
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import com.google.common.net.InetAddresses;
+import com.maxmind.db.Reader.FileMode;
+import com.maxmind.geoip2.DatabaseReader;
+import com.maxmind.geoip2.exception.AddressNotFoundException;
+import com.maxmind.geoip2.exception.GeoIp2Exception;
+import com.maxmind.geoip2.record.Country;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves IP addresses to the locale of their country, for the flags shown next to addresses.
+ * The GeoLite2 country database is opened once, memory-mapped when it is a plain file, and shared
+ * by all callers. Results, including misses, are kept in a bounded LRU cache.
+ */
+public final class GeoIpLocator {
+
+  /** The Constant logger. */
+  private static final Logger logger = LoggerFactory.getLogger(GeoIpLocator.class);
+
+  /** The Constant DATABASE, the class path resource of the country database. */
+  private static final String DATABASE = "GeoLite2-Country.mmdb";
+
+  /** The Constant CACHE_SIZE. */
+  private static final int CACHE_SIZE = 4096;
+
+  /** The Constant UNKNOWN, caching addresses without a country. */
+  private static final Locale UNKNOWN = Locale.ROOT;
+
+  /** The locale by address, least recently used first. */
+  private static final Map<String, Locale> cache =
+      Collections.synchronizedMap(new LinkedHashMap<String, Locale>(64, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Locale> eldest) {
+          return size() > CACHE_SIZE;
+        }
+      });
+
+  /** The database reader, null until opened or if it cannot be opened. */
+  private static DatabaseReader reader;
+
+  /** Whether opening the database has been attempted. */
+  private static boolean opened;
+
+  /**
+   * Prevent Instantiation.
+   */
+  private GeoIpLocator() {
+    // Prevent Instantiation
+  }
+
+  /**
+   * Gets the locale of an address. Loopback addresses get the locale of the JVM. Only literal
+   * addresses are looked up, host names are never resolved.
+   *
+   * @param address the address
+   * @return the locale, or null if the country is unknown
+   */
+  public static Locale getLocale(String address) {
+    if (address == null) {
+      return null;
+    }
+    String ip = address.trim();
+    Locale locale = cache.get(ip);
+    if (locale == null) {
+      locale = lookup(ip);
+      cache.put(ip, locale);
+    }
+    return locale == UNKNOWN ? null : locale;
+  }
+
+  /**
+   * Looks an address up in the database.
+   *
+   * @param ip the ip
+   * @return the locale, or {@link #UNKNOWN}
+   */
+  private static Locale lookup(String ip) {
+    if (!InetAddresses.isInetAddress(ip)) {
+      return UNKNOWN;
+    }
+    InetAddress address = InetAddresses.forString(ip);
+    if (address.isLoopbackAddress()) {
+      return Locale.getDefault();
+    }
+    DatabaseReader database = getReader();
+    if (database == null) {
+      return UNKNOWN;
+    }
+    try {
+      Country country = database.country(address).getCountry();
+      return country.getIsoCode() == null ? UNKNOWN : new Locale("", country.getIsoCode());
+    } catch (AddressNotFoundException e) {
+      logger.debug("Address Not Found: {}", e.getMessage());
+      logger.trace("", e);
+    } catch (IOException | GeoIp2Exception e) {
+      logger.error("Cannot look up country of '{}'", ip, e);
+    }
+    return UNKNOWN;
+  }
+
+  /**
+   * Gets the database reader, opening the database on first use.
+   *
+   * @return the reader, or null if the database is not available
+   */
+  private static synchronized DatabaseReader getReader() {
+    if (!opened) {
+      opened = true;
+      URL url = GeoIpLocator.class.getClassLoader().getResource(DATABASE);
+      if (url == null) {
+        logger.info("{} not found, addresses will not be located", DATABASE);
+        return null;
+      }
+      try {
+        if ("file".equals(url.getProtocol())) {
+          reader = new DatabaseReader.Builder(new File(url.toURI()))
+              .fileMode(FileMode.MEMORY_MAPPED).build();
+        } else {
+          try (InputStream in = url.openStream()) {
+            reader = new DatabaseReader.Builder(in).build();
+          }
+        }
+      } catch (IOException | URISyntaxException e) {
+        logger.error("Cannot open {}", url, e);
+      }
+    }
+    return reader;
+  }
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the stack of requests still running past a threshold, so that a slow request can be
+ * reported with what it was doing while slow rather than after it finished. Requests register their
+ * worker thread on entry and unregister with the handle they got, so a thread running several
+ * requests or a request moving between threads cannot leave one behind; a single daemon thread,
+ * started on first use, checks them a few times per threshold and takes one stack of each request
+ * found over it.
+ */
+public class InFlightStackSampler {
+
+  /** The Constant MIN_PERIOD, the shortest check period in milliseconds. */
+  private static final long MIN_PERIOD = 10;
+
+  /** The threshold in nanoseconds. */
+  private final long thresholdNanos;
+
+  /** The check period in milliseconds. */
+  private final long period;
+
+  /** The requests in flight. */
+  private final Set<InFlight> inFlight = ConcurrentHashMap.newKeySet();
+
+  /** The executor, once started. */
+  private volatile ScheduledExecutorService executor;
+
+  /**
+   * Instantiates a new in flight stack sampler.
+   *
+   * @param thresholdMillis the threshold in milliseconds past which a stack is taken
+   */
+  public InFlightStackSampler(long thresholdMillis) {
+    this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    this.period = Math.max(MIN_PERIOD, thresholdMillis / 4);
+  }
+
+  /**
+   * Registers a request starting on a thread.
+   *
+   * @param thread the worker thread
+   * @param startNanos the start of the request, from {@link System#nanoTime()}
+   * @return the request in flight, to unregister it with
+   */
+  public InFlight begin(Thread thread, long startNanos) {
+    if (executor == null) {
+      start();
+    }
+    InFlight request = new InFlight(thread, startNanos);
+    inFlight.add(request);
+    return request;
+  }
+
+  /**
+   * Unregisters a request.
+   *
+   * @param request the request in flight
+   * @return the stack taken while the request was over the threshold, or null
+   */
+  public StackTraceElement[] end(InFlight request) {
+    inFlight.remove(request);
+    return request.stack;
+  }
+
+  /**
+   * Takes the stack of the requests over the threshold which have none yet.
+   *
+   * @param nowNanos the current time, from {@link System#nanoTime()}
+   */
+  void sample(long nowNanos) {
+    for (InFlight request : inFlight) {
+      if (request.stack == null && nowNanos - request.startNanos >= thresholdNanos) {
+        request.stack = request.thread.getStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Starts the sampling thread.
+   */
+  private synchronized void start() {
+    if (executor != null) {
+      return;
+    }
+    ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "psi-probe-slow-request-sampler");
+      thread.setDaemon(true);
+      // Do not pin the class loader of the web application whose request started the thread
+      thread.setContextClassLoader(InFlightStackSampler.class.getClassLoader());
+      return thread;
+    });
+    service.scheduleWithFixedDelay(() -> sample(System.nanoTime()), period, period,
+        TimeUnit.MILLISECONDS);
+    executor = service;
+  }
+
+  /**
+   * Stops the sampling thread.
+   */
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+    inFlight.clear();
+  }
+
+  /**
+   * A request in flight.
+   */
+  public static final class InFlight {
+
+    /** The worker thread. */
+    final Thread thread;
+
+    /** The start, from {@link System#nanoTime()}. */
+    final long startNanos;
+
+    /** The stack taken once over the threshold. */
+    volatile StackTraceElement[] stack;
+
+    /**
+     * Instantiates a new in flight request.
+     *
+     * @param thread the worker thread
+     * @param startNanos the start
+     */
+    InFlight(Thread thread, long startNanos) {
+      this.thread = thread;
+      this.startNanos = startNanos;
+    }
+
+  }
+
+}
@@ -13,17 +13,45 @@ package psiprobe.tools;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * The Class Instruments.
+ * Estimates the memory held by object graphs. The shallow size and the reference fields of each
+ * class are computed once and cached, so that sizing many objects of the same classes, such as the
+ * attributes of thousands of sessions, does not reflect on them again.
+ *
+ * <p>
+ * Strings, enums, values and the collections and maps of the JDK are sized through their public
+ * API rather than their fields, which Java 16 and later do not open to psi-probe: a string by its
+ * length, an enum constant, shared by all that refer to it, by its shallow size, a date, number or
+ * other JDK value by its shallow size and the digits of big numbers, and a collection or map by its
+ * elements plus an estimate of the slots or nodes holding them. Other reference fields that cannot
+ * be made accessible are not followed. The objects they refer to are missing from the size,
+ * which the {@link SizeBudget} passed in records as partial.
+ * </p>
  */
 public class Instruments {
 
+  /** The Constant logger. */
+  private static final Logger logger = LoggerFactory.getLogger(Instruments.class);
+
   /** The Constant SIZE_VOID. */
   public static final long SIZE_VOID = 0;
 
@@ -57,6 +85,12 @@ public class Instruments {
   /** The Constant SIZE_REFERENCE. */
   public static final long SIZE_REFERENCE;
 
+  /** The estimated size of the node holding an element of a linked or hashed collection. */
+  private static final long SIZE_NODE;
+
+  /** Whether strings keep characters that fit in a byte in one byte each, as of Java 9. */
+  private static final boolean COMPACT_STRINGS = findField(String.class, "coder") != null;
+
   /** The Constant ACCESSOR. */
   private static final Accessor ACCESSOR = AccessorFactory.getInstance();
 
@@ -68,20 +102,32 @@ public class Instruments {
     String os64bitProp = System.getProperty("sun.arch.data.model");
     IGNORE_NIO = ignoreNioProp == null || "true".equalsIgnoreCase(ignoreNioProp);
     SIZE_REFERENCE = "64".equals(os64bitProp) ? 8 : 4;
+    SIZE_NODE = SIZE_OBJECT + SIZE_INT + 3 * SIZE_REFERENCE;
   }
 
-  /** The processed objects. */
-  private Set<Object> processedObjects = new HashSet<>(2048);
+  /** The layouts of the classes sized so far, which do not keep the classes from unloading. */
+  private static final ClassValue<ClassLayout> LAYOUTS = new ClassValue<ClassLayout>() {
+    @Override
+    protected ClassLayout computeValue(Class<?> type) {
+      return new ClassLayout(type);
+    }
+  };
+
+  /** The processed objects, compared by identity. */
+  private Set<Object> processedObjects = Collections.newSetFromMap(new IdentityHashMap<>(2048));
 
-  /** The this queue. */
-  private final List<Object> thisQueue = new LinkedList<>();
+  /** The objects still to size. */
+  private Object[] stack = new Object[256];
 
-  /** The next queue. */
-  private final List<Object> nextQueue = new LinkedList<>();
+  /** The number of objects still to size. */
+  private int stackSize;
 
   /** The class loader. */
   private ClassLoader classLoader = null;
 
+  /** The budget, if any. */
+  private SizeBudget budget;
+
   /**
    * Size of.
    *
@@ -106,7 +152,8 @@ public class Instruments {
   }
 
   /**
-   * Size of.
+   * Size of, skipping the objects already in a set and adding the objects sized to it. The set
+   * should compare objects by identity, as a set backed by an {@link IdentityHashMap} does.
    *
    * @param obj the obj
    * @param objects the objects
@@ -119,39 +166,51 @@ public class Instruments {
   }
 
   /**
-   * Internal size of.
+   * Size of, skipping the objects already in a set and adding the objects sized to it, until a
+   * budget is spent. The size is partial if the budget is exhausted afterwards or if fields that
+   * could not be read were skipped, see {@link SizeBudget#isPartial()}.
+   *
+   * @param obj the obj
+   * @param objects the objects
+   * @param budget the budget
+   * @return the long
+   */
+  public static long sizeOf(Object obj, Set<Object> objects, SizeBudget budget) {
+    Instruments instruments = new Instruments();
+    instruments.processedObjects = objects;
+    instruments.budget = budget;
+    return instruments.internalSizeOf(obj);
+  }
+
+  /**
+   * Internal size of. The graph is walked depth first with an explicit stack, so that deep graphs
+   * such as long linked lists do not overflow the thread stack.
    *
    * @param root the root
    * @return the long
    */
   private long internalSizeOf(Object root) {
+    if (!isInitialized()) {
+      return 0;
+    }
     long size = 0;
-    thisQueue.add(root);
-    while (!thisQueue.isEmpty()) {
-      Iterator<Object> it = thisQueue.iterator();
-      while (it.hasNext()) {
-        Object obj = it.next();
-        if (isInitialized() && obj != null
-            && (classLoader == null || classLoader == obj.getClass().getClassLoader())
-            && (!IGNORE_NIO || !obj.getClass().getName().startsWith("java.nio."))) {
-          ObjectWrapper ow = new ObjectWrapper(obj);
-          if (!processedObjects.contains(ow)) {
-            if (obj.getClass().isArray()) {
-              size += sizeOfArray(obj);
-            } else if (obj.getClass().isPrimitive()) {
-              size += sizeOfPrimitive(obj.getClass());
-            } else {
-              processedObjects.add(ow);
-              size += sizeOfObject(obj);
-            }
-          }
-        }
-        it.remove();
+    push(root);
+    while (stackSize > 0) {
+      Object obj = stack[--stackSize];
+      stack[stackSize] = null;
+      if (obj == null) {
+        continue;
       }
-      // avoids ConcurrentModificationException
-      if (!nextQueue.isEmpty()) {
-        thisQueue.addAll(nextQueue);
-        nextQueue.clear();
+      Class<?> clazz = obj.getClass();
+      if (classLoader != null && classLoader != clazz.getClassLoader()) {
+        continue;
+      }
+      ClassLayout layout = LAYOUTS.get(clazz);
+      if (!layout.ignored && processedObjects.add(obj)) {
+        if (budget != null && !budget.spend()) {
+          break;
+        }
+        size += layout.array ? sizeOfArray(obj, layout) : sizeOfObject(obj, layout);
       }
     }
     return size;
@@ -161,52 +220,178 @@ public class Instruments {
    * Size of object.
    *
    * @param obj the obj
+   * @param layout the layout of its class
    * @return the long
    */
-  private long sizeOfObject(Object obj) {
-    long size = SIZE_OBJECT;
-    Class<? extends Object> clazz = obj.getClass();
-    while (clazz != null) {
-      Field[] fields = clazz.getDeclaredFields();
-      for (Field field : fields) {
-        if (!Modifier.isStatic(field.getModifiers())) {
-          if (field.getType().isPrimitive()) {
-            size += sizeOfPrimitive(field.getType());
-          } else {
-            Object val = ACCESSOR.get(obj, field);
-            if (field.getType().isArray()) {
-              size += sizeOfArray(val);
-            } else {
-              size += SIZE_REFERENCE;
-              nextQueue.add(val);
-            }
-          }
-        }
+  private long sizeOfObject(Object obj, ClassLayout layout) {
+    if (budget != null && layout.inaccessible > 0) {
+      budget.skipFields(layout.inaccessible);
+    }
+    long size = layout.shallowSize;
+    for (Field field : layout.references) {
+      push(get(obj, field));
+    }
+    for (Field field : layout.arrays) {
+      Object val = get(obj, field);
+      if (val != null && processedObjects.add(val)) {
+        size += sizeOfArray(val, LAYOUTS.get(val.getClass()));
       }
-      clazz = clazz.getSuperclass();
     }
-    return size;
+    return layout.contents == Contents.FIELDS ? size : size + sizeOfContents(obj, layout);
   }
 
   /**
-   * Size of array.
+   * Size of what a string, collection or map holds, read through its public API.
    *
    * @param obj the obj
+   * @param layout the layout of its class
    * @return the long
    */
-  private long sizeOfArray(Object obj) {
-    if (obj != null) {
-      Class<?> ct = obj.getClass().getComponentType();
-      if (ct.isPrimitive()) {
-        return Array.getLength(obj) * sizeOfPrimitive(ct);
+  private long sizeOfContents(Object obj, ClassLayout layout) {
+    switch (layout.contents) {
+      case VALUE:
+        return obj instanceof BigInteger ? sizeOfMagnitude((BigInteger) obj)
+            : obj instanceof BigDecimal && ((BigDecimal) obj).precision() > 18
+                ? sizeOfMagnitude(((BigDecimal) obj).unscaledValue()) : 0;
+      case STRING:
+        String str = (String) obj;
+        return COMPACT_STRINGS && isLatin1(str) ? str.length() * SIZE_BYTE
+            : str.length() * SIZE_CHAR;
+      case COLLECTION:
+        return sizeOfElements((Collection<?>) obj);
+      case MAP:
+        return sizeOfEntries((Map<?, ?>) obj);
+      default:
+        // An enum constant is shared, what it refers to is not held by any one referrer
+        return 0;
+    }
+  }
+
+  /**
+   * Size of the digits of a big integer.
+   *
+   * @param value the value
+   * @return the long
+   */
+  private static long sizeOfMagnitude(BigInteger value) {
+    return (value.bitLength() / 32 + 1) * SIZE_INT;
+  }
+
+  /**
+   * Size of the slots or nodes holding the elements of a collection, pushing the elements.
+   *
+   * @param collection the collection
+   * @return the long
+   */
+  private long sizeOfElements(Collection<?> collection) {
+    long slotSize = collection instanceof Set ? SIZE_NODE + SIZE_REFERENCE
+        : collection instanceof List && !(collection instanceof RandomAccess) ? SIZE_NODE
+            : SIZE_REFERENCE;
+    long count = 0;
+    try {
+      for (Object element : collection) {
+        push(element);
+        count++;
       }
-      for (int i = 0; i < Array.getLength(obj); i++) {
-        nextQueue.add(Array.get(obj, i));
+    } catch (RuntimeException e) {
+      // Modified while it was read, the elements not reached are missing
+      skipContents();
+    }
+    return count * slotSize;
+  }
+
+  /**
+   * Size of the nodes holding the entries of a map, pushing the keys and values.
+   *
+   * @param map the map
+   * @return the long
+   */
+  private long sizeOfEntries(Map<?, ?> map) {
+    long count = 0;
+    try {
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        push(entry.getKey());
+        push(entry.getValue());
+        count++;
       }
+    } catch (RuntimeException e) {
+      // Modified while it was read, the entries not reached are missing
+      skipContents();
+    }
+    return count * (SIZE_NODE + SIZE_REFERENCE);
+  }
+
+  /**
+   * Records that the contents of a collection or map could not all be read.
+   */
+  private void skipContents() {
+    if (budget != null) {
+      budget.skipFields(1);
+    }
+  }
+
+  /**
+   * Checks if all characters of a string fit in a byte.
+   *
+   * @param str the string
+   * @return true, if the string is Latin-1
+   */
+  private static boolean isLatin1(String str) {
+    for (int i = 0; i < str.length(); i++) {
+      if (str.charAt(i) > 0xFF) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Size of array.
+   *
+   * @param obj the obj
+   * @param layout the layout of its class
+   * @return the long
+   */
+  private long sizeOfArray(Object obj, ClassLayout layout) {
+    if (layout.componentSize > 0) {
+      return Array.getLength(obj) * layout.componentSize;
+    }
+    for (Object element : (Object[]) obj) {
+      push(element);
     }
     return 0;
   }
 
+  /**
+   * Pushes an object to size.
+   *
+   * @param obj the obj
+   */
+  private void push(Object obj) {
+    if (obj == null) {
+      return;
+    }
+    if (stackSize == stack.length) {
+      stack = Arrays.copyOf(stack, stackSize * 2);
+    }
+    stack[stackSize++] = obj;
+  }
+
+  /**
+   * Gets the value of a field made accessible by its class layout.
+   *
+   * @param obj the obj
+   * @param field the field
+   * @return the value, or null if it cannot be read
+   */
+  private static Object get(Object obj, Field field) {
+    try {
+      return field.get(obj);
+    } catch (IllegalAccessException e) {
+      return null;
+    }
+  }
+
   /**
    * Size of primitive.
    *
@@ -286,4 +471,166 @@ public class Instruments {
     return null;
   }
 
+  /**
+   * How the objects an instance refers to are sized.
+   */
+  private enum Contents {
+
+    /** Through the fields of the instance. */
+    FIELDS,
+
+    /** By the length of the string. */
+    STRING,
+
+    /** By the digits of a big number, what other JDK values refer to is small or shared. */
+    VALUE,
+
+    /** Not at all, the instance is a shared enum constant. */
+    ENUM,
+
+    /** Through the elements of the collection. */
+    COLLECTION,
+
+    /** Through the entries of the map. */
+    MAP;
+
+    /**
+     * Gets how instances of a class are sized. Collections and maps are sized through their API
+     * only if they are, or extend, a concrete JDK implementation, whose fields may not be readable,
+     * so that collections of applications, which may load their elements lazily, are left alone.
+     *
+     * @param type the class
+     * @return the contents
+     */
+    static Contents of(Class<?> type) {
+      if (type == String.class) {
+        return STRING;
+      }
+      if (Enum.class.isAssignableFrom(type)) {
+        return ENUM;
+      }
+      if (Date.class.isAssignableFrom(type) || type.getClassLoader() == null
+          && (Number.class.isAssignableFrom(type) || TemporalAccessor.class.isAssignableFrom(type)
+              || type == Locale.class || type == UUID.class)) {
+        return VALUE;
+      }
+      boolean jdkImplementation = false;
+      for (Class<?> clazz = type; clazz != null && clazz != Object.class;
+          clazz = clazz.getSuperclass()) {
+        if (clazz.getClassLoader() == null && !Modifier.isAbstract(clazz.getModifiers())) {
+          jdkImplementation = true;
+          break;
+        }
+      }
+      if (jdkImplementation && Map.class.isAssignableFrom(type)) {
+        return MAP;
+      }
+      if (jdkImplementation && Collection.class.isAssignableFrom(type)) {
+        return COLLECTION;
+      }
+      return FIELDS;
+    }
+  }
+
+  /**
+   * The precomputed layout of a class.
+   */
+  private static final class ClassLayout {
+
+    /** The Constant NO_FIELDS. */
+    private static final Field[] NO_FIELDS = new Field[0];
+
+    /** Whether the class is an array class. */
+    final boolean array;
+
+    /** The size of a component of a primitive array class, 0 otherwise. */
+    final long componentSize;
+
+    /** Whether instances are left out of sizes. */
+    final boolean ignored;
+
+    /** How the objects an instance refers to are sized. */
+    final Contents contents;
+
+    /** The size of an instance without the objects it refers to. */
+    final long shallowSize;
+
+    /** The readable instance fields of a non-array reference type, including inherited ones. */
+    final Field[] references;
+
+    /** The readable instance fields of an array type, including inherited ones. */
+    final Field[] arrays;
+
+    /** The number of reference and array fields that cannot be read and are not sized otherwise. */
+    final int inaccessible;
+
+    /**
+     * Instantiates a new class layout.
+     *
+     * @param type the class
+     */
+    ClassLayout(Class<?> type) {
+      array = type.isArray();
+      Class<?> componentType = array ? type.getComponentType() : null;
+      componentSize =
+          componentType != null && componentType.isPrimitive() ? sizeOfPrimitive(componentType) : 0;
+      ignored = IGNORE_NIO && type.getName().startsWith("java.nio.");
+      contents = array ? Contents.FIELDS : Contents.of(type);
+
+      long size = SIZE_OBJECT;
+      List<Field> referenceFields = new ArrayList<>();
+      List<Field> arrayFields = new ArrayList<>();
+      int unreadable = 0;
+      for (Class<?> clazz = type; !array && clazz != null; clazz = clazz.getSuperclass()) {
+        for (Field field : clazz.getDeclaredFields()) {
+          if (Modifier.isStatic(field.getModifiers())) {
+            continue;
+          }
+          if (field.getType().isPrimitive()) {
+            size += sizeOfPrimitive(field.getType());
+            continue;
+          }
+          if (!field.getType().isArray()) {
+            size += SIZE_REFERENCE;
+          }
+          if (contents == Contents.ENUM
+              || contents != Contents.FIELDS && clazz.getClassLoader() == null) {
+            // What the field refers to is sized through the API of the instance, if at all
+            continue;
+          }
+          if (makeAccessible(field)) {
+            (field.getType().isArray() ? arrayFields : referenceFields).add(field);
+          } else {
+            unreadable++;
+          }
+        }
+      }
+      shallowSize = array ? 0 : size;
+      references = referenceFields.isEmpty() ? NO_FIELDS : referenceFields.toArray(NO_FIELDS);
+      arrays = arrayFields.isEmpty() ? NO_FIELDS : arrayFields.toArray(NO_FIELDS);
+      inaccessible = unreadable;
+      if (unreadable > 0) {
+        logger.debug("{} fields of {} cannot be read, sizes including it are partial", unreadable,
+            type.getName());
+      }
+    }
+
+    /**
+     * Makes a field accessible once for all.
+     *
+     * @param field the field
+     * @return true, if the field can be read
+     */
+    private static boolean makeAccessible(Field field) {
+      try {
+        field.setAccessible(true);
+        return true;
+      } catch (RuntimeException e) {
+        // Security manager or module restrictions, the objects the field refers to are not sized
+        return false;
+      }
+    }
+
+  }
+
 }
@@ -10,6 +10,12 @@
  */
 package psiprobe.tools;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
 import javax.management.AttributeNotFoundException;
 import javax.management.MBeanAttributeInfo;
 import javax.management.MBeanInfo;
@@ -56,6 +62,51 @@ public final class JmxTools {
     }
   }
 
+  /**
+   * Gets several attributes in a single round-trip. Attributes that cannot be read are left out of
+   * the result rather than failing the whole call.
+   *
+   * @param mbeanServer the mbean server
+   * @param objName the obj name
+   * @param attrNames the attr names
+   * @return the attribute values by name
+   * @throws Exception the exception
+   */
+  public static Map<String, Object> getAttributes(MBeanServer mbeanServer, ObjectName objName,
+      String... attrNames) throws Exception {
+
+    Map<String, Object> values = new HashMap<>();
+    for (Attribute attribute : mbeanServer.getAttributes(objName, attrNames).asList()) {
+      values.put(attribute.getName(), attribute.getValue());
+    }
+    return values;
+  }
+
+  /**
+   * Filters attribute names down to those the mbean has.
+   *
+   * @param server the server
+   * @param mbean the mbean
+   * @param attrNames the attr names
+   * @return the attr names the mbean has, in the given order
+   * @throws Exception the exception
+   */
+  public static String[] getSupportedAttributes(MBeanServer server, ObjectName mbean,
+      String... attrNames) throws Exception {
+
+    MBeanAttributeInfo[] ai = server.getMBeanInfo(mbean).getAttributes();
+    List<String> supported = new ArrayList<>(attrNames.length);
+    for (String attrName : attrNames) {
+      for (MBeanAttributeInfo attribInfo : ai) {
+        if (attribInfo.getName().equals(attrName)) {
+          supported.add(attrName);
+          break;
+        }
+      }
+    }
+    return supported.toArray(new String[0]);
+  }
+
   /**
    * Invoke.
    *
@@ -116,6 +167,18 @@ public final class JmxTools {
     return 0;
   }
 
+  /**
+   * Gets the long attr.
+   *
+   * @param attrs the attributes read by {@link #getAttributes(MBeanServer, ObjectName, String...)}
+   * @param name the name
+   * @return the long attr, 0 if missing
+   */
+  public static long getLongAttr(Map<String, Object> attrs, String name) {
+    Object obj = attrs.get(name);
+    return obj instanceof Number ? ((Number) obj).longValue() : 0;
+  }
+
   /**
    * Gets the long attr.
    *
@@ -146,6 +209,18 @@ public final class JmxTools {
     return (Integer) mbeanServer.getAttribute(objName, attrName);
   }
 
+  /**
+   * Gets the int attr.
+   *
+   * @param attrs the attributes read by {@link #getAttributes(MBeanServer, ObjectName, String...)}
+   * @param name the name
+   * @return the int attr, 0 if missing
+   */
+  public static int getIntAttr(Map<String, Object> attrs, String name) {
+    Object obj = attrs.get(name);
+    return obj instanceof Number ? ((Number) obj).intValue() : 0;
+  }
+
   /**
    * Gets the int attr.
    *
@@ -179,6 +254,18 @@ public final class JmxTools {
     return obj == null ? null : obj.toString();
   }
 
+  /**
+   * Gets the string attr.
+   *
+   * @param attrs the attributes read by {@link #getAttributes(MBeanServer, ObjectName, String...)}
+   * @param name the name
+   * @return the string attr, null if missing
+   */
+  public static String getStringAttr(Map<String, Object> attrs, String name) {
+    Object obj = attrs.get(name);
+    return obj == null ? null : obj.toString();
+  }
+
   /**
    * Gets the string attr.
    *
@@ -0,0 +1,109 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Side table of the client address and locale sessions were last accessed from, kept off the
+ * sessions so that recording them does not mark replicated or persisted sessions dirty.
+ *
+ * <p>
+ * The table of a web application is a {@code Map} from session id to an {@code Object[]} holding
+ * the address and the locale, kept under the {@link #CONTEXT_ATTRIBUTE} servlet context attribute.
+ * Only JDK types are shared because the agent valve recording accesses and the probe reading them
+ * are loaded by different class loaders.
+ * </p>
+ */
+public final class LastAccessTable {
+
+  /**
+   * The Constant CONTEXT_ATTRIBUTE, the servlet context attribute holding the table of a web
+   * application as a {@code Map<String, Object[]>}.
+   */
+  public static final String CONTEXT_ATTRIBUTE = "psiprobe.lastAccess";
+
+  /** The Constant IP, the index of the client address. */
+  private static final int IP = 0;
+
+  /** The Constant LOCALE, the index of the locale. */
+  private static final int LOCALE = 1;
+
+  /**
+   * Prevent Instantiation.
+   */
+  private LastAccessTable() {
+    // Prevent Instantiation
+  }
+
+  /**
+   * Records an access to a session, unless it comes from the same address and locale as the last.
+   *
+   * @param table the table
+   * @param sessionId the session id
+   * @param ip the client address
+   * @param locale the locale
+   * @return true, if the session was not in the table yet
+   */
+  public static boolean record(Map<String, Object[]> table, String sessionId, String ip,
+      Locale locale) {
+    Object[] access = table.get(sessionId);
+    if (access != null && Objects.equals(access[IP], ip)
+        && Objects.equals(access[LOCALE], locale)) {
+      return false;
+    }
+    return table.put(sessionId, new Object[] {ip, locale}) == null;
+  }
+
+  /**
+   * Gets the client address a session was last accessed from.
+   *
+   * @param table the table, or null
+   * @param sessionId the session id
+   * @return the client address, or null if unknown
+   */
+  public static String getIp(Object table, String sessionId) {
+    Object[] access = get(table, sessionId);
+    return access == null ? null : (String) access[IP];
+  }
+
+  /**
+   * Gets the locale a session was last accessed with.
+   *
+   * @param table the table, or null
+   * @param sessionId the session id
+   * @return the locale, or null if unknown
+   */
+  public static Locale getLocale(Object table, String sessionId) {
+    Object[] access = get(table, sessionId);
+    return access == null ? null : (Locale) access[LOCALE];
+  }
+
+  /**
+   * Gets the last access to a session.
+   *
+   * @param table the table, or null
+   * @param sessionId the session id
+   * @return the access, or null if unknown
+   */
+  private static Object[] get(Object table, String sessionId) {
+    if (table instanceof Map) {
+      Object access = ((Map<?, ?>) table).get(sessionId);
+      if (access instanceof Object[] && ((Object[]) access).length > LOCALE) {
+        return (Object[]) access;
+      }
+    }
+    return null;
+  }
+
+}
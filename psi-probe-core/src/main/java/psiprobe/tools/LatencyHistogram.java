@@ -0,0 +1,243 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histograms with HDR-style log-linear buckets: values below 32 microseconds
+ * have a bucket each, and every power of two above is split in 16 buckets, so a percentile is off
+ * by at most 1/16 of its value.
+ *
+ * <p>
+ * A histogram is a plain {@link AtomicLongArray} holding the count, the sum, the maximum and the
+ * bucket counts, and the histograms of a web application are kept in a {@code Map} under the
+ * {@link #CONTEXT_ATTRIBUTE} servlet context attribute. Only JDK types are shared because the agent
+ * valve recording them and the probe reading them are loaded by different class loaders.
+ * </p>
+ */
+public final class LatencyHistogram {
+
+  /**
+   * The Constant CONTEXT_ATTRIBUTE, the servlet context attribute holding the histograms of a web
+   * application as a {@code Map<String, AtomicLongArray>}.
+   */
+  public static final String CONTEXT_ATTRIBUTE = "psiprobe.latency";
+
+  /** The Constant APPLICATION, the key of the histogram of the whole web application. */
+  public static final String APPLICATION = "";
+
+  /** The Constant LINEAR_BITS, values below 2^LINEAR_BITS have a bucket each. */
+  private static final int LINEAR_BITS = 5;
+
+  /** The Constant SUB_BUCKETS, the number of buckets per power of two above. */
+  private static final int SUB_BUCKETS = 1 << LINEAR_BITS - 1;
+
+  /** The Constant MAX_VALUE, the largest value told apart, about 12 days in microseconds. */
+  private static final long MAX_VALUE = (1L << 40) - 1;
+
+  /** The Constant COUNT, the index of the value count. */
+  private static final int COUNT = 0;
+
+  /** The Constant SUM, the index of the sum of values. */
+  private static final int SUM = 1;
+
+  /** The Constant MAX, the index of the largest value. */
+  private static final int MAX = 2;
+
+  /** The Constant BUCKETS, the index of the first bucket. */
+  private static final int BUCKETS = 3;
+
+  /** The Constant LENGTH, the length of a histogram. */
+  private static final int LENGTH = BUCKETS + bucket(MAX_VALUE) + 1;
+
+  /**
+   * Prevent Instantiation.
+   */
+  private LatencyHistogram() {
+    // Prevent Instantiation
+  }
+
+  /**
+   * Creates an empty histogram.
+   *
+   * @return the histogram
+   */
+  public static AtomicLongArray create() {
+    return new AtomicLongArray(LENGTH);
+  }
+
+  /**
+   * Records a value.
+   *
+   * @param histogram the histogram
+   * @param micros the value in microseconds
+   */
+  public static void record(AtomicLongArray histogram, long micros) {
+    long value = Math.max(0, micros);
+    histogram.incrementAndGet(BUCKETS + bucket(Math.min(value, MAX_VALUE)));
+    histogram.addAndGet(SUM, value);
+    long max = histogram.get(MAX);
+    while (value > max && !histogram.compareAndSet(MAX, max, value)) {
+      max = histogram.get(MAX);
+    }
+    histogram.incrementAndGet(COUNT);
+  }
+
+  /**
+   * Records a value in the histogram of a web application and, if a servlet is given, in the
+   * histogram of that servlet, creating the histograms on first use.
+   *
+   * @param histograms the histograms of the web application
+   * @param servletName the servlet name, or null
+   * @param micros the value in microseconds
+   */
+  public static void record(Map<String, AtomicLongArray> histograms, String servletName,
+      long micros) {
+    record(histograms.computeIfAbsent(APPLICATION, key -> create()), micros);
+    if (servletName != null) {
+      record(histograms.computeIfAbsent(servletName, key -> create()), micros);
+    }
+  }
+
+  /**
+   * Takes a snapshot of a histogram. Values recorded while the snapshot is taken may be partly
+   * included.
+   *
+   * @param histogram the histogram
+   * @return the snapshot
+   */
+  public static long[] snapshot(AtomicLongArray histogram) {
+    long[] snapshot = new long[histogram.length()];
+    for (int i = 0; i < snapshot.length; i++) {
+      snapshot[i] = histogram.get(i);
+    }
+    return snapshot;
+  }
+
+  /**
+   * Gets the values recorded between two snapshots. The maximum of the difference is the upper
+   * bound of its highest bucket.
+   *
+   * @param snapshot the later snapshot
+   * @param previous the earlier snapshot, or null
+   * @return the difference
+   */
+  public static long[] delta(long[] snapshot, long[] previous) {
+    if (previous == null || previous.length != snapshot.length) {
+      return snapshot.clone();
+    }
+    long[] delta = new long[snapshot.length];
+    for (int i = 0; i < delta.length; i++) {
+      delta[i] = Math.max(0, snapshot[i] - previous[i]);
+    }
+    delta[MAX] = 0;
+    for (int i = delta.length - 1; i >= BUCKETS; i--) {
+      if (delta[i] > 0) {
+        delta[MAX] = Math.min(upperBound(i - BUCKETS), snapshot[MAX]);
+        break;
+      }
+    }
+    return delta;
+  }
+
+  /**
+   * Gets the number of values of a snapshot.
+   *
+   * @param snapshot the snapshot
+   * @return the count
+   */
+  public static long getCount(long[] snapshot) {
+    return snapshot[COUNT];
+  }
+
+  /**
+   * Gets the largest value of a snapshot.
+   *
+   * @param snapshot the snapshot
+   * @return the maximum in microseconds
+   */
+  public static long getMax(long[] snapshot) {
+    return snapshot[MAX];
+  }
+
+  /**
+   * Gets the mean of a snapshot.
+   *
+   * @param snapshot the snapshot
+   * @return the mean in microseconds, or 0 if empty
+   */
+  public static long getMean(long[] snapshot) {
+    return snapshot[COUNT] == 0 ? 0 : snapshot[SUM] / snapshot[COUNT];
+  }
+
+  /**
+   * Gets the value below which a percentage of the values of a snapshot fall, as the upper bound
+   * of the bucket it is in.
+   *
+   * @param snapshot the snapshot
+   * @param percentile the percentile, e.g. 99
+   * @return the value in microseconds, or 0 if empty
+   */
+  public static long getValueAtPercentile(long[] snapshot, double percentile) {
+    long total = 0;
+    for (int i = BUCKETS; i < snapshot.length; i++) {
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100) / 100));
+    long seen = 0;
+    for (int i = BUCKETS; i < snapshot.length; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(upperBound(i - BUCKETS), snapshot[MAX]);
+      }
+    }
+    return snapshot[MAX];
+  }
+
+  /**
+   * Gets the bucket of a value.
+   *
+   * @param value the value, at most {@link #MAX_VALUE}
+   * @return the bucket
+   */
+  static int bucket(long value) {
+    if (value < 1 << LINEAR_BITS) {
+      return (int) value;
+    }
+    int magnitude = 63 - Long.numberOfLeadingZeros(value);
+    int shift = magnitude - (LINEAR_BITS - 1);
+    int sub = (int) (value >>> shift) - SUB_BUCKETS;
+    return (1 << LINEAR_BITS) + (magnitude - LINEAR_BITS) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * Gets the largest value of a bucket.
+   *
+   * @param bucket the bucket
+   * @return the upper bound
+   */
+  static long upperBound(int bucket) {
+    if (bucket < 1 << LINEAR_BITS) {
+      return bucket;
+    }
+    int offset = bucket - (1 << LINEAR_BITS);
+    int magnitude = offset / SUB_BUCKETS + LINEAR_BITS;
+    int sub = offset % SUB_BUCKETS + SUB_BUCKETS;
+    int shift = magnitude - (LINEAR_BITS - 1);
+    return ((long) (sub + 1) << shift) - 1;
+  }
+
+}
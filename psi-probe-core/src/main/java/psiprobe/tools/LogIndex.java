@@ -0,0 +1,452 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import psiprobe.model.LogMatch;
+
+/**
+ * A search index of a log file. The file is cut into blocks of whole lines and each block keeps a
+ * signature: a bitset of the hashed trigrams of its lines, ASCII case folded. A search only reads
+ * the blocks whose signature has every trigram of the literals matching lines contain, and counts
+ * lines from the first line number of the block. The index follows the file as it grows, reading
+ * only what was appended, and starts over when the file is truncated or replaced.
+ *
+ * <p>
+ * With blocks of 1 MB, signatures take 0.4% of the size of the file.
+ * </p>
+ */
+public class LogIndex {
+
+  /** The Constant SIGNATURE_BITS, the size of a block signature. */
+  static final int SIGNATURE_BITS = 1 << 15;
+
+  /** The Constant READ_BUFFER_SIZE, the size of the reads of the file while indexing. */
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  /** The Constant CONTEXT_BYTES, how far around a block context lines are looked for. */
+  private static final int CONTEXT_BYTES = 16 * 1024;
+
+  /** The Constant HEAD_SIZE, the size of the start of the file telling it was replaced. */
+  private static final int HEAD_SIZE = 256;
+
+  /** The path. */
+  private final Path path;
+
+  /** The approximate size of a block. */
+  private final int blockSize;
+
+  /** The blocks. */
+  private final List<Block> blocks = new ArrayList<>();
+
+  /** The key of the file indexed, if the file system has one. */
+  private Object fileKey;
+
+  /** The start of the file indexed. */
+  private byte[] head = new byte[0];
+
+  /** The length of the file indexed, up to the end of its last line. */
+  private long indexedLength;
+
+  /** The number of lines indexed. */
+  private long lineCount;
+
+  /** The length of the file when last updated. */
+  private long length;
+
+  /** Whether the whole file was indexed when last updated. */
+  private boolean complete;
+
+  /**
+   * Instantiates a new log index.
+   *
+   * @param file the file
+   * @param blockSize the approximate size of a block
+   */
+  public LogIndex(File file, int blockSize) {
+    this.path = file.toPath();
+    this.blockSize = blockSize;
+  }
+
+  /**
+   * Hashes a trigram into a signature bit.
+   *
+   * @param first the first byte, case folded
+   * @param second the second byte, case folded
+   * @param third the third byte, case folded
+   * @return the bit, or -1 for trigrams that are not all ASCII
+   */
+  static int trigram(int first, int second, int third) {
+    if ((first | second | third) >= 0x80) {
+      return -1;
+    }
+    int hash = (fold(first) << 16 | fold(second) << 8 | fold(third)) * 0x9E3779B1;
+    return hash >>> (Integer.SIZE - Integer.numberOfTrailingZeros(SIGNATURE_BITS));
+  }
+
+  /**
+   * Folds an ASCII upper case letter to lower case.
+   *
+   * @param b the byte
+   * @return the folded byte
+   */
+  private static int fold(int b) {
+    return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+  }
+
+  /**
+   * Indexes what was appended to the file since the last update, starting over if the file was
+   * truncated or replaced.
+   *
+   * @param timeout the time indexing may take, in milliseconds
+   * @return true, if the whole file is indexed
+   * @throws IOException if the file cannot be read
+   */
+  public synchronized boolean update(long timeout) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    length = attributes.size();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      byte[] currentHead = read(channel, 0, Math.min(length, HEAD_SIZE));
+      if (length < indexedLength || !Objects.equals(fileKey, attributes.fileKey())
+          || !Arrays.equals(head, Arrays.copyOf(currentHead, head.length))) {
+        blocks.clear();
+        indexedLength = 0;
+        lineCount = 0;
+        fileKey = attributes.fileKey();
+        head = currentHead;
+      } else if (head.length < currentHead.length) {
+        head = currentHead;
+      }
+
+      long deadline = System.currentTimeMillis() + timeout;
+      ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+      Block block = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+      if (block != null && block.end - block.start >= blockSize) {
+        block = null;
+      }
+      int first = -1;
+      int second = -1;
+      long position = indexedLength;
+      while (position < length && System.currentTimeMillis() < deadline) {
+        buffer.clear();
+        int read = channel.read(buffer, position);
+        if (read <= 0) {
+          break;
+        }
+        byte[] bytes = buffer.array();
+        for (int i = 0; i < read; i++) {
+          int b = bytes[i] & 0xff;
+          if (block == null) {
+            block = new Block(position + i, lineCount);
+            blocks.add(block);
+          }
+          if (b == '\n') {
+            // Trigrams do not span lines, and blocks end with a line
+            first = -1;
+            second = -1;
+            lineCount++;
+            indexedLength = position + i + 1;
+            block.end = indexedLength;
+            if (block.end - block.start >= blockSize) {
+              block = null;
+            }
+          } else {
+            if (first >= 0) {
+              block.add(trigram(first, second, b));
+            }
+            first = second;
+            second = b;
+          }
+        }
+        position += read;
+      }
+      complete = position >= length;
+      return complete;
+    }
+  }
+
+  /**
+   * Searches the file as indexed, and its last line if the file ends without a line feed. The
+   * part of the file not yet indexed, if indexing timed out, is not searched.
+   *
+   * @param query the query
+   * @param charset the charset of the file
+   * @param from the offset of the first line searched
+   * @param limit the maximum number of matches
+   * @param context the number of lines shown before and after a match
+   * @return the page of matches
+   * @throws IOException if the file cannot be read
+   */
+  public synchronized Page search(LogQuery query, Charset charset, long from, int limit,
+      int context) throws IOException {
+    Page page = new Page();
+    int[] trigrams = query.getTrigrams(charset);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      for (Block block : blocks) {
+        if (block.end > from && block.end > block.start && block.mayContain(trigrams)) {
+          page.scannedBlocks++;
+          page.next = scan(channel, block.start, block.end, block.firstLine, from, query,
+              charset, limit, context, page.matches);
+          if (page.next >= 0) {
+            return page;
+          }
+        }
+      }
+      if (complete && indexedLength < length && from < length) {
+        page.next = scan(channel, indexedLength, length, lineCount, from, query, charset, limit,
+            context, page.matches);
+      }
+    }
+    return page;
+  }
+
+  /**
+   * Scans the lines of part of the file.
+   *
+   * @param channel the channel of the file
+   * @param start the offset of the first line
+   * @param end the offset after the last line
+   * @param firstLine the number of lines before the first line
+   * @param from the offset of the first line searched
+   * @param query the query
+   * @param charset the charset of the file
+   * @param limit the maximum number of matches
+   * @param context the number of lines shown before and after a match
+   * @param matches the matches found so far
+   * @return the offset of the line after the last match once the limit is reached, otherwise -1
+   * @throws IOException if the file cannot be read
+   */
+  private long scan(FileChannel channel, long start, long end, long firstLine, long from,
+      LogQuery query, Charset charset, int limit, int context, List<LogMatch> matches)
+      throws IOException {
+    long readStart = context > 0 ? Math.max(0, start - CONTEXT_BYTES) : start;
+    long readEnd = context > 0 ? Math.min(length, end + CONTEXT_BYTES) : end;
+    byte[] bytes = read(channel, readStart, readEnd);
+
+    // The lines read, as offsets into the bytes; the first and last may be cut short
+    List<int[]> lines = new ArrayList<>();
+    int lineStart = 0;
+    for (int i = 0; i <= bytes.length; i++) {
+      if (i == bytes.length || bytes[i] == '\n') {
+        if (i < bytes.length || i > lineStart) {
+          lines.add(new int[] {lineStart, i});
+        }
+        lineStart = i + 1;
+      }
+    }
+    int firstWhole = readStart > 0 && readStart < start ? 1 : 0;
+    int lastWhole = readEnd < length && readEnd > end && bytes.length > 0
+        && bytes[bytes.length - 1] != '\n' ? lines.size() - 2 : lines.size() - 1;
+
+    long lineNumber = firstLine;
+    for (int i = 0; i < lines.size(); i++) {
+      int[] line = lines.get(i);
+      long offset = readStart + line[0];
+      if (offset < start || offset >= end) {
+        continue;
+      }
+      lineNumber++;
+      if (offset < from) {
+        continue;
+      }
+      String text = decode(bytes, line, charset);
+      if (query.matches(text)) {
+        LogMatch match = new LogMatch();
+        match.setFileName(path.getFileName().toString());
+        match.setLineNumber(lineNumber);
+        match.setOffset(offset);
+        match.setLine(text);
+        for (int j = Math.max(firstWhole, i - context); j < i; j++) {
+          match.getBefore().add(decode(bytes, lines.get(j), charset));
+        }
+        for (int j = i + 1; j <= Math.min(lastWhole, i + context); j++) {
+          match.getAfter().add(decode(bytes, lines.get(j), charset));
+        }
+        matches.add(match);
+        if (matches.size() >= limit) {
+          return readStart + line[1] + 1;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Decodes a line, without its carriage return.
+   *
+   * @param bytes the bytes read
+   * @param line the offsets of the line in the bytes
+   * @param charset the charset
+   * @return the line
+   */
+  private static String decode(byte[] bytes, int[] line, Charset charset) {
+    int end = line[1] > line[0] && bytes[line[1] - 1] == '\r' ? line[1] - 1 : line[1];
+    return new String(bytes, line[0], end - line[0], charset);
+  }
+
+  /**
+   * Reads part of a file.
+   *
+   * @param channel the channel
+   * @param start the start
+   * @param end the end
+   * @return the bytes read, fewer than asked for if the file was truncated meanwhile
+   * @throws IOException if the file cannot be read
+   */
+  private static byte[] read(FileChannel channel, long start, long end) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+    while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) > 0) {
+      // Read until the end asked for or of the file
+    }
+    return Arrays.copyOf(buffer.array(), buffer.position());
+  }
+
+  /**
+   * Gets the number of blocks.
+   *
+   * @return the block count
+   */
+  public synchronized int getBlockCount() {
+    return blocks.size();
+  }
+
+  /**
+   * Gets the memory the signatures take.
+   *
+   * @return the memory, in bytes
+   */
+  public synchronized long getMemory() {
+    return (long) blocks.size() * SIGNATURE_BITS / Byte.SIZE;
+  }
+
+  /**
+   * Gets the number of lines indexed.
+   *
+   * @return the line count
+   */
+  public synchronized long getLineCount() {
+    return lineCount;
+  }
+
+  /**
+   * A block of lines and its signature.
+   */
+  private static class Block {
+
+    /** The offset of the first line. */
+    final long start;
+
+    /** The number of lines before the first line. */
+    final long firstLine;
+
+    /** The offset after the last line. */
+    long end;
+
+    /** The signature. */
+    final long[] signature = new long[SIGNATURE_BITS / Long.SIZE];
+
+    /**
+     * Instantiates a new block.
+     *
+     * @param start the offset of the first line
+     * @param firstLine the number of lines before the first line
+     */
+    Block(long start, long firstLine) {
+      this.start = start;
+      this.firstLine = firstLine;
+      this.end = start;
+    }
+
+    /**
+     * Adds a trigram to the signature.
+     *
+     * @param trigram the trigram bit, or -1
+     */
+    void add(int trigram) {
+      if (trigram >= 0) {
+        signature[trigram >>> 6] |= 1L << trigram;
+      }
+    }
+
+    /**
+     * Checks if the block may contain every trigram.
+     *
+     * @param trigrams the trigram bits
+     * @return true, if the block may contain them
+     */
+    boolean mayContain(int[] trigrams) {
+      for (int trigram : trigrams) {
+        if ((signature[trigram >>> 6] & 1L << trigram) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+  }
+
+  /**
+   * A page of matches.
+   */
+  public static class Page {
+
+    /** The matches. */
+    private final List<LogMatch> matches = new ArrayList<>();
+
+    /** The offset the next page starts at, -1 if there is none. */
+    private long next = -1;
+
+    /** The number of blocks read. */
+    private int scannedBlocks;
+
+    /**
+     * Gets the matches.
+     *
+     * @return the matches
+     */
+    public List<LogMatch> getMatches() {
+      return matches;
+    }
+
+    /**
+     * Gets the offset the next page starts at.
+     *
+     * @return the offset, -1 if there is no next page
+     */
+    public long getNext() {
+      return next;
+    }
+
+    /**
+     * Gets the number of blocks read.
+     *
+     * @return the scanned blocks
+     */
+    public int getScannedBlocks() {
+      return scannedBlocks;
+    }
+
+  }
+
+}
@@ -0,0 +1,195 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * A log search, either keywords every matching line contains in any case, or a regular expression
+ * found in matching lines. A query also knows the literals any matching line must contain, so that
+ * a {@link LogIndex} can skip the parts of a log without them.
+ */
+public final class LogQuery {
+
+  /** The pattern, null for keywords. */
+  private final Pattern pattern;
+
+  /** The keywords, in lower case, null for a regular expression. */
+  private final String[] keywords;
+
+  /** The literals every matching line contains, in any case. */
+  private final List<String> literals;
+
+  /**
+   * Instantiates a new log query.
+   *
+   * @param pattern the pattern
+   * @param keywords the keywords
+   * @param literals the literals
+   */
+  private LogQuery(Pattern pattern, String[] keywords, List<String> literals) {
+    this.pattern = pattern;
+    this.keywords = keywords;
+    this.literals = literals;
+  }
+
+  /**
+   * Creates a query for lines containing every keyword, in any case.
+   *
+   * @param text the keywords, separated by spaces
+   * @return the log query
+   */
+  public static LogQuery keywords(String text) {
+    String[] keywords = text.trim().toLowerCase(Locale.ROOT).split("\\s+");
+    return new LogQuery(null, keywords, Arrays.asList(keywords));
+  }
+
+  /**
+   * Creates a query for lines in which a regular expression is found.
+   *
+   * @param regex the regular expression
+   * @return the log query
+   * @throws java.util.regex.PatternSyntaxException if the regular expression is invalid
+   */
+  public static LogQuery regex(String regex) {
+    return new LogQuery(Pattern.compile(regex), null, getRequiredLiterals(regex));
+  }
+
+  /**
+   * Checks if a line matches.
+   *
+   * @param line the line
+   * @return true, if the line matches
+   */
+  public boolean matches(String line) {
+    if (pattern != null) {
+      return pattern.matcher(line).find();
+    }
+    String lowerCase = line.toLowerCase(Locale.ROOT);
+    for (String keyword : keywords) {
+      if (!lowerCase.contains(keyword)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Gets the literals every matching line contains, in any case.
+   *
+   * @return the literals
+   */
+  public List<String> getLiterals() {
+    return literals;
+  }
+
+  /**
+   * Gets the trigrams every matching line contains, as hashed by {@link LogIndex}.
+   *
+   * @param charset the charset of the log
+   * @return the trigram hashes, none if the charset is not a superset of ASCII
+   */
+  public int[] getTrigrams(Charset charset) {
+    if (!Arrays.equals("\na".getBytes(charset), new byte[] {'\n', 'a'})) {
+      return new int[0];
+    }
+    List<Integer> trigrams = new ArrayList<>();
+    for (String literal : literals) {
+      byte[] bytes = literal.getBytes(charset);
+      for (int i = 2; i < bytes.length; i++) {
+        int trigram = LogIndex.trigram(bytes[i - 2] & 0xff, bytes[i - 1] & 0xff, bytes[i] & 0xff);
+        if (trigram >= 0) {
+          trigrams.add(trigram);
+        }
+      }
+    }
+    return trigrams.stream().mapToInt(Integer::intValue).distinct().toArray();
+  }
+
+  /**
+   * Gets the literals any text a regular expression is found in contains. The regular expression
+   * is only parsed as far as telling literal characters from others: what is in groups, classes
+   * or optional is left out, and nothing is required of an alternation. Nor is anything required
+   * of a regular expression with back references by name, quotations or inline flags, whose text
+   * cannot be read character by character.
+   *
+   * @param regex the regular expression
+   * @return the literals, of three characters or more
+   */
+  static List<String> getRequiredLiterals(String regex) {
+    List<String> literals = new ArrayList<>();
+    if (regex.indexOf('|') >= 0 || regex.contains("\\k") || regex.contains("\\Q")
+        || regex.contains("(?")) {
+      return literals;
+    }
+    StringBuilder literal = new StringBuilder();
+    int depth = 0;
+    for (int i = 0; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c == '\\' && i + 1 < regex.length()) {
+        char next = regex.charAt(++i);
+        if (depth == 0 && !Character.isLetterOrDigit(next)) {
+          literal.append(next);
+        } else {
+          // A character class such as \d, a boundary or a quotation
+          addLiteral(literals, literal);
+        }
+      } else if (c == '[') {
+        addLiteral(literals, literal);
+        for (i++; i < regex.length() && regex.charAt(i) != ']'; i++) {
+          if (regex.charAt(i) == '\\') {
+            i++;
+          }
+        }
+      } else if (c == '*' || c == '?' || c == '{') {
+        // The character before is optional
+        if (literal.length() > 0) {
+          literal.setLength(literal.length() - 1);
+        }
+        addLiteral(literals, literal);
+        if (c == '{') {
+          i = Math.max(i, regex.indexOf('}', i));
+        }
+      } else if (c == '(') {
+        addLiteral(literals, literal);
+        depth++;
+      } else if (c == ')') {
+        addLiteral(literals, literal);
+        depth--;
+      } else if (c == '+' || c == '.' || c == '^' || c == '$') {
+        addLiteral(literals, literal);
+      } else if (depth == 0) {
+        literal.append(c);
+      }
+    }
+    addLiteral(literals, literal);
+    return literals;
+  }
+
+  /**
+   * Adds a literal if it is long enough to be looked up, and starts the next one.
+   *
+   * @param literals the literals
+   * @param literal the literal
+   */
+  private static void addLiteral(List<String> literals, StringBuilder literal) {
+    if (literal.length() >= 3) {
+      literals.add(literal.toString());
+    }
+    literal.setLength(0);
+  }
+
+}
@@ -0,0 +1,423 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the lines of a log file written within a time window without reading the whole file. The
+ * timestamp format of the file is detected from its first lines, then the file is binary searched
+ * by byte offset: each probe reads forward from an offset to the first line with a timestamp, so
+ * that a window of a multi-gigabyte log is found in a few dozen small reads. Lines without a
+ * timestamp, such as stack traces, go with the line before them.
+ */
+public final class LogTimeSeeker {
+
+  /** The Constant FORMATS, the timestamp formats recognized, by named groups. */
+  private static final List<Pattern> FORMATS = Arrays.asList(
+      // ISO 8601 as written by log4j, logback and the like, e.g. 2024-01-31 03:12:00,123
+      Pattern.compile("(?<year>\\d{4})[-/](?<month>\\d{2})[-/](?<day>\\d{2})[T ]"
+          + "(?<hour>\\d{2}):(?<minute>\\d{2}):(?<second>\\d{2})(?:[.,](?<fraction>\\d{1,9}))?"),
+      // Tomcat OneLineFormatter, e.g. 31-Jan-2024 03:12:00.123
+      Pattern.compile("(?<day>\\d{2})-(?<month>[A-Z][a-z]{2})-(?<year>\\d{4}) "
+          + "(?<hour>\\d{2}):(?<minute>\\d{2}):(?<second>\\d{2})(?:\\.(?<fraction>\\d{1,9}))?"),
+      // Access logs, e.g. [31/Jan/2024:03:12:00 +0000]
+      Pattern.compile("\\[(?<day>\\d{2})/(?<month>[A-Z][a-z]{2})/(?<year>\\d{4}):"
+          + "(?<hour>\\d{2}):(?<minute>\\d{2}):(?<second>\\d{2})"),
+      // java.util.logging SimpleFormatter, e.g. Jan 31, 2024 3:12:00 AM
+      Pattern.compile("(?<month>[A-Z][a-z]{2}) (?<day>\\d{1,2}), (?<year>\\d{4}) "
+          + "(?<hour>\\d{1,2}):(?<minute>\\d{2}):(?<second>\\d{2}) (?<ampm>[AP]M)"));
+
+  /** The Constant MONTHS, the English month abbreviations. */
+  private static final List<String> MONTHS = Arrays.asList("Jan", "Feb", "Mar", "Apr", "May",
+      "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec");
+
+  /** The Constant PREFIX_LENGTH, how far into a line a timestamp is looked for. */
+  private static final int PREFIX_LENGTH = 128;
+
+  /** The Constant SAMPLE_LINES, the number of first lines the format is detected from. */
+  private static final int SAMPLE_LINES = 50;
+
+  /** The Constant CHUNK_SIZE, the size of the reads looking for a line with a timestamp. */
+  private static final int CHUNK_SIZE = 8 * 1024;
+
+  /** The Constant MAX_SCAN, how far after an offset a line with a timestamp is looked for. */
+  private static final int MAX_SCAN = 1024 * 1024;
+
+  /** The path. */
+  private final Path path;
+
+  /** The charset. */
+  private final Charset charset;
+
+  /** The timestamp format. */
+  private final Pattern format;
+
+  /**
+   * Instantiates a new log time seeker.
+   *
+   * @param path the path
+   * @param charset the charset
+   * @param format the timestamp format
+   */
+  private LogTimeSeeker(Path path, Charset charset, Pattern format) {
+    this.path = path;
+    this.charset = charset;
+    this.format = format;
+  }
+
+  /**
+   * Detects the timestamp format of a log file from its first lines.
+   *
+   * @param file the file
+   * @param charset the charset of the file
+   * @return the log time seeker, or null if no line has a timestamp in a known format
+   * @throws IOException if the file cannot be read
+   */
+  public static LogTimeSeeker of(File file, Charset charset) throws IOException {
+    int[] counts = new int[FORMATS.size()];
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      byte[] bytes = read(channel, 0, Math.min(channel.size(), SAMPLE_LINES * 256L));
+      int lineStart = 0;
+      for (int i = 0, lines = 0; i < bytes.length && lines < SAMPLE_LINES; i++) {
+        if (bytes[i] == '\n') {
+          String line = decode(bytes, lineStart, i, charset);
+          for (int f = 0; f < FORMATS.size(); f++) {
+            if (parse(FORMATS.get(f), line) != null) {
+              counts[f]++;
+            }
+          }
+          lineStart = i + 1;
+          lines++;
+        }
+      }
+    }
+    int best = 0;
+    for (int f = 1; f < counts.length; f++) {
+      if (counts[f] > counts[best]) {
+        best = f;
+      }
+    }
+    return counts[best] == 0 ? null : new LogTimeSeeker(file.toPath(), charset, FORMATS.get(best));
+  }
+
+  /**
+   * Gets the byte window of the lines written within a time window. A bound given as a time of
+   * day is taken on the day of the last line of the log, or the day before if that puts the start
+   * of the window after the last line; the end of the window is taken on the day of its start, or
+   * the day after if earlier.
+   *
+   * @param from the start of the window, as yyyy-MM-dd HH:mm[:ss] or HH:mm[:ss], or empty
+   * @param to the end of the window, inclusive, likewise
+   * @return the offset of the first line and the offset after the last line
+   * @throws IOException if the file cannot be read
+   * @throws DateTimeParseException if a bound is malformed
+   */
+  public long[] seek(String from, String to) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long length = channel.size();
+      boolean hasFrom = from != null && !from.trim().isEmpty();
+      boolean hasTo = to != null && !to.trim().isEmpty();
+      LocalDateTime fromTime = null;
+      LocalDateTime toTime = null;
+      LocalDateTime last = null;
+      if (hasFrom && isTimeOfDay(from) || hasTo && isTimeOfDay(to)) {
+        last = getLastTime(channel, length);
+        if (last == null) {
+          return new long[] {length, length};
+        }
+      }
+      if (hasFrom) {
+        fromTime = parseBound(from, last == null ? null : last.toLocalDate());
+        if (last != null && isTimeOfDay(from) && fromTime.isAfter(last)) {
+          fromTime = fromTime.minusDays(1);
+        }
+      }
+      if (hasTo) {
+        LocalDate day = fromTime != null ? fromTime.toLocalDate()
+            : last == null ? null : last.toLocalDate();
+        toTime = parseBound(to, day);
+        if (fromTime != null && isTimeOfDay(to) && toTime.isBefore(fromTime)) {
+          toTime = toTime.plusDays(1);
+        }
+        if (to.trim().split(":").length == 2) {
+          // A bound without seconds stands for the whole minute
+          toTime = toTime.plusSeconds(59).plusNanos(999999999);
+        }
+      }
+      long start = fromTime == null ? 0 : seek(channel, length, fromTime, false);
+      long end = toTime == null ? length : seek(channel, length, toTime, true);
+      return new long[] {start, Math.max(start, end)};
+    }
+  }
+
+  /**
+   * Checks if a bound is a time of day only.
+   *
+   * @param value the bound
+   * @return true, if it is a time of day
+   */
+  private static boolean isTimeOfDay(String value) {
+    return value.trim().length() <= 8;
+  }
+
+  /**
+   * Parses a bound of a time window.
+   *
+   * @param value the bound, as yyyy-MM-dd HH:mm[:ss] or HH:mm[:ss]
+   * @param day the day a time of day is taken on
+   * @return the time
+   * @throws DateTimeParseException if the bound is malformed
+   */
+  static LocalDateTime parseBound(String value, LocalDate day) {
+    String trimmed = value.trim();
+    if (isTimeOfDay(trimmed)) {
+      return LocalTime.parse(trimmed).atDate(day);
+    }
+    return LocalDateTime.parse(trimmed.replace(' ', 'T'));
+  }
+
+  /**
+   * Finds the first line with a timestamp at or after a time, or after it.
+   *
+   * @param channel the channel of the file
+   * @param length the length of the file
+   * @param time the time
+   * @param after whether the line must be strictly after the time
+   * @return the offset of the line, the length of the file if there is none
+   * @throws IOException if the file cannot be read
+   */
+  private long seek(FileChannel channel, long length, LocalDateTime time, boolean after)
+      throws IOException {
+    long low = 0;
+    long high = length;
+    while (low < high) {
+      long middle = (low + high) >>> 1;
+      Stamp stamp = nextStamp(channel, length, middle);
+      if (stamp == null || (after ? stamp.time.isAfter(time) : !stamp.time.isBefore(time))) {
+        high = middle;
+      } else {
+        // Every offset up to the line found leads to that same line
+        low = stamp.offset + 1;
+      }
+    }
+    Stamp stamp = nextStamp(channel, length, low);
+    return stamp == null ? length : stamp.offset;
+  }
+
+  /**
+   * Finds the first line with a timestamp starting at or after an offset.
+   *
+   * @param channel the channel of the file
+   * @param length the length of the file
+   * @param position the offset
+   * @return the line, or null if none is found within a scan limit
+   * @throws IOException if the file cannot be read
+   */
+  private Stamp nextStamp(FileChannel channel, long length, long position) throws IOException {
+    long limit = Math.min(length, position + MAX_SCAN);
+    long lineStart = position == 0 ? 0 : nextLineStart(channel, limit, position - 1);
+    while (lineStart < limit) {
+      byte[] bytes = read(channel, lineStart, Math.min(length, lineStart + CHUNK_SIZE));
+      if (bytes.length == 0) {
+        break;
+      }
+      int start = 0;
+      for (int i = 0; i < bytes.length; i++) {
+        boolean endOfFile = lineStart + i + 1 == length;
+        if (bytes[i] == '\n' || endOfFile) {
+          LocalDateTime time =
+              parse(format, decode(bytes, start, bytes[i] == '\n' ? i : i + 1, charset));
+          if (time != null) {
+            return new Stamp(lineStart + start, time);
+          }
+          start = i + 1;
+        }
+      }
+      if (start > 0) {
+        // Carry on from the line cut by the end of the chunk
+        lineStart += start;
+      } else {
+        // A line longer than a chunk, the start of which has the timestamp if any
+        LocalDateTime time = parse(format, decode(bytes, 0, bytes.length, charset));
+        if (time != null) {
+          return new Stamp(lineStart, time);
+        }
+        lineStart = nextLineStart(channel, limit, lineStart + bytes.length);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Finds the start of the line after the line feed at or after an offset.
+   *
+   * @param channel the channel of the file
+   * @param limit the offset the line feed is looked for up to
+   * @param position the offset
+   * @return the offset of the line, or the limit if there is none before it
+   * @throws IOException if the file cannot be read
+   */
+  private static long nextLineStart(FileChannel channel, long limit, long position)
+      throws IOException {
+    for (long offset = position; offset < limit; offset += CHUNK_SIZE) {
+      byte[] bytes = read(channel, offset, Math.min(limit, offset + CHUNK_SIZE));
+      for (int i = 0; i < bytes.length; i++) {
+        if (bytes[i] == '\n') {
+          return offset + i + 1;
+        }
+      }
+      if (bytes.length == 0) {
+        break;
+      }
+    }
+    return limit;
+  }
+
+  /**
+   * Gets the time of the last line with a timestamp within the last part of a file.
+   *
+   * @param channel the channel of the file
+   * @param length the length of the file
+   * @return the time, or null if none is found
+   * @throws IOException if the file cannot be read
+   */
+  private LocalDateTime getLastTime(FileChannel channel, long length) throws IOException {
+    // The last lines usually have timestamps, unless the log ends with a long stack trace
+    for (long from : new long[] {length - CHUNK_SIZE, length - MAX_SCAN}) {
+      LocalDateTime last = null;
+      for (Stamp stamp = nextStamp(channel, length, Math.max(0, from)); stamp != null;
+          stamp = nextStamp(channel, length, stamp.offset + 1)) {
+        last = stamp.time;
+      }
+      if (last != null) {
+        return last;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Parses the timestamp of a line.
+   *
+   * @param format the timestamp format
+   * @param line the line
+   * @return the time, or null if the line has no timestamp
+   */
+  static LocalDateTime parse(Pattern format, String line) {
+    Matcher matcher = format.matcher(line);
+    matcher.region(0, Math.min(line.length(), PREFIX_LENGTH));
+    if (!matcher.find()) {
+      return null;
+    }
+    try {
+      String monthText = matcher.group("month");
+      int month = Character.isDigit(monthText.charAt(0)) ? Integer.parseInt(monthText)
+          : MONTHS.indexOf(monthText) + 1;
+      int hour = Integer.parseInt(matcher.group("hour"));
+      if (format.pattern().contains("?<ampm>")) {
+        hour = hour % 12 + ("PM".equals(matcher.group("ampm")) ? 12 : 0);
+      }
+      int nano = 0;
+      if (format.pattern().contains("?<fraction>") && matcher.group("fraction") != null) {
+        String fraction = matcher.group("fraction");
+        nano = Integer.parseInt(fraction) * (int) Math.pow(10, 9 - fraction.length());
+      }
+      return LocalDateTime.of(Integer.parseInt(matcher.group("year")), month,
+          Integer.parseInt(matcher.group("day")), hour, Integer.parseInt(matcher.group("minute")),
+          Integer.parseInt(matcher.group("second")), nano);
+    } catch (DateTimeException e) {
+      // Not a valid date, e.g. an unknown month
+      return null;
+    }
+  }
+
+  /**
+   * Gets the timestamp formats recognized.
+   *
+   * @return the formats
+   */
+  static List<Pattern> getFormats() {
+    return FORMATS;
+  }
+
+  /**
+   * Decodes the start of a line, without its carriage return.
+   *
+   * @param bytes the bytes
+   * @param start the start of the line
+   * @param end the end of the line
+   * @param charset the charset
+   * @return the start of the line
+   */
+  private static String decode(byte[] bytes, int start, int end, Charset charset) {
+    int stop = end > start && bytes[end - 1] == '\r' ? end - 1 : end;
+    return new String(bytes, start, Math.min(stop - start, PREFIX_LENGTH * 2), charset);
+  }
+
+  /**
+   * Reads part of a file.
+   *
+   * @param channel the channel
+   * @param start the start
+   * @param end the end
+   * @return the bytes read, fewer than asked for if the file was truncated meanwhile
+   * @throws IOException if the file cannot be read
+   */
+  private static byte[] read(FileChannel channel, long start, long end) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(0, end - start));
+    while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) > 0) {
+      // Read until the end asked for or of the file
+    }
+    return Arrays.copyOf(buffer.array(), buffer.position());
+  }
+
+  /**
+   * A line with a timestamp.
+   */
+  private static class Stamp {
+
+    /** The offset of the line. */
+    final long offset;
+
+    /** The time. */
+    final LocalDateTime time;
+
+    /**
+     * Instantiates a new stamp.
+     *
+     * @param offset the offset of the line
+     * @param time the time
+     */
+    Stamp(long offset, LocalDateTime time) {
+      this.offset = offset;
+      this.time = time;
+    }
+
+  }
+
+}
@@ -0,0 +1,440 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Session;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Request;
+
+import psiprobe.model.ApplicationSession;
+import psiprobe.model.IpInfo;
+
+/**
+ * Records what the agent valves see of the requests of a web application in servlet context
+ * attributes, for the probe to read.
+ *
+ * <p>
+ * The valves of all the Tomcat versions share this logic and only implement the access to servlet
+ * context and session attributes, which goes through the servlet API of their container. Only the
+ * Catalina methods whose signatures do not involve the servlet API are called here, so that the
+ * same class links whichever API the container implements.
+ * </p>
+ */
+public abstract class RequestRecorder {
+
+  /** Whether the last access of a session is kept in its attributes. */
+  private boolean lastAccessInSession = true;
+
+  /** Whether request latency is recorded per web application. */
+  private boolean latencyRecorded;
+
+  /** Whether request latency is also recorded per servlet. */
+  private boolean servletLatencyRecorded;
+
+  /** The threshold in milliseconds past which a request is kept as slow, 0 to keep none. */
+  private long slowRequestThreshold;
+
+  /** The number of slow requests kept per web application. */
+  private int slowRequestCapacity = 100;
+
+  /** Whether the stack of slow requests is sampled while they run. */
+  private boolean slowRequestStackSampled;
+
+  /** The stack sampler, once created. */
+  private volatile InFlightStackSampler stackSampler;
+
+  /**
+   * Checks if the last access of a session is kept in its attributes.
+   *
+   * @return true, if the last access of a session is kept in its attributes
+   */
+  public boolean isLastAccessInSession() {
+    return lastAccessInSession;
+  }
+
+  /**
+   * Sets whether the last access of a session is kept in its attributes, written only when it
+   * changed, or in a side table of its web application the session is never written for.
+   *
+   * @param lastAccessInSession the new last access in session
+   */
+  public void setLastAccessInSession(boolean lastAccessInSession) {
+    this.lastAccessInSession = lastAccessInSession;
+  }
+
+  /**
+   * Checks if request latency is recorded.
+   *
+   * @return true, if request latency is recorded
+   */
+  public boolean isLatencyRecorded() {
+    return latencyRecorded;
+  }
+
+  /**
+   * Sets whether request latency is recorded per web application.
+   *
+   * @param latencyRecorded the new latency recorded
+   */
+  public void setLatencyRecorded(boolean latencyRecorded) {
+    this.latencyRecorded = latencyRecorded;
+  }
+
+  /**
+   * Checks if request latency is recorded per servlet.
+   *
+   * @return true, if request latency is recorded per servlet
+   */
+  public boolean isServletLatencyRecorded() {
+    return servletLatencyRecorded;
+  }
+
+  /**
+   * Sets whether request latency is also recorded per servlet, when it is recorded at all.
+   *
+   * @param servletLatencyRecorded the new servlet latency recorded
+   */
+  public void setServletLatencyRecorded(boolean servletLatencyRecorded) {
+    this.servletLatencyRecorded = servletLatencyRecorded;
+  }
+
+  /**
+   * Gets the threshold in milliseconds past which a request is kept as slow.
+   *
+   * @return the slow request threshold
+   */
+  public long getSlowRequestThreshold() {
+    return slowRequestThreshold;
+  }
+
+  /**
+   * Sets the threshold in milliseconds past which a request is kept as slow, 0 to keep none.
+   *
+   * @param slowRequestThreshold the new slow request threshold
+   */
+  public void setSlowRequestThreshold(long slowRequestThreshold) {
+    this.slowRequestThreshold = slowRequestThreshold;
+  }
+
+  /**
+   * Gets the number of slow requests kept per web application.
+   *
+   * @return the slow request capacity
+   */
+  public int getSlowRequestCapacity() {
+    return slowRequestCapacity;
+  }
+
+  /**
+   * Sets the number of slow requests kept per web application.
+   *
+   * @param slowRequestCapacity the new slow request capacity
+   */
+  public void setSlowRequestCapacity(int slowRequestCapacity) {
+    this.slowRequestCapacity = slowRequestCapacity;
+  }
+
+  /**
+   * Checks if the stack of slow requests is sampled while they run.
+   *
+   * @return true, if the stack of slow requests is sampled
+   */
+  public boolean isSlowRequestStackSampled() {
+    return slowRequestStackSampled;
+  }
+
+  /**
+   * Sets whether the stack of slow requests is sampled while they run.
+   *
+   * @param slowRequestStackSampled the new slow request stack sampled
+   */
+  public void setSlowRequestStackSampled(boolean slowRequestStackSampled) {
+    this.slowRequestStackSampled = slowRequestStackSampled;
+  }
+
+  /**
+   * Starts timing a request on the current thread.
+   *
+   * @return the timing of the request, or null if nothing is recorded of its duration
+   */
+  public Timing begin() {
+    boolean slowKept = slowRequestThreshold > 0;
+    if (!latencyRecorded && !slowKept) {
+      return null;
+    }
+    long start = System.nanoTime();
+    InFlightStackSampler sampler = slowKept && slowRequestStackSampled ? getStackSampler() : null;
+    return new Timing(start, sampler,
+        sampler == null ? null : sampler.begin(Thread.currentThread(), start));
+  }
+
+  /**
+   * Ends timing a request, on the thread it began on, and records its latency and whether it was
+   * slow.
+   *
+   * @param timing the timing of the request, or null
+   * @param request the request
+   */
+  public void end(Timing timing, Request request) {
+    if (timing == null) {
+      return;
+    }
+    long nanos = System.nanoTime() - timing.startNanos;
+    StackTraceElement[] stack = null;
+    if (timing.sampler != null) {
+      stack = timing.sampler.end(timing.inFlight);
+      if (request.isAsyncStarted()) {
+        // The thread left the request once it went asynchronous, its stack says nothing of it
+        stack = null;
+      }
+    }
+    if (latencyRecorded) {
+      recordLatency(request, nanos);
+    }
+    long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+    if (slowRequestThreshold > 0 && millis >= slowRequestThreshold) {
+      recordSlowRequest(request, millis, stack);
+    }
+  }
+
+  /**
+   * Records the address and locale a session was last accessed with, if the request has a valid
+   * session.
+   *
+   * @param request the request
+   */
+  public void recordLastAccess(Request request) {
+    Session session = request.getSessionInternal(false);
+    if (session == null || !session.isValid()) {
+      return;
+    }
+    String ip =
+        IpInfo.getClientAddress(request.getRemoteAddr(), request.getHeader("X-Forwarded-For"));
+    Locale locale = request.getLocale();
+    if (lastAccessInSession) {
+      // Every write marks a replicated or persisted session dirty, so only write changes
+      setSessionAttributeIfChanged(session, ApplicationSession.LAST_ACCESSED_BY_IP, ip);
+      setSessionAttributeIfChanged(session, ApplicationSession.LAST_ACCESSED_LOCALE, locale);
+    } else {
+      recordLastAccess(request.getContext(), session, ip, locale);
+    }
+  }
+
+  /**
+   * Stops sampling stacks.
+   */
+  public synchronized void stop() {
+    if (stackSampler != null) {
+      stackSampler.stop();
+      stackSampler = null;
+    }
+  }
+
+  /**
+   * Sets a session attribute unless it already has the value.
+   *
+   * @param session the session
+   * @param name the attribute name
+   * @param value the value
+   */
+  private void setSessionAttributeIfChanged(Session session, String name, Object value) {
+    if (!Objects.equals(getSessionAttribute(session, name), value)) {
+      setSessionAttribute(session, name, value);
+    }
+  }
+
+  /**
+   * Records the last access of a session in the side table of its web application, which is kept
+   * in a servlet context attribute for the probe to read. A session is removed from the table when
+   * it is destroyed.
+   *
+   * @param context the context
+   * @param session the session
+   * @param ip the client address
+   * @param locale the locale
+   */
+  @SuppressWarnings("unchecked")
+  private void recordLastAccess(Context context, Session session, String ip, Locale locale) {
+    if (context == null) {
+      return;
+    }
+    Map<String, Object[]> table = (Map<String, Object[]>) getContextAttribute(context,
+        LastAccessTable.CONTEXT_ATTRIBUTE, Map.class, ConcurrentHashMap<String, Object[]>::new);
+    String id = session.getIdInternal();
+    if (LastAccessTable.record(table, id, ip, locale)) {
+      session.addSessionListener(event -> {
+        if (Session.SESSION_DESTROYED_EVENT.equals(event.getType())) {
+          table.remove(id);
+        }
+      });
+    }
+  }
+
+  /**
+   * Records the latency of a request in the histograms of its web application, which are kept in a
+   * servlet context attribute for the probe to read.
+   *
+   * @param request the request
+   * @param nanos the latency in nanoseconds
+   */
+  @SuppressWarnings("unchecked")
+  private void recordLatency(Request request, long nanos) {
+    Context context = request.getContext();
+    if (context == null) {
+      return;
+    }
+    Object histograms = getContextAttribute(context, LatencyHistogram.CONTEXT_ATTRIBUTE,
+        Map.class, ConcurrentHashMap<String, AtomicLongArray>::new);
+    Wrapper wrapper = servletLatencyRecorded ? request.getWrapper() : null;
+    LatencyHistogram.record((Map<String, AtomicLongArray>) histograms,
+        wrapper == null ? null : wrapper.getName(), TimeUnit.NANOSECONDS.toMicros(nanos));
+  }
+
+  /**
+   * Records a slow request in the ring of its web application, which is kept in a servlet context
+   * attribute for the probe to read.
+   *
+   * @param request the request
+   * @param millis the duration in milliseconds
+   * @param stack the stack sampled while the request was running, or null
+   */
+  @SuppressWarnings("unchecked")
+  private void recordSlowRequest(Request request, long millis, StackTraceElement[] stack) {
+    Context context = request.getContext();
+    if (context == null) {
+      return;
+    }
+    Object ring = getContextAttribute(context, SlowRequestRing.CONTEXT_ATTRIBUTE,
+        AtomicReferenceArray.class, () -> SlowRequestRing.create(slowRequestCapacity));
+    SlowRequestRing.record((AtomicReferenceArray<Object>) ring, request.getDecodedRequestURI(),
+        request.getQueryString(), request.getMethod(), millis, Thread.currentThread().getName(),
+        stack);
+  }
+
+  /**
+   * Gets the stack sampler, creating it on first use.
+   *
+   * @return the stack sampler
+   */
+  private InFlightStackSampler getStackSampler() {
+    InFlightStackSampler sampler = stackSampler;
+    if (sampler == null) {
+      synchronized (this) {
+        sampler = stackSampler;
+        if (sampler == null) {
+          sampler = new InFlightStackSampler(slowRequestThreshold);
+          stackSampler = sampler;
+        }
+      }
+    }
+    return sampler;
+  }
+
+  /**
+   * Gets a servlet context attribute of a web application, creating it on first use.
+   *
+   * @param context the context
+   * @param name the attribute name
+   * @param type the attribute type
+   * @param factory the factory of the attribute
+   * @return the attribute
+   */
+  private Object getContextAttribute(Context context, String name, Class<?> type,
+      Supplier<?> factory) {
+    Object value = getContextAttribute(context, name);
+    if (!type.isInstance(value)) {
+      synchronized (context) {
+        value = getContextAttribute(context, name);
+        if (!type.isInstance(value)) {
+          value = factory.get();
+          setContextAttribute(context, name, value);
+        }
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Gets a servlet context attribute of a web application.
+   *
+   * @param context the context
+   * @param name the attribute name
+   * @return the attribute, or null
+   */
+  protected abstract Object getContextAttribute(Context context, String name);
+
+  /**
+   * Sets a servlet context attribute of a web application.
+   *
+   * @param context the context
+   * @param name the attribute name
+   * @param value the value
+   */
+  protected abstract void setContextAttribute(Context context, String name, Object value);
+
+  /**
+   * Gets an attribute of a session.
+   *
+   * @param session the session
+   * @param name the attribute name
+   * @return the attribute, or null
+   */
+  protected abstract Object getSessionAttribute(Session session, String name);
+
+  /**
+   * Sets an attribute of a session.
+   *
+   * @param session the session
+   * @param name the attribute name
+   * @param value the value
+   */
+  protected abstract void setSessionAttribute(Session session, String name, Object value);
+
+  /**
+   * The timing of a request.
+   */
+  public static final class Timing {
+
+    /** The start, from {@link System#nanoTime()}. */
+    final long startNanos;
+
+    /** The stack sampler, or null if the stack is not sampled. */
+    final InFlightStackSampler sampler;
+
+    /** The request registered with the stack sampler, or null. */
+    final InFlightStackSampler.InFlight inFlight;
+
+    /**
+     * Instantiates a new timing.
+     *
+     * @param startNanos the start
+     * @param sampler the stack sampler, or null
+     * @param inFlight the request registered with the stack sampler, or null
+     */
+    Timing(long startNanos, InFlightStackSampler sampler, InFlightStackSampler.InFlight inFlight) {
+      this.startNanos = startNanos;
+      this.sampler = sampler;
+      this.inFlight = inFlight;
+    }
+
+  }
+
+}
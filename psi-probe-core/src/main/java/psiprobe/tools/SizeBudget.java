@@ -0,0 +1,126 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time and object-count budget for estimating sizes within one request. Once either is spent,
+ * sizing stops and the sizes found so far are reported as partial. Sizes are also partial when
+ * fields that could not be read were skipped. Not thread safe.
+ */
+public class SizeBudget {
+
+  /** The Constant CHECK_INTERVAL, the number of objects sized between clock reads. */
+  private static final int CHECK_INTERVAL = 1024;
+
+  /** The deadline, from {@link System#nanoTime()}. */
+  private final long deadline;
+
+  /** The maximum number of objects. */
+  private final long maxObjects;
+
+  /** The number of objects sized. */
+  private long objects;
+
+  /** Whether the budget is spent. */
+  private boolean exhausted;
+
+  /** The number of unreadable fields skipped. */
+  private long skippedFields;
+
+  /**
+   * Instantiates a new size budget.
+   *
+   * @param timeout the time budget in milliseconds, 0 or less for none
+   * @param maxObjects the maximum number of objects to size, 0 or less for no maximum
+   */
+  public SizeBudget(long timeout, long maxObjects) {
+    this.deadline = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+    this.maxObjects = maxObjects > 0 ? maxObjects : Long.MAX_VALUE;
+  }
+
+  /**
+   * Creates a budget without limits.
+   *
+   * @return the size budget
+   */
+  public static SizeBudget unlimited() {
+    return new SizeBudget(0, 0);
+  }
+
+  /**
+   * Spends the budget of one object.
+   *
+   * @return true, if the object may be sized
+   */
+  public boolean spend() {
+    if (exhausted) {
+      return false;
+    }
+    objects++;
+    if (objects > maxObjects
+        || deadline != 0 && objects % CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+      exhausted = true;
+    }
+    return !exhausted;
+  }
+
+  /**
+   * Checks if the budget is spent.
+   *
+   * @return true, if the budget is spent
+   */
+  public boolean isExhausted() {
+    if (!exhausted && deadline != 0 && System.nanoTime() - deadline > 0) {
+      exhausted = true;
+    }
+    return exhausted;
+  }
+
+  /**
+   * Records fields skipped because they could not be read.
+   *
+   * @param count the number of fields
+   */
+  public void skipFields(int count) {
+    skippedFields += count;
+  }
+
+  /**
+   * Gets the number of unreadable fields skipped.
+   *
+   * @return the skipped fields
+   */
+  public long getSkippedFields() {
+    return skippedFields;
+  }
+
+  /**
+   * Checks if the sizes found are partial, either because the budget is spent or because fields
+   * that could not be read were skipped.
+   *
+   * @return true, if partial
+   */
+  public boolean isPartial() {
+    return skippedFields > 0 || isExhausted();
+  }
+
+  /**
+   * Gets the number of objects sized.
+   *
+   * @return the objects
+   */
+  public long getObjects() {
+    return objects;
+  }
+
+}
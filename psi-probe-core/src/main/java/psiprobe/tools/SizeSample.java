@@ -0,0 +1,138 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sizes of a random sample of a population, such as the sessions of a web application, from which
+ * the total size of the population is extrapolated with a 95% confidence interval. Members that
+ * could only be sized partially are counted at their partial size, leaving them out would bias the
+ * estimate down even more as the largest members are the likeliest to be cut short; the estimate
+ * is then a lower bound. Not thread safe.
+ */
+public class SizeSample {
+
+  /** The Constant Z_95, the normal quantile of a two-sided 95% confidence interval. */
+  private static final double Z_95 = 1.96;
+
+  /** The number of sizes. */
+  private long count;
+
+  /** The number of partial sizes. */
+  private long partialCount;
+
+  /** The sum of sizes. */
+  private long sum;
+
+  /** The mean of sizes. */
+  private double mean;
+
+  /** The sum of squared differences from the mean. */
+  private double squares;
+
+  /**
+   * Picks the members of a population to sample, uniformly at random.
+   *
+   * @param population the population size
+   * @param sampleSize the sample size, 0 or less to pick the whole population
+   * @return whether each member is picked
+   */
+  public static boolean[] pick(int population, int sampleSize) {
+    boolean[] picked = new boolean[population];
+    if (sampleSize <= 0 || sampleSize >= population) {
+      Arrays.fill(picked, true);
+      return picked;
+    }
+    // Partial Fisher-Yates shuffle of the member indices
+    int[] indices = new int[population];
+    for (int i = 0; i < population; i++) {
+      indices[i] = i;
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int i = 0; i < sampleSize; i++) {
+      int j = i + random.nextInt(population - i);
+      int index = indices[j];
+      indices[j] = indices[i];
+      indices[i] = index;
+      picked[index] = true;
+    }
+    return picked;
+  }
+
+  /**
+   * Adds the size of a member.
+   *
+   * @param size the size
+   */
+  public void add(long size) {
+    count++;
+    sum += size;
+    double delta = size - mean;
+    mean += delta / count;
+    squares += delta * (size - mean);
+  }
+
+  /**
+   * Adds the partial size of a member, a lower bound of its size.
+   *
+   * @param size the size
+   */
+  public void addPartial(long size) {
+    add(size);
+    partialCount++;
+  }
+
+  /**
+   * Gets the number of partial sizes.
+   *
+   * @return the partial count
+   */
+  public long getPartialCount() {
+    return partialCount;
+  }
+
+  /**
+   * Gets the number of sizes.
+   *
+   * @return the count
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Gets the estimated total size of the population.
+   *
+   * @param population the population size
+   * @return the total size
+   */
+  public long getTotal(long population) {
+    return count >= population ? sum : Math.round(mean * population);
+  }
+
+  /**
+   * Gets the half width of the 95% confidence interval of the total size of the population.
+   *
+   * @param population the population size
+   * @return the error, 0 if the whole population is sized or the sample is too small to tell
+   */
+  public long getError(long population) {
+    if (count < 2 || count >= population) {
+      return 0;
+    }
+    double deviation = Math.sqrt(squares / (count - 1));
+    double correction = Math.sqrt((double) (population - count) / (population - 1));
+    return Math.round(Z_95 * deviation / Math.sqrt(count) * correction * population);
+  }
+
+}
@@ -0,0 +1,137 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring of the last slow requests of a web application. Writers claim a slot with
+ * an atomic sequence and overwrite the oldest request; readers copy whatever the slots hold.
+ *
+ * <p>
+ * A ring is a plain {@link AtomicReferenceArray} holding the sequence in its first slot and the
+ * requests, each an unmodifiable {@code Map} keyed by the constants below, in the others. It is
+ * kept under the {@link #CONTEXT_ATTRIBUTE} servlet context attribute. Only JDK types are shared
+ * because the agent valve recording requests and the probe reading them are loaded by different
+ * class loaders.
+ * </p>
+ */
+public final class SlowRequestRing {
+
+  /**
+   * The Constant CONTEXT_ATTRIBUTE, the servlet context attribute holding the ring of a web
+   * application.
+   */
+  public static final String CONTEXT_ATTRIBUTE = "psiprobe.slowRequests";
+
+  /** The Constant SEQUENCE, the key of the sequence number of a request, a {@code Long}. */
+  public static final String SEQUENCE = "sequence";
+
+  /** The Constant TIME, the key of the completion time in milliseconds, a {@code Long}. */
+  public static final String TIME = "time";
+
+  /** The Constant URI, the key of the request URI, a {@code String}. */
+  public static final String URI = "uri";
+
+  /** The Constant QUERY, the key of the query string, a {@code String}. */
+  public static final String QUERY = "query";
+
+  /** The Constant METHOD, the key of the HTTP method, a {@code String}. */
+  public static final String METHOD = "method";
+
+  /** The Constant DURATION, the key of the duration in milliseconds, a {@code Long}. */
+  public static final String DURATION = "duration";
+
+  /** The Constant THREAD, the key of the worker thread name, a {@code String}. */
+  public static final String THREAD = "thread";
+
+  /**
+   * The Constant STACK, the key of the stack sampled once the request got slow, a
+   * {@code StackTraceElement[]}, if any.
+   */
+  public static final String STACK = "stack";
+
+  /** The Constant CURSOR, the index of the sequence. */
+  private static final int CURSOR = 0;
+
+  /**
+   * Prevent Instantiation.
+   */
+  private SlowRequestRing() {
+    // Prevent Instantiation
+  }
+
+  /**
+   * Creates an empty ring.
+   *
+   * @param capacity the number of requests kept
+   * @return the ring
+   */
+  public static AtomicReferenceArray<Object> create(int capacity) {
+    AtomicReferenceArray<Object> ring = new AtomicReferenceArray<>(Math.max(1, capacity) + 1);
+    ring.set(CURSOR, new AtomicLong());
+    return ring;
+  }
+
+  /**
+   * Records a slow request, overwriting the oldest one if the ring is full.
+   *
+   * @param ring the ring
+   * @param uri the request URI
+   * @param query the query string, or null
+   * @param method the HTTP method
+   * @param durationMillis the duration in milliseconds
+   * @param thread the worker thread name
+   * @param stack the stack sampled once the request got slow, or null
+   */
+  public static void record(AtomicReferenceArray<Object> ring, String uri, String query,
+      String method, long durationMillis, String thread, StackTraceElement[] stack) {
+    long sequence = ((AtomicLong) ring.get(CURSOR)).getAndIncrement();
+    Map<String, Object> request = new HashMap<>();
+    request.put(SEQUENCE, sequence);
+    request.put(TIME, System.currentTimeMillis());
+    request.put(URI, uri);
+    request.put(QUERY, query);
+    request.put(METHOD, method);
+    request.put(DURATION, durationMillis);
+    request.put(THREAD, thread);
+    request.put(STACK, stack);
+    ring.set(1 + (int) (sequence % (ring.length() - 1)), Collections.unmodifiableMap(request));
+  }
+
+  /**
+   * Gets the requests of a ring, newest first.
+   *
+   * @param ring the ring
+   * @return the requests
+   */
+  @SuppressWarnings("unchecked")
+  public static List<Map<String, Object>> getRequests(AtomicReferenceArray<?> ring) {
+    List<Map<String, Object>> requests = new ArrayList<>(ring.length() - 1);
+    for (int i = 1; i < ring.length(); i++) {
+      Object request = ring.get(i);
+      if (request instanceof Map) {
+        requests.add((Map<String, Object>) request);
+      }
+    }
+    requests.sort(Comparator.comparing(request -> (Long) request.get(SEQUENCE),
+        Comparator.reverseOrder()));
+    return requests;
+  }
+
+}
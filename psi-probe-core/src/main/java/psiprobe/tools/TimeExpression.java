@@ -164,6 +164,8 @@ public final class TimeExpression {
         return 60;
       case 'h':
         return 60 * 60;
+      case 'd':
+        return 24 * 60 * 60;
       default:
         throw new IllegalArgumentException("Invalid unit: " + unit);
     }
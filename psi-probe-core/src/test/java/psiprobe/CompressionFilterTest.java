@@ -0,0 +1,172 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import psiprobe.beans.CompressorBean;
+
+/**
+ * The Class CompressionFilterTest.
+ */
+class CompressionFilterTest {
+
+  /**
+   * Test the body is compressed for clients accepting gzip.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testCompressesBody() throws Exception {
+    CompressionFilter filter = new CompressionFilter();
+    filter.setCompressor(new CompressorBean());
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.addHeader("Accept-Encoding", "gzip");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    filter.doFilter(request, response, (req, res) -> {
+      res.setContentType("text/html;charset=UTF-8");
+      res.setContentLength(42);
+      res.getWriter().write("<div class=\"line\">caf\u00e9</div>");
+    });
+
+    Assertions.assertEquals("gzip", response.getHeader("Content-Encoding"));
+    Assertions.assertNull(response.getHeader("Content-Length"));
+    try (GZIPInputStream in =
+        new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+      Assertions.assertEquals("<div class=\"line\">caf\u00e9</div>",
+          IOUtils.toString(in, StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Test a request going async is compressed by the async dispatch writing its body.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testAsyncDispatchFinishesBody() throws Exception {
+    CompressionFilter filter = new CompressionFilter();
+    filter.setCompressor(new CompressorBean());
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.addHeader("Accept-Encoding", "gzip");
+    request.setAsyncSupported(true);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    ServletResponse[] parked = new ServletResponse[1];
+
+    filter.doFilter(request, response, (req, res) -> {
+      req.startAsync(req, res);
+      parked[0] = res;
+    });
+    Assertions.assertEquals(0, response.getContentAsByteArray().length);
+
+    request.setAsyncStarted(false);
+    request.setDispatcherType(DispatcherType.ASYNC);
+    filter.doFilter(request, parked[0], (req, res) -> res.getWriter().write("line"));
+
+    Assertions.assertEquals("gzip", response.getHeader("Content-Encoding"));
+    try (GZIPInputStream in =
+        new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+      Assertions.assertEquals("line", IOUtils.toString(in, StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Test non-blocking writes are handed to the stream of the wrapped response.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testWriteListenerIsForwarded() throws Exception {
+    CompressionFilter filter = new CompressionFilter();
+    filter.setCompressor(new CompressorBean());
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.addHeader("Accept-Encoding", "gzip");
+    WriteListener[] listener = new WriteListener[1];
+    ServletOutputStream target = new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        // Discarded
+      }
+
+      @Override
+      public boolean isReady() {
+        return false;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+        listener[0] = writeListener;
+      }
+    };
+    HttpServletResponse response = new HttpServletResponseWrapper(new MockHttpServletResponse()) {
+      @Override
+      public ServletOutputStream getOutputStream() {
+        return target;
+      }
+    };
+    WriteListener writeListener = new WriteListener() {
+      @Override
+      public void onWritePossible() {
+        // Nothing to write
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        // Nothing to clean up
+      }
+    };
+
+    filter.doFilter(request, response, (req, res) -> {
+      ServletOutputStream out = res.getOutputStream();
+      Assertions.assertFalse(out.isReady());
+      out.setWriteListener(writeListener);
+    });
+
+    Assertions.assertSame(writeListener, listener[0]);
+  }
+
+  /**
+   * Test errors without a body are left alone.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testErrorWithoutBody() throws Exception {
+    CompressionFilter filter = new CompressionFilter();
+    filter.setCompressor(new CompressorBean());
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.addHeader("Accept-Encoding", "gzip");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    filter.doFilter(request, response,
+        (req, res) -> ((HttpServletResponse) res).sendError(404));
+
+    Assertions.assertNull(response.getHeader("Content-Encoding"));
+    Assertions.assertEquals(0, response.getContentAsByteArray().length);
+  }
+
+}
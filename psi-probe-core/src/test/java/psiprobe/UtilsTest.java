@@ -10,15 +10,28 @@
  */
 package psiprobe;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.catalina.Globals;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 
 /**
  * The Class UtilsTest.
  */
 class UtilsTest {
 
+  /** The temp dir. */
+  @TempDir
+  File tempDir;
+
   /**
    * To int test.
    */
@@ -85,4 +98,110 @@ class UtilsTest {
     Assertions.assertEquals("", Utils.leftPad(null, 4, "0"));
   }
 
+  /**
+   * Get ranges test.
+   */
+  @Test
+  void getRangesTest() {
+    Assertions.assertTrue(Utils.getRanges(null, 100).isEmpty());
+    Assertions.assertTrue(Utils.getRanges("bytes=0-", 100).isEmpty());
+    Assertions.assertTrue(Utils.getRanges("bytes=garbage", 100).isEmpty());
+    Assertions.assertNull(Utils.getRanges("bytes=100-", 100));
+
+    List<long[]> ranges = Utils.getRanges("bytes=10-19", 100);
+    Assertions.assertEquals(1, ranges.size());
+    Assertions.assertArrayEquals(new long[] {10, 19}, ranges.get(0));
+
+    ranges = Utils.getRanges("bytes=-10", 100);
+    Assertions.assertArrayEquals(new long[] {90, 99}, ranges.get(0));
+
+    ranges = Utils.getRanges("bytes=50-60, 0-4, 55-200, 5-9", 100);
+    Assertions.assertEquals(2, ranges.size());
+    Assertions.assertArrayEquals(new long[] {0, 9}, ranges.get(0));
+    Assertions.assertArrayEquals(new long[] {50, 99}, ranges.get(1));
+  }
+
+  /**
+   * Send file test.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void sendFileTest() throws Exception {
+    File file = new File(tempDir, "catalina.out");
+    Files.write(file.toPath(), "0123456789".getBytes(StandardCharsets.ISO_8859_1));
+
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    Utils.sendFile(new MockHttpServletRequest(), response, file);
+    Assertions.assertEquals(200, response.getStatus());
+    Assertions.assertEquals("0123456789", response.getContentAsString());
+
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.addHeader("Range", "bytes=2-4");
+    response = new MockHttpServletResponse();
+    Utils.sendFile(request, response, file);
+    Assertions.assertEquals(206, response.getStatus());
+    Assertions.assertEquals("bytes 2-4/10", response.getHeader("Content-Range"));
+    Assertions.assertEquals("234", response.getContentAsString());
+
+    request = new MockHttpServletRequest();
+    request.addHeader("Range", "bytes=0-1,8-");
+    response = new MockHttpServletResponse();
+    Utils.sendFile(request, response, file);
+    Assertions.assertEquals(206, response.getStatus());
+    Assertions.assertTrue(response.getContentType().startsWith("multipart/byteranges"));
+    String body = response.getContentAsString();
+    Assertions.assertTrue(body.contains("Content-Range: bytes 0-1/10\r\n\r\n01\r\n"));
+    Assertions.assertTrue(body.contains("Content-Range: bytes 8-9/10\r\n\r\n89\r\n"));
+
+    request = new MockHttpServletRequest();
+    request.addHeader("Range", "bytes=20-");
+    response = new MockHttpServletResponse();
+    Utils.sendFile(request, response, file);
+    Assertions.assertEquals(416, response.getStatus());
+    Assertions.assertEquals("bytes */10", response.getHeader("Content-Range"));
+  }
+
+  /**
+   * Send part of a file test.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void sendFilePartTest() throws Exception {
+    File file = new File(tempDir, "catalina.out");
+    Files.write(file.toPath(), "0123456789".getBytes(StandardCharsets.ISO_8859_1));
+
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    Utils.sendFile(new MockHttpServletRequest(), response, file, 3, 7, "part.out");
+    Assertions.assertEquals(200, response.getStatus());
+    Assertions.assertEquals("attachment; filename=part.out",
+        response.getHeader("Content-Disposition"));
+    Assertions.assertEquals("4", response.getHeader("Content-Length"));
+    Assertions.assertEquals("3456", response.getContentAsString());
+  }
+
+  /**
+   * Send file with sendfile test.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void sendFileWithSendfileTest() throws Exception {
+    File file = new File(tempDir, "catalina.out");
+    Files.write(file.toPath(), new byte[100 * 1024]);
+
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setAttribute(Globals.SENDFILE_SUPPORTED_ATTR, Boolean.TRUE);
+    request.addHeader("Range", "bytes=1024-");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    Utils.sendFile(request, response, file);
+    Assertions.assertEquals(file.getCanonicalPath(),
+        request.getAttribute(Globals.SENDFILE_FILENAME_ATTR));
+    Assertions.assertEquals(1024L, request.getAttribute(Globals.SENDFILE_FILE_START_ATTR));
+    Assertions.assertEquals(100 * 1024L, request.getAttribute(Globals.SENDFILE_FILE_END_ATTR));
+    Assertions.assertEquals("101376", response.getHeader("Content-Length"));
+    Assertions.assertEquals(0, response.getContentAsByteArray().length);
+  }
+
 }
@@ -0,0 +1,132 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans;
+
+import com.codebox.bean.JavaBeanTester;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+/**
+ * The Class CompressorBeanTest.
+ */
+class CompressorBeanTest {
+
+  /**
+   * Javabean tester.
+   */
+  @Test
+  void javabeanTester() {
+    JavaBeanTester.builder(CompressorBean.class).loadData().test();
+  }
+
+  /**
+   * Test a level change applies to pooled deflaters.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testLevelChangeAppliesToPooledDeflaters() throws Exception {
+    CompressorBean compressor = new CompressorBean();
+    byte[] data = new byte[65536];
+    compressor.setLevel(Deflater.BEST_COMPRESSION);
+    Assertions.assertTrue(gzip(compressor, data).length < 1024);
+
+    compressor.setLevel(Deflater.NO_COMPRESSION);
+    byte[] stored = gzip(compressor, data);
+    Assertions.assertTrue(stored.length > data.length);
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(stored))) {
+      Assertions.assertArrayEquals(data, IOUtils.toByteArray(in));
+    }
+    compressor.destroy();
+  }
+
+  /**
+   * Compresses data into a gzip stream.
+   *
+   * @param compressor the compressor
+   * @param data the data
+   * @return the gzip stream
+   * @throws Exception the exception
+   */
+  private static byte[] gzip(CompressorBean compressor, byte[] data) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (OutputStream out = compressor.gzip(bytes)) {
+      out.write(data);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Test gzip streams decompress to what was written, with deflaters reused.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testGzipRoundTrip() throws Exception {
+    CompressorBean compressor = new CompressorBean();
+    for (int i = 0; i < 3; i++) {
+      StringBuilder text = new StringBuilder();
+      for (int line = 0; line < 1000 * (i + 1); line++) {
+        text.append("INFO  line ").append(line).append('\n');
+      }
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      try (OutputStream out = compressor.gzip(compressed)) {
+        out.write(text.toString().getBytes(StandardCharsets.UTF_8));
+      }
+      Assertions.assertTrue(compressed.size() < text.length() / 4);
+      try (GZIPInputStream in =
+          new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+        Assertions.assertEquals(text.toString(), IOUtils.toString(in, StandardCharsets.UTF_8));
+      }
+    }
+    compressor.destroy();
+  }
+
+  /**
+   * Test accept encoding.
+   */
+  @Test
+  void testAcceptsGzip() {
+    CompressorBean compressor = new CompressorBean();
+    Assertions.assertFalse(compressor.acceptsGzip(request(null)));
+    Assertions.assertTrue(compressor.acceptsGzip(request("gzip, deflate, br")));
+    Assertions.assertTrue(compressor.acceptsGzip(request("deflate;q=1.0, gzip;q=0.5")));
+    Assertions.assertFalse(compressor.acceptsGzip(request("gzip;q=0")));
+    Assertions.assertFalse(compressor.acceptsGzip(request("identity")));
+    compressor.setNegotiate(false);
+    Assertions.assertFalse(compressor.acceptsGzip(request("gzip")));
+  }
+
+  /**
+   * Creates a request.
+   *
+   * @param acceptEncoding the Accept-Encoding header, or null
+   * @return the request
+   */
+  private static MockHttpServletRequest request(String acceptEncoding) {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    if (acceptEncoding != null) {
+      request.addHeader("Accept-Encoding", acceptEncoding);
+    }
+    return request;
+  }
+
+}
@@ -0,0 +1,208 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import mockit.Expectations;
+import mockit.Mocked;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import psiprobe.model.Connector;
+
+/**
+ * The Class ContainerListenerBeanTest.
+ */
+class ContainerListenerBeanTest {
+
+  /** The number of request processors, as with maxThreads=800. */
+  private static final int WORKERS = 800;
+
+  /** The container wrapper. */
+  @Mocked
+  ContainerWrapperBean containerWrapper;
+
+  /** The calls made to the mbean server by method name. */
+  Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+
+  /** The counting mbean server. */
+  MBeanServer server;
+
+  /**
+   * Registers a connector with its request processors.
+   *
+   * @throws Exception the exception
+   */
+  @BeforeEach
+  void before() throws Exception {
+    MBeanServer target = MBeanServerFactory.newMBeanServer();
+    String pool = "\"http-nio-8080\"";
+    target.registerMBean(new FakeMBean("maxThreads", WORKERS),
+        new ObjectName("Catalina:type=ThreadPool,name=" + pool));
+    target.registerMBean(
+        new FakeMBean("maxTime", 5L, "processingTime", 50L, "bytesReceived", 1L, "bytesSent", 2L,
+            "requestCount", 10, "errorCount", 1),
+        new ObjectName("Catalina:type=GlobalRequestProcessor,name=" + pool));
+    target.registerMBean(new FakeMBean("stateName", "STARTED", "protocol", "HTTP/1.1", "secure",
+        false, "port", 8080, "localPort", 8080, "schema", "http"),
+        new ObjectName("Catalina:type=Connector,port=8080"));
+    for (int i = 0; i < WORKERS; i++) {
+      target.registerMBean(
+          new FakeMBean("stage", 3, "requestProcessingTime", 7L, "requestBytesSent", 0L,
+              "requestBytesReceived", 0L, "virtualHost", "localhost", "method", "GET",
+              "currentUri", "/probe", "currentQueryString", null, "protocol", "HTTP/1.1",
+              "workerThreadName", "exec-" + i),
+          new ObjectName("Catalina:type=RequestProcessor,worker=" + pool + ",name=HttpRequest" + i));
+    }
+    server = (MBeanServer) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] {MBeanServer.class}, (proxy, method, args) -> {
+          calls.computeIfAbsent(method.getName(), name -> new AtomicInteger()).incrementAndGet();
+          try {
+            return method.invoke(target, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        });
+  }
+
+  /**
+   * Test connectors are read in one round-trip per mbean. This doubles as a benchmark of the
+   * connector list at a high worker count: reading attributes one by one took a dozen round-trips
+   * and an mbean info lookup per request processor.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testConnectorsAreReadInOneRoundTripPerMBean() throws Exception {
+    new Expectations() {
+      {
+        containerWrapper.getResourceResolver().getMBeanServer();
+        result = server;
+        containerWrapper.getTomcatContainer().getName();
+        result = "Catalina";
+      }
+    };
+    ContainerListenerBean bean = new ContainerListenerBean();
+    bean.setContainerWrapper(containerWrapper);
+
+    List<Connector> connectors = bean.getConnectors(true);
+    Assertions.assertEquals(1, connectors.size());
+    Connector connector = connectors.get(0);
+    Assertions.assertEquals(8080, connector.getPort());
+    Assertions.assertEquals("STARTED", connector.getStatus());
+    Assertions.assertEquals(10, connector.getRequestCount());
+    Assertions.assertEquals(WORKERS, connector.getRequestProcessors().size());
+    Assertions.assertEquals(3, connector.getRequestProcessors().get(0).getStage());
+    Assertions.assertTrue(connector.getRequestProcessors().get(0).isWorkerThreadNameSupported());
+
+    calls.clear();
+    bean.getConnectors(true);
+    Assertions.assertEquals(WORKERS + 2, count("getAttributes"));
+    Assertions.assertEquals(0, count("getAttribute"));
+    Assertions.assertEquals(0, count("getMBeanInfo"));
+  }
+
+  /**
+   * Counts the calls of an mbean server method.
+   *
+   * @param method the method
+   * @return the count
+   */
+  private int count(String method) {
+    AtomicInteger count = calls.get(method);
+    return count == null ? 0 : count.get();
+  }
+
+  /**
+   * Read-only mbean exposing a fixed set of attributes.
+   */
+  public static class FakeMBean implements DynamicMBean {
+
+    /** The attributes. */
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    /**
+     * Instantiates a new fake mbean.
+     *
+     * @param namesAndValues the attribute names, each followed by its value
+     */
+    FakeMBean(Object... namesAndValues) {
+      for (int i = 0; i < namesAndValues.length; i += 2) {
+        attributes.put((String) namesAndValues[i], namesAndValues[i + 1]);
+      }
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+      if (!attributes.containsKey(attribute)) {
+        throw new AttributeNotFoundException(attribute);
+      }
+      return attributes.get(attribute);
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+      AttributeList list = new AttributeList();
+      for (String name : names) {
+        if (attributes.containsKey(name)) {
+          list.add(new Attribute(name, attributes.get(name)));
+        }
+      }
+      return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList list) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+      MBeanAttributeInfo[] infos = new MBeanAttributeInfo[attributes.size()];
+      int i = 0;
+      for (String name : attributes.keySet()) {
+        infos[i++] = new MBeanAttributeInfo(name, Object.class.getName(), name, true, false, false);
+      }
+      return new MBeanInfo(getClass().getName(), "fake", infos, null, null, null);
+    }
+
+  }
+
+}
@@ -0,0 +1,204 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans;
+
+import com.codebox.bean.JavaBeanTester;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The Class LogFollowerBeanTest.
+ */
+class LogFollowerBeanTest {
+
+  /** The temp dir. */
+  @TempDir
+  Path tempDir;
+
+  /** The log follower. */
+  private LogFollowerBean logFollower;
+
+  /**
+   * Creates the log follower.
+   */
+  @BeforeEach
+  void setUp() {
+    logFollower = new LogFollowerBean();
+    logFollower.setPollInterval(50);
+  }
+
+  /**
+   * Destroys the log follower.
+   */
+  @AfterEach
+  void tearDown() {
+    logFollower.destroy();
+  }
+
+  /**
+   * Javabean tester.
+   */
+  @Test
+  void javabeanTester() {
+    JavaBeanTester.builder(LogFollowerBean.class).loadData().test();
+  }
+
+  /**
+   * Test only whole lines after the position are returned.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testLinesAfterPosition() throws Exception {
+    File log = tempDir.resolve("catalina.out").toFile();
+    append(log, "one\ntwo\nthr");
+
+    LogFollowerBean.Tail tail = logFollower.getTail(log, "UTF-8", 0, -1);
+    Assertions.assertEquals(Arrays.asList("one", "two"), tail.getLines());
+    Assertions.assertEquals(8, tail.getLength());
+    Assertions.assertFalse(tail.isTruncated());
+
+    tail = logFollower.getTail(log, "UTF-8", tail.getLength(), tail.getGeneration());
+    Assertions.assertEquals(Collections.emptyList(), tail.getLines());
+    Assertions.assertEquals(8, tail.getLength());
+
+    append(log, "ee\nfour\n");
+    tail = logFollower.getTail(log, "UTF-8", tail.getLength(), tail.getGeneration());
+    Assertions.assertEquals(Arrays.asList("three", "four"), tail.getLines());
+    Assertions.assertEquals(19, tail.getLength());
+  }
+
+  /**
+   * Test a waiting viewer is woken up by the watcher reading lines appended meanwhile.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testWaitingViewerIsWokenUp() throws Exception {
+    File log = tempDir.resolve("catalina.out").toFile();
+    append(log, "one\n");
+    LogFollowerBean.Tail tail = logFollower.getTail(log, null, 0, -1);
+    Assertions.assertFalse(logFollower.awaitLines(log, 0, -1, () -> {
+      // Never registered, there is a line to read already
+    }));
+
+    CountDownLatch woken = new CountDownLatch(1);
+    Assertions.assertTrue(
+        logFollower.awaitLines(log, tail.getLength(), tail.getGeneration(), woken::countDown));
+    append(log, "two\n");
+    Assertions.assertTrue(woken.await(10, TimeUnit.SECONDS));
+    tail = logFollower.getTail(log, null, tail.getLength(), tail.getGeneration());
+    Assertions.assertEquals(Collections.singletonList("two"), tail.getLines());
+
+    // A cancelled wait is not woken up, destroying the follower wakes up the others
+    AtomicInteger wakeUps = new AtomicInteger();
+    Runnable cancelled = wakeUps::incrementAndGet;
+    Assertions.assertTrue(logFollower.awaitLines(log, tail.getLength(), -1, cancelled));
+    logFollower.cancelAwait(log, cancelled);
+    CountDownLatch destroyed = new CountDownLatch(1);
+    Assertions.assertTrue(logFollower.awaitLines(log, tail.getLength(), -1, destroyed::countDown));
+    logFollower.destroy();
+    Assertions.assertEquals(0, destroyed.getCount());
+    Assertions.assertEquals(0, wakeUps.get());
+  }
+
+  /**
+   * Test a file replaced by a longer one is read again from its beginning.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testReplaced() throws Exception {
+    File log = tempDir.resolve("catalina.out").toFile();
+    append(log, "one\n");
+    LogFollowerBean.Tail tail = logFollower.getTail(log, null, 0, -1);
+    Assumptions.assumeTrue(
+        Files.readAttributes(log.toPath(), BasicFileAttributes.class).fileKey() != null);
+
+    File rotated = tempDir.resolve("catalina.out.new").toFile();
+    append(rotated, "first\nsecond\n");
+    Files.move(rotated.toPath(), log.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    tail = logFollower.getTail(log, null, tail.getLength(), tail.getGeneration());
+    Assertions.assertTrue(tail.isTruncated());
+    Assertions.assertEquals(Arrays.asList("first", "second"), tail.getLines());
+    Assertions.assertEquals(13, tail.getLength());
+
+    // A viewer already past the replacement goes on from where it was
+    tail = logFollower.getTail(log, null, tail.getLength(), tail.getGeneration());
+    Assertions.assertFalse(tail.isTruncated());
+    Assertions.assertEquals(Collections.emptyList(), tail.getLines());
+  }
+
+  /**
+   * Test a truncated file is read again from its beginning.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testTruncated() throws Exception {
+    File log = tempDir.resolve("catalina.out").toFile();
+    append(log, "one\ntwo\n");
+    LogFollowerBean.Tail tail = logFollower.getTail(log, null, 0, -1);
+
+    Files.write(log.toPath(), "new\n".getBytes(StandardCharsets.UTF_8));
+    tail = logFollower.getTail(log, null, tail.getLength(), tail.getGeneration());
+    Assertions.assertTrue(tail.isTruncated());
+    Assertions.assertEquals(Collections.singletonList("new"), tail.getLines());
+    Assertions.assertEquals(4, tail.getLength());
+  }
+
+  /**
+   * Test only the last bytes are kept for viewers far behind.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testViewerBehindBuffer() throws Exception {
+    logFollower.setBufferSize(10);
+    File log = tempDir.resolve("catalina.out").toFile();
+    append(log, "first line\nsecond\nthird\n");
+
+    LogFollowerBean.Tail tail = logFollower.getTail(log, null, 0, -1);
+    Assertions.assertEquals(Collections.singletonList("third"), tail.getLines());
+    Assertions.assertEquals(24, tail.getLength());
+  }
+
+  /**
+   * Appends to a file.
+   *
+   * @param file the file
+   * @param text the text
+   * @throws Exception the exception
+   */
+  private static void append(File file, String text) throws Exception {
+    Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND);
+  }
+
+}
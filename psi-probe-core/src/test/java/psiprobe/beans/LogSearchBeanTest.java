@@ -0,0 +1,92 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans;
+
+import com.codebox.bean.JavaBeanTester;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import psiprobe.tools.LogQuery;
+
+/**
+ * The Class LogSearchBeanTest.
+ */
+class LogSearchBeanTest {
+
+  /** The temp dir. */
+  @TempDir
+  File tempDir;
+
+  /**
+   * Javabean tester.
+   */
+  @Test
+  void javabeanTester() {
+    JavaBeanTester.builder(LogSearchBean.class).test();
+  }
+
+  /**
+   * Writes a file.
+   *
+   * @param name the name
+   * @param content the content
+   * @param lastModified the last modified time
+   * @return the file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private File write(String name, String content, long lastModified) throws IOException {
+    File file = new File(tempDir, name);
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    Assertions.assertTrue(file.setLastModified(lastModified));
+    return file;
+  }
+
+  /**
+   * Test search of rotated files, oldest first, across pages.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  void testSearchRotated() throws IOException {
+    File current = write("catalina.log", "error three\nok\n", 3000000L);
+    File previous = write("catalina.2024-01-02.log", "error two\n", 2000000L);
+    File oldest = write("catalina.2024-01-01.log", "error one\n", 1000000L);
+    write("catalina.2023-12-31.log.gz", "not text", 500000L);
+    write("manager.log", "error other\n", 1000000L);
+    Assertions.assertEquals(Arrays.asList(oldest, previous, current),
+        LogSearchBean.getRotatedFiles(current));
+
+    LogSearchBean logSearch = new LogSearchBean();
+    LogQuery query = LogQuery.keywords("error");
+    LogSearchBean.Result result = logSearch.search(current, "UTF-8", query, true, null, 2, 0);
+    Assertions.assertTrue(result.isComplete());
+    Assertions.assertEquals(2, result.getMatches().size());
+    Assertions.assertEquals("error one", result.getMatches().get(0).getLine());
+    Assertions.assertEquals("catalina.2024-01-02.log", result.getMatches().get(1).getFileName());
+
+    result = logSearch.search(current, "UTF-8", query, true, result.getNextCursor(), 2, 0);
+    Assertions.assertEquals(1, result.getMatches().size());
+    Assertions.assertEquals("error three", result.getMatches().get(0).getLine());
+    Assertions.assertNull(result.getNextCursor());
+
+    result = logSearch.search(current, "UTF-8", query, false, null, 2, 0);
+    Assertions.assertEquals(1, result.getMatches().size());
+  }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans;
+
+import com.codebox.bean.JavaBeanTester;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class SamplingProfilerBeanTest.
+ */
+class SamplingProfilerBeanTest {
+
+  /**
+   * Javabean tester.
+   */
+  @Test
+  void javabeanTester() {
+    JavaBeanTester.builder(SamplingProfilerBean.class).skip("containerWrapper").loadData().test();
+  }
+
+  /**
+   * Test busy thread is sampled.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testBusyThreadIsSampled() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    Thread busy = new Thread(() -> {
+      started.countDown();
+      spin();
+    }, "profiled-7");
+    busy.setDaemon(true);
+    busy.start();
+    started.await();
+    try {
+      SamplingProfilerBean profiler = new SamplingProfilerBean();
+      for (int i = 0; i < 5; i++) {
+        profiler.sample();
+      }
+      Assertions.assertEquals(5, profiler.getSampleCount());
+
+      Map<String, Long> collapsed =
+          profiler.getCollapsedStacks(SamplingProfilerBean.NO_APP, Pattern.compile("profiled-#"));
+      Assertions.assertFalse(collapsed.isEmpty());
+      for (String stack : collapsed.keySet()) {
+        Assertions.assertTrue(stack.startsWith("profiled-#;"), stack);
+        Assertions.assertTrue(stack.contains("SamplingProfilerBeanTest.spin"), stack);
+      }
+    } finally {
+      busy.interrupt();
+    }
+  }
+
+  /**
+   * Keeps the thread runnable until interrupted.
+   */
+  private static void spin() {
+    long count = 0;
+    while (!Thread.currentThread().isInterrupted()) {
+      count++;
+    }
+    Assertions.assertTrue(count > 0);
+  }
+
+  /**
+   * Test samples shorter than a millisecond count against the overhead.
+   */
+  @Test
+  void testNextDelayAccountsForSubMillisecondSamples() {
+    SamplingProfilerBean profiler = new SamplingProfilerBean();
+    profiler.setInterval(10);
+    profiler.setMaxOverhead(1);
+    Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(10), profiler.nextDelay(50_000));
+    Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(90), profiler.nextDelay(900_000));
+    Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(190), profiler.nextDelay(1_900_000));
+  }
+
+}
@@ -0,0 +1,66 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans;
+
+import com.codebox.bean.JavaBeanTester;
+
+import java.util.concurrent.RecursiveTask;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class SessionSearchPoolBeanTest.
+ */
+class SessionSearchPoolBeanTest {
+
+  /**
+   * Javabean tester.
+   */
+  @Test
+  void javabeanTester() {
+    JavaBeanTester.builder(SessionSearchPoolBean.class).loadData().test();
+  }
+
+  /**
+   * Test searches run on the pool until it is destroyed.
+   */
+  @Test
+  void testInvoke() {
+    SessionSearchPoolBean searchPool = new SessionSearchPoolBean();
+    Assertions.assertEquals(Thread.currentThread().getName(), searchPool.invoke(new ThreadName()));
+
+    searchPool.setParallelism(2);
+    try {
+      Assertions.assertTrue(
+          searchPool.invoke(new ThreadName()).startsWith("psi-probe-session-search-"));
+    } finally {
+      searchPool.destroy();
+    }
+    // Destroying twice is harmless
+    searchPool.destroy();
+  }
+
+  /**
+   * Returns the name of the thread running it.
+   */
+  private static class ThreadName extends RecursiveTask<String> {
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected String compute() {
+      return Thread.currentThread().getName();
+    }
+  }
+
+}
@@ -0,0 +1,45 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans;
+
+import com.codebox.bean.JavaBeanTester;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import psiprobe.tools.SizeBudget;
+
+/**
+ * The Class SessionSizeEstimatorBeanTest.
+ */
+class SessionSizeEstimatorBeanTest {
+
+  /**
+   * Javabean tester.
+   */
+  @Test
+  void javabeanTester() {
+    JavaBeanTester.builder(SessionSizeEstimatorBean.class).loadData().test();
+  }
+
+  /**
+   * Test new budget.
+   */
+  @Test
+  void testNewBudget() {
+    SessionSizeEstimatorBean estimator = new SessionSizeEstimatorBean();
+    estimator.setMaxObjects(1);
+    SizeBudget budget = estimator.newBudget();
+    Assertions.assertTrue(budget.spend());
+    Assertions.assertFalse(budget.spend());
+  }
+
+}
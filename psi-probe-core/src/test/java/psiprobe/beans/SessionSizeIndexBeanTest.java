@@ -0,0 +1,167 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans;
+
+import com.codebox.bean.JavaBeanTester;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import mockit.Expectations;
+import mockit.Mocked;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.session.StandardManager;
+import org.apache.catalina.session.StandardSession;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import psiprobe.TomcatContainer;
+import psiprobe.tools.SizeBudget;
+
+/**
+ * The Class SessionSizeIndexBeanTest.
+ */
+class SessionSizeIndexBeanTest {
+
+  /** The container wrapper. */
+  @Mocked
+  ContainerWrapperBean containerWrapper;
+
+  /** The tomcat container. */
+  @Mocked
+  TomcatContainer tomcatContainer;
+
+  /** The context. */
+  @Mocked
+  Context context;
+
+  /**
+   * Javabean tester.
+   */
+  @Test
+  void javabeanTester() {
+    JavaBeanTester.builder(SessionSizeIndexBean.class).skip("containerWrapper").loadData().test();
+  }
+
+  /**
+   * Test only accessed sessions are sized again.
+   */
+  @Test
+  void testOnlyAccessedSessionsAreSizedAgain() {
+    StandardManager manager = new StandardManager();
+    manager.setContext(context);
+    StandardSession first = newSession(manager, "s1");
+    StandardSession second = newSession(manager, "s2");
+    // JDK collections and strings are sized through their API, whether or not the JDK opens them
+    first.setAttribute("cart", new ArrayList<>(Arrays.asList("book", "pen")), false);
+    new Expectations() {
+      {
+        containerWrapper.getTomcatContainer();
+        result = tomcatContainer;
+        tomcatContainer.findContexts();
+        result = Collections.singletonList(context);
+        context.getName();
+        result = "/app";
+        context.getManager();
+        result = manager;
+      }
+    };
+
+    SessionSizeIndexBean index = new SessionSizeIndexBean();
+    index.setContainerWrapper(containerWrapper);
+    index.refresh();
+    Assertions.assertNull(index.getTotals(context));
+
+    index.setEnabled(true);
+
+    index.refresh();
+    SessionSizeIndexBean.IndexedSession indexed = index.getIndexedSession(context, first);
+    Assertions.assertNotNull(indexed);
+    Assertions.assertTrue(indexed.getSize() > 0);
+    Assertions.assertSame(indexed, index.getIndexedSession(context, first));
+    SessionSizeIndexBean.ApplicationTotals totals = index.getTotals(context);
+    Assertions.assertEquals(2, totals.getSessionCount());
+    Assertions.assertEquals(3, totals.getAttributeCount());
+    Assertions.assertFalse(totals.isPartial());
+
+    // An accessed session is stale until the next pass sizes it again
+    second.access();
+    second.endAccess();
+    Assertions.assertNull(index.getIndexedSession(context, second));
+    index.refresh();
+    Assertions.assertSame(indexed, index.getIndexedSession(context, first));
+    Assertions.assertNotNull(index.getIndexedSession(context, second));
+
+    // Gone sessions are dropped from the totals
+    manager.remove(second);
+    index.refresh();
+    Assertions.assertEquals(1, index.getTotals(context).getSessionCount());
+    Assertions.assertEquals(indexed.getSize(), index.getTotals(context).getSize());
+  }
+
+  /**
+   * Test a pass resumes after the session where the last one ran out of budget.
+   */
+  @Test
+  void testPassResumesWhereLastOneStopped() {
+    StandardManager manager = new StandardManager();
+    manager.setContext(context);
+    StandardSession first = newSession(manager, "s1");
+    StandardSession second = newSession(manager, "s2");
+    StandardSession third = newSession(manager, "s3");
+    new Expectations() {
+      {
+        tomcatContainer.findContexts();
+        result = Collections.singletonList(context);
+        context.getName();
+        result = "/app";
+        context.getManager();
+        result = manager;
+      }
+    };
+
+    // each session takes two objects, its attribute name and value
+    SessionSizeIndexBean index = new SessionSizeIndexBean();
+    index.refresh(tomcatContainer, new SizeBudget(0, 3));
+    Assertions.assertNotNull(index.getIndexedSession(context, first));
+    Assertions.assertNull(index.getIndexedSession(context, second));
+    Assertions.assertNull(index.getIndexedSession(context, third));
+    Assertions.assertTrue(index.getTotals(context).isPartial());
+
+    // starting over would run out of budget on the second session again
+    index.refresh(tomcatContainer, new SizeBudget(0, 3));
+    Assertions.assertNotNull(index.getIndexedSession(context, third));
+
+    index.refresh(tomcatContainer, new SizeBudget(0, 3));
+    Assertions.assertNotNull(index.getIndexedSession(context, second));
+    Assertions.assertFalse(index.getTotals(context).isPartial());
+  }
+
+  /**
+   * Creates a session with one attribute.
+   *
+   * @param manager the manager
+   * @param id the id
+   * @return the standard session
+   */
+  private static StandardSession newSession(StandardManager manager, String id) {
+    StandardSession session = new StandardSession(manager);
+    session.setValid(true);
+    session.setCreationTime(System.currentTimeMillis() - 1000);
+    session.setId(id, false);
+    manager.add(session);
+    session.setAttribute("user", "user-" + id, false);
+    return session;
+  }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans;
+
+import com.codebox.bean.JavaBeanTester;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class ThreadInfoAccessorBeanTest.
+ */
+class ThreadInfoAccessorBeanTest {
+
+  /**
+   * Javabean tester.
+   */
+  @Test
+  void javabeanTester() {
+    JavaBeanTester.builder(ThreadInfoAccessorBean.class).skip("snapshot").loadData().test();
+  }
+
+  /**
+   * Test snapshot is shared within ttl.
+   */
+  @Test
+  void testSnapshotIsSharedWithinTtl() {
+    ThreadInfoAccessorBean bean = new ThreadInfoAccessorBean();
+    bean.setTtl(60000);
+    ThreadInfoAccessorBean.Snapshot snapshot = bean.getSnapshot();
+    Assertions.assertSame(snapshot, bean.getSnapshot());
+
+    bean.setTtl(0);
+    Assertions.assertNotSame(snapshot, bean.getSnapshot());
+  }
+
+  /**
+   * Test snapshot finds current thread.
+   */
+  @Test
+  void testSnapshotFindsCurrentThread() {
+    ThreadInfoAccessorBean bean = new ThreadInfoAccessorBean();
+    Thread current = Thread.currentThread();
+    ThreadInfoAccessorBean.Snapshot snapshot = bean.getSnapshot();
+    ThreadInfo info = snapshot.getThread(current.getId());
+    Assertions.assertNotNull(info);
+    Assertions.assertSame(info, snapshot.findThread(current.getName()));
+    Assertions.assertEquals(1, info.getStackTrace().length);
+    Assertions.assertFalse(snapshot.isDeadlocked(current.getId()));
+
+    Assertions.assertEquals(3, bean.getStack(current.getId(), 3).getStackTrace().length);
+  }
+
+  /**
+   * Test snapshot includes locked monitors when asked to.
+   */
+  @Test
+  void testSnapshotWithLockedMonitors() {
+    ThreadInfoAccessorBean bean = new ThreadInfoAccessorBean();
+    bean.setLockedMonitors(true);
+    bean.setLockedSynchronizers(true);
+    Thread current = Thread.currentThread();
+    synchronized (bean) {
+      ThreadInfo info = bean.takeSnapshot(ManagementFactory.getThreadMXBean())
+          .getThread(current.getId());
+      Assertions.assertTrue(info.getStackTrace().length > 1);
+      Assertions.assertTrue(Arrays.stream(info.getLockedMonitors())
+          .anyMatch(monitor -> monitor.getIdentityHashCode() == System.identityHashCode(bean)));
+    }
+  }
+
+}
@@ -0,0 +1,136 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.beans.stats.collectors;
+
+import com.codebox.bean.JavaBeanTester;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class CollectorExecutorBeanTest.
+ */
+class CollectorExecutorBeanTest {
+
+  /**
+   * Javabean tester.
+   */
+  @Test
+  void javabeanTester() {
+    JavaBeanTester.builder(CollectorExecutorBean.class).loadData().test();
+  }
+
+  /**
+   * Test stuck target is skipped.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testStuckTargetIsSkipped() throws Exception {
+    CollectorExecutorBean executor = new CollectorExecutorBean();
+    executor.setThreads(3);
+    executor.setTimeout(200);
+    CountDownLatch never = new CountDownLatch(1);
+    Map<String, Callable<Integer>> tasks = new LinkedHashMap<>();
+    tasks.put("a", () -> 1);
+    tasks.put("stuck", () -> {
+      never.await();
+      return 2;
+    });
+    tasks.put("failing", () -> {
+      throw new IllegalStateException("failing");
+    });
+    tasks.put("b", () -> 3);
+    try {
+      Map<String, Integer> results = executor.readAll(tasks);
+      Assertions.assertEquals(Arrays.asList("a", "b"), Arrays.asList(results.keySet().toArray()));
+      Assertions.assertEquals(3, results.get("b").intValue());
+      Assertions.assertTrue(executor.getSkippedTargets().containsKey("stuck"));
+      Assertions.assertTrue(executor.getSkippedTargets().containsKey("failing"));
+    } finally {
+      executor.destroy();
+    }
+  }
+
+  /**
+   * Test sequential read skips failing target.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testSequentialReadSkipsFailingTarget() throws Exception {
+    CollectorExecutorBean executor = new CollectorExecutorBean();
+    Map<String, Callable<Integer>> tasks = new LinkedHashMap<>();
+    tasks.put("failing", () -> {
+      throw new IllegalStateException("failing");
+    });
+    tasks.put("a", () -> 1);
+    Assertions.assertEquals(1, executor.readAll(tasks).get("a").intValue());
+    Assertions.assertEquals(1, executor.getSkippedTargets().size());
+    Assertions.assertEquals(1, executor.getSkipCount());
+  }
+
+  /**
+   * Test targets share one deadline and a target ignoring interrupts gets its worker replaced.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testStuckWorkerIsReplaced() throws Exception {
+    CollectorExecutorBean executor = new CollectorExecutorBean();
+    executor.setThreads(2);
+    executor.setTimeout(200);
+    CountDownLatch release = new CountDownLatch(1);
+    Callable<Integer> ignoringInterrupts = () -> {
+      while (true) {
+        try {
+          release.await();
+          return 0;
+        } catch (InterruptedException e) {
+          // keep waiting, like a target blocked in uninterruptible I/O
+        }
+      }
+    };
+    Map<String, Callable<Integer>> tasks = new LinkedHashMap<>();
+    tasks.put("stuck1", ignoringInterrupts);
+    tasks.put("stuck2", ignoringInterrupts);
+    tasks.put("a", () -> 1);
+    try {
+      long start = System.nanoTime();
+      Assertions.assertTrue(executor.readAll(tasks).isEmpty());
+      Assertions.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(390));
+      Assertions.assertEquals(2, executor.getStuckTargetCount());
+
+      // both workers are still stuck, yet the next cycle reads the other target
+      Map<String, Integer> results = executor.readAll(tasks);
+      Assertions.assertEquals(Collections.singletonMap("a", 1), results);
+
+      release.countDown();
+      for (int i = 0; i < 100 && executor.getStuckTargetCount() > 0; i++) {
+        Thread.sleep(10);
+      }
+      Assertions.assertEquals(0, executor.getStuckTargetCount());
+      Assertions.assertEquals(3, executor.readAll(tasks).size());
+    } finally {
+      release.countDown();
+      executor.destroy();
+    }
+  }
+
+}
@@ -64,4 +64,31 @@ class LogHandlerControllerTest {
         .skip("applicationContext", "supportedMethods").test();
   }
 
+  /**
+   * Javabean tester watch log.
+   */
+  @Test
+  void javabeanTesterWatchLog() {
+    JavaBeanTester.builder(WatchLogController.class)
+        .skip("applicationContext", "supportedMethods").test();
+  }
+
+  /**
+   * Javabean tester search log.
+   */
+  @Test
+  void javabeanTesterSearchLog() {
+    JavaBeanTester.builder(SearchLogController.class)
+        .skip("applicationContext", "supportedMethods").test();
+  }
+
+  /**
+   * Javabean tester log range.
+   */
+  @Test
+  void javabeanTesterLogRange() {
+    JavaBeanTester.builder(LogRangeController.class)
+        .skip("applicationContext", "supportedMethods").test();
+  }
+
 }
@@ -0,0 +1,81 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.controllers.sessions;
+
+import com.codebox.bean.JavaBeanTester;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class ExportSessionsControllerTest.
+ */
+class ExportSessionsControllerTest {
+
+  /**
+   * Javabean tester.
+   */
+  @Test
+  void javabeanTester() {
+    JavaBeanTester.builder(ExportSessionsController.class)
+        .skip("applicationContext", "supportedMethods").test();
+  }
+
+  /**
+   * Test write json.
+   */
+  @Test
+  void testWriteJson() {
+    StringWriter json = new StringWriter();
+    ExportSessionsController.writeJson(new PrintWriter(json), fields());
+    Assertions.assertEquals(
+        "{\"id\":\"s\\\"1\",\"objectCount\":2,\"serializable\":true,\"lastAccessedIp\":null}",
+        json.toString());
+  }
+
+  /**
+   * Test write xml.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testWriteXml() throws Exception {
+    StringWriter xml = new StringWriter();
+    XMLStreamWriter out = XMLOutputFactory.newInstance().createXMLStreamWriter(xml);
+    ExportSessionsController.writeXml(out, fields());
+    out.flush();
+    Assertions.assertEquals("<session><id>s\"1</id><objectCount>2</objectCount>"
+        + "<serializable>true</serializable></session>", xml.toString());
+  }
+
+  /**
+   * Gets the fields of a session.
+   *
+   * @return the fields
+   */
+  private static Map<String, Object> fields() {
+    Map<String, Object> fields = new LinkedHashMap<>();
+    fields.put("id", "s\"1");
+    fields.put("objectCount", 2L);
+    fields.put("serializable", true);
+    fields.put("lastAccessedIp", null);
+    return fields;
+  }
+
+}
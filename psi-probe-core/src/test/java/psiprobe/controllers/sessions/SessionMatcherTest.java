@@ -0,0 +1,143 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.controllers.sessions;
+
+import mockit.Expectations;
+import mockit.Mocked;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.session.StandardManager;
+import org.apache.catalina.session.StandardSession;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import psiprobe.model.ApplicationSession;
+import psiprobe.model.SessionSearchInfo;
+
+/**
+ * The Class SessionMatcherTest.
+ */
+class SessionMatcherTest {
+
+  /** The context. */
+  @Mocked
+  Context context;
+
+  /** The session. */
+  private StandardSession session;
+
+  /** The time the session was created at. */
+  private long now;
+
+  /**
+   * Creates a session created a minute ago, with two attributes.
+   */
+  @BeforeEach
+  void setUp() {
+    new Expectations() {
+      {
+        context.getName();
+        result = "/app";
+        minTimes = 0;
+      }
+    };
+    StandardManager manager = new StandardManager();
+    manager.setContext(context);
+    now = System.currentTimeMillis();
+    session = new StandardSession(manager);
+    session.setValid(true);
+    session.setCreationTime(now - 60000);
+    session.setId("abc123", false);
+    manager.add(session);
+    session.setAttribute("user", "someone", false);
+    session.setAttribute("cart", "empty", false);
+  }
+
+  /**
+   * Test an unused search matches every session.
+   */
+  @Test
+  void testUnusedSearchMatches() {
+    Assertions.assertSame(SessionMatcher.NONE, SessionMatcher.of(null));
+    Assertions.assertSame(SessionMatcher.NONE, SessionMatcher.of(new SessionSearchInfo()));
+    Assertions.assertTrue(SessionMatcher.NONE.matches(session, now));
+  }
+
+  /**
+   * Test session id.
+   */
+  @Test
+  void testSessionId() {
+    SessionSearchInfo searchInfo = newSearch();
+    searchInfo.setSessionId("abc.*");
+    Assertions.assertTrue(SessionMatcher.of(searchInfo).matches(session, now));
+    searchInfo.setSessionId("xyz.*");
+    Assertions.assertFalse(SessionMatcher.of(searchInfo).matches(session, now));
+  }
+
+  /**
+   * Test age and idle time.
+   */
+  @Test
+  void testAgeAndIdleTime() {
+    SessionSearchInfo searchInfo = newSearch();
+    searchInfo.setAgeFrom("30");
+    searchInfo.setAgeTo("90");
+    Assertions.assertTrue(SessionMatcher.of(searchInfo).matches(session, now));
+    searchInfo.setAgeFrom("120");
+    Assertions.assertFalse(SessionMatcher.of(searchInfo).matches(session, now));
+
+    searchInfo = newSearch();
+    searchInfo.setIdleTimeTo("30");
+    Assertions.assertFalse(SessionMatcher.of(searchInfo).matches(session, now));
+  }
+
+  /**
+   * Test every attribute name pattern must match.
+   */
+  @Test
+  void testAttributeNames() {
+    SessionSearchInfo searchInfo = newSearch();
+    searchInfo.setAttrName("us.*,cart");
+    Assertions.assertTrue(SessionMatcher.of(searchInfo).matches(session, now));
+    searchInfo.setAttrName("user,order");
+    Assertions.assertFalse(SessionMatcher.of(searchInfo).matches(session, now));
+  }
+
+  /**
+   * Test an unknown client address is not filtered out.
+   */
+  @Test
+  void testLastIp() {
+    SessionSearchInfo searchInfo = newSearch();
+    searchInfo.setLastIp("10.0.");
+    SessionMatcher matcher = SessionMatcher.of(searchInfo);
+    ApplicationSession appSession = new ApplicationSession();
+    Assertions.assertTrue(matcher.matches(appSession));
+    appSession.setLastAccessedIp("10.0.0.1");
+    Assertions.assertTrue(matcher.matches(appSession));
+    appSession.setLastAccessedIp("192.168.0.1");
+    Assertions.assertFalse(matcher.matches(appSession));
+  }
+
+  /**
+   * Creates an applied search.
+   *
+   * @return the session search info
+   */
+  private static SessionSearchInfo newSearch() {
+    SessionSearchInfo searchInfo = new SessionSearchInfo();
+    searchInfo.setSearchAction(SessionSearchInfo.ACTION_APPLY);
+    return searchInfo;
+  }
+
+}
@@ -0,0 +1,111 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.controllers.sessions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import mockit.Expectations;
+import mockit.Mocked;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.session.StandardManager;
+import org.apache.catalina.session.StandardSession;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class SessionSearchTaskTest.
+ */
+class SessionSearchTaskTest {
+
+  /** The context. */
+  @Mocked
+  Context context;
+
+  /**
+   * Test every match is found across chunks.
+   */
+  @Test
+  void testFindsEveryMatch() {
+    List<Context> ctxs = newContexts(1000);
+    SessionSearchTask<String> task = SessionSearchTask.of(ctxs, 16, Integer.MAX_VALUE,
+        Comparator.naturalOrder(),
+        (ctx, session) -> session.getIdInternal().endsWith("0") ? session.getIdInternal() : null);
+    List<String> found = ForkJoinPool.commonPool().invoke(task);
+    Assertions.assertEquals(100, found.size());
+    Assertions.assertEquals(100, new HashSet<>(found).size());
+    Assertions.assertEquals(100, task.getMatchCount());
+    Assertions.assertFalse(task.isLimitReached());
+  }
+
+  /**
+   * Test the matches kept at the limit are the first ones in order, whether sessions are read in
+   * one chunk or many.
+   */
+  @Test
+  void testKeepsFirstMatchesInOrder() {
+    List<Context> ctxs = newContexts(1000);
+    Comparator<Integer> order = Comparator.reverseOrder();
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 999; i >= 990; i--) {
+      expected.add(i);
+    }
+    for (int chunkSize : new int[] {16, Integer.MAX_VALUE}) {
+      SessionSearchTask<Integer> task = SessionSearchTask.of(ctxs, chunkSize, 10, order,
+          (ctx, session) -> Integer.valueOf(session.getIdInternal().substring(1)));
+      Assertions.assertEquals(expected, ForkJoinPool.commonPool().invoke(task));
+      Assertions.assertEquals(1000, task.getMatchCount());
+      Assertions.assertTrue(task.isLimitReached());
+    }
+  }
+
+  /**
+   * Test contexts without a manager are skipped.
+   */
+  @Test
+  void testNoContexts() {
+    SessionSearchTask<String> task = SessionSearchTask.of(Collections.singletonList(null), 16,
+        Integer.MAX_VALUE, Comparator.naturalOrder(), (ctx, session) -> session.getIdInternal());
+    Assertions.assertTrue(task.invoke().isEmpty());
+  }
+
+  /**
+   * Creates a context with sessions.
+   *
+   * @param count the number of sessions
+   * @return the contexts
+   */
+  private List<Context> newContexts(int count) {
+    StandardManager manager = new StandardManager();
+    manager.setContext(context);
+    for (int i = 0; i < count; i++) {
+      StandardSession session = new StandardSession(manager);
+      session.setValid(true);
+      session.setId("s" + i, false);
+      manager.add(session);
+    }
+    new Expectations() {
+      {
+        context.getManager();
+        result = manager;
+      }
+    };
+    List<Context> ctxs = new ArrayList<>();
+    ctxs.add(context);
+    return ctxs;
+  }
+
+}
@@ -0,0 +1,93 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.controllers.sessions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import psiprobe.model.ApplicationSession;
+
+/**
+ * The Class SessionSortKeyTest.
+ */
+class SessionSortKeyTest {
+
+  /**
+   * Test idle time sorts by last access.
+   */
+  @Test
+  void testIdleTimeSortsByLastAccess() {
+    List<SessionSortKey> keys = new ArrayList<>();
+    keys.add(SessionSortKey.of("idleTime", newSession("/a", "s1", 1000), null, null));
+    keys.add(SessionSortKey.of("idleTime", newSession("/a", "s2", 3000), null, null));
+    keys.add(SessionSortKey.of("idleTime", newSession("/b", "s3", 2000), null, null));
+    keys.sort(SessionSortKey.ORDER);
+    Assertions.assertEquals("s2;/a;-3000;", keys.get(0).toCursor());
+    Assertions.assertEquals("s3;/b;-2000;", keys.get(1).toCursor());
+    Assertions.assertEquals("s1;/a;-1000;", keys.get(2).toCursor());
+  }
+
+  /**
+   * Test cursor finds the next page.
+   */
+  @Test
+  void testCursorFindsTheNextPage() {
+    List<SessionSortKey> keys = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      keys.add(SessionSortKey.of("lastAccessedIp", newSession("/a", "s" + i, i), null, null));
+    }
+    keys.sort(SessionSortKey.ORDER);
+    SessionSortKey cursor = SessionSortKey.fromCursor(keys.get(3).toCursor());
+    Assertions.assertEquals(3, Collections.binarySearch(keys, cursor, SessionSortKey.ORDER));
+
+    // A session gone since still positions the next page
+    SessionSortKey gone = keys.remove(3);
+    Assertions.assertEquals(-4, Collections.binarySearch(keys,
+        SessionSortKey.fromCursor(gone.toCursor()), SessionSortKey.ORDER));
+  }
+
+  /**
+   * Test malformed cursors.
+   */
+  @Test
+  void testMalformedCursors() {
+    Assertions.assertNull(SessionSortKey.fromCursor(null));
+    Assertions.assertNull(SessionSortKey.fromCursor("s1;/a"));
+    Assertions.assertNull(SessionSortKey.fromCursor("s1;/a;x;"));
+    Assertions.assertEquals("s1;/a;0;10.0.0.1;x",
+        SessionSortKey.fromCursor("s1;/a;0;10.0.0.1;x").toCursor());
+  }
+
+  /**
+   * Creates a session.
+   *
+   * @param applicationName the application name
+   * @param id the id
+   * @param lastAccessTime the last access time
+   * @return the application session
+   */
+  private static ApplicationSession newSession(String applicationName, String id,
+      long lastAccessTime) {
+    ApplicationSession session = new ApplicationSession();
+    session.setApplicationName(applicationName);
+    session.setId(id);
+    session.setCreationTime(new Date(0));
+    session.setLastAccessTime(new Date(lastAccessTime));
+    session.setLastAccessedIp("10.0.0." + lastAccessTime);
+    return session;
+  }
+
+}
@@ -0,0 +1,86 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.model;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class CallTreeTest.
+ */
+class CallTreeTest {
+
+  /**
+   * Test stacks are collapsed outermost first.
+   */
+  @Test
+  void testStacksAreCollapsedOutermostFirst() {
+    CallTree tree = new CallTree(100);
+    tree.add("/app", "exec-#", stack("C.leaf", "B.mid", "A.run"));
+    tree.add("/app", "exec-#", stack("C.leaf", "B.mid", "A.run"));
+    tree.add("/app", "exec-#", stack("B.mid", "A.run"));
+    tree.add("-", "main", stack("Main.main"));
+
+    Map<String, Long> all = new TreeMap<>();
+    tree.collapse(null, null, all);
+    Assertions.assertEquals(2L, all.get("/app;exec-#;A.run;B.mid;C.leaf").longValue());
+    Assertions.assertEquals(1L, all.get("/app;exec-#;A.run;B.mid").longValue());
+    Assertions.assertEquals(1L, all.get("-;main;Main.main").longValue());
+    Assertions.assertEquals(4, tree.getSamples());
+
+    Map<String, Long> app = new TreeMap<>();
+    tree.collapse("/app", null, app);
+    Assertions.assertEquals(2, app.size());
+    Assertions.assertTrue(app.containsKey("exec-#;A.run;B.mid;C.leaf"));
+
+    Map<String, Long> main = new TreeMap<>();
+    tree.collapse(null, Pattern.compile("ma.*"), main);
+    Assertions.assertEquals(1, main.size());
+  }
+
+  /**
+   * Test full tree cuts new paths.
+   */
+  @Test
+  void testFullTreeCutsNewPaths() {
+    CallTree tree = new CallTree(5);
+    tree.add("/app", "exec-#", stack("B.mid", "A.run"));
+    tree.add("/app", "exec-#", stack("D.other", "A.run"));
+    Assertions.assertEquals(5, tree.getNodeCount());
+    Assertions.assertEquals(1, tree.getTruncatedSamples());
+
+    Map<String, Long> collapsed = new TreeMap<>();
+    tree.collapse("/app", null, collapsed);
+    Assertions.assertEquals(1L, collapsed.get("exec-#;A.run;B.mid").longValue());
+    Assertions.assertEquals(1L, collapsed.get("exec-#;A.run").longValue());
+  }
+
+  /**
+   * Builds a stack, innermost frame first.
+   *
+   * @param frames the frames as class.method
+   * @return the stack
+   */
+  private static StackTraceElement[] stack(String... frames) {
+    StackTraceElement[] stack = new StackTraceElement[frames.length];
+    for (int i = 0; i < frames.length; i++) {
+      int dot = frames[i].indexOf('.');
+      stack[i] = new StackTraceElement(frames[i].substring(0, dot), frames[i].substring(dot + 1),
+          null, -1);
+    }
+    return stack;
+  }
+
+}
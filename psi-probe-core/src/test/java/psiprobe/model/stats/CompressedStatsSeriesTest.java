@@ -0,0 +1,176 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.model.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class CompressedStatsSeriesTest.
+ */
+class CompressedStatsSeriesTest {
+
+  /**
+   * Test round trip of irregular samples.
+   */
+  @Test
+  void testRoundTripOfIrregularSamples() {
+    Random random = new Random(42);
+    long[] times = new long[100];
+    double[] values = new double[100];
+    long time = System.currentTimeMillis();
+    for (int i = 0; i < times.length; i++) {
+      time += random.nextInt(4) == 0 ? random.nextInt(100_000) - 50_000 : 30_000;
+      times[i] = time;
+      values[i] = i % 7 == 0 ? Double.NaN : random.nextGaussian() * Math.pow(10, i % 12 - 6);
+    }
+    StatsChunk chunk = StatsChunk.encode(times, values, times.length);
+    List<Long> decodedTimes = new ArrayList<>();
+    List<Double> decodedValues = new ArrayList<>();
+    chunk.forEach(0, (t, v) -> {
+      decodedTimes.add(t);
+      decodedValues.add(v);
+    });
+    Assertions.assertEquals(times.length, decodedTimes.size());
+    for (int i = 0; i < times.length; i++) {
+      Assertions.assertEquals(times[i], decodedTimes.get(i).longValue());
+      Assertions.assertEquals(Double.doubleToRawLongBits(values[i]),
+          Double.doubleToRawLongBits(decodedValues.get(i)));
+    }
+    Assertions.assertEquals(times[50], chunk.getTime(50));
+  }
+
+  /**
+   * Test eviction across chunks.
+   */
+  @Test
+  void testEvictionAcrossChunks() {
+    StatsSeries series = new CompressedStatsSeries(10, 4);
+    for (int i = 1; i <= 25; i++) {
+      series.add(i, i * 10);
+    }
+    Assertions.assertEquals(10, series.size());
+    Assertions.assertEquals(16, series.getFirstTime());
+    Assertions.assertEquals(25, series.getLastTime());
+    Assertions.assertEquals(250, series.getLastValue());
+    Assertions.assertEquals(range(16, 25), times(series));
+  }
+
+  /**
+   * Test set capacity keeps most recent.
+   */
+  @Test
+  void testSetCapacityKeepsMostRecent() {
+    StatsSeries series = new CompressedStatsSeries(8, 3);
+    for (int i = 1; i <= 8; i++) {
+      series.add(i, i);
+    }
+    series.setCapacity(2);
+    Assertions.assertEquals(range(7, 8), times(series));
+
+    series.setCapacity(5);
+    series.add(9, 9);
+    Assertions.assertEquals(5, series.getCapacity());
+    Assertions.assertEquals(range(7, 9), times(series));
+  }
+
+  /**
+   * Test copy is independent.
+   */
+  @Test
+  void testCopyIsIndependent() {
+    StatsSeries series = new CompressedStatsSeries(6, 2);
+    for (int i = 1; i <= 5; i++) {
+      series.add(i, i);
+    }
+    StatsSeries copy = series.copy();
+    series.add(6, 6);
+    series.add(7, 7);
+    Assertions.assertEquals(range(1, 5), times(copy));
+    Assertions.assertEquals(range(2, 7), times(series));
+  }
+
+  /**
+   * Test readers do not block writers.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testReadersDoNotBlockWriters() throws Exception {
+    StatsSeries series = new CompressedStatsSeries(100, 4);
+    for (int i = 1; i <= 10; i++) {
+      series.add(i, i);
+    }
+    List<Long> seen = new ArrayList<>();
+    series.forEach((time, value) -> {
+      if (seen.isEmpty()) {
+        Thread writer = new Thread(() -> series.add(11, 11));
+        writer.start();
+        try {
+          writer.join(5000);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        Assertions.assertFalse(writer.isAlive());
+      }
+      seen.add(time);
+    });
+    Assertions.assertEquals(range(1, 10), seen);
+    Assertions.assertEquals(11, series.getLastTime());
+  }
+
+  /**
+   * Test regular samples compress.
+   */
+  @Test
+  void testRegularSamplesCompress() {
+    CompressedStatsSeries series = new CompressedStatsSeries(2880);
+    long time = 1_500_000_000_000L;
+    for (int i = 0; i < 2880; i++) {
+      series.add(time + i * 30_000L + i % 3, 100 + i / 60);
+    }
+    long raw = 2880L * (Long.BYTES + Double.BYTES);
+    Assertions.assertTrue(series.getMemorySize() * 8 < raw,
+        "compressed to " + series.getMemorySize() + " bytes");
+  }
+
+  /**
+   * Collects the times of a series.
+   *
+   * @param series the series
+   * @return the list
+   */
+  private static List<Long> times(StatsSeries series) {
+    List<Long> times = new ArrayList<>();
+    series.forEach((time, value) -> times.add(time));
+    return times;
+  }
+
+  /**
+   * Builds a list of consecutive times.
+   *
+   * @param from the first time
+   * @param to the last time
+   * @return the list
+   */
+  private static List<Long> range(long from, long to) {
+    List<Long> list = new ArrayList<>();
+    for (long i = from; i <= to; i++) {
+      list.add(i);
+    }
+    return list;
+  }
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.model.stats;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The Class MappedStatsSeriesTest.
+ */
+class MappedStatsSeriesTest {
+
+  /** The temp dir. */
+  @TempDir
+  File tempDir;
+
+  /**
+   * Test reopen.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testReopen() throws Exception {
+    File file = new File(tempDir, MappedStatsSeries.toFileName("app.requests./probe"));
+    MappedStatsSeries series = MappedStatsSeries.open(file, 3);
+    for (int i = 1; i <= 4; i++) {
+      series.add(i, i * 10);
+    }
+    series.force();
+
+    MappedStatsSeries reopened = MappedStatsSeries.open(file, 100);
+    Assertions.assertEquals(3, reopened.getCapacity());
+    Assertions.assertEquals(3, reopened.size());
+    Assertions.assertEquals(4, reopened.getLastTime());
+    Assertions.assertEquals(40, reopened.getLastValue());
+  }
+
+  /**
+   * Test set capacity.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testSetCapacity() throws Exception {
+    File file = new File(tempDir, MappedStatsSeries.toFileName("pool.busy"));
+    MappedStatsSeries series = MappedStatsSeries.open(file, 2);
+    series.add(1, 1);
+    series.add(2, 2);
+    series.setCapacity(5);
+    series.add(3, 3);
+    Assertions.assertEquals(3, series.size());
+
+    series.setCapacity(1);
+    Assertions.assertEquals(1, series.size());
+    Assertions.assertEquals(3, MappedStatsSeries.open(file, 10).getLastTime());
+  }
+
+  /**
+   * Test file names.
+   */
+  @Test
+  void testFileNames() {
+    String name = "app.avg_proc_time./my app";
+    Assertions.assertEquals(name,
+        MappedStatsSeries.toSeriesName(MappedStatsSeries.toFileName(name)));
+    Assertions.assertNull(MappedStatsSeries.toSeriesName("stats.wal"));
+  }
+
+}
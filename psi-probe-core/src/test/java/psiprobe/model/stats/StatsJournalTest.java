@@ -0,0 +1,205 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.model.stats;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The Class StatsJournalTest.
+ */
+class StatsJournalTest {
+
+  /** The temp dir. */
+  @TempDir
+  File tempDir;
+
+  /**
+   * Creates a journal in the temp dir.
+   *
+   * @return the stats journal
+   */
+  private StatsJournal newJournal() {
+    return new StatsJournal(new File(tempDir, "stats.dat"), new File(tempDir, "stats.wal"));
+  }
+
+  /**
+   * Test replay of log.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testReplayOfLog() throws Exception {
+    StatsJournal journal = newJournal();
+    Assertions.assertFalse(journal.exists());
+    journal.load();
+    journal.rotate();
+    journal.append("a", 3, 1, 10);
+    journal.append("a", 3, 2, 20);
+    journal.append("b", 5, 1, 1);
+    journal.reset("b", 5);
+    journal.append("a", 3, 3, 30);
+    journal.append("a", 3, 4, 40);
+    journal.close();
+
+    Map<String, StatsSeries> stats = newJournal().load();
+    Assertions.assertEquals(3, stats.get("a").size());
+    Assertions.assertEquals(3, stats.get("a").getCapacity());
+    Assertions.assertEquals(40, stats.get("a").getLastValue());
+    Assertions.assertTrue(stats.get("b").isEmpty());
+  }
+
+  /**
+   * Test snapshot supersedes previous log.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testSnapshotSupersedesPreviousLog() throws Exception {
+    StatsJournal journal = newJournal();
+    journal.load();
+    journal.rotate();
+    journal.append("a", 10, 1, 1);
+
+    Map<String, StatsSeries> copy = new TreeMap<>();
+    StatsSeries series = new StatsSeries(10);
+    series.add(1, 1);
+    copy.put("a", series);
+    long generation = journal.rotate();
+    journal.append("a", 10, 2, 2);
+    journal.writeSnapshot(copy, generation);
+    journal.close();
+
+    Map<String, StatsSeries> stats = newJournal().load();
+    Assertions.assertEquals(2, stats.get("a").size());
+    Assertions.assertEquals(2, stats.get("a").getLastTime());
+  }
+
+  /**
+   * Test crash before snapshot is written.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testCrashBeforeSnapshotIsWritten() throws Exception {
+    StatsJournal journal = newJournal();
+    journal.load();
+    journal.rotate();
+    journal.append("a", 10, 1, 1);
+    journal.rotate();
+    journal.append("a", 10, 2, 2);
+    journal.close();
+
+    Map<String, StatsSeries> stats = newJournal().load();
+    Assertions.assertEquals(2, stats.get("a").size());
+  }
+
+  /**
+   * Test repeated crashes before a snapshot is written keep every previous log.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testRepeatedRotationsWithoutSnapshot() throws Exception {
+    StatsJournal journal = newJournal();
+    journal.load();
+    journal.rotate();
+    journal.append("a", 10, 1, 1);
+    journal.rotate();
+    journal.append("a", 10, 2, 2);
+    journal.rotate();
+    journal.append("a", 10, 3, 3);
+    journal.close();
+
+    journal = newJournal();
+    Map<String, StatsSeries> stats = journal.load();
+    Assertions.assertEquals(3, stats.get("a").size());
+
+    long generation = journal.rotate();
+    journal.writeSnapshot(stats, generation);
+    journal.close();
+    String[] files = tempDir.list();
+    Arrays.sort(files);
+    Assertions.assertArrayEquals(new String[] {"stats.dat", "stats.wal"}, files);
+    Assertions.assertEquals(3, newJournal().load().get("a").size());
+  }
+
+  /**
+   * Test buffered appends reach the log on flush.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testFlush() throws Exception {
+    StatsJournal journal = newJournal();
+    journal.load();
+    journal.rotate();
+    journal.append("a", 10, 1, 1);
+    journal.flush();
+
+    Map<String, StatsSeries> stats = newJournal().load();
+    Assertions.assertEquals(1, stats.get("a").size());
+    journal.close();
+  }
+
+  /**
+   * Test samples appended concurrently all reach the log, and a long queue is written out without
+   * waiting for a flush.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testConcurrentAppends() throws Exception {
+    StatsJournal journal = newJournal();
+    journal.load();
+    journal.rotate();
+    long emptySize = journal.getLogSize();
+    int threadCount = 4;
+    int samples = StatsJournal.DRAIN_THRESHOLD;
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      String name = "s" + i;
+      threads.add(new Thread(() -> {
+        for (int time = 0; time < samples; time++) {
+          journal.append(name, samples, time, time);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Assertions.assertTrue(journal.getLogSize() > emptySize);
+    journal.close();
+
+    Map<String, StatsSeries> stats = newJournal().load();
+    for (int i = 0; i < threadCount; i++) {
+      StatsSeries series = stats.get("s" + i);
+      Assertions.assertEquals(samples, series.size());
+      long[] previous = {-1};
+      series.forEach((time, value) -> {
+        Assertions.assertEquals(previous[0] + 1, time);
+        previous[0] = time;
+      });
+    }
+  }
+
+}
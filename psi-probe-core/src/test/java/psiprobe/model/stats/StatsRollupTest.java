@@ -0,0 +1,134 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.model.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class StatsRollupTest.
+ */
+class StatsRollupTest {
+
+  /**
+   * Test buckets.
+   */
+  @Test
+  void testBuckets() {
+    StatsRollup rollup = new StatsRollup(10, 2);
+    rollup.add(1, 4);
+    rollup.add(5, 2);
+    rollup.add(12, 7);
+    rollup.add(25, 1);
+    rollup.add(33, 3);
+
+    List<double[]> buckets = new ArrayList<>();
+    rollup.forEachBucket((start, min, max, sum, count) -> buckets
+        .add(new double[] {start, min, max, sum, count}));
+
+    // the first bucket was evicted, the last one is still open
+    Assertions.assertEquals(3, buckets.size());
+    Assertions.assertArrayEquals(new double[] {10, 7, 7, 7, 1}, buckets.get(0));
+    Assertions.assertArrayEquals(new double[] {20, 1, 1, 1, 1}, buckets.get(1));
+    Assertions.assertArrayEquals(new double[] {30, 3, 3, 3, 1}, buckets.get(2));
+    Assertions.assertTrue(rollup.isFull());
+    Assertions.assertEquals(10, rollup.getOldestTime());
+  }
+
+  /**
+   * Test series picks tier.
+   */
+  @Test
+  void testSeriesPicksTier() {
+    StatsSeries series = new StatsSeries(4);
+    series.setRollups(new StatsRollup(10, 100));
+    for (int i = 0; i < 40; i++) {
+      series.add(i, i);
+    }
+
+    List<Long> times = new ArrayList<>();
+    series.forEach(37, (time, value) -> times.add(time));
+    Assertions.assertEquals(3, times.size());
+
+    List<Double> averages = new ArrayList<>();
+    series.forEach(0, (time, value) -> averages.add(value));
+    Assertions.assertEquals(4, averages.size());
+    Assertions.assertEquals(4.5, averages.get(0));
+  }
+
+  /**
+   * Test set capacity keeps open bucket.
+   */
+  @Test
+  void testSetCapacityKeepsOpenBucket() {
+    StatsRollup rollup = new StatsRollup(10, 5);
+    for (int i = 0; i < 45; i++) {
+      rollup.add(i, 1);
+    }
+    rollup.setCapacity(2);
+    rollup.add(46, 1);
+
+    List<Integer> counts = new ArrayList<>();
+    rollup.forEachBucket((start, min, max, sum, count) -> counts.add(count));
+    Assertions.assertEquals(3, counts.size());
+    Assertions.assertEquals(6, (int) counts.get(2));
+  }
+
+  /**
+   * Test eviction across sealed blocks.
+   */
+  @Test
+  void testEvictionAcrossBlocks() {
+    StatsRollup rollup = new StatsRollup(10, 50);
+    for (int i = 0; i < 2000; i++) {
+      rollup.add(i, i % 7);
+    }
+    StatsRollup copy = rollup.copy();
+    rollup.add(2000, 1);
+
+    List<double[]> buckets = new ArrayList<>();
+    copy.forEachBucket((start, min, max, sum, count) -> buckets
+        .add(new double[] {start, min, max, sum, count}));
+    Assertions.assertEquals(51, buckets.size());
+    Assertions.assertEquals(1490, copy.getOldestTime());
+    for (int i = 0; i < buckets.size(); i++) {
+      long start = 1490 + i * 10L;
+      double sum = 0;
+      for (long time = start; time < start + 10; time++) {
+        sum += time % 7;
+      }
+      Assertions.assertEquals(start, (long) buckets.get(i)[0]);
+      Assertions.assertEquals(0, buckets.get(i)[1]);
+      Assertions.assertEquals(6, buckets.get(i)[2]);
+      Assertions.assertEquals(sum, buckets.get(i)[3]);
+      Assertions.assertEquals(10, buckets.get(i)[4]);
+    }
+    Assertions.assertEquals(1500, rollup.getOldestTime());
+  }
+
+  /**
+   * Test a full month of hourly buckets takes far less than thirty-six bytes a bucket.
+   */
+  @Test
+  void testMemorySize() {
+    StatsRollup rollup = new StatsRollup(3600_000L, 744);
+    long time = 1_600_000_000_000L;
+    for (int i = 0; i < 744 * 120; i++) {
+      rollup.add(time + i * 30_000L, 100 + i % 5);
+    }
+    Assertions.assertTrue(rollup.isFull());
+    Assertions.assertTrue(rollup.getMemorySize() < 744 * 36 / 4, "" + rollup.getMemorySize());
+  }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.model.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class StatsSeriesTest.
+ */
+class StatsSeriesTest {
+
+  /**
+   * Test eviction.
+   */
+  @Test
+  void testEviction() {
+    StatsSeries series = new StatsSeries(3);
+    for (int i = 1; i <= 5; i++) {
+      series.add(i, i * 10);
+    }
+    Assertions.assertEquals(3, series.size());
+    Assertions.assertEquals(5, series.getLastTime());
+    Assertions.assertEquals(50, series.getLastValue());
+    Assertions.assertEquals(listOf(3, 4, 5), times(series));
+  }
+
+  /**
+   * Test set capacity keeps most recent.
+   */
+  @Test
+  void testSetCapacityKeepsMostRecent() {
+    StatsSeries series = new StatsSeries(4);
+    for (int i = 1; i <= 6; i++) {
+      series.add(i, i);
+    }
+    series.setCapacity(2);
+    Assertions.assertEquals(listOf(5, 6), times(series));
+
+    series.setCapacity(5);
+    series.add(7, 7);
+    Assertions.assertEquals(5, series.getCapacity());
+    Assertions.assertEquals(listOf(5, 6, 7), times(series));
+  }
+
+  /**
+   * Test clear.
+   */
+  @Test
+  void testClear() {
+    StatsSeries series = new StatsSeries(2);
+    series.add(1, 1);
+    series.clear();
+    Assertions.assertTrue(series.isEmpty());
+    Assertions.assertEquals(0, series.getLastValue());
+  }
+
+  /**
+   * Collects the times of a series.
+   *
+   * @param series the series
+   * @return the list
+   */
+  private static List<Long> times(StatsSeries series) {
+    List<Long> times = new ArrayList<>();
+    series.forEach((time, value) -> times.add(time));
+    return times;
+  }
+
+  /**
+   * Builds a list of times.
+   *
+   * @param times the times
+   * @return the list
+   */
+  private static List<Long> listOf(long... times) {
+    List<Long> list = new ArrayList<>();
+    for (long time : times) {
+      list.add(time);
+    }
+    return list;
+  }
+
+}
@@ -0,0 +1,123 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The Class BackwardsLineScannerTest.
+ */
+class BackwardsLineScannerTest {
+
+  /** The temp dir. */
+  @TempDir
+  File tempDir;
+
+  /**
+   * Writes a file and reads its lines backwards.
+   *
+   * @param content the content
+   * @param charset the charset
+   * @return the lines, last first
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private List<String> readBackwards(String content, Charset charset) throws IOException {
+    File file = new File(tempDir, "catalina.out");
+    Files.write(file.toPath(), content.getBytes(charset));
+    List<String> lines = new ArrayList<>();
+    try (BackwardsLineScanner scanner = new BackwardsLineScanner(file, charset)) {
+      for (String line = scanner.readLine(); line != null; line = scanner.readLine()) {
+        lines.add(line);
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * Test read line.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  void testReadLine() throws IOException {
+    Assertions.assertEquals(Arrays.asList("c", "", "b", "a"),
+        readBackwards("a\nb\n\nc\n", StandardCharsets.UTF_8));
+    Assertions.assertEquals(Arrays.asList("c", "b", "a"),
+        readBackwards("a\r\nb\r\nc", StandardCharsets.UTF_8));
+    Assertions.assertEquals(Arrays.asList(""), readBackwards("\n", StandardCharsets.UTF_8));
+    Assertions.assertEquals(Collections.emptyList(), readBackwards("", StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Test lines longer than a block, and multi-byte characters across blocks.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  void testLongLines() throws IOException {
+    StringBuilder longLine = new StringBuilder();
+    for (int i = 0; i < 50000; i++) {
+      longLine.append("\u00e9\u20ac");
+    }
+    List<String> expected = new ArrayList<>();
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 5; i++) {
+      content.append(longLine).append(i).append('\n');
+      expected.add(0, longLine.toString() + i);
+    }
+    Assertions.assertEquals(expected, readBackwards(content.toString(), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Test a charset with line feeds of several bytes.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  void testUtf16() throws IOException {
+    // U+0100 U+0A0A holds the bytes of a line feed, but not aligned to one
+    Assertions.assertEquals(Arrays.asList("\u0100\u0a0a\u00e9", "a\u0100\u0a0a"),
+        readBackwards("a\u0100\u0a0a\n\u0100\u0a0a\u00e9\n", StandardCharsets.UTF_16));
+    Assertions.assertEquals(Arrays.asList("b", "a"),
+        readBackwards("a\r\nb", StandardCharsets.UTF_16LE));
+  }
+
+  /**
+   * Test reading from a position, and the position of lines.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  void testPosition() throws IOException {
+    File file = new File(tempDir, "catalina.out");
+    Files.write(file.toPath(), "one\ntwo\nthree\n".getBytes(StandardCharsets.UTF_8));
+    try (BackwardsLineScanner scanner = new BackwardsLineScanner(file, 8, StandardCharsets.UTF_8)) {
+      Assertions.assertEquals("two", scanner.readLine());
+      Assertions.assertEquals(4, scanner.getPosition());
+      Assertions.assertEquals("one", scanner.readLine());
+      Assertions.assertEquals(0, scanner.getPosition());
+      Assertions.assertNull(scanner.readLine());
+    }
+  }
+
+}
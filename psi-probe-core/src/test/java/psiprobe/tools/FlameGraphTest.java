@@ -0,0 +1,47 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class FlameGraphTest.
+ */
+class FlameGraphTest {
+
+  /**
+   * Test frames are drawn with their share.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testFramesAreDrawnWithTheirShare() throws Exception {
+    Map<String, Long> collapsed = new TreeMap<>();
+    collapsed.put("A.run;B.mid", 3L);
+    collapsed.put("A.run;List<T>.get", 1L);
+    StringWriter out = new StringWriter();
+    FlameGraph.write("Test & co", collapsed, out);
+
+    String svg = out.toString();
+    Assertions.assertTrue(svg.startsWith("<?xml"));
+    Assertions.assertTrue(svg.contains("Test &amp; co"));
+    Assertions.assertTrue(svg.contains("<title>A.run (4 samples, 100.00%)</title>"));
+    Assertions.assertTrue(svg.contains("<title>B.mid (3 samples, 75.00%)</title>"));
+    Assertions.assertTrue(svg.contains("List&lt;T&gt;.get"));
+    Assertions.assertTrue(svg.trim().endsWith("</svg>"));
+  }
+
+}
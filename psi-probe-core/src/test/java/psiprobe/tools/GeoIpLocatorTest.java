@@ -0,0 +1,41 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.util.Locale;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class GeoIpLocatorTest.
+ */
+class GeoIpLocatorTest {
+
+  /**
+   * Test loopback address gets jvm locale.
+   */
+  @Test
+  void testLoopbackAddressGetsJvmLocale() {
+    Assertions.assertEquals(Locale.getDefault(), GeoIpLocator.getLocale("127.0.0.1"));
+    Assertions.assertSame(GeoIpLocator.getLocale("::1"), GeoIpLocator.getLocale(" ::1 "));
+  }
+
+  /**
+   * Test host names are not resolved.
+   */
+  @Test
+  void testHostNamesAreNotResolved() {
+    Assertions.assertNull(GeoIpLocator.getLocale("localhost"));
+    Assertions.assertNull(GeoIpLocator.getLocale(null));
+  }
+
+}
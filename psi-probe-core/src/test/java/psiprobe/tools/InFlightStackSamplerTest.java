@@ -0,0 +1,69 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class InFlightStackSamplerTest.
+ */
+class InFlightStackSamplerTest {
+
+  /**
+   * Test stack is taken only past threshold.
+   */
+  @Test
+  void testStackIsTakenOnlyPastThreshold() {
+    InFlightStackSampler sampler = new InFlightStackSampler(1000);
+    try {
+      Thread thread = Thread.currentThread();
+      long start = System.nanoTime();
+
+      InFlightStackSampler.InFlight request = sampler.begin(thread, start);
+      sampler.sample(start + TimeUnit.MILLISECONDS.toNanos(999));
+      Assertions.assertNull(sampler.end(request));
+
+      request = sampler.begin(thread, start);
+      sampler.sample(start + TimeUnit.MILLISECONDS.toNanos(1000));
+      StackTraceElement[] stack = sampler.end(request);
+      Assertions.assertNotNull(stack);
+      Assertions.assertTrue(stack.length > 0);
+    } finally {
+      sampler.stop();
+    }
+  }
+
+  /**
+   * Test requests sharing a thread are kept apart, and ended ones are no longer sampled.
+   */
+  @Test
+  void testRequestsSharingThread() {
+    InFlightStackSampler sampler = new InFlightStackSampler(1000);
+    try {
+      Thread thread = Thread.currentThread();
+      long start = System.nanoTime();
+
+      InFlightStackSampler.InFlight first = sampler.begin(thread, start);
+      InFlightStackSampler.InFlight second = sampler.begin(thread, start);
+      Assertions.assertNull(sampler.end(second));
+
+      sampler.sample(start + TimeUnit.MILLISECONDS.toNanos(1000));
+      Assertions.assertNotNull(sampler.end(first));
+      Assertions.assertNull(second.stack);
+    } finally {
+      sampler.stop();
+    }
+  }
+
+}
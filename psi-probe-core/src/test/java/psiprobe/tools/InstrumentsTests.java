@@ -10,6 +10,16 @@
  */
 package psiprobe.tools;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -108,4 +118,155 @@ class InstrumentsTests {
     Assertions.assertEquals(Instruments.SIZE_DOUBLE, doubleSize);
   }
 
+  /**
+   * Test shared objects and cycles are counted once.
+   */
+  @Test
+  void testSharedObjectsAndCyclesAreCountedOnce() {
+    Node shared = new Node(null, new long[4]);
+    Node first = new Node(shared, shared.values);
+    Node second = new Node(first, null);
+    shared.next = second;
+
+    long nodeSize = Instruments.sizeOf(new Node(null, null));
+    Assertions.assertEquals(3 * nodeSize + 4 * Instruments.SIZE_LONG, Instruments.sizeOf(first));
+  }
+
+  /**
+   * Test deep graphs do not overflow the stack.
+   */
+  @Test
+  void testDeepGraph() {
+    Node list = null;
+    for (int i = 0; i < 200000; i++) {
+      list = new Node(list, null);
+    }
+    long nodeSize = Instruments.sizeOf(new Node(null, null));
+    Assertions.assertEquals(200000 * nodeSize, Instruments.sizeOf(list));
+  }
+
+  /**
+   * Test fields that cannot be read make sizes partial. Fields of
+   * {@code java.util.concurrent.atomic} classes can only be read on Java 16 and later if the
+   * package is opened.
+   */
+  @Test
+  void testUnreadableFieldsMakeSizesPartial() throws Exception {
+    SizeBudget budget = SizeBudget.unlimited();
+    Instruments.sizeOf(new Node(null, null), Collections.newSetFromMap(new IdentityHashMap<>()),
+        budget);
+    Assertions.assertFalse(budget.isPartial());
+
+    // JDK collections and strings are sized through their API, whatever the JDK opens
+    List<String> list = new ArrayList<>(Collections.nCopies(10, "value"));
+    Instruments.sizeOf(list, Collections.newSetFromMap(new IdentityHashMap<>()), budget);
+    Assertions.assertFalse(budget.isPartial());
+
+    Instruments.sizeOf(new AtomicReference<>(new Node(null, null)),
+        Collections.newSetFromMap(new IdentityHashMap<>()), budget);
+    boolean readable;
+    try {
+      AtomicReference.class.getDeclaredField("value").setAccessible(true);
+      readable = true;
+    } catch (RuntimeException e) {
+      readable = false;
+    }
+    Assertions.assertEquals(!readable, budget.isPartial());
+    Assertions.assertFalse(budget.isExhausted());
+  }
+
+  /**
+   * Test strings are sized by their length.
+   */
+  @Test
+  void testString() {
+    long emptySize = Instruments.sizeOf("");
+    Assertions.assertEquals(emptySize + 2 * Instruments.SIZE_CHAR,
+        Instruments.sizeOf("\u20ac\u20ac"));
+    long latin1Size = Instruments.sizeOf("ab") - emptySize;
+    Assertions.assertTrue(latin1Size == 2 * Instruments.SIZE_BYTE
+        || latin1Size == 2 * Instruments.SIZE_CHAR);
+  }
+
+  /**
+   * Test JDK collections and maps are sized through their elements.
+   */
+  @Test
+  void testCollectionsAndMaps() {
+    long nodeSize = Instruments.sizeOf(new Node(null, null));
+    List<Node> list = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      list.add(new Node(null, null));
+    }
+    Assertions.assertEquals(
+        Instruments.sizeOf(new ArrayList<>()) + 3 * (Instruments.SIZE_REFERENCE + nodeSize),
+        Instruments.sizeOf(list));
+
+    Map<Node, Node> map = new HashMap<>();
+    map.put(new Node(null, null), new Node(null, null));
+    long entrySize = Instruments.sizeOf(map) - Instruments.sizeOf(new HashMap<>()) - 2 * nodeSize;
+    Assertions.assertTrue(entrySize > Instruments.SIZE_REFERENCE);
+
+    // An enum constant is shared, its name is not part of the size
+    Assertions.assertEquals(Instruments.sizeOf(TimeUnit.SECONDS),
+        Instruments.sizeOf(TimeUnit.MILLISECONDS));
+    SizeBudget budget = SizeBudget.unlimited();
+    Instruments.sizeOf(Collections.singletonMap("key", Collections.unmodifiableList(list)),
+        Collections.newSetFromMap(new IdentityHashMap<>()), budget);
+    Assertions.assertFalse(budget.isPartial());
+  }
+
+  /**
+   * Test processed objects are skipped.
+   */
+  @Test
+  void testProcessedObjectsAreSkipped() {
+    Set<Object> processed = Collections.newSetFromMap(new IdentityHashMap<>());
+    Node shared = new Node(null, null);
+    long size = Instruments.sizeOf(new Node(shared, null), processed);
+    Assertions.assertEquals(size / 2, Instruments.sizeOf(new Node(shared, null), processed));
+    Assertions.assertEquals(0, Instruments.sizeOf(shared, processed));
+  }
+
+  /**
+   * Test budget stops sizing.
+   */
+  @Test
+  void testBudgetStopsSizing() {
+    Node list = null;
+    for (int i = 0; i < 100; i++) {
+      list = new Node(list, null);
+    }
+    long nodeSize = Instruments.sizeOf(new Node(null, null));
+    SizeBudget budget = new SizeBudget(0, 10);
+    long size =
+        Instruments.sizeOf(list, Collections.newSetFromMap(new IdentityHashMap<>()), budget);
+    Assertions.assertEquals(10 * nodeSize, size);
+    Assertions.assertTrue(budget.isExhausted());
+  }
+
+  /**
+   * A node of a test graph.
+   */
+  static class Node {
+
+    /** The next. */
+    Node next;
+
+    /** The values. */
+    long[] values;
+
+    /**
+     * Instantiates a new node.
+     *
+     * @param next the next
+     * @param values the values
+     */
+    Node(Node next, long[] values) {
+      this.next = next;
+      this.values = values;
+    }
+
+  }
+
 }
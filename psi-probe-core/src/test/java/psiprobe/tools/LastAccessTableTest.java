@@ -0,0 +1,53 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class LastAccessTableTest.
+ */
+class LastAccessTableTest {
+
+  /**
+   * Test record only writes changes.
+   */
+  @Test
+  void testRecordOnlyWritesChanges() {
+    Map<String, Object[]> table = new ConcurrentHashMap<>();
+    Assertions.assertTrue(LastAccessTable.record(table, "s1", "10.0.0.1", Locale.US));
+    Object[] access = table.get("s1");
+
+    Assertions.assertFalse(LastAccessTable.record(table, "s1", "10.0.0.1", Locale.US));
+    Assertions.assertSame(access, table.get("s1"));
+
+    Assertions.assertFalse(LastAccessTable.record(table, "s1", "10.0.0.2", Locale.US));
+    Assertions.assertNotSame(access, table.get("s1"));
+    Assertions.assertEquals("10.0.0.2", LastAccessTable.getIp(table, "s1"));
+    Assertions.assertEquals(Locale.US, LastAccessTable.getLocale(table, "s1"));
+  }
+
+  /**
+   * Test unknown sessions.
+   */
+  @Test
+  void testUnknownSessions() {
+    Assertions.assertNull(LastAccessTable.getIp(null, "s1"));
+    Assertions.assertNull(LastAccessTable.getIp(new ConcurrentHashMap<>(), "s1"));
+    Assertions.assertNull(LastAccessTable.getLocale("not a table", "s1"));
+  }
+
+}
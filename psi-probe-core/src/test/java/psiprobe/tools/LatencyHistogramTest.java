@@ -0,0 +1,88 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class LatencyHistogramTest.
+ */
+class LatencyHistogramTest {
+
+  /**
+   * Test buckets are within one sixteenth.
+   */
+  @Test
+  void testBucketsAreWithinOneSixteenth() {
+    for (long value = 0; value < 1L << 40; value = value * 3 / 2 + 1) {
+      int bucket = LatencyHistogram.bucket(value);
+      long upper = LatencyHistogram.upperBound(bucket);
+      Assertions.assertTrue(upper >= value, "upper bound of " + value);
+      Assertions.assertTrue(upper - value <= value / 16, "precision of " + value);
+      Assertions.assertEquals(bucket + 1, LatencyHistogram.bucket(upper + 1));
+    }
+  }
+
+  /**
+   * Test percentiles.
+   */
+  @Test
+  void testPercentiles() {
+    AtomicLongArray histogram = LatencyHistogram.create();
+    for (int i = 1; i <= 1000; i++) {
+      LatencyHistogram.record(histogram, i * 1000L);
+    }
+    long[] snapshot = LatencyHistogram.snapshot(histogram);
+    Assertions.assertEquals(1000, LatencyHistogram.getCount(snapshot));
+    Assertions.assertEquals(1000000, LatencyHistogram.getMax(snapshot));
+    Assertions.assertEquals(500500, LatencyHistogram.getMean(snapshot));
+    assertNear(500000, LatencyHistogram.getValueAtPercentile(snapshot, 50));
+    assertNear(990000, LatencyHistogram.getValueAtPercentile(snapshot, 99));
+    Assertions.assertEquals(1000000, LatencyHistogram.getValueAtPercentile(snapshot, 100));
+  }
+
+  /**
+   * Test delta covers values since previous snapshot.
+   */
+  @Test
+  void testDeltaCoversValuesSincePreviousSnapshot() {
+    Map<String, AtomicLongArray> histograms = new ConcurrentHashMap<>();
+    LatencyHistogram.record(histograms, "slow", 5000000);
+    long[] previous = LatencyHistogram.snapshot(histograms.get(LatencyHistogram.APPLICATION));
+    LatencyHistogram.record(histograms, null, 100);
+    LatencyHistogram.record(histograms, null, 200);
+    long[] delta = LatencyHistogram.delta(
+        LatencyHistogram.snapshot(histograms.get(LatencyHistogram.APPLICATION)), previous);
+
+    Assertions.assertEquals(2, LatencyHistogram.getCount(delta));
+    assertNear(200, LatencyHistogram.getMax(delta));
+    assertNear(200, LatencyHistogram.getValueAtPercentile(delta, 99));
+    Assertions.assertEquals(1, LatencyHistogram.getCount(
+        LatencyHistogram.snapshot(histograms.get("slow"))));
+  }
+
+  /**
+   * Asserts a value is the expected one or at most one sixteenth above.
+   *
+   * @param expected the expected
+   * @param actual the actual
+   */
+  private static void assertNear(long expected, long actual) {
+    Assertions.assertTrue(actual >= expected && actual <= expected + expected / 16,
+        expected + " ~ " + actual);
+  }
+
+}
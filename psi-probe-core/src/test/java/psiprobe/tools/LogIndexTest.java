@@ -0,0 +1,139 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import psiprobe.model.LogMatch;
+
+/**
+ * The Class LogIndexTest.
+ */
+class LogIndexTest {
+
+  /** The temp dir. */
+  @TempDir
+  File tempDir;
+
+  /**
+   * Writes a log of numbered lines, every thousandth of which is an error.
+   *
+   * @param file the file
+   * @param from the number of the first line
+   * @param count the number of lines
+   * @param option how the file is opened
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void writeLines(File file, int from, int count, StandardOpenOption option)
+      throws IOException {
+    List<String> lines = new ArrayList<>();
+    for (int i = from; i < from + count; i++) {
+      lines.add("line " + i + (i % 1000 == 0 ? " ERROR Connection refused" : " INFO ok"));
+    }
+    Files.write(file.toPath(), lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, option);
+  }
+
+  /**
+   * Test search reads only the candidate blocks.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  void testSearch() throws IOException {
+    File file = new File(tempDir, "catalina.out");
+    writeLines(file, 1, 10000, StandardOpenOption.TRUNCATE_EXISTING);
+    LogIndex index = new LogIndex(file, 4096);
+    Assertions.assertTrue(index.update(10000));
+    Assertions.assertEquals(10000, index.getLineCount());
+
+    LogIndex.Page page =
+        index.search(LogQuery.keywords("connection refused"), StandardCharsets.UTF_8, 0, 1000, 1);
+    Assertions.assertEquals(10, page.getMatches().size());
+    Assertions.assertEquals(-1, page.getNext());
+    Assertions.assertTrue(page.getScannedBlocks() < index.getBlockCount());
+
+    LogMatch match = page.getMatches().get(0);
+    Assertions.assertEquals("catalina.out", match.getFileName());
+    Assertions.assertEquals(1000, match.getLineNumber());
+    Assertions.assertEquals("line 1000 ERROR Connection refused", match.getLine());
+    Assertions.assertEquals("line 999 INFO ok", match.getBefore().get(0));
+    Assertions.assertEquals("line 1001 INFO ok", match.getAfter().get(0));
+    Assertions.assertEquals(10000, page.getMatches().get(9).getLineNumber());
+
+    // Keywords that are not in the file leave nothing to read
+    page = index.search(LogQuery.keywords("timeout"), StandardCharsets.UTF_8, 0, 1000, 1);
+    Assertions.assertEquals(0, page.getMatches().size());
+    Assertions.assertEquals(0, page.getScannedBlocks());
+  }
+
+  /**
+   * Test paging.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  void testPaging() throws IOException {
+    File file = new File(tempDir, "catalina.out");
+    writeLines(file, 1, 10000, StandardOpenOption.TRUNCATE_EXISTING);
+    LogIndex index = new LogIndex(file, 4096);
+    index.update(10000);
+
+    LogQuery query = LogQuery.regex("ERROR \\w+");
+    LogIndex.Page page = index.search(query, StandardCharsets.UTF_8, 0, 4, 0);
+    Assertions.assertEquals(4, page.getMatches().size());
+    Assertions.assertEquals(4000, page.getMatches().get(3).getLineNumber());
+
+    page = index.search(query, StandardCharsets.UTF_8, page.getNext(), 4, 0);
+    Assertions.assertEquals(4, page.getMatches().size());
+    Assertions.assertEquals(5000, page.getMatches().get(0).getLineNumber());
+  }
+
+  /**
+   * Test update indexes appended lines and starts over once truncated.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  void testUpdate() throws IOException {
+    File file = new File(tempDir, "catalina.out");
+    writeLines(file, 1, 1000, StandardOpenOption.TRUNCATE_EXISTING);
+    LogIndex index = new LogIndex(file, 4096);
+    index.update(10000);
+    LogQuery query = LogQuery.keywords("refused");
+
+    writeLines(file, 1001, 1000, StandardOpenOption.APPEND);
+    Files.write(file.toPath(), "last ERROR refused".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+    index.update(10000);
+    Assertions.assertEquals(2000, index.getLineCount());
+    List<LogMatch> matches = index.search(query, StandardCharsets.UTF_8, 0, 1000, 0).getMatches();
+    Assertions.assertEquals(3, matches.size());
+    Assertions.assertEquals(2000, matches.get(1).getLineNumber());
+    Assertions.assertEquals("last ERROR refused", matches.get(2).getLine());
+
+    writeLines(file, 1, 1000, StandardOpenOption.TRUNCATE_EXISTING);
+    index.update(10000);
+    Assertions.assertEquals(1000, index.getLineCount());
+    Assertions.assertEquals(1, index.search(query, StandardCharsets.UTF_8, 0, 1000, 0)
+        .getMatches().size());
+  }
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class LogQueryTest.
+ */
+class LogQueryTest {
+
+  /**
+   * Test keywords.
+   */
+  @Test
+  void testKeywords() {
+    LogQuery query = LogQuery.keywords("  Connection REFUSED ");
+    Assertions.assertTrue(query.matches("ERROR connection refused by host"));
+    Assertions.assertTrue(query.matches("refused: Connection"));
+    Assertions.assertFalse(query.matches("connection reset"));
+    Assertions.assertEquals(Arrays.asList("connection", "refused"), query.getLiterals());
+  }
+
+  /**
+   * Test regex.
+   */
+  @Test
+  void testRegex() {
+    LogQuery query = LogQuery.regex("user=\\w+ failed");
+    Assertions.assertTrue(query.matches("login user=bob failed"));
+    Assertions.assertFalse(query.matches("login user= failed"));
+  }
+
+  /**
+   * Test required literals.
+   */
+  @Test
+  void testRequiredLiterals() {
+    Assertions.assertEquals(Arrays.asList("user=", " failed"),
+        LogQuery.getRequiredLiterals("user=\\w+ failed"));
+    Assertions.assertEquals(Arrays.asList("timeout"), LogQuery.getRequiredLiterals("timeouts?"));
+    Assertions.assertEquals(Arrays.asList("exception"),
+        LogQuery.getRequiredLiterals("[A-Z]\\w*exception"));
+    Assertions.assertEquals(Collections.emptyList(),
+        LogQuery.getRequiredLiterals("error|warning"));
+    Assertions.assertEquals(Collections.emptyList(), LogQuery.getRequiredLiterals("(abc)+"));
+    Assertions.assertEquals(Collections.emptyList(),
+        LogQuery.getRequiredLiterals("(?<n>ab)\\k<n>"));
+    Assertions.assertEquals(Collections.emptyList(), LogQuery.getRequiredLiterals("(?x)foo bar"));
+    Assertions.assertEquals(Collections.emptyList(),
+        LogQuery.getRequiredLiterals("\\Qerror\\E?x"));
+  }
+
+  /**
+   * Test trigrams.
+   */
+  @Test
+  void testTrigrams() {
+    Assertions.assertEquals(0, LogQuery.keywords("ab").getTrigrams(StandardCharsets.UTF_8).length);
+    Assertions.assertEquals(2,
+        LogQuery.keywords("abcd").getTrigrams(StandardCharsets.UTF_8).length);
+    // Case is folded, so that both keywords hash to the same trigrams
+    Assertions.assertEquals(2,
+        LogQuery.keywords("abcd ABCD").getTrigrams(StandardCharsets.UTF_8).length);
+    Assertions.assertEquals(0,
+        LogQuery.keywords("abcd").getTrigrams(StandardCharsets.UTF_16).length);
+  }
+
+}
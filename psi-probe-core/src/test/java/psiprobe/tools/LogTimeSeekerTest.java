@@ -0,0 +1,146 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The Class LogTimeSeekerTest.
+ */
+class LogTimeSeekerTest {
+
+  /** The temp dir. */
+  @TempDir
+  File tempDir;
+
+  /**
+   * Test parse of the formats recognized.
+   */
+  @Test
+  void testParse() {
+    List<String> lines = new ArrayList<>();
+    lines.add("2024-01-31 03:12:05,250 INFO [main] started");
+    lines.add("31-Jan-2024 03:12:05.250 INFO [main] started");
+    lines.add("127.0.0.1 - - [31/Jan/2024:03:12:05 +0000] \"GET / HTTP/1.1\" 200 5");
+    lines.add("Jan 31, 2024 3:12:05 AM org.apache.Foo start");
+    for (int i = 0; i < lines.size(); i++) {
+      LocalDateTime time = LogTimeSeeker.parse(LogTimeSeeker.getFormats().get(i), lines.get(i));
+      Assertions.assertNotNull(time, lines.get(i));
+      Assertions.assertEquals(LocalDateTime.of(2024, 1, 31, 3, 12, 5), time.withNano(0));
+    }
+    Assertions.assertEquals(250000000, LogTimeSeeker
+        .parse(LogTimeSeeker.getFormats().get(0), lines.get(0)).getNano());
+    Assertions.assertNull(LogTimeSeeker.parse(LogTimeSeeker.getFormats().get(0),
+        "\tat org.apache.Foo.start(Foo.java:12)"));
+  }
+
+  /**
+   * Writes a log with a line every second from 03:00:00, and a stack trace every 100 lines.
+   *
+   * @return the file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private File writeLog() throws IOException {
+    StringBuilder log = new StringBuilder();
+    for (int i = 0; i < 3600; i++) {
+      log.append(String.format("2024-01-31 03:%02d:%02d,000 INFO line %d", i / 60, i % 60, i))
+          .append('\n');
+      if (i % 100 == 99) {
+        log.append("java.lang.IllegalStateException\n\tat Foo.bar(Foo.java:1)\n");
+      }
+    }
+    File file = new File(tempDir, "catalina.log");
+    Files.write(file.toPath(), log.toString().getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  /**
+   * Gets the lines of a byte window.
+   *
+   * @param file the file
+   * @param window the window
+   * @return the lines
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static String[] lines(File file, long[] window) throws IOException {
+    byte[] bytes = Files.readAllBytes(file.toPath());
+    return new String(bytes, (int) window[0], (int) (window[1] - window[0]),
+        StandardCharsets.UTF_8).split("\n");
+  }
+
+  /**
+   * Test seek of a time window.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  void testSeek() throws IOException {
+    File file = writeLog();
+    LogTimeSeeker seeker = LogTimeSeeker.of(file, StandardCharsets.UTF_8);
+    Assertions.assertNotNull(seeker);
+
+    String[] lines = lines(file, seeker.seek("2024-01-31 03:12", "2024-01-31 03:20"));
+    Assertions.assertTrue(lines[0].startsWith("2024-01-31 03:12:00,000"));
+    Assertions.assertTrue(lines[lines.length - 1].startsWith("2024-01-31 03:20:59,000"));
+    // 540 lines, and the stack traces of lines 799 to 1199
+    Assertions.assertEquals(540 + 5 * 2, lines.length);
+
+    // A time of day is taken on the day of the log, the stack trace goes with its line
+    lines = lines(file, seeker.seek("03:16:39", "03:16:39"));
+    Assertions.assertArrayEquals(new String[] {"2024-01-31 03:16:39,000 INFO line 999",
+        "java.lang.IllegalStateException", "\tat Foo.bar(Foo.java:1)"}, lines);
+
+    long[] window = seeker.seek("", "02:00");
+    Assertions.assertEquals(window[0], window[1]);
+    window = seeker.seek("03:59:59", null);
+    Assertions.assertEquals(file.length(), window[1]);
+    Assertions.assertEquals(3, lines(file, window).length);
+  }
+
+  /**
+   * Test a log without timestamps.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  void testNoTimestamps() throws IOException {
+    File file = new File(tempDir, "plain.log");
+    Files.write(file.toPath(), "no\ntimestamps\n".getBytes(StandardCharsets.UTF_8));
+    Assertions.assertNull(LogTimeSeeker.of(file, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Test parse bound.
+   */
+  @Test
+  void testParseBound() {
+    LocalDate day = LocalDate.of(2024, 1, 31);
+    Assertions.assertEquals(LocalDateTime.of(2024, 1, 31, 3, 12),
+        LogTimeSeeker.parseBound("03:12", day));
+    Assertions.assertEquals(LocalDateTime.of(2024, 1, 30, 23, 59, 1),
+        LogTimeSeeker.parseBound(" 2024-01-30 23:59:01 ", day));
+    Assertions.assertThrows(DateTimeParseException.class,
+        () -> LogTimeSeeker.parseBound("3 o'clock", day));
+  }
+
+}
@@ -0,0 +1,256 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.Verifications;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Session;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Request;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import psiprobe.model.ApplicationSession;
+
+/**
+ * The Class RequestRecorderTest.
+ */
+class RequestRecorderTest {
+
+  /** The request. */
+  @Mocked
+  Request request;
+
+  /** The context. */
+  @Mocked
+  Context context;
+
+  /** The wrapper. */
+  @Mocked
+  Wrapper wrapper;
+
+  /** The session. */
+  @Mocked
+  Session session;
+
+  /** The servlet context attributes. */
+  private final Map<String, Object> attributes = new HashMap<>();
+
+  /** The session attributes. */
+  private final Map<String, Object> sessionAttributes = new HashMap<>();
+
+  /** The number of session attribute writes. */
+  private int sessionWrites;
+
+  /** The recorder. */
+  private final RequestRecorder recorder = new RequestRecorder() {
+
+    @Override
+    protected Object getContextAttribute(Context context, String name) {
+      return attributes.get(name);
+    }
+
+    @Override
+    protected void setContextAttribute(Context context, String name, Object value) {
+      attributes.put(name, value);
+    }
+
+    @Override
+    protected Object getSessionAttribute(Session session, String name) {
+      return sessionAttributes.get(name);
+    }
+
+    @Override
+    protected void setSessionAttribute(Session session, String name, Object value) {
+      sessionWrites++;
+      sessionAttributes.put(name, value);
+    }
+
+  };
+
+  /**
+   * Maps the request to a servlet of the context.
+   */
+  @BeforeEach
+  void setUp() {
+    new Expectations() {
+      {
+        request.getContext();
+        result = context;
+        minTimes = 0;
+        request.getWrapper();
+        result = wrapper;
+        minTimes = 0;
+        wrapper.getName();
+        result = "default";
+        minTimes = 0;
+        request.getDecodedRequestURI();
+        result = "/slow";
+        minTimes = 0;
+        request.getMethod();
+        result = "GET";
+        minTimes = 0;
+        request.getSessionInternal(false);
+        result = session;
+        minTimes = 0;
+        request.getRemoteAddr();
+        result = "10.0.0.1";
+        minTimes = 0;
+        request.getLocale();
+        result = Locale.US;
+        minTimes = 0;
+        session.isValid();
+        result = true;
+        minTimes = 0;
+        session.getIdInternal();
+        result = "s1";
+        minTimes = 0;
+      }
+    };
+  }
+
+  /**
+   * Test latency is recorded per web application and servlet.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  void testLatency() {
+    Assertions.assertNull(recorder.begin());
+
+    recorder.setLatencyRecorded(true);
+    recorder.end(recorder.begin(), request);
+    Map<String, AtomicLongArray> histograms =
+        (Map<String, AtomicLongArray>) attributes.get(LatencyHistogram.CONTEXT_ATTRIBUTE);
+    Assertions.assertEquals(1, LatencyHistogram.getCount(
+        LatencyHistogram.snapshot(histograms.get(LatencyHistogram.APPLICATION))));
+    Assertions.assertFalse(histograms.containsKey("default"));
+
+    recorder.setServletLatencyRecorded(true);
+    recorder.end(recorder.begin(), request);
+    Assertions.assertSame(histograms, attributes.get(LatencyHistogram.CONTEXT_ATTRIBUTE));
+    Assertions.assertEquals(2, LatencyHistogram.getCount(
+        LatencyHistogram.snapshot(histograms.get(LatencyHistogram.APPLICATION))));
+    Assertions.assertEquals(1,
+        LatencyHistogram.getCount(LatencyHistogram.snapshot(histograms.get("default"))));
+  }
+
+  /**
+   * Test slow requests are kept past the threshold only.
+   */
+  @Test
+  void testSlowRequests() throws InterruptedException {
+    recorder.setSlowRequestThreshold(20);
+    recorder.end(recorder.begin(), request);
+    Assertions.assertNull(attributes.get(SlowRequestRing.CONTEXT_ATTRIBUTE));
+
+    RequestRecorder.Timing timing = recorder.begin();
+    TimeUnit.MILLISECONDS.sleep(25);
+    recorder.end(timing, request);
+    List<Map<String, Object>> requests = SlowRequestRing.getRequests(
+        (AtomicReferenceArray<?>) attributes.get(SlowRequestRing.CONTEXT_ATTRIBUTE));
+    Assertions.assertEquals(1, requests.size());
+    Assertions.assertEquals("/slow", requests.get(0).get(SlowRequestRing.URI));
+    Assertions.assertEquals("GET", requests.get(0).get(SlowRequestRing.METHOD));
+    Assertions.assertNull(requests.get(0).get(SlowRequestRing.STACK));
+  }
+
+  /**
+   * Test the stack of a request is sampled, unless the request went asynchronous.
+   */
+  @Test
+  void testSampledStack() throws InterruptedException {
+    recorder.setSlowRequestThreshold(20);
+    recorder.setSlowRequestStackSampled(true);
+    try {
+      RequestRecorder.Timing timing = recorder.begin();
+      timing.sampler.sample(timing.startNanos + TimeUnit.MILLISECONDS.toNanos(20));
+      TimeUnit.MILLISECONDS.sleep(25);
+      recorder.end(timing, request);
+
+      new Expectations() {
+        {
+          request.isAsyncStarted();
+          result = true;
+        }
+      };
+      timing = recorder.begin();
+      timing.sampler.sample(timing.startNanos + TimeUnit.MILLISECONDS.toNanos(20));
+      TimeUnit.MILLISECONDS.sleep(25);
+      recorder.end(timing, request);
+    } finally {
+      recorder.stop();
+    }
+    List<Map<String, Object>> requests = SlowRequestRing.getRequests(
+        (AtomicReferenceArray<?>) attributes.get(SlowRequestRing.CONTEXT_ATTRIBUTE));
+    Assertions.assertEquals(2, requests.size());
+    Assertions.assertEquals(1,
+        requests.stream().filter(slow -> slow.get(SlowRequestRing.STACK) != null).count());
+  }
+
+  /**
+   * Test the last access is only written to the session when it changed.
+   */
+  @Test
+  void testLastAccessInSession() {
+    recorder.recordLastAccess(request);
+    recorder.recordLastAccess(request);
+    Assertions.assertEquals(2, sessionWrites);
+    Assertions.assertEquals("10.0.0.1",
+        sessionAttributes.get(ApplicationSession.LAST_ACCESSED_BY_IP));
+    Assertions.assertEquals(Locale.US,
+        sessionAttributes.get(ApplicationSession.LAST_ACCESSED_LOCALE));
+
+    new Expectations() {
+      {
+        request.getHeader("X-Forwarded-For");
+        result = "10.0.0.2, 10.0.0.1";
+      }
+    };
+    recorder.recordLastAccess(request);
+    Assertions.assertEquals(3, sessionWrites);
+    Assertions.assertEquals("10.0.0.2",
+        sessionAttributes.get(ApplicationSession.LAST_ACCESSED_BY_IP));
+  }
+
+  /**
+   * Test the last access is kept off the session in a side table.
+   */
+  @Test
+  void testLastAccessInTable() {
+    recorder.setLastAccessInSession(false);
+    recorder.recordLastAccess(request);
+    recorder.recordLastAccess(request);
+    Assertions.assertEquals(0, sessionWrites);
+    Object table = attributes.get(LastAccessTable.CONTEXT_ATTRIBUTE);
+    Assertions.assertEquals("10.0.0.1", LastAccessTable.getIp(table, "s1"));
+    Assertions.assertEquals(Locale.US, LastAccessTable.getLocale(table, "s1"));
+
+    new Verifications() {
+      {
+        session.addSessionListener(withNotNull());
+        times = 1;
+      }
+    };
+  }
+
+}
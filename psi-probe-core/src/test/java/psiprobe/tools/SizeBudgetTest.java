@@ -0,0 +1,62 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class SizeBudgetTest.
+ */
+class SizeBudgetTest {
+
+  /**
+   * Test object budget.
+   */
+  @Test
+  void testObjectBudget() {
+    SizeBudget budget = new SizeBudget(0, 3);
+    Assertions.assertTrue(budget.spend());
+    Assertions.assertTrue(budget.spend());
+    Assertions.assertTrue(budget.spend());
+    Assertions.assertFalse(budget.isExhausted());
+    Assertions.assertFalse(budget.spend());
+    Assertions.assertTrue(budget.isExhausted());
+    Assertions.assertFalse(budget.spend());
+    Assertions.assertEquals(4, budget.getObjects());
+  }
+
+  /**
+   * Test time budget.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  void testTimeBudget() throws Exception {
+    SizeBudget budget = new SizeBudget(1, 0);
+    Thread.sleep(5);
+    Assertions.assertTrue(budget.isExhausted());
+    Assertions.assertFalse(budget.spend());
+  }
+
+  /**
+   * Test unlimited.
+   */
+  @Test
+  void testUnlimited() {
+    SizeBudget budget = SizeBudget.unlimited();
+    for (int i = 0; i < 10000; i++) {
+      Assertions.assertTrue(budget.spend());
+    }
+    Assertions.assertFalse(budget.isExhausted());
+  }
+
+}
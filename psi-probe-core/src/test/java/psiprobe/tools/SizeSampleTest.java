@@ -0,0 +1,103 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class SizeSampleTest.
+ */
+class SizeSampleTest {
+
+  /**
+   * Test pick.
+   */
+  @Test
+  void testPick() {
+    Assertions.assertEquals(30, count(SizeSample.pick(100, 30)));
+    Assertions.assertEquals(100, count(SizeSample.pick(100, 0)));
+    Assertions.assertEquals(10, count(SizeSample.pick(10, 200)));
+    Assertions.assertEquals(0, SizeSample.pick(0, 200).length);
+  }
+
+  /**
+   * Test whole population is exact.
+   */
+  @Test
+  void testWholePopulationIsExact() {
+    SizeSample sample = new SizeSample();
+    sample.add(10);
+    sample.add(20);
+    sample.add(30);
+    Assertions.assertEquals(60, sample.getTotal(3));
+    Assertions.assertEquals(0, sample.getError(3));
+  }
+
+  /**
+   * Test extrapolation.
+   */
+  @Test
+  void testExtrapolation() {
+    SizeSample sample = new SizeSample();
+    sample.add(10);
+    sample.add(20);
+    sample.add(30);
+    Assertions.assertEquals(3, sample.getCount());
+    Assertions.assertEquals(2000, sample.getTotal(100));
+    // 1.96 * 10 / sqrt(3) * sqrt(97 / 99) * 100
+    Assertions.assertEquals(1120, sample.getError(100));
+  }
+
+  /**
+   * Test uniform sizes have no error.
+   */
+  @Test
+  void testUniformSizesHaveNoError() {
+    SizeSample sample = new SizeSample();
+    for (int i = 0; i < 50; i++) {
+      sample.add(128);
+    }
+    Assertions.assertEquals(128000, sample.getTotal(1000));
+    Assertions.assertEquals(0, sample.getError(1000));
+  }
+
+  /**
+   * Test partial sizes count as lower bounds.
+   */
+  @Test
+  void testPartialSizesCountAsLowerBounds() {
+    SizeSample sample = new SizeSample();
+    sample.add(10);
+    sample.add(20);
+    sample.addPartial(30);
+    Assertions.assertEquals(3, sample.getCount());
+    Assertions.assertEquals(1, sample.getPartialCount());
+    Assertions.assertEquals(2000, sample.getTotal(100));
+  }
+
+  /**
+   * Counts the picked members.
+   *
+   * @param picked the picked
+   * @return the count
+   */
+  private static int count(boolean[] picked) {
+    int count = 0;
+    for (boolean p : picked) {
+      if (p) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+}
@@ -0,0 +1,58 @@
+/**
+ * Licensed under the GPL License. You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE.
+ */
+package psiprobe.tools;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class SlowRequestRingTest.
+ */
+class SlowRequestRingTest {
+
+  /**
+   * Test ring keeps newest requests first.
+   */
+  @Test
+  void testRingKeepsNewestRequestsFirst() {
+    AtomicReferenceArray<Object> ring = SlowRequestRing.create(3);
+    Assertions.assertTrue(SlowRequestRing.getRequests(ring).isEmpty());
+    for (int i = 0; i < 5; i++) {
+      SlowRequestRing.record(ring, "/uri" + i, null, "GET", 1000 + i, "exec-" + i, null);
+    }
+    List<Map<String, Object>> requests = SlowRequestRing.getRequests(ring);
+    Assertions.assertEquals(3, requests.size());
+    Assertions.assertEquals("/uri4", requests.get(0).get(SlowRequestRing.URI));
+    Assertions.assertEquals("/uri3", requests.get(1).get(SlowRequestRing.URI));
+    Assertions.assertEquals("/uri2", requests.get(2).get(SlowRequestRing.URI));
+    Assertions.assertEquals(1004L, requests.get(0).get(SlowRequestRing.DURATION));
+    Assertions.assertEquals("exec-4", requests.get(0).get(SlowRequestRing.THREAD));
+  }
+
+  /**
+   * Test record keeps stack.
+   */
+  @Test
+  void testRecordKeepsStack() {
+    AtomicReferenceArray<Object> ring = SlowRequestRing.create(1);
+    StackTraceElement[] stack = new Throwable().getStackTrace();
+    SlowRequestRing.record(ring, "/uri", "a=b", "POST", 5000, "exec-1", stack);
+    Map<String, Object> request = SlowRequestRing.getRequests(ring).get(0);
+    Assertions.assertEquals("a=b", request.get(SlowRequestRing.QUERY));
+    Assertions.assertEquals("POST", request.get(SlowRequestRing.METHOD));
+    Assertions.assertSame(stack, request.get(SlowRequestRing.STACK));
+  }
+
+}
@@ -11,6 +11,8 @@
 package psiprobe;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
 import jakarta.servlet.ServletException;
 import org.apache.catalina.connector.Request;
 import org.apache.catalina.connector.Response;
@@ -20,6 +22,8 @@ import org.junit.jupiter.api.Test;
 import mockit.Expectations;
 import mockit.Mocked;
 import mockit.Tested;
+import mockit.Verifications;
+import psiprobe.tools.LatencyHistogram;
 
 /**
  * The Class Tomcat10AgentValveTest.
@@ -59,4 +63,34 @@ class Tomcat10AgentValveTest {
     valve.invoke(request, response);
   }
 
+  /**
+   * Invoke records latency.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   * @throws ServletException the servlet exception
+   */
+  @Test
+  void invokeRecordsLatency() throws IOException, ServletException {
+    valve.setLatencyRecorded(true);
+    new Expectations() {
+      {
+        valve.getNext();
+        result = valveBase;
+      }
+    };
+    valve.invoke(request, response);
+    new Verifications() {
+      {
+        Object histograms;
+        request.getContext().getServletContext()
+            .setAttribute(LatencyHistogram.CONTEXT_ATTRIBUTE, histograms = withCapture());
+        AtomicLongArray histogram =
+            (AtomicLongArray) ((Map<?, ?>) histograms).get(LatencyHistogram.APPLICATION);
+        Assertions.assertNotNull(histogram);
+        Assertions.assertEquals(1,
+            LatencyHistogram.getCount(LatencyHistogram.snapshot(histogram)));
+      }
+    };
+  }
+
 }
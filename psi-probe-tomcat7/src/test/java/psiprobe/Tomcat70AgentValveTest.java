@@ -11,12 +11,15 @@
 package psiprobe;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import javax.servlet.ServletException;
 
 import mockit.Expectations;
 import mockit.Mocked;
 import mockit.Tested;
+import mockit.Verifications;
 
 import org.apache.catalina.connector.Request;
 import org.apache.catalina.connector.Response;
@@ -24,6 +27,8 @@ import org.apache.catalina.valves.ValveBase;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import psiprobe.tools.LatencyHistogram;
+
 /**
  * The Class Tomcat70AgentValveTest.
  */
@@ -62,4 +67,34 @@ class Tomcat70AgentValveTest {
     valve.invoke(request, response);
   }
 
+  /**
+   * Invoke records latency.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   * @throws ServletException the servlet exception
+   */
+  @Test
+  void invokeRecordsLatency() throws IOException, ServletException {
+    valve.setLatencyRecorded(true);
+    new Expectations() {
+      {
+        valve.getNext();
+        result = valveBase;
+      }
+    };
+    valve.invoke(request, response);
+    new Verifications() {
+      {
+        Object histograms;
+        request.getContext().getServletContext()
+            .setAttribute(LatencyHistogram.CONTEXT_ATTRIBUTE, histograms = withCapture());
+        AtomicLongArray histogram =
+            (AtomicLongArray) ((Map<?, ?>) histograms).get(LatencyHistogram.APPLICATION);
+        Assertions.assertNotNull(histogram);
+        Assertions.assertEquals(1,
+            LatencyHistogram.getCount(LatencyHistogram.snapshot(histogram)));
+      }
+    };
+  }
+
 }
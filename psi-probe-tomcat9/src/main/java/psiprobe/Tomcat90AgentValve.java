@@ -14,18 +14,29 @@ import java.io.IOException;
 
 import javax.servlet.ServletException;
 
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Session;
 import org.apache.catalina.connector.Request;
 import org.apache.catalina.connector.Response;
 import org.apache.catalina.valves.ValveBase;
 
-import psiprobe.model.ApplicationSession;
-import psiprobe.model.IpInfo;
+import psiprobe.tools.RequestRecorder;
 
 /**
- * Valve which inserts the client's IP address into the session for Tomcat 9.0.
+ * Valve which inserts the client's IP address into the session for Tomcat 9.0, only when it
+ * changed, or into a side table off the session so that replicated and persisted sessions are not
+ * marked dirty by it. It can also record the latency of requests per web application, and
+ * optionally per servlet, in histograms the probe charts percentiles from, and keep the last
+ * requests slower than a threshold, optionally with a stack sampled while they were running, for
+ * the probe to list. The valves of all Tomcat versions share this recording, see
+ * {@link RequestRecorder}.
  */
 public class Tomcat90AgentValve extends ValveBase {
 
+  /** The recorder of requests. */
+  private final RequestRecorder recorder = new Recorder();
+
   /**
    * Instantiates a new tomcat90 agent valve.
    */
@@ -33,17 +44,158 @@ public class Tomcat90AgentValve extends ValveBase {
     super(true);
   }
 
+  /**
+   * Checks if the last access of a session is kept in its attributes.
+   *
+   * @return true, if the last access of a session is kept in its attributes
+   */
+  public boolean isLastAccessInSession() {
+    return recorder.isLastAccessInSession();
+  }
+
+  /**
+   * Sets whether the last access of a session is kept in its attributes, written only when it
+   * changed, or in a side table of its web application the session is never written for.
+   *
+   * @param lastAccessInSession the new last access in session
+   */
+  public void setLastAccessInSession(boolean lastAccessInSession) {
+    recorder.setLastAccessInSession(lastAccessInSession);
+  }
+
+  /**
+   * Checks if request latency is recorded.
+   *
+   * @return true, if request latency is recorded
+   */
+  public boolean isLatencyRecorded() {
+    return recorder.isLatencyRecorded();
+  }
+
+  /**
+   * Sets whether request latency is recorded per web application.
+   *
+   * @param latencyRecorded the new latency recorded
+   */
+  public void setLatencyRecorded(boolean latencyRecorded) {
+    recorder.setLatencyRecorded(latencyRecorded);
+  }
+
+  /**
+   * Checks if request latency is recorded per servlet.
+   *
+   * @return true, if request latency is recorded per servlet
+   */
+  public boolean isServletLatencyRecorded() {
+    return recorder.isServletLatencyRecorded();
+  }
+
+  /**
+   * Sets whether request latency is also recorded per servlet, when it is recorded at all.
+   *
+   * @param servletLatencyRecorded the new servlet latency recorded
+   */
+  public void setServletLatencyRecorded(boolean servletLatencyRecorded) {
+    recorder.setServletLatencyRecorded(servletLatencyRecorded);
+  }
+
+  /**
+   * Gets the threshold in milliseconds past which a request is kept as slow.
+   *
+   * @return the slow request threshold
+   */
+  public long getSlowRequestThreshold() {
+    return recorder.getSlowRequestThreshold();
+  }
+
+  /**
+   * Sets the threshold in milliseconds past which a request is kept as slow, 0 to keep none.
+   *
+   * @param slowRequestThreshold the new slow request threshold
+   */
+  public void setSlowRequestThreshold(long slowRequestThreshold) {
+    recorder.setSlowRequestThreshold(slowRequestThreshold);
+  }
+
+  /**
+   * Gets the number of slow requests kept per web application.
+   *
+   * @return the slow request capacity
+   */
+  public int getSlowRequestCapacity() {
+    return recorder.getSlowRequestCapacity();
+  }
+
+  /**
+   * Sets the number of slow requests kept per web application.
+   *
+   * @param slowRequestCapacity the new slow request capacity
+   */
+  public void setSlowRequestCapacity(int slowRequestCapacity) {
+    recorder.setSlowRequestCapacity(slowRequestCapacity);
+  }
+
+  /**
+   * Checks if the stack of slow requests is sampled while they run.
+   *
+   * @return true, if the stack of slow requests is sampled
+   */
+  public boolean isSlowRequestStackSampled() {
+    return recorder.isSlowRequestStackSampled();
+  }
+
+  /**
+   * Sets whether the stack of slow requests is sampled while they run.
+   *
+   * @param slowRequestStackSampled the new slow request stack sampled
+   */
+  public void setSlowRequestStackSampled(boolean slowRequestStackSampled) {
+    recorder.setSlowRequestStackSampled(slowRequestStackSampled);
+  }
+
   @Override
   public void invoke(Request request, Response response) throws IOException, ServletException {
-    getNext().invoke(request, response);
-
-    if (request.getSession(false) != null) {
-      String ip = IpInfo.getClientAddress(request.getRequest());
-      // Explicit calls to ensure result not lost
-      request.getSession(false).setAttribute(ApplicationSession.LAST_ACCESSED_BY_IP, ip);
-      request.getSession(false).setAttribute(ApplicationSession.LAST_ACCESSED_LOCALE,
-          request.getLocale());
+    RequestRecorder.Timing timing = recorder.begin();
+    try {
+      getNext().invoke(request, response);
+    } finally {
+      recorder.end(timing, request);
     }
+    recorder.recordLastAccess(request);
+  }
+
+  @Override
+  protected synchronized void stopInternal() throws LifecycleException {
+    super.stopInternal();
+    recorder.stop();
+  }
+
+  /**
+   * The recorder of requests, reaching servlet context and session attributes through the servlet
+   * API of Tomcat 9.0.
+   */
+  private static class Recorder extends RequestRecorder {
+
+    @Override
+    protected Object getContextAttribute(Context context, String name) {
+      return context.getServletContext().getAttribute(name);
+    }
+
+    @Override
+    protected void setContextAttribute(Context context, String name, Object value) {
+      context.getServletContext().setAttribute(name, value);
+    }
+
+    @Override
+    protected Object getSessionAttribute(Session session, String name) {
+      return session.getSession().getAttribute(name);
+    }
+
+    @Override
+    protected void setSessionAttribute(Session session, String name, Object value) {
+      session.getSession().setAttribute(name, value);
+    }
+
   }
 
 }
@@ -72,7 +72,13 @@
 					</td>
 					<c:if test="${param.size}">
 						<td>
-							<probe:volume value="${app.size}"/>
+							<c:if test="${app.sizePartial}">&#8805;</c:if><c:if test="${app.sizeSampleCount < app.sessionCount}">~</c:if><probe:volume value="${app.size}"/>
+							<c:if test="${app.sizeError > 0}">
+								<c:set var="sizeErrorTitleKey" value="${app.sizePartialCount > 0 ? 'probe.jsp.applications.sizeError.partialTitle' : 'probe.jsp.applications.sizeError.title'}"/>
+								<span title="<spring:message code='${sizeErrorTitleKey}' arguments='${app.sizeSampleCount},${app.sessionCount},${app.sizePartialCount}'/>">
+									&#177;<probe:volume value="${app.sizeError}"/>
+								</span>
+							</c:if>
 						</td>
 					</c:if>
 					<td>
@@ -86,6 +86,14 @@
 					titleKey="probe.jsp.servlets.col.maxTime">
 				${svlt.maxTime}
 			</display:column>
+			<display:column sortable="true" sortProperty="p95Time"
+					titleKey="probe.jsp.servlets.col.p95Time">
+				${svlt.p95Time < 0 ? '-' : svlt.p95Time}
+			</display:column>
+			<display:column sortable="true" sortProperty="p99Time"
+					titleKey="probe.jsp.servlets.col.p99Time">
+				${svlt.p99Time < 0 ? '-' : svlt.p99Time}
+			</display:column>
 			<display:column sortProperty="singleThreaded" sortable="true"
 					titleKey="probe.jsp.servlets.col.multiThreaded">
 				<c:choose>
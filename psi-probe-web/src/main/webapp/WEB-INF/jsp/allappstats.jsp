@@ -12,6 +12,7 @@
 --%>
 <%@ page contentType="text/html;charset=UTF-8" language="java" session="false" %>
 <%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
+<%@ taglib uri="http://java.sun.com/jsp/jstl/fmt" prefix="fmt" %>
 <%@ taglib uri="http://www.springframework.org/tags" prefix="spring" %>
 <%@ taglib uri="https://github.com/psi-probe/psi-probe/jsp/tags" prefix="probe" %>
 
@@ -33,6 +34,22 @@
 		<div id="charts" class="embeddedBlockContainer">
 			<h3><spring:message code="probe.jsp.allappstats.h3.charts"/></h3>
 
+			<c:if test="${skipCount > 0}">
+				<div class="infoMessage">
+					<p>
+						<spring:message code="probe.jsp.allappstats.skipped" arguments="${skipCount}"/>
+					</p>
+					<ul>
+						<c:forEach items="${skippedTargets}" var="target">
+							<li>
+								<c:out value="${target.key}"/>:
+								<fmt:formatDate value="${target.value}" type="BOTH" dateStyle="SHORT" timeStyle="MEDIUM"/>
+							</li>
+						</c:forEach>
+					</ul>
+				</div>
+			</c:if>
+
 			<c:set var="chartWidth" value="345"/>
 			<c:set var="chartHeight" value="250"/>
 			<c:set var="fullChartWidth" value="700"/>
@@ -202,7 +202,13 @@
 			<c:if test="${param.size}">
 				<display:column sortProperty="size" sortable="true"
 								titleKey="probe.jsp.applications.col.size" class="highlighted">
-					<probe:volume value="${app.size}"/>
+					<c:if test="${app.sizePartial}">&#8805;</c:if><c:if test="${app.sizeSampleCount < app.sessionCount}">~</c:if><probe:volume value="${app.size}"/>
+					<c:if test="${app.sizeError > 0}">
+						<c:set var="sizeErrorTitleKey" value="${app.sizePartialCount > 0 ? 'probe.jsp.applications.sizeError.partialTitle' : 'probe.jsp.applications.sizeError.title'}"/>
+						<span title="<spring:message code='${sizeErrorTitleKey}' arguments='${app.sizeSampleCount},${app.sessionCount},${app.sizePartialCount}'/>">
+							&#177;<probe:volume value="${app.sizeError}"/>
+						</span>
+					</c:if>
 				</display:column>
 			</c:if>
 
@@ -192,6 +192,29 @@
 							</c:param>
 						</c:url>
 
+						<c:url value="/chart.png" var="latency_url">
+							<c:param name="p" value="app_latency"/>
+							<c:param name="sp" value="${param.webapp}"/>
+							<c:param name="ct" value="line"/>
+							<c:param name="xz" value="${chartWidth}"/>
+							<c:param name="yz" value="${chartHeight}"/>
+							<c:param name="l" value="false"/>
+						</c:url>
+
+						<c:url value="/chart.png" var="latency_url_full">
+							<c:param name="p" value="app_latency"/>
+							<c:param name="sp" value="${param.webapp}"/>
+							<c:param name="ct" value="line"/>
+							<c:param name="xz" value="${fullChartWidth}"/>
+							<c:param name="yz" value="${fullChartHeight}"/>
+							<c:param name="s1l" value="p50"/>
+							<c:param name="s2l" value="p95"/>
+							<c:param name="s3l" value="p99"/>
+							<c:param name="s4l">
+								<spring:message code="probe.jsp.app.summary.charts.latency.max.legend"/>
+							</c:param>
+						</c:url>
+
 						<div id="chart_group">
 							<div class="chartContainer">
 								<dl>
@@ -216,6 +239,17 @@
 									</dd>
 								</dl>
 							</div>
+
+							<c:if test="${latencyCharted}">
+								<div class="chartContainer">
+									<dl>
+										<dt><spring:message code="probe.jsp.app.summary.charts.latency.title"/></dt>
+										<dd class="image">
+											<img id="latency_chart" border="0" src="${latency_url}" width="${chartWidth}" height="${chartHeight}" alt="+"/>
+										</dd>
+									</dl>
+								</div>
+							</c:if>
 						</div>
 
 						<div id="full_chart" class="chartContainer" style="display: none;">
@@ -273,6 +307,11 @@
 									zoomIn('${avg_proc_time_url_full}', '<spring:message code="probe.jsp.app.summary.charts.avgProcTime.title"/>');
 								}
 							},
+							'#latency_chart': function(element) {
+								element.onclick = function() {
+									zoomIn('${latency_url_full}', '<spring:message code="probe.jsp.app.summary.charts.latency.title"/>');
+								}
+							},
 							'#full_chart': function(element) {
 								element.onclick = function() {
 									zoomOut();
@@ -284,6 +323,9 @@
 
 						imageUpdaters[0] = new Ajax.ImgUpdater('req_chart', '${probe:max(collectionPeriod, 5)}');
 						imageUpdaters[1] = new Ajax.ImgUpdater('avg_proc_time_chart', '${probe:max(collectionPeriod, 5)}');
+						<c:if test="${latencyCharted}">
+							imageUpdaters[2] = new Ajax.ImgUpdater('latency_chart', '${probe:max(collectionPeriod, 5)}');
+						</c:if>
 						new Ajax.PeriodicalUpdater('dd-req', '<c:url value="/appreqdetails.ajax"><c:param name="webapp" value="${app.name}" /></c:url>', {method:'get', frequency: 3});
 						new Ajax.PeriodicalUpdater('dd-proc_time', '<c:url value="/appprocdetails.ajax"><c:param name="webapp" value="${app.name}" /></c:url>', {method:'get', frequency: 3});
 					</script>
@@ -43,6 +43,14 @@
 			<div class="tt_content" id="tt_content"></div>
 		</div>
 
+		<ul class="options">
+			<li id="slowrequests">
+				<a href="<c:url value='/slowrequests.htm'/>">
+					<spring:message code="probe.jsp.connectors.menu.slowrequests"/>
+				</a>
+			</li>
+		</ul>
+
 		<div id="connectors">
 			<div class="shadow">
 				<div class="info">
@@ -12,6 +12,7 @@
 --%>
 <%@ page contentType="text/html;charset=UTF-8" language="java" session="false"%>
 <%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
+<%@ taglib uri="http://java.sun.com/jsp/jstl/functions" prefix="fn" %>
 <%@ taglib uri="http://www.springframework.org/tags" prefix="spring" %>
 <%@ taglib uri="http://displaytag.sf.net" prefix="display" %>
 <%@ taglib uri="https://github.com/psi-probe/psi-probe/jsp/tags" prefix="probe" %>
@@ -100,6 +101,16 @@
 					<spring:message code="probe.jsp.follow.menu.download"/>
 				</a>
 			</li>
+			<li id="search">
+				<a href="<c:url value='/logs/search.htm'/>?${fn:substringAfter(downloadUrl, '?')}">
+					<spring:message code="probe.jsp.follow.menu.search"/>
+				</a>
+			</li>
+			<li id="range">
+				<a href="<c:url value='/logs/range.htm'/>?${fn:substringAfter(downloadUrl, '?')}">
+					<spring:message code="probe.jsp.follow.menu.range"/>
+				</a>
+			</li>
 		</ul>
 
 
@@ -219,6 +230,8 @@
 			var maxLines = 1000;
 			var initialLines = 250;
 			var lastLogSize = -1;
+			var logGeneration = -1;
+			var watchInterval = 3000;
 			var logSizeRegex = /<span title="(\d*)">/;
 
 			function logSize(responseText) {
@@ -238,16 +251,17 @@
 				},
 				frequency: 3,
 				onSuccess: function(response) {
-					if (tailingEnabled) {
+					if (lastLogSize == -1) {
 						var currentLogSize = logSize(response.responseText);
-						if (lastLogSize != currentLogSize) {
-							followLog(currentLogSize);
-							lastLogSize = currentLogSize;
-						}
+						followLog(currentLogSize);
+						lastLogSize = currentLogSize;
 					}
 				}
 			});
 
+			//
+			// reads the last lines of the file once, new lines are then pushed by watchLog()
+			//
 			function followLog(currentLogSize) {
 				new Ajax.Updater(file_content_div, '<c:url value="/logs/follow.ajax"/>', {
 					method:'get',
@@ -263,36 +277,90 @@
 						maxReadLines: (lastLogSize == -1 ? initialLines : undefined)
 					},
 					insertion: (lastLogSize == -1 ? undefined : 'bottom'),
+					onCreate: rememberScrollPosition,
 					onComplete: function() {
-						objDiv = document.getElementById(file_content_div);
-						if (topPosition == -1) {
-							objDiv.scrollTop = objDiv.scrollHeight;
-						} else {
-							objDiv.scrollTop = topPosition
-						}
-						
-						var lines = $(objDiv).childElements();
-						var numOfLines = lines.length;
-						var toBeRemoved = new Array();
-						for (var i = 0; i < numOfLines - maxLines; i++) {
-							toBeRemoved.push(lines[i]);
-						}
-						for (var i = 0; i < toBeRemoved.length; i++) {
-							toBeRemoved[i].remove();
-						}
-					},
+						restoreScrollPosition();
+						watchLog();
+					}
+				});
+			}
 
-					onCreate: function() {
-						objDiv = document.getElementById(file_content_div);
-						if (objDiv.scrollTop + objDiv.clientHeight == objDiv.scrollHeight) {
-							topPosition = -1;
+			//
+			// waits on the server for lines appended after lastLogSize, then waits again, so that
+			// lines show up as soon as they are written; a server answering without waiting is
+			// asked again only after watchInterval
+			//
+			var watching = false;
+
+			function watchLog() {
+				if (watching || !tailingEnabled) {
+					return;
+				}
+				watching = true;
+				new Ajax.Updater(file_content_div, '<c:url value="/logs/watch.ajax"/>', {
+					method:'get',
+					parameters: {
+						logType: '${probe:escapeJS(log.logType)}',
+						webapp: '<c:out value="${param.webapp}" />',
+						context: '${log.context}',
+						root: '${log.root}',
+						logName: '${probe:escapeJS(log.name)}',
+						logIndex: '${probe:escapeJS(log.index)}',
+						lastKnownLength: lastLogSize,
+						generation: logGeneration
+					},
+					insertion: 'bottom',
+					onCreate: rememberScrollPosition,
+					onComplete: function(response) {
+						var length = response.getHeader('X-Log-Length');
+						if (response.status == 200 && length != null) {
+							var waited = response.getHeader('X-Log-Waited') != null;
+							var grown = length != lastLogSize;
+							lastLogSize = length;
+							logGeneration = response.getHeader('X-Log-Generation');
+							restoreScrollPosition();
+							setTimeout(rewatchLog, waited || grown ? 0 : watchInterval);
 						} else {
-							topPosition = objDiv.scrollTop;
+							setTimeout(rewatchLog, watchInterval);
 						}
 					}
 				});
 			}
 
+			// watching stays set until the next poll, so that resuming does not start another one
+			function rewatchLog() {
+				watching = false;
+				watchLog();
+			}
+
+			function rememberScrollPosition() {
+				objDiv = document.getElementById(file_content_div);
+				if (objDiv.scrollTop + objDiv.clientHeight == objDiv.scrollHeight) {
+					topPosition = -1;
+				} else {
+					topPosition = objDiv.scrollTop;
+				}
+			}
+
+			function restoreScrollPosition() {
+				objDiv = document.getElementById(file_content_div);
+				if (topPosition == -1) {
+					objDiv.scrollTop = objDiv.scrollHeight;
+				} else {
+					objDiv.scrollTop = topPosition
+				}
+
+				var lines = $(objDiv).childElements();
+				var numOfLines = lines.length;
+				var toBeRemoved = new Array();
+				for (var i = 0; i < numOfLines - maxLines; i++) {
+					toBeRemoved.push(lines[i]);
+				}
+				for (var i = 0; i < toBeRemoved.length; i++) {
+					toBeRemoved[i].remove();
+				}
+			}
+
 			//
 			// unfortunately it is not possible to set the size of "file_content" div in percent.
 			// i'm not sure why, but most likely it is a browser bug.
@@ -326,6 +394,7 @@
 						tailingEnabled = true;
 						Element.hide('resume');
 						Element.show('pause');
+						watchLog();
 						return false;
 					}
 				},
@@ -374,7 +443,6 @@
 				'#clear': function(element) {
 					element.onclick = function() {
 						$(file_content_div).update();
-						followLog(undefined);
 						return false;
 					}
 				}
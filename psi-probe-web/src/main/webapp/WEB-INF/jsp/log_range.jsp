@@ -0,0 +1,102 @@
+<%--
+
+    Licensed under the GPL License. You may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+      https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+
+    THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+    WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+    PURPOSE.
+
+--%>
+<%@ page contentType="text/html;charset=UTF-8" language="java" session="false"%>
+<%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
+<%@ taglib uri="http://www.springframework.org/tags" prefix="spring" %>
+<%@ taglib uri="https://github.com/psi-probe/psi-probe/jsp/tags" prefix="probe" %>
+
+<%-- Lines of a log written within a time window. --%>
+
+<html>
+	<head>
+		<title><spring:message code="probe.jsp.title.logRange"/></title>
+	</head>
+
+	<c:set var="navTabLogs" value="active" scope="request"/>
+
+	<body>
+
+		<c:url value="/logs/download" var="downloadUrl">
+			<c:forEach items="logType,webapp,context,root,logName,logIndex,from,to" var="name">
+				<c:if test="${! empty param[name]}">
+					<c:param name="${name}" value="${param[name]}"/>
+				</c:if>
+			</c:forEach>
+		</c:url>
+
+		<ul class="options">
+			<li id="back">
+				<a href="<c:url value='/logs/list.htm'/>">
+					<spring:message code="probe.jsp.follow.menu.back"/>
+				</a>
+			</li>
+			<c:if test="${lines != null}">
+				<li id="download">
+					<a href="${downloadUrl}">
+						<spring:message code="probe.jsp.logRange.menu.download"/>
+					</a>
+				</li>
+			</c:if>
+		</ul>
+
+		<div class="blockContainer">
+			<h3><spring:message code="probe.jsp.logRange.h3.window" arguments="${log.file.name}"/></h3>
+
+			<form action="<c:url value='/logs/range.htm'/>" method="get">
+				<c:forEach items="logType,webapp,context,root,logName,logIndex" var="name">
+					<c:if test="${! empty param[name]}">
+						<input type="hidden" name="${name}" value="<c:out value='${param[name]}'/>"/>
+					</c:if>
+				</c:forEach>
+				<label>
+					<spring:message code="probe.jsp.logRange.from"/>
+					<input type="text" name="from" value="<c:out value='${param.from}'/>" class="txtInput" size="20"/>
+				</label>
+				<label>
+					<spring:message code="probe.jsp.logRange.to"/>
+					<input type="text" name="to" value="<c:out value='${param.to}'/>" class="txtInput" size="20"/>
+				</label>
+				<button type="submit"><spring:message code="probe.jsp.logRange.submit"/></button>
+				<p><spring:message code="probe.jsp.logRange.help"/></p>
+			</form>
+
+			<c:if test="${! empty errorMessage}">
+				<div class="errorMessage">
+					<p>
+						<c:out value="${errorMessage}"/>
+					</p>
+				</div>
+			</c:if>
+
+			<c:if test="${lines != null}">
+				<div class="infoMessage">
+					<p>
+						<spring:message code="probe.jsp.logRange.size"/>
+						<probe:volume value="${size}"/>
+						<c:if test="${truncated}">
+							<spring:message code="probe.jsp.logRange.truncated"/>
+						</c:if>
+					</p>
+				</div>
+
+				<div class="shaper">
+					<div class="fixed_width">
+						<c:forEach items="${lines}" var="line">
+							<div class="line"><c:out value="${line}"/></div>
+						</c:forEach>
+					</div>
+				</div>
+			</c:if>
+		</div>
+	</body>
+</html>
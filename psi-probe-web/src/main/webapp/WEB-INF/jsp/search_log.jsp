@@ -0,0 +1,128 @@
+<%--
+
+    Licensed under the GPL License. You may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+      https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+
+    THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+    WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+    PURPOSE.
+
+--%>
+<%@ page contentType="text/html;charset=UTF-8" language="java" session="false"%>
+<%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
+<%@ taglib uri="http://www.springframework.org/tags" prefix="spring" %>
+
+<%-- Log search: a search form and a page of matching lines with the lines around them. --%>
+
+<html>
+	<head>
+		<title><spring:message code="probe.jsp.title.searchLog"/></title>
+	</head>
+
+	<c:set var="navTabLogs" value="active" scope="request"/>
+
+	<body>
+
+		<ul class="options">
+			<li id="back">
+				<a href="<c:url value='/logs/list.htm'/>">
+					<spring:message code="probe.jsp.follow.menu.back"/>
+				</a>
+			</li>
+		</ul>
+
+		<div class="blockContainer">
+			<h3><spring:message code="probe.jsp.searchLog.h3.search" arguments="${log.file.name}"/></h3>
+
+			<form action="<c:url value='/logs/search.htm'/>" method="get">
+				<c:forEach items="logType,webapp,context,root,logName,logIndex" var="name">
+					<c:if test="${! empty param[name]}">
+						<input type="hidden" name="${name}" value="<c:out value='${param[name]}'/>"/>
+					</c:if>
+				</c:forEach>
+				<input type="text" name="q" value="<c:out value='${param.q}'/>" class="txtInput" size="60"/>
+				<label>
+					<input type="checkbox" name="regex" value="true" ${param.regex ? 'checked="checked"' : ''}/>
+					<spring:message code="probe.jsp.searchLog.regex"/>
+				</label>
+				<label>
+					<input type="checkbox" name="rotated" value="true" ${param.rotated ? 'checked="checked"' : ''}/>
+					<spring:message code="probe.jsp.searchLog.rotated"/>
+				</label>
+				<label>
+					<spring:message code="probe.jsp.searchLog.context"/>
+					<input type="text" name="contextLines" value="${contextLines}" class="txtInput" size="2"/>
+				</label>
+				<button type="submit"><spring:message code="probe.jsp.searchLog.submit"/></button>
+			</form>
+
+			<c:if test="${! empty errorMessage}">
+				<div class="errorMessage">
+					<p>
+						<c:out value="${errorMessage}"/>
+					</p>
+				</div>
+			</c:if>
+
+			<c:if test="${result != null}">
+				<div class="infoMessage">
+					<p>
+						<spring:message code="probe.jsp.searchLog.summary"
+								arguments="${result.scannedBlocks},${result.totalBlocks},${result.elapsed}"/>
+						<c:if test="${! result.complete}">
+							<spring:message code="probe.jsp.searchLog.incomplete"/>
+						</c:if>
+					</p>
+				</div>
+
+				<h3><spring:message code="probe.jsp.searchLog.h3.results"/></h3>
+
+				<c:choose>
+					<c:when test="${empty result.matches}">
+						<p><spring:message code="probe.jsp.searchLog.noMatches"/></p>
+					</c:when>
+					<c:otherwise>
+						<div class="shaper">
+							<div class="fixed_width">
+								<c:forEach items="${result.matches}" var="match">
+									<div class="line">
+										<strong><c:out value="${match.fileName}"/>:${match.lineNumber}</strong>
+									</div>
+									<c:forEach items="${match.before}" var="line">
+										<div class="line"><c:out value="${line}"/></div>
+									</c:forEach>
+									<div class="line"><strong><c:out value="${match.line}"/></strong></div>
+									<c:forEach items="${match.after}" var="line">
+										<div class="line"><c:out value="${line}"/></div>
+									</c:forEach>
+									<hr/>
+								</c:forEach>
+							</div>
+						</div>
+					</c:otherwise>
+				</c:choose>
+
+				<c:if test="${result.nextCursor != null}">
+					<c:url value="/logs/search.htm" var="nextUrl">
+						<c:forEach items="logType,webapp,context,root,logName,logIndex,q,regex,rotated" var="name">
+							<c:if test="${! empty param[name]}">
+								<c:param name="${name}" value="${param[name]}"/>
+							</c:if>
+						</c:forEach>
+						<c:param name="contextLines" value="${contextLines}"/>
+						<c:param name="cursor" value="${result.nextCursor}"/>
+					</c:url>
+					<ul class="options">
+						<li id="next">
+							<a href="${nextUrl}">
+								<spring:message code="probe.jsp.searchLog.next"/>
+							</a>
+						</li>
+					</ul>
+				</c:if>
+			</c:if>
+		</div>
+	</body>
+</html>
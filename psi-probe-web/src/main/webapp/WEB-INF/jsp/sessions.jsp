@@ -117,6 +117,24 @@
 						</c:otherwise>
 					</c:choose>
 				</c:if>
+				<c:if test="${! empty sessions}">
+					<c:url value="/exportsessions.htm" var="exportUrl">
+						<c:if test="${! empty param.webapp}">
+							<c:param name="webapp" value="${param.webapp}"/>
+						</c:if>
+						<c:param name="size" value="${param.size}"/>
+					</c:url>
+					<li id="export">
+						<a href="${exportUrl}&amp;fmt=json">
+							<spring:message code="probe.jsp.sessions.menu.exportJson"/>
+						</a>
+					</li>
+					<li id="exportXml">
+						<a href="${exportUrl}&amp;fmt=xml">
+							<spring:message code="probe.jsp.sessions.menu.exportXml"/>
+						</a>
+					</li>
+				</c:if>
 				<li id="abbreviations" ${! searchInfo.apply ? 'style="display: none;"' : ''}>
 					<a href="#">
 						<spring:message code="probe.jsp.sessions.menu.searchHelp"/>
@@ -194,7 +212,38 @@
 						<c:if test="${! searchInfo.apply}">
 							<h3><spring:message code="probe.jsp.sessions.h3"/></h3>
 						</c:if>
-						<display:table name="sessions" class="genericTbl" uid="session" style="border-spacing:0;border-collapse:separate;" pagesize="50"
+						<c:if test="${sizePartial}">
+							<div class="infoMessage">
+								<spring:message code="probe.jsp.sessions.sizePartial"/>
+							</div>
+						</c:if>
+						<c:if test="${searchLimited}">
+							<div class="infoMessage">
+								<spring:message code="probe.jsp.sessions.search.limited" arguments="${matchCount},${sessionCount}"/>
+							</div>
+						</c:if>
+						<p>
+							<spring:message code="probe.jsp.sessions.sortBy"/>
+							<c:forEach items="${fn:split('applicationName,lastAccessedIp,idleTime,age,expiryTime,objectCount,size,serializable', ',')}" var="column">
+								<c:if test="${(column != 'applicationName' or empty param.webapp) and (column != 'size' or param.size)}">
+									<c:url value="/sessions.htm" var="sortUrl">
+										<c:if test="${! empty param.webapp}">
+											<c:param name="webapp" value="${param.webapp}"/>
+										</c:if>
+										<c:param name="size" value="${param.size}"/>
+										<c:param name="sort" value="${column}"/>
+										<c:param name="dir" value="${sort == column and dir == 'asc' ? 'desc' : 'asc'}"/>
+										<c:if test="${! empty param.pageSize}">
+											<c:param name="pageSize" value="${param.pageSize}"/>
+										</c:if>
+									</c:url>
+									<a href="${sortUrl}"${sort == column ? ' class="selected"' : ''}>
+										<spring:message code="probe.jsp.sessions.col.${column == 'lastAccessedIp' ? 'lastIp' : column}"/><c:if test="${sort == column}">&#160;${dir == 'asc' ? '&#9650;' : '&#9660;'}</c:if>
+									</a>
+								</c:if>
+							</c:forEach>
+						</p>
+						<display:table name="sessions" class="genericTbl" uid="session" style="border-spacing:0;border-collapse:separate;"
 								requestURI="">
 
 							<display:column class="leftmost" title="&#160;">
@@ -202,8 +251,7 @@
 							</display:column>
 
 							<c:if test="${empty param.webapp}">
-								<display:column sortProperty="applicationName" sortable="true"
-										titleKey="probe.jsp.sessions.col.applicationName">
+								<display:column titleKey="probe.jsp.sessions.col.applicationName">
 									<a href="<c:url value='/appsummary.htm'><c:param name='webapp' value='${session.applicationName}'/></c:url>">
 										${session.applicationName}
 									</a>&#160;
@@ -216,7 +264,7 @@
 								</a>
 							</display:column>
 
-							<display:column titleKey="probe.jsp.sessions.col.lastIp" sortProperty="lastAccessedIp" sortable="true">
+							<display:column titleKey="probe.jsp.sessions.col.lastIp">
 								<c:choose>
 									<c:when test="${! empty session.lastAccessedIp}">
 										<a id='ip_${session_rowNum}' href="#">${session.lastAccessedIp}</a>
@@ -244,28 +292,26 @@
 								</c:choose>
 							</display:column>
 
-							<display:column sortable="true" sortProperty="idleTime" titleKey="probe.jsp.sessions.col.idleTime">
+							<display:column titleKey="probe.jsp.sessions.col.idleTime">
 								<probe:duration value="${session.idleTime}"/>
 							</display:column>
 
-							<display:column sortable="true" sortProperty="age" titleKey="probe.jsp.sessions.col.age">
+							<display:column titleKey="probe.jsp.sessions.col.age">
 								<probe:duration value="${session.age}"/>
 							</display:column>
 
-							<display:column property="expiryTime" sortable="true" nulls="false"
+							<display:column property="expiryTime" nulls="false"
 									titleKey="probe.jsp.sessions.col.expiryTime" style="white-space:nowrap;"/>
-							<display:column property="objectCount" sortable="true"
+							<display:column property="objectCount"
 									titleKey="probe.jsp.sessions.col.objectCount"/>
 
 							<c:if test="${param.size}">
-								<display:column sortProperty="size" sortable="true" titleKey="probe.jsp.sessions.col.size"
-										class="highlighted">
-									<probe:volume value="${session.size}"/>
+								<display:column titleKey="probe.jsp.sessions.col.size" class="highlighted">
+									<c:if test="${session.sizePartial}">&#8805;</c:if><probe:volume value="${session.size}"/>
 								</display:column>
 							</c:if>
 
-							<display:column sortable="true" sortProperty="serializable"
-									titleKey="probe.jsp.sessions.col.serializable">
+							<display:column titleKey="probe.jsp.sessions.col.serializable">
 								<c:choose>
 									<c:when test="${session.serializable}">
 										<span class="okValue"><spring:message code="probe.jsp.sessions.status.yes"/></span>
@@ -277,6 +323,42 @@
 							</display:column>
 
 						</display:table>
+						<p>
+							<spring:message code="probe.jsp.sessions.page" arguments="${pageStart},${pageStart + fn:length(sessions) - 1},${sessionCount}"/>
+							<c:if test="${! empty param.after}">
+								<c:url value="/sessions.htm" var="firstUrl">
+									<c:if test="${! empty param.webapp}">
+										<c:param name="webapp" value="${param.webapp}"/>
+									</c:if>
+									<c:param name="size" value="${param.size}"/>
+									<c:if test="${! empty sort}">
+										<c:param name="sort" value="${sort}"/>
+										<c:param name="dir" value="${dir}"/>
+									</c:if>
+									<c:if test="${! empty param.pageSize}">
+										<c:param name="pageSize" value="${param.pageSize}"/>
+									</c:if>
+								</c:url>
+								<a href="${firstUrl}"><spring:message code="probe.jsp.sessions.page.first"/></a>
+							</c:if>
+							<c:if test="${! empty nextCursor}">
+								<c:url value="/sessions.htm" var="nextUrl">
+									<c:if test="${! empty param.webapp}">
+										<c:param name="webapp" value="${param.webapp}"/>
+									</c:if>
+									<c:param name="size" value="${param.size}"/>
+									<c:if test="${! empty sort}">
+										<c:param name="sort" value="${sort}"/>
+										<c:param name="dir" value="${dir}"/>
+									</c:if>
+									<c:if test="${! empty param.pageSize}">
+										<c:param name="pageSize" value="${param.pageSize}"/>
+									</c:if>
+									<c:param name="after" value="${nextCursor}"/>
+								</c:url>
+								<a href="${nextUrl}"><spring:message code="probe.jsp.sessions.page.next"/></a>
+							</c:if>
+						</p>
 					</c:when>
 					<c:otherwise>
 						<c:choose>
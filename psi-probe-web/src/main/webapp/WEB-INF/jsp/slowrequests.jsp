@@ -0,0 +1,120 @@
+<%--
+
+    Licensed under the GPL License. You may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+      https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+
+    THIS PACKAGE IS PROVIDED "AS IS" AND WITHOUT ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+    WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF MERCHANTIBILITY AND FITNESS FOR A PARTICULAR
+    PURPOSE.
+
+--%>
+<%@ page contentType="text/html;charset=UTF-8" language="java" session="false" %>
+<%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
+<%@ taglib uri="http://www.springframework.org/tags" prefix="spring" %>
+<%@ taglib uri="http://displaytag.sf.net" prefix="display" %>
+
+<%-- Displays the last requests the agent valve found slower than its threshold. --%>
+
+<html>
+	<head>
+		<title><spring:message code="probe.jsp.title.slowrequests"/></title>
+	</head>
+
+	<body>
+
+		<c:set var="navTabConnectors" value="active" scope="request"/>
+
+		<ul class="options">
+			<li id="connectors">
+				<a href="<c:url value='/connectors.htm'/>">
+					<spring:message code="probe.jsp.slowrequests.menu.connectors"/>
+				</a>
+			</li>
+		</ul>
+
+		<div class="blockContainer">
+			<form action="<c:url value='/slowrequests.htm'/>" method="get">
+				<table id="searchFormTable">
+					<tr>
+						<td class="labelCell">
+							<spring:message code="probe.jsp.slowrequests.search.webapp"/>
+						</td>
+						<td class="inputCell">
+							<input name="webapp" type="text" value="<c:out value='${param.webapp}'/>" class="txtInput" size="20"/>
+						</td>
+						<td class="labelCell">
+							<spring:message code="probe.jsp.slowrequests.search.uri"/>
+						</td>
+						<td class="inputCell">
+							<input name="uri" type="text" value="<c:out value='${param.uri}'/>" class="txtInput" size="30"/>
+						</td>
+						<td class="labelCell">
+							<spring:message code="probe.jsp.slowrequests.search.minDuration"/>
+						</td>
+						<td class="inputCell">
+							<input name="minDuration" type="text" value="<c:out value='${param.minDuration}'/>" class="txtInput" size="8"/>
+						</td>
+						<td>
+							<input type="submit" value="<spring:message code='probe.jsp.slowrequests.search.submit'/>"/>
+						</td>
+					</tr>
+				</table>
+			</form>
+
+			<c:choose>
+				<c:when test="${! empty slowRequests}">
+					<display:table name="slowRequests" uid="slowRequest" class="genericTbl" style="border-spacing:0;border-collapse:separate;" pagesize="50"
+							requestURI="">
+						<display:column property="time" sortable="true" titleKey="probe.jsp.slowrequests.col.time" style="white-space:nowrap;" class="leftmost"/>
+						<display:column property="applicationName" sortable="true" titleKey="probe.jsp.slowrequests.col.applicationName"/>
+						<display:column property="method" sortable="true" titleKey="probe.jsp.slowrequests.col.method"/>
+						<display:column sortable="true" sortProperty="uri" titleKey="probe.jsp.slowrequests.col.uri">
+							<c:out value="${slowRequest.uri}"/><c:if test="${! empty slowRequest.queryString}">?<c:out value="${slowRequest.queryString}"/></c:if>
+						</display:column>
+						<display:column property="duration" sortable="true" titleKey="probe.jsp.slowrequests.col.duration"/>
+						<display:column property="threadName" sortable="true" titleKey="probe.jsp.slowrequests.col.threadName" style="white-space:nowrap;"/>
+						<display:column titleKey="probe.jsp.slowrequests.col.stack">
+							<c:choose>
+								<c:when test="${! empty slowRequest.stackElements}">
+									<details>
+										<summary>
+											${slowRequest.stackElements[0].className}.${slowRequest.stackElements[0].methodName}
+										</summary>
+										<c:forEach items="${slowRequest.stackElements}" var="element">
+											<div>
+												${element.className}.${element.methodName}
+												(
+												<c:choose>
+													<c:when test="${!element.nativeMethod && element.lineNumber > 0}">
+														${element.fileName}:${element.lineNumber}
+													</c:when>
+													<c:when test="${element.nativeMethod}">
+														<spring:message code="probe.jsp.threadstack.native"/>
+													</c:when>
+													<c:otherwise>
+														<spring:message code="probe.jsp.threadstack.unknown"/>
+													</c:otherwise>
+												</c:choose>
+												)
+											</div>
+										</c:forEach>
+									</details>
+								</c:when>
+								<c:otherwise>
+									&#160;
+								</c:otherwise>
+							</c:choose>
+						</display:column>
+					</display:table>
+				</c:when>
+				<c:otherwise>
+					<div class="infoMessage">
+						<spring:message code="probe.jsp.slowrequests.empty"/>
+					</div>
+				</c:otherwise>
+			</c:choose>
+		</div>
+	</body>
+</html>
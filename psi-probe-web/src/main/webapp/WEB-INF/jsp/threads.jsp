@@ -36,6 +36,11 @@
 						<spring:message code="probe.jsp.threads.menu.threadpools"/>
 					</a>
 				</li>
+				<li id="flamegraph">
+					<a href="<c:url value='/profiler.htm'/>">
+						<spring:message code="probe.jsp.threads.menu.flamegraph"/>
+					</a>
+				</li>
 				<li id="abbreviations">
 					<a href="#">
 						<spring:message code="probe.jsp.generic.abbreviations"/>
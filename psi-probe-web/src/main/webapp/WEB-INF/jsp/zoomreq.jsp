@@ -27,6 +27,9 @@
 		<c:param name="l" value="true"/>
 		<c:param name="p" value="${param.p}"/>
 		<c:param name="sp" value="${param.sp}"/>
+		<c:if test="${not empty param.r}">
+			<c:param name="r" value="${param.r}"/>
+		</c:if>
 		<c:choose>
 			<c:when test="${param.p == 'traffic'}">
 				<c:param name="s1c" value="#95FE8B"/>
@@ -58,6 +61,13 @@
 					<spring:message code="probe.jsp.zoomedchart.back"/>
 				</a>
 			</li>
+			<c:forTokens var="range" items="2h,1d,7d,31d" delims=",">
+				<li>
+					<a href="<c:url value='/zoomchart.htm'><c:param name='p' value='${param.p}'/><c:param name='sp' value='${param.sp}'/><c:param name='r' value='${range}'/></c:url>">
+						<spring:message code="probe.jsp.zoomedchart.range" arguments="${range}"/>
+					</a>
+				</li>
+			</c:forTokens>
 		</ul>
 
 		<div class="blockContainer">